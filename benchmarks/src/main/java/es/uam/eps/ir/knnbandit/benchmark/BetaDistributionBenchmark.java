@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.benchmark;
+
+import es.uam.eps.ir.knnbandit.stats.BetaDistribution;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks sampling from a Beta distribution, as done by the stochastic similarities and
+ * Thompson sampling bandits.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BetaDistributionBenchmark
+{
+    /**
+     * First parameter of the distribution.
+     */
+    @Param({"1", "100"})
+    public double alpha;
+    /**
+     * Second parameter of the distribution.
+     */
+    @Param({"1", "100"})
+    public double beta;
+
+    /**
+     * The distribution.
+     */
+    private BetaDistribution distribution;
+
+    /**
+     * Creates the distribution.
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.distribution = new BetaDistribution(alpha, beta);
+    }
+
+    /**
+     * Samples a value from the distribution.
+     * @return the sampled value.
+     */
+    @Benchmark
+    public double sample()
+    {
+        return distribution.sample();
+    }
+}
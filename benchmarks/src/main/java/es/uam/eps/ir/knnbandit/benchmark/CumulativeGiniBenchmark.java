@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.benchmark;
+
+import es.uam.eps.ir.knnbandit.metrics.CumulativeGini;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the update of the cumulative Gini index after each recommendation.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CumulativeGiniBenchmark
+{
+    /**
+     * Length of the random sequence of items (a power of two).
+     */
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+    /**
+     * Seed for the random number generator.
+     */
+    private static final long SEED = 0L;
+
+    /**
+     * Number of items.
+     */
+    @Param({"1000", "100000"})
+    public int items;
+
+    /**
+     * Random sequence of items.
+     */
+    private int[] itemSequence;
+    /**
+     * Current position in the sequence.
+     */
+    private int pos;
+    /**
+     * The metric.
+     */
+    private CumulativeGini<Long, Long> gini;
+
+    /**
+     * Generates the sequence of items.
+     */
+    @Setup(Level.Trial)
+    public void setupData()
+    {
+        Random rng = new Random(SEED);
+        this.itemSequence = new int[SEQUENCE_LENGTH];
+        for(int i = 0; i < SEQUENCE_LENGTH; ++i)
+        {
+            itemSequence[i] = rng.nextInt(items);
+        }
+    }
+
+    /**
+     * Creates the metric.
+     */
+    @Setup(Level.Iteration)
+    public void setupMetric()
+    {
+        this.gini = new CumulativeGini<>(items);
+        this.pos = 0;
+    }
+
+    /**
+     * Updates the metric with a recommended item.
+     */
+    @Benchmark
+    public void update()
+    {
+        int iidx = itemSequence[pos];
+        pos = (pos + 1) & (SEQUENCE_LENGTH - 1);
+        gini.update(0, iidx);
+    }
+}
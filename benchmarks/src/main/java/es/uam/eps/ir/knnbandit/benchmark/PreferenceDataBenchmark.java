@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.benchmark;
+
+import es.uam.eps.ir.knnbandit.data.preference.fast.PrimitiveFastUpdateablePreferenceData;
+import es.uam.eps.ir.knnbandit.data.preference.fast.SimpleFastUpdateablePreferenceData;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableUserIndex;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks adding ratings to the updateable preference data used as training data by the
+ * interactive recommenders. The data is emptied before each iteration.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreferenceDataBenchmark
+{
+    /**
+     * Length of the random sequences of users and items (a power of two).
+     */
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+    /**
+     * Seed for the random number generator.
+     */
+    private static final long SEED = 0L;
+
+    /**
+     * Implementation of the preference data.
+     */
+    @Param({"simple", "primitive"})
+    public String implementation;
+    /**
+     * Number of users.
+     */
+    @Param({"1000"})
+    public int users;
+    /**
+     * Number of items.
+     */
+    @Param({"1000"})
+    public int items;
+
+    /**
+     * User index.
+     */
+    private LongFastUpdateableUserIndex uIndex;
+    /**
+     * Item index.
+     */
+    private LongFastUpdateableItemIndex iIndex;
+    /**
+     * Random sequence of users.
+     */
+    private int[] userSequence;
+    /**
+     * Random sequence of items.
+     */
+    private int[] itemSequence;
+    /**
+     * Current position in the sequences.
+     */
+    private int pos;
+    /**
+     * The updateRating method of the preference data.
+     */
+    private RatingUpdater updater;
+
+    /**
+     * Generates the indexes and the sequences of users and items.
+     */
+    @Setup(Level.Trial)
+    public void setupData()
+    {
+        this.uIndex = LongFastUpdateableUserIndex.load(LongStream.range(0, users));
+        this.iIndex = LongFastUpdateableItemIndex.load(LongStream.range(0, items));
+        Random rng = new Random(SEED);
+        this.userSequence = new int[SEQUENCE_LENGTH];
+        this.itemSequence = new int[SEQUENCE_LENGTH];
+        for(int i = 0; i < SEQUENCE_LENGTH; ++i)
+        {
+            userSequence[i] = rng.nextInt(users);
+            itemSequence[i] = rng.nextInt(items);
+        }
+    }
+
+    /**
+     * Creates an empty preference data.
+     */
+    @Setup(Level.Iteration)
+    public void setupPreferenceData()
+    {
+        switch(implementation)
+        {
+            case "simple":
+                this.updater = SimpleFastUpdateablePreferenceData.load(Stream.<Tuple3<Long, Long, Double>>empty(), uIndex, iIndex)::updateRating;
+                break;
+            case "primitive":
+                this.updater = PrimitiveFastUpdateablePreferenceData.load(Stream.<Tuple3<Long, Long, Double>>empty(), uIndex, iIndex)::updateRating;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+        this.pos = 0;
+    }
+
+    /**
+     * Adds (or updates) a rating.
+     */
+    @Benchmark
+    public void updateRating()
+    {
+        int uidx = userSequence[pos];
+        int iidx = itemSequence[pos];
+        pos = (pos + 1) & (SEQUENCE_LENGTH - 1);
+        updater.updateRating(uidx, iidx, 1.0);
+    }
+
+    /**
+     * Method adding a rating to a preference data.
+     */
+    @FunctionalInterface
+    private interface RatingUpdater
+    {
+        /**
+         * Adds (or updates) a rating.
+         * @param uidx User identifier.
+         * @param iidx Item identifier.
+         * @param rating The rating.
+         */
+        void updateRating(int uidx, int iidx, double rating);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.benchmark;
+
+import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
+import es.uam.eps.ir.knnbandit.selector.AlgorithmSelector;
+import es.uam.eps.ir.knnbandit.selector.UnconfiguredException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the next() and update() methods of the interactive recommenders. Algorithms are
+ * built by the {@link AlgorithmSelector}, from the same configuration strings as the algorithm
+ * files ({k} is replaced by the number of neighbors / latent factors).
+ *
+ * Before each iteration, the recommender is rebuilt and trained with a fraction of the ratings,
+ * taken in a fixed random order, so that all the users receive training ratings. Then, next()
+ * takes users from a fixed random sequence, and update() takes the held-out ratings, in order,
+ * in batches, so that every update reaches the recommender and its training data. A rating is
+ * never received twice: when too few held-out ratings are left for another batch, the recommender
+ * is rebuilt and trained again, out of the measured time.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommenderBenchmark
+{
+    /**
+     * Length of the random sequence of users (a power of two).
+     */
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+    /**
+     * Seed for the random number generators.
+     */
+    private static final long SEED = 0L;
+    /**
+     * Number of held-out ratings used in every invocation of the update benchmark.
+     */
+    private static final int UPDATE_BATCH = 1000;
+
+    /**
+     * Selects the item to recommend to a user.
+     * @param state The recommender and its data.
+     * @return the selected item.
+     */
+    @Benchmark
+    public int next(RecommenderState state)
+    {
+        int uidx = state.userSequence[state.pos];
+        state.pos = (state.pos + 1) & (SEQUENCE_LENGTH - 1);
+        return state.rec.next(uidx);
+    }
+
+    /**
+     * Updates the recommender with the next batch of held-out ratings, one by one.
+     * @param heldOut The held-out ratings, and the recommender receiving them.
+     */
+    @Benchmark
+    @OperationsPerInvocation(UPDATE_BATCH)
+    public void update(HeldOut heldOut)
+    {
+        RecommenderState state = heldOut.state;
+        int end = state.updatePos + UPDATE_BATCH;
+        for(int i = state.updatePos; i < end; ++i)
+        {
+            state.rec.update(state.ratingUidxs[i], state.ratingIidxs[i]);
+        }
+        state.updatePos = end;
+    }
+
+    /**
+     * The recommender and the data it receives.
+     */
+    @State(Scope.Thread)
+    public static class RecommenderState
+    {
+        /**
+         * Configuration of the algorithm.
+         */
+        @Param({"random", "popularity", "average", "ubknn-{k}", "knnbandit-{k}-1-100",
+                "mf-{k}-fastimf-1-0.1-5-true", "asyncmf-{k}-fastimf-1-0.1-5-true",
+                "ivfmf-16-4-{k}-fastimf-1-0.1-5-true", "sgdmf-{k}-0.01-0.1-5", "itembandit-epsilon-0.05-stationary",
+                "itembandit-epsilont-1-stationary", "itembandit-ucb1", "itembandit-ucb1tuned",
+                "itembandit-thompson-1-100"})
+        public String algorithm;
+        /**
+         * Number of users.
+         */
+        @Param({"1000"})
+        public int users;
+        /**
+         * Number of items.
+         */
+        @Param({"1000"})
+        public int items;
+        /**
+         * Fraction of the user-item pairs which are rated.
+         */
+        @Param({"0.05"})
+        public double density;
+        /**
+         * Number of neighbors (kNN) or latent factors (MF).
+         */
+        @Param({"10"})
+        public int k;
+        /**
+         * Fraction of the ratings used for training the recommender before each iteration.
+         */
+        @Param({"0.1"})
+        public double trainFraction;
+
+        /**
+         * The ratings.
+         */
+        private SyntheticData data;
+        /**
+         * Users of the ratings, in random order.
+         */
+        private int[] ratingUidxs;
+        /**
+         * Items of the ratings, in random order.
+         */
+        private int[] ratingIidxs;
+        /**
+         * Random sequence of users.
+         */
+        private int[] userSequence;
+        /**
+         * Current position in the sequence of users.
+         */
+        private int pos;
+        /**
+         * Number of ratings used for training the recommender.
+         */
+        private int numTrain;
+        /**
+         * Position of the next held-out rating used for updating the recommender.
+         */
+        private int updatePos;
+        /**
+         * The recommender.
+         */
+        private InteractiveRecommender<Long, Long> rec;
+
+        /**
+         * Generates the ratings, their random order and the sequence of users.
+         */
+        @Setup(Level.Trial)
+        public void setupData()
+        {
+            this.data = new SyntheticData(users, items, density, SEED);
+            Random rng = new Random(SEED);
+
+            // The synthetic ratings are grouped by user: shuffle them, so the training ratings are
+            // spread over all the users.
+            this.ratingUidxs = data.getUidxs().clone();
+            this.ratingIidxs = data.getIidxs().clone();
+            for(int i = ratingUidxs.length - 1; i > 0; --i)
+            {
+                int j = rng.nextInt(i + 1);
+                int aux = ratingUidxs[i]; ratingUidxs[i] = ratingUidxs[j]; ratingUidxs[j] = aux;
+                aux = ratingIidxs[i]; ratingIidxs[i] = ratingIidxs[j]; ratingIidxs[j] = aux;
+            }
+
+            this.userSequence = new int[SEQUENCE_LENGTH];
+            for(int i = 0; i < SEQUENCE_LENGTH; ++i)
+            {
+                userSequence[i] = rng.nextInt(users);
+            }
+
+            this.numTrain = (int) (trainFraction * ratingUidxs.length);
+            if(ratingUidxs.length - numTrain < UPDATE_BATCH)
+            {
+                throw new IllegalArgumentException("Less than " + UPDATE_BATCH + " ratings are left for updating the recommender");
+            }
+        }
+
+        /**
+         * Builds and trains the recommender.
+         * @throws UnconfiguredException if the algorithm selector is not configured.
+         */
+        @Setup(Level.Iteration)
+        public void setupRecommender() throws UnconfiguredException
+        {
+            AlgorithmSelector<Long, Long> selector = new AlgorithmSelector<>();
+            selector.configure(data.getUserIndex(), data.getItemIndex(), data.getPreferenceData(), 3.0);
+            this.rec = selector.getAlgorithm(algorithm.replace("{k}", String.valueOf(k)));
+            if(rec == null)
+            {
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+            }
+
+            rec.update(ratingUidxs, ratingIidxs, numTrain);
+            this.pos = 0;
+            this.updatePos = numTrain;
+        }
+    }
+
+    /**
+     * Held-out ratings of the update benchmark. The recommender is only reached through this
+     * state, since JMH gives the states received by helper methods their own instances.
+     */
+    @State(Scope.Thread)
+    public static class HeldOut
+    {
+        /**
+         * The recommender and its data.
+         */
+        private RecommenderState state;
+
+        /**
+         * Rebuilds the recommender when the held-out ratings left are not enough for another batch,
+         * so that no rating is received twice.
+         * @param state The recommender and its data.
+         * @throws UnconfiguredException if the algorithm selector is not configured.
+         */
+        @Setup(Level.Invocation)
+        public void check(RecommenderState state) throws UnconfiguredException
+        {
+            this.state = state;
+            if(state.updatePos + UPDATE_BATCH > state.ratingUidxs.length)
+            {
+                state.setupRecommender();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.benchmark;
+
+import es.uam.eps.ir.knnbandit.data.preference.fast.CSRPreferenceData;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableUserIndex;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+/**
+ * Random ratings used by the benchmarks. Each user rates (approximately) the same number of
+ * items, chosen uniformly at random, with integer ratings between 1 and 5.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class SyntheticData
+{
+    /**
+     * User index.
+     */
+    private final LongFastUpdateableUserIndex uIndex;
+    /**
+     * Item index.
+     */
+    private final LongFastUpdateableItemIndex iIndex;
+    /**
+     * The ratings.
+     */
+    private final CSRPreferenceData<Long, Long> prefData;
+    /**
+     * Users of the ratings, in generation order.
+     */
+    private final int[] uidxs;
+    /**
+     * Items of the ratings, in generation order.
+     */
+    private final int[] iidxs;
+
+    /**
+     * Constructor.
+     * @param numUsers Number of users.
+     * @param numItems Number of items.
+     * @param density Fraction of the user-item pairs which are rated.
+     * @param seed Seed for the random number generator.
+     */
+    public SyntheticData(int numUsers, int numItems, double density, long seed)
+    {
+        this.uIndex = LongFastUpdateableUserIndex.load(LongStream.range(0, numUsers));
+        this.iIndex = LongFastUpdateableItemIndex.load(LongStream.range(0, numItems));
+
+        Random rng = new Random(seed);
+        int perUser = Math.max(1, Math.min(numItems, (int) Math.round(density * numItems)));
+        int numRatings = perUser * numUsers;
+        this.uidxs = new int[numRatings];
+        this.iidxs = new int[numRatings];
+        double[] values = new double[numRatings];
+
+        int pos = 0;
+        IntOpenHashSet rated = new IntOpenHashSet();
+        for(int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            rated.clear();
+            while(rated.size() < perUser)
+            {
+                int iidx = rng.nextInt(numItems);
+                if(rated.add(iidx))
+                {
+                    uidxs[pos] = uidx;
+                    iidxs[pos] = iidx;
+                    values[pos] = 1 + rng.nextInt(5);
+                    ++pos;
+                }
+            }
+        }
+
+        this.prefData = CSRPreferenceData.load(uIndex, iIndex, uidxs, iidxs, values);
+    }
+
+    /**
+     * Obtains the user index.
+     * @return the user index.
+     */
+    public LongFastUpdateableUserIndex getUserIndex()
+    {
+        return uIndex;
+    }
+
+    /**
+     * Obtains the item index.
+     * @return the item index.
+     */
+    public LongFastUpdateableItemIndex getItemIndex()
+    {
+        return iIndex;
+    }
+
+    /**
+     * Obtains the ratings.
+     * @return the ratings.
+     */
+    public CSRPreferenceData<Long, Long> getPreferenceData()
+    {
+        return prefData;
+    }
+
+    /**
+     * Obtains the users of the ratings, in generation order.
+     * @return the users of the ratings.
+     */
+    public int[] getUidxs()
+    {
+        return uidxs;
+    }
+
+    /**
+     * Obtains the items of the ratings, in generation order.
+     * @return the items of the ratings.
+     */
+    public int[] getIidxs()
+    {
+        return iidxs;
+    }
+}
@@ -9,21 +9,28 @@
  */
 package es.uam.eps.ir.knnbandit;
 
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.SimpleFastUpdateableItemIndex;
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.SimpleFastUpdateableUserIndex;
-import es.uam.eps.ir.knnbandit.graph.io.GraphReader;
+import es.uam.eps.ir.knnbandit.data.preference.fast.CSRPreferenceData;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.graph.io.BinaryGraphReader;
 import es.uam.eps.ir.knnbandit.graph.io.TextGraphReader;
 import es.uam.eps.ir.knnbandit.recommendation.RecommendationLoop;
+import es.uam.eps.ir.knnbandit.recommendation.arrival.UserArrival;
+import es.uam.eps.ir.knnbandit.recommendation.arrival.UserArrivals;
 import es.uam.eps.ir.knnbandit.selector.AlgorithmSelector;
 import es.uam.eps.ir.knnbandit.selector.UnconfiguredException;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeGini;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeRecall;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.FactorizationStatus;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.knnbandit.recommendation.mf.InteractiveMF;
 import es.uam.eps.ir.knnbandit.graph.Graph;
+import es.uam.eps.ir.knnbandit.graph.csr.CSRGraph;
+import es.uam.eps.ir.knnbandit.graph.edges.EdgeOrientation;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -42,8 +49,7 @@ import java.util.Set;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jooq.lambda.tuple.Tuple2;
-import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 import org.ranksys.formats.parsing.Parsers;
 
 /**
@@ -64,6 +70,7 @@ public class InteractiveContactRecommendation
      *     <li>Directed: true if the graph is directed, false otherwise</li>
      *     <li>Resume: true if we want to retrieve data from previous executions, false to overwrite</li>
      *     <li>Not reciprocal: true if we don't want to recommend reciprocal edges, false otherwise</li>
+     *     <li>Arrival (optional): order in which users arrive (uniform or activity). By default, uniform</li>
      * </ol>
      * @throws IOException if something fails while reading / writing.
      * @throws UnconfiguredException if something fails while retrieving the algorithms.
@@ -81,6 +88,7 @@ public class InteractiveContactRecommendation
             System.err.println("\tDirected: true if the graph is directed, false otherwise");
             System.err.println("\tresume: true if we want to resume previous executions, false if we want to overwrite");
             System.err.println("\tNot Reciprocal: true if we want to recommend reciprocal edges, false otherwise");
+            System.err.println("\tArrival (optional): uniform (default) for uniformly random users, activity for users proportional to their number of links");
             return;
         }
 
@@ -93,6 +101,13 @@ public class InteractiveContactRecommendation
         
         boolean directed = args[5].equalsIgnoreCase("true");
         boolean notReciprocal = !directed || args[6].equalsIgnoreCase("true");
+        // The graph does not keep the order of the links, so they cannot be replayed.
+        String arrivalModel = args.length > 7 ? args[7] : UserArrivals.UNIFORM;
+        if(!arrivalModel.equals(UserArrivals.UNIFORM) && !arrivalModel.equals(UserArrivals.ACTIVITY))
+        {
+            System.err.println("ERROR: Unknown arrival model " + arrivalModel);
+            return;
+        }
 
         // First, we identify and find the random seed which will be used for unties.
         if(resume)
@@ -124,32 +139,60 @@ public class InteractiveContactRecommendation
         
         // Read the ratings.
         Set<Long> users = new HashSet<>();
-        List<Tuple3<Long,Long,Double>> triplets = new ArrayList<>();
         
-        Graph<Long> graph;
-        GraphReader<Long> greader = new TextGraphReader<>(directed, false, false, "\t", Parsers.lp);
-        graph = greader.read(input);
+        // The network is only read, so it is stored in an immutable CSR graph (mapped directly from binary graph
+        // files, and built from the parsed edges of text files).
+        CSRGraph<Long> graph;
+        if(BinaryGraphReader.isBinary(input))
+        {
+            Graph<Long> binaryGraph = new BinaryGraphReader<>(Parsers.lp).read(input, false, false);
+            graph = binaryGraph == null ? null : CSRGraph.load(binaryGraph);
+        }
+        else
+        {
+            graph = new TextGraphReader<>(directed, false, false, "\t", Parsers.lp).readCSR(input);
+        }
+
+        if(graph == null)
+        {
+            System.err.println("ERROR: The graph could not be read from " + input);
+            return;
+        }
+        // Binary graph files store whether the graph is directed, and the metrics depend on it.
+        if(graph.isDirected() != directed)
+        {
+            System.err.println("ERROR: The graph in " + input + " is " + (graph.isDirected() ? "directed" : "undirected") + ", but the Directed argument is " + directed);
+            return;
+        }
         
         graph.getAllNodes().forEach(users::add);
         int numEdges = new Long(graph.getEdgeCount()).intValue()*(directed ? 1 : 2);
-        int numRecipr = graph.getAllNodes().mapToInt(graph::getMutualNodesCount).sum();
+        int numRecipr = graph.getAllNodesIds().map(uidx -> graph.getNeighborhoodSize(uidx, EdgeOrientation.MUTUAL)).sum();
 
         int numrel = numEdges - numRecipr/2;
-        
-        graph.getAllNodes().forEach(u -> 
+
+        LongFastUpdateableUserIndex uIndex = LongFastUpdateableUserIndex.load(users.stream().mapToLong(Long::longValue));
+        LongFastUpdateableItemIndex iIndex = LongFastUpdateableItemIndex.load(users.stream().mapToLong(Long::longValue));
+
+        // Every link is a preference with value 1.0, so the preference data is binary.
+        IntArrayList uidxs = new IntArrayList();
+        IntArrayList iidxs = new IntArrayList();
+        graph.getAllNodesIds().forEach(idx -> 
         {
-            graph.getAdjacentNodes(u).forEach(v -> 
+            int uidx = uIndex.user2uidx(graph.idx2object(idx));
+            IntIterator neighbors = graph.getNeighborhoodIterator(idx, EdgeOrientation.OUT);
+            while(neighbors.hasNext())
             {
-                triplets.add(new Tuple3<>(u,v,1.0));
-            });
+                uidxs.add(uidx);
+                iidxs.add(iIndex.item2iidx(graph.idx2object(neighbors.nextInt())));
+            }
         });
-
-        FastUpdateableUserIndex<Long> uIndex = SimpleFastUpdateableUserIndex.load(users.stream());
-        FastUpdateableItemIndex<Long> iIndex = SimpleFastUpdateableItemIndex.load(users.stream());
-        SimpleFastPreferenceData<Long, Long> prefData = SimpleFastPreferenceData.load(triplets.stream(), uIndex, iIndex);
+        FastPointWisePreferenceData<Long, Long> prefData = CSRPreferenceData.load(uIndex, iIndex, uidxs.toIntArray(), iidxs.toIntArray(), null);
 
         System.out.println("Num items:" + users.size());
         System.out.println("Num. users: " + prefData.numUsersWithPreferences());
+        Supplier<UserArrival> arrivals = arrivalModel.equals(UserArrivals.ACTIVITY) ? () -> UserArrivals.activity(prefData) : () -> UserArrivals.uniform(prefData);
+
         // Initialize the metrics to compute.
         Map<String, Supplier<CumulativeMetric<Long,Long>>> metrics = new HashMap<>();
         metrics.put("recall", () -> new CumulativeRecall(prefData, numrel, 0.5));
@@ -171,9 +214,17 @@ public class InteractiveContactRecommendation
             InteractiveRecommender<Long,Long> rec = re.getValue();
             Map<String, CumulativeMetric<Long,Long>> localMetrics = new HashMap<>();
             metricNames.forEach(name -> localMetrics.put(name, metrics.get(name).get()));
-            RecommendationLoop<Long, Long> loop = new RecommendationLoop<>(uIndex, iIndex, prefData, rec, localMetrics, numIter,0);
+            // Asynchronous matrix factorization also reports the status of its background factorizations.
+            Map<String, CumulativeMetric<Long,Long>> statusMetrics = FactorizationStatus.of(rec);
+            localMetrics.putAll(statusMetrics);
+            List<String> localNames = new ArrayList<>(metricNames);
+            localNames.addAll(statusMetrics.keySet());
+            RecommendationLoop<Long, Long> loop = new RecommendationLoop<>(uIndex, iIndex, prefData, rec, localMetrics, numIter, 0, arrivals.get());
 
-            List<Tuple3<Long,Long,Long>> list = new ArrayList<>();
+            // Iterations recovered from a previous execution: user, item and time.
+            IntArrayList resumeUidxs = new IntArrayList();
+            IntArrayList resumeIidxs = new IntArrayList();
+            LongArrayList resumeTimes = new LongArrayList();
             String fileName = output + re.getKey() + ".txt";
 
             if(resume)
@@ -195,10 +246,9 @@ public class InteractiveContactRecommendation
                                 split = line.split("\t");
                                 if(split.length < len) break;
 
-                                long u = Parsers.lp.parse(split[1]);
-                                long i = Parsers.lp.parse(split[2]);
-                                long time = Parsers.lp.parse(split[len-1]);
-                                list.add(new Tuple3<>(u, i, time));
+                                resumeUidxs.add(uIndex.user2uidx(Long.parseLong(split[1])));
+                                resumeIidxs.add(iIndex.item2iidx(Long.parseLong(split[2])));
+                                resumeTimes.add(Long.parseLong(split[len-1]));
                             }
                         }
                     }
@@ -211,26 +261,28 @@ public class InteractiveContactRecommendation
 
             try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output + re.getKey() + ".txt"))))
             {
-                if(resume && !list.isEmpty())
+                if(resume && !resumeUidxs.isEmpty())
                 {
-                    for(Tuple3<Long,Long,Long> triplet : list)
+                    for(int j = 0; j < resumeUidxs.size(); ++j)
                     {
                         StringBuilder builder = new StringBuilder();
-                        loop.update(new Tuple2<>(triplet.v1, triplet.v2));
+                        int uidx = resumeUidxs.getInt(j);
+                        int iidx = resumeIidxs.getInt(j);
+                        loop.update(uidx, iidx);
                         int iter = loop.getCurrentIteration();
                         builder.append(iter);
                         builder.append("\t");
-                        builder.append(triplet.v1);
+                        builder.append(uIndex.uidx2longUser(uidx));
                         builder.append("\t");
-                        builder.append(triplet.v2);
+                        builder.append(iIndex.iidx2longItem(iidx));
                         Map<String, Double> metricVals = loop.getMetrics();
-                        for(String name : metricNames)
+                        for(String name : localNames)
                         {
                             builder.append("\t");
                             builder.append(metricVals.get(name));
                         }
                         builder.append("\t");
-                        builder.append(triplet.v3);
+                        builder.append(resumeTimes.getLong(j));
                         builder.append("\n");
                         bw.write(builder.toString());
                     }
@@ -240,17 +292,17 @@ public class InteractiveContactRecommendation
                 {
                     StringBuilder builder = new StringBuilder();
                     long aa = System.currentTimeMillis();
-                    Tuple2<Long,Long> tuple = loop.nextIteration();
+                    boolean executed = loop.nextIterationIdx();
                     long bb = System.currentTimeMillis();
-                    if(tuple == null) break; // The loop has finished
+                    if(!executed) break; // The loop has finished
                     int iter = loop.getCurrentIteration();
                     builder.append(iter);
                     builder.append("\t");
-                    builder.append(tuple.v1);
+                    builder.append(uIndex.uidx2longUser(loop.getLastUidx()));
                     builder.append("\t");
-                    builder.append(tuple.v2);
+                    builder.append(iIndex.iidx2longItem(loop.getLastIidx()));
                     Map<String, Double> metricVals = loop.getMetrics();
-                    for(String name : metricNames)
+                    for(String name : localNames)
                     {
                         builder.append("\t");
                         builder.append(metricVals.get(name));
@@ -265,6 +317,13 @@ public class InteractiveContactRecommendation
             {
                 e.printStackTrace();
             }
+            finally
+            {
+                if(rec instanceof InteractiveMF)
+                {
+                    ((InteractiveMF<Long,Long>) rec).shutdown();
+                }
+            }
         });
     }
 }
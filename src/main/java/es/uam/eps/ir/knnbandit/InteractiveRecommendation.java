@@ -9,18 +9,27 @@
  */
 package es.uam.eps.ir.knnbandit;
 
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.SimpleFastUpdateableItemIndex;
-import es.uam.eps.ir.knnbandit.data.preference.index.fast.SimpleFastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.data.preference.fast.CSRMatrix;
+import es.uam.eps.ir.knnbandit.data.preference.fast.CSRPreferenceData;
+import es.uam.eps.ir.knnbandit.data.preference.io.MappedRatingsReader;
+import es.uam.eps.ir.knnbandit.data.preference.io.PreferenceDataCache;
+import es.uam.eps.ir.knnbandit.data.preference.io.Ratings;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.selector.AlgorithmSelector;
 import es.uam.eps.ir.knnbandit.selector.UnconfiguredException;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeGini;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeRecall;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.FactorizationStatus;
 import es.uam.eps.ir.knnbandit.recommendation.RecommendationLoop;
+import es.uam.eps.ir.knnbandit.recommendation.arrival.UserArrival;
+import es.uam.eps.ir.knnbandit.recommendation.arrival.UserArrivals;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.knnbandit.recommendation.mf.InteractiveMF;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -35,8 +44,7 @@ import java.util.function.DoubleUnaryOperator;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jooq.lambda.tuple.Tuple2;
-import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 import org.ranksys.formats.parsing.Parsers;
 
 /**
@@ -46,6 +54,11 @@ import org.ranksys.formats.parsing.Parsers;
  */
 public class InteractiveRecommendation
 {
+    /**
+     * Extension of the binary cache of the preference data, created next to the input file.
+     */
+    private final static String CACHE_EXTENSION = PreferenceDataCache.EXTENSION;
+
     /**
      * Executes recommendation algorithms in simulated interactive loops.
      * @param args Execution arguments:
@@ -57,6 +70,7 @@ public class InteractiveRecommendation
      *     <li>Threshold: relevance threshold</li>
      *     <li>Resume: true if we want to retrieve data from previous executions, false to overwrite</li>
      *     <li>Use ratings: true if we want to use ratings, false for binary values</li>
+     *     <li>Arrival (optional): order in which users arrive (uniform, activity or replay). By default, uniform</li>
      * </ol>
      * @throws IOException if something fails while reading / writing.
      * @throws UnconfiguredException if something fails while retrieving the algorithms.
@@ -74,6 +88,7 @@ public class InteractiveRecommendation
             System.err.println("\tThreshold: relevance threshold");
             System.err.println("\tresume: true if we want to resume previous executions, false if we want to overwrite");
             System.err.println("\tUse ratings: true if we want to take the true value of the ratings, false if we want to use binary values");
+            System.err.println("\tArrival (optional): uniform (default) for uniformly random users, activity for users proportional to their number of ratings, replay for the order of the ratings in the input");
             return;
         }
 
@@ -85,6 +100,12 @@ public class InteractiveRecommendation
         double threshold = Parsers.dp.parse(args[4]);
         boolean resume = args[5].equalsIgnoreCase("true");
         boolean useRatings = args[6].equalsIgnoreCase("true");
+        String arrivalModel = args.length > 7 ? args[7] : UserArrivals.UNIFORM;
+        if(!UserArrivals.isValid(arrivalModel))
+        {
+            System.err.println("ERROR: Unknown arrival model " + arrivalModel);
+            return;
+        }
 
         DoubleUnaryOperator weightFunction = useRatings ? (double x) -> x :
                                                            (double x) -> (x >= threshold ? 1.0 : 0.0);
@@ -120,45 +141,94 @@ public class InteractiveRecommendation
             bw.write("" + UntieRandomNumber.RNG);
         }
         
-        // Then, we read the ratings.
-        Set<Long> users = new HashSet<>();
-        Set<Long> items = new HashSet<>();
-        List<Tuple3<Long,Long,Double>> triplets = new ArrayList<>();
-        int numrel = 0;
-        
-        try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(input))))
+        // Then, we read the ratings. If a valid binary cache of the input exists, it is used.
+        // Otherwise, the ratings are parsed, and the cache is created for later executions.
+        String cacheFile = input + CACHE_EXTENSION;
+        long checksum = PreferenceDataCache.checksum(input);
+        PreferenceDataCache cache = PreferenceDataCache.open(cacheFile, checksum);
+
+        LongFastUpdateableUserIndex uIndex;
+        LongFastUpdateableItemIndex iIndex;
+        FastPointWisePreferenceData<Long, Long> prefData;
+        // Users of the ratings, in the order of the input (only needed for replaying them).
+        int[] replaySequence = null;
+        if(cache != null)
         {
-            String line;
-            while((line = br.readLine()) != null)
+            uIndex = LongFastUpdateableUserIndex.load(cache.getUsers());
+            iIndex = LongFastUpdateableItemIndex.load(cache.getItems());
+            prefData = cache.getPreferenceData(uIndex, iIndex, weightFunction);
+            if(arrivalModel.equals(UserArrivals.REPLAY))
             {
-                String[] split = line.split("\t");
-                Long user = Parsers.lp.parse(split[0]);
-                Long item = Parsers.lp.parse(split[1]);
-                double val = Parsers.dp.parse(split[2]);
-                
-                users.add(user);
-                items.add(item);
-                
-                double rating = weightFunction.applyAsDouble(val);
-                if(relevance.test(rating)) numrel++;
-                
-                triplets.add(new Tuple3<>(user, item, rating));            
+                replaySequence = cache.getUserSequence();
             }
         }
-        
-        FastUpdateableUserIndex<Long> uIndex = SimpleFastUpdateableUserIndex.load(users.stream());
-        FastUpdateableItemIndex<Long> iIndex = SimpleFastUpdateableItemIndex.load(items.stream());
-        
-        SimpleFastPreferenceData<Long, Long> prefData = SimpleFastPreferenceData.load(triplets.stream(), uIndex, iIndex);
+        else
+        {
+            Ratings ratings = new MappedRatingsReader().read(input);
+
+            // Identifiers are added in order of first appearance, so that the indexes are the same as
+            // if the ratings were added one by one.
+            Set<Long> users = new HashSet<>();
+            Set<Long> items = new HashSet<>();
+            users.addAll(ratings.getDistinctUsers());
+            items.addAll(ratings.getDistinctItems());
+
+            uIndex = LongFastUpdateableUserIndex.load(users.stream().mapToLong(Long::longValue));
+            iIndex = LongFastUpdateableItemIndex.load(items.stream().mapToLong(Long::longValue));
+
+            int[] uidxs = ratings.getUidxs(uIndex);
+            int[] iidxs = ratings.getIidxs(iIndex);
+            if(arrivalModel.equals(UserArrivals.REPLAY))
+            {
+                replaySequence = uidxs;
+            }
+            CSRMatrix userMatrix = CSRMatrix.build(uIndex.numUsers(), iIndex.numItems(), uidxs, iidxs, ratings.getValues());
+            CSRMatrix itemMatrix = CSRMatrix.build(iIndex.numItems(), uIndex.numUsers(), iidxs, uidxs, ratings.getValues());
+            try
+            {
+                PreferenceDataCache.write(cacheFile, checksum, uIndex, iIndex, userMatrix, itemMatrix, uidxs);
+            }
+            catch(IOException ioe)
+            {
+                System.err.println("WARNING: the preference data cache could not be written (" + ioe.getMessage() + ")");
+            }
+
+            prefData = new CSRPreferenceData<>(uIndex, iIndex, userMatrix.mapValues(weightFunction), itemMatrix.mapValues(weightFunction));
+        }
 
         System.out.println("USers: " + uIndex.numUsers());
         System.out.println("Items: " + iIndex.numItems());
-        int numRel = numrel;
+        int numRel = prefData.getUidxWithPreferences().map(uidx ->
+        {
+            int count = 0;
+            DoubleIterator vs = prefData.getUidxVs(uidx);
+            while(vs.hasNext())
+            {
+                if(relevance.test(vs.nextDouble())) count++;
+            }
+            return count;
+        }).sum();
+
+        // Each loop has its own arrival model, as it keeps track of the users who cannot receive more recommendations.
+        int[] sequence = replaySequence;
+        Supplier<UserArrival> arrivals;
+        switch(arrivalModel)
+        {
+            case UserArrivals.ACTIVITY:
+                arrivals = () -> UserArrivals.activity(prefData);
+                break;
+            case UserArrivals.REPLAY:
+                arrivals = () -> UserArrivals.replay(prefData, sequence);
+                break;
+            case UserArrivals.UNIFORM:
+            default:
+                arrivals = () -> UserArrivals.uniform(prefData);
+        }
 
         // Initialize the metrics to compute.
         Map<String, Supplier<CumulativeMetric<Long,Long>>> metrics = new HashMap<>();
         metrics.put("recall", () -> new CumulativeRecall(prefData, numRel, 0.5));
-        metrics.put("gini", () -> new CumulativeGini(items.size()));
+        metrics.put("gini", () -> new CumulativeGini(iIndex.numItems()));
         List<String> metricNames = new ArrayList<>(metrics.keySet());
 
         // Select the algorithms.
@@ -175,9 +245,17 @@ public class InteractiveRecommendation
             InteractiveRecommender<Long,Long> rec = re.getValue();
             Map<String, CumulativeMetric<Long,Long>> localMetrics = new HashMap<>();
             metricNames.forEach(name -> localMetrics.put(name, metrics.get(name).get()));
-            RecommendationLoop<Long, Long> loop = new RecommendationLoop<>(uIndex, iIndex, prefData, rec, localMetrics, numIter,0);
+            // Asynchronous matrix factorization also reports the status of its background factorizations.
+            Map<String, CumulativeMetric<Long,Long>> statusMetrics = FactorizationStatus.of(rec);
+            localMetrics.putAll(statusMetrics);
+            List<String> localNames = new ArrayList<>(metricNames);
+            localNames.addAll(statusMetrics.keySet());
+            RecommendationLoop<Long, Long> loop = new RecommendationLoop<>(uIndex, iIndex, prefData, rec, localMetrics, numIter, 0, arrivals.get());
 
-            List<Tuple3<Long,Long,Long>> list = new ArrayList<>();
+            // Iterations recovered from a previous execution: user, item and time.
+            IntArrayList resumeUidxs = new IntArrayList();
+            IntArrayList resumeIidxs = new IntArrayList();
+            LongArrayList resumeTimes = new LongArrayList();
             String fileName = output + re.getKey() + ".txt";
 
             if(resume)
@@ -199,10 +277,9 @@ public class InteractiveRecommendation
                                 split = line.split("\t");
                                 if(split.length < len) break;
 
-                                long u = Parsers.lp.parse(split[1]);
-                                long i = Parsers.lp.parse(split[2]);
-                                long time = Parsers.lp.parse(split[len-1]);
-                                list.add(new Tuple3<>(u, i, time));
+                                resumeUidxs.add(uIndex.user2uidx(Long.parseLong(split[1])));
+                                resumeIidxs.add(iIndex.item2iidx(Long.parseLong(split[2])));
+                                resumeTimes.add(Long.parseLong(split[len-1]));
                             }
                         }
                     }
@@ -215,26 +292,28 @@ public class InteractiveRecommendation
 
             try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output + re.getKey() + ".txt"))))
             {
-                if(resume && !list.isEmpty())
+                if(resume && !resumeUidxs.isEmpty())
                 {
-                    for(Tuple3<Long,Long,Long> triplet : list)
+                    for(int j = 0; j < resumeUidxs.size(); ++j)
                     {
                         StringBuilder builder = new StringBuilder();
-                        loop.update(new Tuple2<>(triplet.v1, triplet.v2));
+                        int uidx = resumeUidxs.getInt(j);
+                        int iidx = resumeIidxs.getInt(j);
+                        loop.update(uidx, iidx);
                         int iter = loop.getCurrentIteration();
                         builder.append(iter);
                         builder.append("\t");
-                        builder.append(triplet.v1);
+                        builder.append(uIndex.uidx2longUser(uidx));
                         builder.append("\t");
-                        builder.append(triplet.v2);
+                        builder.append(iIndex.iidx2longItem(iidx));
                         Map<String, Double> metricVals = loop.getMetrics();
-                        for(String name : metricNames)
+                        for(String name : localNames)
                         {
                             builder.append("\t");
                             builder.append(metricVals.get(name));
                         }
                         builder.append("\t");
-                        builder.append(triplet.v3);
+                        builder.append(resumeTimes.getLong(j));
                         builder.append("\n");
                         bw.write(builder.toString());
                     }
@@ -244,17 +323,17 @@ public class InteractiveRecommendation
                 {
                     StringBuilder builder = new StringBuilder();
                     long aa = System.currentTimeMillis();
-                    Tuple2<Long,Long> tuple = loop.nextIteration();
+                    boolean executed = loop.nextIterationIdx();
                     long bb = System.currentTimeMillis();
-                    if(tuple == null) break; // The loop has finished
+                    if(!executed) break; // The loop has finished
                     int iter = loop.getCurrentIteration();
                     builder.append(iter);
                     builder.append("\t");
-                    builder.append(tuple.v1);
+                    builder.append(uIndex.uidx2longUser(loop.getLastUidx()));
                     builder.append("\t");
-                    builder.append(tuple.v2);
+                    builder.append(iIndex.iidx2longItem(loop.getLastIidx()));
                     Map<String, Double> metricVals = loop.getMetrics();
-                    for(String name : metricNames)
+                    for(String name : localNames)
                     {
                         builder.append("\t");
                         builder.append(metricVals.get(name));
@@ -269,6 +348,13 @@ public class InteractiveRecommendation
             {
                 e.printStackTrace();
             }
+            finally
+            {
+                if(rec instanceof InteractiveMF)
+                {
+                    ((InteractiveMF<Long,Long>) rec).shutdown();
+                }
+            }
         });
     }
 }
@@ -27,6 +27,10 @@ public class Main
      * Name for contact recommendation.
      */
     private final static String CONTACT = "contactrec";
+    /**
+     * Name for synthetic data generation.
+     */
+    private final static String GENERATE = "generate";
 
     /**
      * Main method. Executes the main method in the class specified by the first
@@ -49,6 +53,9 @@ public class Main
                 case CONTACT:
                     className = "es.uam.eps.ir.knnbandit.InteractiveContactRecommendation";
                     break;
+                case GENERATE:
+                    className = "es.uam.eps.ir.knnbandit.SyntheticDataGeneration";
+                    break;
                 default:
                     System.err.println("ERROR: Invalid configuration.");
                     return;
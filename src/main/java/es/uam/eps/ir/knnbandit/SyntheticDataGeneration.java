@@ -0,0 +1,90 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit;
+
+import es.uam.eps.ir.knnbandit.data.preference.io.SyntheticRatingsGenerator;
+import java.io.IOException;
+import org.ranksys.formats.parsing.Parsers;
+
+/**
+ * Class for generating synthetic rating datasets, for testing the scalability of the algorithms.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class SyntheticDataGeneration
+{
+    /**
+     * Name of the plain text output format.
+     */
+    private final static String TSV = "tsv";
+    /**
+     * Name of the output format including the binary cache.
+     */
+    private final static String CSR = "csr";
+
+    /**
+     * Generates a synthetic rating dataset.
+     * @param args Execution arguments:
+     * <ol>
+     *     <li>Output: file in which to store the ratings</li>
+     *     <li>Num. users: number of users</li>
+     *     <li>Num. items: number of items</li>
+     *     <li>Density: fraction of the user-item pairs which are rated</li>
+     *     <li>User exponent: exponent of the power law of the user activity</li>
+     *     <li>Item exponent: exponent of the power law of the item popularity</li>
+     *     <li>Num. clusters: number of latent clusters of users and items</li>
+     *     <li>Affinity: probability that a user rates an item in its own cluster</li>
+     *     <li>Seed: random seed</li>
+     *     <li>Format (optional): tsv (default) for the rating file, csr for the rating file and its binary cache</li>
+     * </ol>
+     * @throws IOException if something fails while writing.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 9)
+        {
+            System.err.println("ERROR: Invalid arguments");
+            System.err.println("Usage:");
+            System.err.println("\tOutput: file in which to store the ratings");
+            System.err.println("\tNum. users: number of users");
+            System.err.println("\tNum. items: number of items");
+            System.err.println("\tDensity: fraction of the user-item pairs which are rated");
+            System.err.println("\tUser exponent: exponent of the power law of the user activity");
+            System.err.println("\tItem exponent: exponent of the power law of the item popularity");
+            System.err.println("\tNum. clusters: number of latent clusters of users and items");
+            System.err.println("\tAffinity: probability that a user rates an item in its own cluster");
+            System.err.println("\tSeed: random seed");
+            System.err.println("\tFormat (optional): tsv (default) for the rating file, csr for the rating file and its binary cache");
+            return;
+        }
+
+        String output = args[0];
+        int numUsers = Parsers.ip.parse(args[1]);
+        int numItems = Parsers.ip.parse(args[2]);
+        double density = Parsers.dp.parse(args[3]);
+        double userExponent = Parsers.dp.parse(args[4]);
+        double itemExponent = Parsers.dp.parse(args[5]);
+        int numClusters = Parsers.ip.parse(args[6]);
+        double affinity = Parsers.dp.parse(args[7]);
+        long seed = Parsers.lp.parse(args[8]);
+        String format = args.length > 9 ? args[9] : TSV;
+        if(!format.equals(TSV) && !format.equals(CSR))
+        {
+            System.err.println("ERROR: Unknown format " + format);
+            return;
+        }
+
+        long a = System.currentTimeMillis();
+        SyntheticRatingsGenerator generator = new SyntheticRatingsGenerator(numUsers, numItems, density, userExponent, itemExponent, numClusters, affinity, seed);
+        generator.write(output, format.equals(CSR));
+        long b = System.currentTimeMillis();
+        System.out.println("Ratings generated (" + (b-a) + " ms.)");
+    }
+}
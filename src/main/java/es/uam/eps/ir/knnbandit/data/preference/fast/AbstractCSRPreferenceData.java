@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.fast;
+
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.AbstractDoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.AbstractIntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
+import org.ranksys.fast.preference.IteratorsAbstractFastPreferenceData;
+
+/**
+ * Immutable preference data stored in compressed sparse row (CSR) format, both by users and by items.
+ * The preferences of each user (resp. item) occupy a contiguous range of positions, sorted by item
+ * (resp. user) index, and delimited by an offsets array. Subclasses decide where the arrays are stored.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <U> User type.
+ * @param <I> Item type.
+ */
+public abstract class AbstractCSRPreferenceData<U, I> extends IteratorsAbstractFastPreferenceData<U, I> implements FastPointWisePreferenceData<U, I>
+{
+    /**
+     * Constructor.
+     *
+     * @param userIndex User index.
+     * @param itemIndex Item index.
+     */
+    public AbstractCSRPreferenceData(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex)
+    {
+        super(userIndex, itemIndex);
+    }
+
+    /**
+     * Obtains the position of the first preference of a user.
+     * @param uidx Identifier of the user (numUsers() for the end of the last user).
+     * @return the position.
+     */
+    protected abstract int userOffset(int uidx);
+
+    /**
+     * Obtains the item of a preference in the user-major arrays.
+     * @param pos Position of the preference.
+     * @return the identifier of the item.
+     */
+    protected abstract int userIdx(int pos);
+
+    /**
+     * Obtains the value of a preference in the user-major arrays.
+     * @param pos Position of the preference.
+     * @return the value.
+     */
+    protected abstract double userValue(int pos);
+
+    /**
+     * Obtains the position of the first preference of an item.
+     * @param iidx Identifier of the item (numItems() for the end of the last item).
+     * @return the position.
+     */
+    protected abstract int itemOffset(int iidx);
+
+    /**
+     * Obtains the user of a preference in the item-major arrays.
+     * @param pos Position of the preference.
+     * @return the identifier of the user.
+     */
+    protected abstract int itemIdx(int pos);
+
+    /**
+     * Obtains the value of a preference in the item-major arrays.
+     * @param pos Position of the preference.
+     * @return the value.
+     */
+    protected abstract double itemValue(int pos);
+
+    @Override
+    public int numPreferences()
+    {
+        return this.userOffset(this.numUsers());
+    }
+
+    @Override
+    public int numItems(int uidx)
+    {
+        if(uidx < 0) return 0;
+        return this.userOffset(uidx + 1) - this.userOffset(uidx);
+    }
+
+    @Override
+    public int numUsers(int iidx)
+    {
+        if(iidx < 0) return 0;
+        return this.itemOffset(iidx + 1) - this.itemOffset(iidx);
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences()
+    {
+        return IntStream.range(0, this.numUsers()).filter(uidx -> this.numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences()
+    {
+        return IntStream.range(0, this.numItems()).filter(iidx -> this.numUsers(iidx) > 0);
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx)
+    {
+        return new CSRIntIterator(this.userOffset(uidx), this.userOffset(uidx + 1), this::userIdx);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx)
+    {
+        return new CSRDoubleIterator(this.userOffset(uidx), this.userOffset(uidx + 1), this::userValue);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx)
+    {
+        return new CSRIntIterator(this.itemOffset(iidx), this.itemOffset(iidx + 1), this::itemIdx);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx)
+    {
+        return new CSRDoubleIterator(this.itemOffset(iidx), this.itemOffset(iidx + 1), this::itemValue);
+    }
+
+    @Override
+    public Optional<? extends IdxPref> getPreference(int uidx, int iidx)
+    {
+        int pos = this.find(uidx, iidx);
+        if(pos < 0)
+        {
+            return Optional.empty();
+        }
+        return Optional.of(new IdxPref(iidx, this.userValue(pos)));
+    }
+
+    /**
+     * Checks whether a user has a preference for an item.
+     * @param uidx User index.
+     * @param iidx Item index.
+     * @return true if the preference exists, false otherwise.
+     */
+    public boolean containsPreference(int uidx, int iidx)
+    {
+        return this.find(uidx, iidx) >= 0;
+    }
+
+    /**
+     * Finds the position of a preference in the user arrays.
+     * @param uidx User index.
+     * @param iidx Item index.
+     * @return the position of the preference, or -1 if it does not exist.
+     */
+    private int find(int uidx, int iidx)
+    {
+        if(uidx < 0 || iidx < 0)
+        {
+            return -1;
+        }
+
+        // Binary search over the items of the user.
+        int low = this.userOffset(uidx);
+        int high = this.userOffset(uidx + 1) - 1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int val = this.userIdx(mid);
+            if(val < iidx) low = mid + 1;
+            else if(val > iidx) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    @Override
+    public Optional<? extends IdPref<I>> getPreference(U u, I i)
+    {
+        Optional<? extends IdxPref> pref = this.getPreference(this.user2uidx(u), this.item2iidx(i));
+        if(pref.isPresent())
+        {
+            return Optional.of(uPrefFun.apply(pref.get()));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Iterator over a range of positions of an integer array.
+     */
+    private static class CSRIntIterator extends AbstractIntIterator
+    {
+        /**
+         * Current position.
+         */
+        private int pos;
+        /**
+         * End of the range (not included).
+         */
+        private final int end;
+        /**
+         * Function returning the value at each position.
+         */
+        private final IntUnaryOperator array;
+
+        /**
+         * Constructor.
+         * @param start Start of the range.
+         * @param end End of the range (not included).
+         * @param array Function returning the value at each position.
+         */
+        CSRIntIterator(int start, int end, IntUnaryOperator array)
+        {
+            this.pos = start;
+            this.end = end;
+            this.array = array;
+        }
+
+        @Override
+        public int nextInt()
+        {
+            if(pos >= end) throw new NoSuchElementException();
+            return array.applyAsInt(pos++);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return pos < end;
+        }
+
+        @Override
+        public int skip(int n)
+        {
+            int skipped = Math.min(n, end - pos);
+            pos += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Iterator over a range of positions of a double array.
+     */
+    private static class CSRDoubleIterator extends AbstractDoubleIterator
+    {
+        /**
+         * Current position.
+         */
+        private int pos;
+        /**
+         * End of the range (not included).
+         */
+        private final int end;
+        /**
+         * Function returning the value at each position.
+         */
+        private final IntToDoubleFunction array;
+
+        /**
+         * Constructor.
+         * @param start Start of the range.
+         * @param end End of the range (not included).
+         * @param array Function returning the value at each position.
+         */
+        CSRDoubleIterator(int start, int end, IntToDoubleFunction array)
+        {
+            this.pos = start;
+            this.end = end;
+            this.array = array;
+        }
+
+        @Override
+        public double nextDouble()
+        {
+            if(pos >= end) throw new NoSuchElementException();
+            return array.applyAsDouble(pos++);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return pos < end;
+        }
+
+        @Override
+        public int skip(int n)
+        {
+            int skipped = Math.min(n, end - pos);
+            pos += skipped;
+            return skipped;
+        }
+    }
+}
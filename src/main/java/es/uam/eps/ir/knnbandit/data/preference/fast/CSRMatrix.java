@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.fast;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Sparse matrix in compressed sparse row (CSR) format. The entries of row r are stored
+ * in positions offsets[r] to offsets[r+1]-1 of the indices and values arrays, sorted by
+ * column. Entries with the same row and column keep their original order.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CSRMatrix
+{
+    /**
+     * Position of the first entry of each row (numRows + 1 values).
+     */
+    private final int[] offsets;
+    /**
+     * Column of each entry.
+     */
+    private final int[] indices;
+    /**
+     * Value of each entry (null if the matrix is binary).
+     */
+    private final double[] values;
+
+    /**
+     * Constructor.
+     * @param offsets Position of the first entry of each row (numRows + 1 values).
+     * @param indices Column of each entry.
+     * @param values Value of each entry (null if the matrix is binary).
+     */
+    public CSRMatrix(int[] offsets, int[] indices, double[] values)
+    {
+        this.offsets = offsets;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Builds a CSR matrix from a list of entries, by two stable counting sorts: first by column, then by row.
+     * @param numRows Number of rows.
+     * @param numCols Number of columns.
+     * @param rows Row of each entry.
+     * @param cols Column of each entry.
+     * @param values Value of each entry (null for a binary matrix).
+     * @return the matrix.
+     */
+    public static CSRMatrix build(int numRows, int numCols, int[] rows, int[] cols, double[] values)
+    {
+        int n = rows.length;
+
+        // Order of the entries by column.
+        int[] byCol = new int[n];
+        int[] colOffsets = new int[numCols + 1];
+        for(int col : cols)
+        {
+            colOffsets[col + 1]++;
+        }
+        for(int c = 0; c < numCols; ++c)
+        {
+            colOffsets[c + 1] += colOffsets[c];
+        }
+        for(int i = 0; i < n; ++i)
+        {
+            byCol[colOffsets[cols[i]]++] = i;
+        }
+
+        // Stable placement by row.
+        int[] offsets = new int[numRows + 1];
+        for(int row : rows)
+        {
+            offsets[row + 1]++;
+        }
+        for(int r = 0; r < numRows; ++r)
+        {
+            offsets[r + 1] += offsets[r];
+        }
+
+        int[] pos = new int[numRows];
+        System.arraycopy(offsets, 0, pos, 0, numRows);
+        int[] indices = new int[n];
+        double[] vals = values == null ? null : new double[n];
+        for(int i : byCol)
+        {
+            int p = pos[rows[i]]++;
+            indices[p] = cols[i];
+            if(vals != null)
+            {
+                vals[p] = values[i];
+            }
+        }
+
+        return new CSRMatrix(offsets, indices, vals);
+    }
+
+    /**
+     * Obtains a matrix with the same entries as this one, and transformed values. The offsets and
+     * indices arrays are shared between both matrices.
+     * @param function The transformation (applied to 1.0 if the matrix is binary).
+     * @return the transformed matrix.
+     */
+    public CSRMatrix mapValues(DoubleUnaryOperator function)
+    {
+        double[] vals = new double[indices.length];
+        for(int i = 0; i < vals.length; ++i)
+        {
+            vals[i] = function.applyAsDouble(values == null ? 1.0 : values[i]);
+        }
+        return new CSRMatrix(offsets, indices, vals);
+    }
+
+    /**
+     * Obtains the number of rows.
+     * @return the number of rows.
+     */
+    public int numRows()
+    {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Obtains the number of entries.
+     * @return the number of entries.
+     */
+    public int numEntries()
+    {
+        return indices.length;
+    }
+
+    /**
+     * Obtains the offsets of the rows.
+     * @return the position of the first entry of each row (numRows + 1 values).
+     */
+    public int[] getOffsets()
+    {
+        return offsets;
+    }
+
+    /**
+     * Obtains the columns of the entries.
+     * @return the column of each entry.
+     */
+    public int[] getIndices()
+    {
+        return indices;
+    }
+
+    /**
+     * Obtains the values of the entries.
+     * @return the value of each entry, or null if the matrix is binary.
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+}
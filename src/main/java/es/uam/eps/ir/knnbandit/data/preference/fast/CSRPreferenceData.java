@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.fast;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterators;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+
+/**
+ * Immutable preference data stored in primitive arrays, in CSR format. Each preference takes 12
+ * bytes for each direction (user to item and item to user), or 4 if the data is binary, instead
+ * of an object per preference and direction.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <U> User type.
+ * @param <I> Item type.
+ */
+public class CSRPreferenceData<U, I> extends AbstractCSRPreferenceData<U, I>
+{
+    /**
+     * Position of the first preference of each user.
+     */
+    private final int[] userOffsets;
+    /**
+     * Items of the preferences, grouped by user.
+     */
+    private final int[] userIdxs;
+    /**
+     * Values of the preferences, grouped by user (null if the data is binary).
+     */
+    private final double[] userValues;
+    /**
+     * Position of the first preference of each item.
+     */
+    private final int[] itemOffsets;
+    /**
+     * Users of the preferences, grouped by item.
+     */
+    private final int[] itemIdxs;
+    /**
+     * Values of the preferences, grouped by item (null if the data is binary).
+     */
+    private final double[] itemValues;
+
+    /**
+     * Constructor.
+     *
+     * @param userIndex User index.
+     * @param itemIndex Item index.
+     * @param userMatrix The preferences, grouped by user (one row per user).
+     * @param itemMatrix The preferences, grouped by item (one row per item).
+     */
+    public CSRPreferenceData(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, CSRMatrix userMatrix, CSRMatrix itemMatrix)
+    {
+        super(userIndex, itemIndex);
+        this.userOffsets = userMatrix.getOffsets();
+        this.userIdxs = userMatrix.getIndices();
+        this.userValues = userMatrix.getValues();
+        this.itemOffsets = itemMatrix.getOffsets();
+        this.itemIdxs = itemMatrix.getIndices();
+        this.itemValues = itemMatrix.getValues();
+    }
+
+    /**
+     * Loads the preference data from a list of preferences.
+     * @param <U> User type.
+     * @param <I> Item type.
+     * @param userIndex User index.
+     * @param itemIndex Item index.
+     * @param uidxs The user of each preference.
+     * @param iidxs The item of each preference.
+     * @param values The value of each preference (null if the data is binary: all values are 1.0).
+     * @return the preference data.
+     */
+    public static <U, I> CSRPreferenceData<U, I> load(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, int[] uidxs, int[] iidxs, double[] values)
+    {
+        CSRMatrix userMatrix = CSRMatrix.build(userIndex.numUsers(), itemIndex.numItems(), uidxs, iidxs, values);
+        CSRMatrix itemMatrix = CSRMatrix.build(itemIndex.numItems(), userIndex.numUsers(), iidxs, uidxs, values);
+        return new CSRPreferenceData<>(userIndex, itemIndex, userMatrix, itemMatrix);
+    }
+
+    @Override
+    protected int userOffset(int uidx)
+    {
+        return userOffsets[uidx];
+    }
+
+    @Override
+    protected int userIdx(int pos)
+    {
+        return userIdxs[pos];
+    }
+
+    @Override
+    protected double userValue(int pos)
+    {
+        return userValues == null ? 1.0 : userValues[pos];
+    }
+
+    @Override
+    protected int itemOffset(int iidx)
+    {
+        return itemOffsets[iidx];
+    }
+
+    @Override
+    protected int itemIdx(int pos)
+    {
+        return itemIdxs[pos];
+    }
+
+    @Override
+    protected double itemValue(int pos)
+    {
+        return itemValues == null ? 1.0 : itemValues[pos];
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx)
+    {
+        return IntIterators.wrap(userIdxs, userOffsets[uidx], userOffsets[uidx + 1] - userOffsets[uidx]);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx)
+    {
+        if(userValues == null) return super.getUidxVs(uidx);
+        return DoubleIterators.wrap(userValues, userOffsets[uidx], userOffsets[uidx + 1] - userOffsets[uidx]);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx)
+    {
+        return IntIterators.wrap(itemIdxs, itemOffsets[iidx], itemOffsets[iidx + 1] - itemOffsets[iidx]);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx)
+    {
+        if(itemValues == null) return super.getIidxVs(iidx);
+        return DoubleIterators.wrap(itemValues, itemOffsets[iidx], itemOffsets[iidx + 1] - itemOffsets[iidx]);
+    }
+
+    /**
+     * Checks whether the data is binary.
+     * @return true if the data does not store values (all of them are 1.0), false otherwise.
+     */
+    public boolean isBinary()
+    {
+        return userValues == null;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.fast;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * CSR preference data read directly from (usually memory-mapped) buffers. Only absolute
+ * reads are performed over the buffers, so they can be shared between threads.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <U> User type.
+ * @param <I> Item type.
+ */
+public class MappedCSRPreferenceData<U, I> extends AbstractCSRPreferenceData<U, I>
+{
+    /**
+     * Position of the first preference of each user.
+     */
+    private final IntBuffer userOffsets;
+    /**
+     * Items of the preferences, grouped by user.
+     */
+    private final IntBuffer userIdxs;
+    /**
+     * Values of the preferences, grouped by user (null if the data is binary).
+     */
+    private final DoubleBuffer userValues;
+    /**
+     * Position of the first preference of each item.
+     */
+    private final IntBuffer itemOffsets;
+    /**
+     * Users of the preferences, grouped by item.
+     */
+    private final IntBuffer itemIdxs;
+    /**
+     * Values of the preferences, grouped by item (null if the data is binary).
+     */
+    private final DoubleBuffer itemValues;
+    /**
+     * Transformation applied to the stored values.
+     */
+    private final DoubleUnaryOperator valueFunction;
+
+    /**
+     * Constructor.
+     *
+     * @param userIndex User index.
+     * @param itemIndex Item index.
+     * @param userOffsets Position of the first preference of each user (numUsers + 1 values).
+     * @param userIdxs Items of the preferences, grouped by user.
+     * @param userValues Values of the preferences, grouped by user (null if the data is binary: all values are 1.0).
+     * @param itemOffsets Position of the first preference of each item (numItems + 1 values).
+     * @param itemIdxs Users of the preferences, grouped by item.
+     * @param itemValues Values of the preferences, grouped by item (null if the data is binary: all values are 1.0).
+     * @param valueFunction Transformation applied to the stored values.
+     */
+    public MappedCSRPreferenceData(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, IntBuffer userOffsets, IntBuffer userIdxs, DoubleBuffer userValues, IntBuffer itemOffsets, IntBuffer itemIdxs, DoubleBuffer itemValues, DoubleUnaryOperator valueFunction)
+    {
+        super(userIndex, itemIndex);
+        this.userOffsets = userOffsets;
+        this.userIdxs = userIdxs;
+        this.userValues = userValues;
+        this.itemOffsets = itemOffsets;
+        this.itemIdxs = itemIdxs;
+        this.itemValues = itemValues;
+        this.valueFunction = valueFunction;
+    }
+
+    @Override
+    protected int userOffset(int uidx)
+    {
+        return userOffsets.get(uidx);
+    }
+
+    @Override
+    protected int userIdx(int pos)
+    {
+        return userIdxs.get(pos);
+    }
+
+    @Override
+    protected double userValue(int pos)
+    {
+        return valueFunction.applyAsDouble(userValues == null ? 1.0 : userValues.get(pos));
+    }
+
+    @Override
+    protected int itemOffset(int iidx)
+    {
+        return itemOffsets.get(iidx);
+    }
+
+    @Override
+    protected int itemIdx(int pos)
+    {
+        return itemIdxs.get(pos);
+    }
+
+    @Override
+    protected double itemValue(int pos)
+    {
+        return valueFunction.applyAsDouble(itemValues == null ? 1.0 : itemValues.get(pos));
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.fast;
+
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.AbstractDoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterators;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.jooq.lambda.tuple.Tuple3;
+
+/**
+ * Updateable preference data which stores the preferences of each user and item in a pair
+ * of parallel primitive arrays (indexes and values), sorted by index. The arrays grow
+ * geometrically, so insertions do not allocate memory (in amortized terms), and they
+ * just shift the tail of the row. Preferences are accessed through iterators over the
+ * arrays, without creating IdxPref objects.
+ *
+ * In binary mode, the values are not stored: rows are just sorted sets of indexes, and
+ * every stored preference has value 1.0.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <U> User type.
+ * @param <I> Item type.
+ */
+public class PrimitiveFastUpdateablePreferenceData<U, I> extends IteratorsAbstractFastUpdateablePreferenceData<U, I> implements FastUpdateablePointWisePreferenceData<U, I>, Serializable
+{
+    /**
+     * Initial capacity of a row.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+    /**
+     * Current number of preferences.
+     */
+    private int numPreferences;
+    /**
+     * User preferences (null for users without preferences).
+     */
+    private final List<Row> uidxList;
+    /**
+     * Item preferences (null for items without preferences).
+     */
+    private final List<Row> iidxList;
+    /**
+     * True if the preference values are not stored (all of them are 1.0).
+     */
+    private final boolean binary;
+
+    /**
+     * Constructor with custom IdxPref to IdPref converter.
+     *
+     * @param numPreferences Initial number of total preferences.
+     * @param uidxList List of rows of preferences by user index.
+     * @param iidxList List of rows of preferences by item index.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param uPrefFun User IdxPref to IdPref converter.
+     * @param iPrefFun Item IdxPref to IdPref converter.
+     * @param binary True if the preference values are not stored (all of them are 1.0).
+     */
+    protected PrimitiveFastUpdateablePreferenceData(int numPreferences, List<Row> uidxList, List<Row> iidxList,
+                                                    FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex,
+                                                    Function<IdxPref, IdPref<I>> uPrefFun, Function<IdxPref, IdPref<U>> iPrefFun,
+                                                    boolean binary)
+    {
+        super(uIndex, iIndex, uPrefFun, iPrefFun);
+        this.numPreferences = numPreferences;
+        this.uidxList = uidxList;
+        this.iidxList = iidxList;
+        this.binary = binary;
+    }
+
+    @Override
+    public int numUsers(int iidx)
+    {
+        Row row = iidxList.get(iidx);
+        return row == null ? 0 : row.size;
+    }
+
+    @Override
+    public int numItems(int uidx)
+    {
+        Row row = uidxList.get(uidx);
+        return row == null ? 0 : row.size;
+    }
+
+    @Override
+    public int numPreferences()
+    {
+        return numPreferences;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences()
+    {
+        return IntStream.range(0, numUsers())
+                        .filter(uidx -> uidxList.get(uidx) != null);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences()
+    {
+        return IntStream.range(0, this.numItems())
+                        .filter(iidx -> iidxList.get(iidx) != null);
+    }
+
+    @Override
+    public int numUsersWithPreferences()
+    {
+        return (int) uidxList.stream()
+                             .filter(row -> row != null)
+                             .count();
+    }
+
+    @Override
+    public int numItemsWithPreferences()
+    {
+        return (int) iidxList.stream()
+                             .filter(row -> row != null)
+                             .count();
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx)
+    {
+        Row row = uidxList.get(uidx);
+        return row == null ? IntIterators.EMPTY_ITERATOR : IntIterators.wrap(row.idxs, 0, row.size);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx)
+    {
+        Row row = uidxList.get(uidx);
+        return row == null ? DoubleIterators.EMPTY_ITERATOR : row.values();
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx)
+    {
+        Row row = iidxList.get(iidx);
+        return row == null ? IntIterators.EMPTY_ITERATOR : IntIterators.wrap(row.idxs, 0, row.size);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx)
+    {
+        Row row = iidxList.get(iidx);
+        return row == null ? DoubleIterators.EMPTY_ITERATOR : row.values();
+    }
+
+    @Override
+    public Optional<IdxPref> getPreference(int uidx, int iidx)
+    {
+        Row row = uidxList.get(uidx);
+        if(row == null) return Optional.empty();
+
+        int position = row.find(iidx);
+        if(position >= 0)
+        {
+            return Optional.of(new IdxPref(iidx, row.value(position)));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Checks whether a user has a preference for an item.
+     * @param uidx User index.
+     * @param iidx Item index.
+     * @return true if the preference exists, false otherwise.
+     */
+    public boolean containsPreference(int uidx, int iidx)
+    {
+        Row row = uidxList.get(uidx);
+        return row != null && row.find(iidx) >= 0;
+    }
+
+    /**
+     * Checks whether the data is binary.
+     * @return true if the data does not store values (all of them are 1.0), false otherwise.
+     */
+    public boolean isBinary()
+    {
+        return binary;
+    }
+
+    @Override
+    public Optional<? extends IdPref<I>> getPreference(U u, I i)
+    {
+        if(this.containsUser(u) && this.containsItem(i))
+        {
+            Optional<? extends IdxPref> pref = getPreference(user2uidx(u), item2iidx(i));
+
+            if (!pref.isPresent())
+            {
+                return Optional.empty();
+            }
+            else
+            {
+                return Optional.of(uPrefFun.apply(pref.get()));
+            }
+        }
+        else
+        {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public int addUser(U u)
+    {
+        int uidx = ((FastUpdateableUserIndex<U>)this.ui).addUser(u);
+        if(this.uidxList.size() == uidx) // If the user is really new
+        {
+            this.uidxList.add(null);
+        }
+        return uidx;
+    }
+
+    @Override
+    public int addItem(I i)
+    {
+        int iidx = ((FastUpdateableItemIndex<I>)this.ii).addItem(i);
+        if(this.iidxList.size() == iidx) // If the item is really new
+        {
+            this.iidxList.add(null);
+        }
+        return iidx;
+    }
+
+    @Override
+    public void updateRating(int uidx, int iidx, double rating)
+    {
+        // If the user or the item are not in the preference data, do nothing.
+        if(uidx < 0 || this.uidxList.size() <= uidx || iidx < 0 || this.iidxList.size() <= iidx)
+        {
+            return;
+        }
+
+        Row uRow = this.uidxList.get(uidx);
+        if(uRow == null) // If the user does not have preferences.
+        {
+            uRow = new Row(INITIAL_CAPACITY, binary);
+            this.uidxList.set(uidx, uRow);
+        }
+
+        Row iRow = this.iidxList.get(iidx);
+        if(iRow == null) // If the item does not have ratings.
+        {
+            iRow = new Row(INITIAL_CAPACITY, binary);
+            this.iidxList.set(iidx, iRow);
+        }
+
+        if(uRow.update(iidx, rating))
+        {
+            this.numPreferences++;
+        }
+        iRow.update(uidx, rating);
+    }
+
+    @Override
+    protected void updateDelete(int uidx, int iidx)
+    {
+        // If the user or the item are not in the preference data, do nothing.
+        if(uidx < 0 || this.uidxList.size() <= uidx || iidx < 0 || this.iidxList.size() <= iidx)
+        {
+            return;
+        }
+
+        Row uRow = this.uidxList.get(uidx);
+        // First, delete from the uidxList.
+        if(uRow != null && uRow.delete(iidx))
+        {
+            // Then, delete from the iidxList.
+            this.iidxList.get(iidx).delete(uidx);
+            this.numPreferences--;
+        }
+    }
+
+    /**
+     * Obtains a copy of the current state of the preference data. The copy shares the
+     * user and item indexes with this object, but not the preference arrays, so
+     * it is not affected by later updates.
+     * @return a snapshot of the preference data.
+     */
+    public PrimitiveFastUpdateablePreferenceData<U, I> snapshot()
+    {
+        List<Row> uidxCopy = new ArrayList<>(this.uidxList.size());
+        this.uidxList.forEach(row -> uidxCopy.add(row == null ? null : row.copy()));
+        List<Row> iidxCopy = new ArrayList<>(this.iidxList.size());
+        this.iidxList.forEach(row -> iidxCopy.add(row == null ? null : row.copy()));
+
+        return new PrimitiveFastUpdateablePreferenceData<>(this.numPreferences, uidxCopy, iidxCopy,
+                (FastUpdateableUserIndex<U>) this.ui, (FastUpdateableItemIndex<I>) this.ii,
+                this.uPrefFun, this.iPrefFun, this.binary);
+    }
+
+    /**
+     * Loads a PrimitiveFastUpdateablePreferenceData from a stream of user-item-value triples.
+     * If a user-item pair appears more than once, the last value is kept.
+     *
+     * @param <U> User type.
+     * @param <I> Item type.
+     * @param tuples Stream of user-item-value triples.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @return an instance of PrimitiveFastUpdateablePreferenceData containing the data from the input stream.
+     */
+    public static <U, I> PrimitiveFastUpdateablePreferenceData<U, I> load(Stream<Tuple3<U, I, Double>> tuples, FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex)
+    {
+        return load(tuples, uIndex, iIndex, false);
+    }
+
+    /**
+     * Loads a PrimitiveFastUpdateablePreferenceData from a stream of user-item-value triples.
+     * If a user-item pair appears more than once, the last value is kept.
+     *
+     * @param <U> User type.
+     * @param <I> Item type.
+     * @param tuples Stream of user-item-value triples.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param binary True if the values must not be stored (all the preferences take value 1.0).
+     * @return an instance of PrimitiveFastUpdateablePreferenceData containing the data from the input stream.
+     */
+    public static <U, I> PrimitiveFastUpdateablePreferenceData<U, I> load(Stream<Tuple3<U, I, Double>> tuples, FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, boolean binary)
+    {
+        List<Row> uidxList = new ArrayList<>();
+        for (int uidx = 0; uidx < uIndex.numUsers(); uidx++)
+        {
+            uidxList.add(null);
+        }
+
+        List<Row> iidxList = new ArrayList<>();
+        for (int iidx = 0; iidx < iIndex.numItems(); iidx++)
+        {
+            iidxList.add(null);
+        }
+
+        PrimitiveFastUpdateablePreferenceData<U, I> data = new PrimitiveFastUpdateablePreferenceData<>(0, uidxList, iidxList, uIndex, iIndex,
+                (Function<IdxPref, IdPref<I>> & Serializable) p -> new IdPref<>(iIndex.iidx2item(p)),
+                (Function<IdxPref, IdPref<U>> & Serializable) p -> new IdPref<>(uIndex.uidx2user(p)),
+                binary);
+        tuples.forEach(t -> data.updateRating(uIndex.user2uidx(t.v1), iIndex.item2iidx(t.v2), t.v3));
+        return data;
+    }
+
+    /**
+     * Preferences of a single user or item, stored as parallel arrays of indexes and values,
+     * sorted by index. Only the first size positions of the arrays are valid. If the row
+     * is binary, the values array is null, and every value is 1.0.
+     */
+    protected static class Row implements Serializable
+    {
+        /**
+         * Indexes of the preferences.
+         */
+        private int[] idxs;
+        /**
+         * Values of the preferences (null if the row is binary).
+         */
+        private double[] vs;
+        /**
+         * Number of preferences.
+         */
+        private int size;
+
+        /**
+         * Constructor.
+         * @param capacity Initial capacity.
+         * @param binary True if the values are not stored.
+         */
+        Row(int capacity, boolean binary)
+        {
+            this.idxs = new int[capacity];
+            this.vs = binary ? null : new double[capacity];
+            this.size = 0;
+        }
+
+        /**
+         * Obtains the value at a position.
+         * @param position The position.
+         * @return the value.
+         */
+        double value(int position)
+        {
+            return vs == null ? 1.0 : vs[position];
+        }
+
+        /**
+         * Obtains an iterator over the values of the row.
+         * @return the iterator.
+         */
+        DoubleIterator values()
+        {
+            if(vs != null)
+            {
+                return DoubleIterators.wrap(vs, 0, size);
+            }
+
+            return new AbstractDoubleIterator()
+            {
+                /**
+                 * Number of remaining values.
+                 */
+                private int remaining = size;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return remaining > 0;
+                }
+
+                @Override
+                public double nextDouble()
+                {
+                    if(remaining <= 0) throw new NoSuchElementException();
+                    remaining--;
+                    return 1.0;
+                }
+            };
+        }
+
+        /**
+         * Finds the position of an index.
+         * @param idx The index.
+         * @return the position of the index if it is in the row, (-(insertion point) - 1) otherwise.
+         */
+        int find(int idx)
+        {
+            // Preferences are usually added in increasing index order, so check the last one first.
+            if(size == 0 || idxs[size - 1] < idx)
+            {
+                return -size - 1;
+            }
+            return Arrays.binarySearch(idxs, 0, size, idx);
+        }
+
+        /**
+         * Adds or updates a preference.
+         * @param idx The index.
+         * @param value The value.
+         * @return true if the preference was added, false if it was just updated.
+         */
+        boolean update(int idx, double value)
+        {
+            int position = find(idx);
+            if(position >= 0) // The rating did already exist.
+            {
+                if(vs != null) vs[position] = value;
+                return false;
+            }
+
+            position = -position - 1;
+            if(size == idxs.length)
+            {
+                int capacity = Math.max(INITIAL_CAPACITY, idxs.length + (idxs.length >> 1));
+                idxs = Arrays.copyOf(idxs, capacity);
+                if(vs != null) vs = Arrays.copyOf(vs, capacity);
+            }
+            System.arraycopy(idxs, position, idxs, position + 1, size - position);
+            idxs[position] = idx;
+            if(vs != null)
+            {
+                System.arraycopy(vs, position, vs, position + 1, size - position);
+                vs[position] = value;
+            }
+            size++;
+            return true;
+        }
+
+        /**
+         * Removes a preference.
+         * @param idx The index.
+         * @return true if the preference was removed, false if it did not exist.
+         */
+        boolean delete(int idx)
+        {
+            int position = find(idx);
+            if(position < 0)
+            {
+                return false;
+            }
+
+            System.arraycopy(idxs, position + 1, idxs, position, size - position - 1);
+            if(vs != null) System.arraycopy(vs, position + 1, vs, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * Obtains a copy of the row, trimmed to its size.
+         * @return the copy.
+         */
+        Row copy()
+        {
+            Row row = new Row(Math.max(size, INITIAL_CAPACITY), vs == null);
+            System.arraycopy(idxs, 0, row.idxs, 0, size);
+            if(vs != null) System.arraycopy(vs, 0, row.vs, 0, size);
+            row.size = size;
+            return row;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.data.preference.index.fast;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of FastUpdateableItemIndex for long identifiers, backed by a primitive
+ * hash map (from items to indexes) and an array (from indexes to items), so that no
+ * identifier is boxed. Primitive versions of the access methods are provided.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class LongFastUpdateableItemIndex implements FastUpdateableItemIndex<Long>, Serializable
+{
+    /**
+     * Initial capacity of the index.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Map from items to indexes.
+     */
+    private final Long2IntOpenHashMap item2iidx;
+    /**
+     * Items, by index.
+     */
+    private long[] items;
+    /**
+     * Number of items.
+     */
+    private int numItems;
+
+    /**
+     * Constructor. Creates an empty index.
+     */
+    public LongFastUpdateableItemIndex()
+    {
+        this.item2iidx = new Long2IntOpenHashMap();
+        this.item2iidx.defaultReturnValue(-1);
+        this.items = new long[INITIAL_CAPACITY];
+        this.numItems = 0;
+    }
+
+    @Override
+    public int addItem(Long i)
+    {
+        return this.addItem(i.longValue());
+    }
+
+    /**
+     * Adds an item to the index.
+     * @param i The item.
+     * @return the identifier of the item (the previous one, if the item was already in the index).
+     */
+    public int addItem(long i)
+    {
+        int iidx = this.item2iidx.get(i);
+        if(iidx >= 0)
+        {
+            return iidx;
+        }
+
+        if(this.numItems == this.items.length)
+        {
+            this.items = Arrays.copyOf(this.items, this.items.length + (this.items.length >> 1));
+        }
+        this.items[this.numItems] = i;
+        this.item2iidx.put(i, this.numItems);
+        return this.numItems++;
+    }
+
+    @Override
+    public boolean containsItem(Long i)
+    {
+        return this.item2iidx.containsKey(i.longValue());
+    }
+
+    /**
+     * Checks whether an item is in the index.
+     * @param i The item.
+     * @return true if the item is in the index, false otherwise.
+     */
+    public boolean containsItem(long i)
+    {
+        return this.item2iidx.containsKey(i);
+    }
+
+    @Override
+    public int numItems()
+    {
+        return this.numItems;
+    }
+
+    @Override
+    public int item2iidx(Long i)
+    {
+        return this.item2iidx.get(i.longValue());
+    }
+
+    /**
+     * Obtains the index of an item.
+     * @param i The item.
+     * @return the index of the item, -1 if it is not in the index.
+     */
+    public int item2iidx(long i)
+    {
+        return this.item2iidx.get(i);
+    }
+
+    @Override
+    public Long iidx2item(int iidx)
+    {
+        return this.iidx2longItem(iidx);
+    }
+
+    /**
+     * Obtains the item with a given index, without boxing it.
+     * @param iidx The index.
+     * @return the item.
+     * @throws IndexOutOfBoundsException if the index is not in use.
+     */
+    public long iidx2longItem(int iidx)
+    {
+        // The array has room for more items than the index contains.
+        if(iidx < 0 || iidx >= this.numItems)
+        {
+            throw new IndexOutOfBoundsException("Index: " + iidx + ", Size: " + this.numItems);
+        }
+        return this.items[iidx];
+    }
+
+    @Override
+    public Stream<Long> getAllItems()
+    {
+        return this.getAllLongItems().boxed();
+    }
+
+    /**
+     * Obtains all the items in the index, ordered by index.
+     * @return a stream containing the items.
+     */
+    public LongStream getAllLongItems()
+    {
+        return Arrays.stream(this.items, 0, this.numItems);
+    }
+
+    /**
+     * Creates an item index from an array of items. Items are indexed in the order of the array.
+     *
+     * @param items The items.
+     * @return a fast item index.
+     */
+    public static LongFastUpdateableItemIndex load(long[] items)
+    {
+        return load(LongStream.of(items));
+    }
+
+    /**
+     * Creates an item index from a stream of items. Items are indexed in the order of the stream.
+     *
+     * @param items The items.
+     * @return a fast item index.
+     */
+    public static LongFastUpdateableItemIndex load(LongStream items)
+    {
+        LongFastUpdateableItemIndex itemIndex = new LongFastUpdateableItemIndex();
+        items.forEachOrdered(itemIndex::addItem);
+        return itemIndex;
+    }
+}
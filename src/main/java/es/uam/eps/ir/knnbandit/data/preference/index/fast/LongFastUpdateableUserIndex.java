@@ -0,0 +1,182 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.data.preference.index.fast;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of FastUpdateableUserIndex for long identifiers, backed by a primitive
+ * hash map (from users to indexes) and an array (from indexes to users), so that no
+ * identifier is boxed. Primitive versions of the access methods are provided.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class LongFastUpdateableUserIndex implements FastUpdateableUserIndex<Long>, Serializable
+{
+    /**
+     * Initial capacity of the index.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Map from users to indexes.
+     */
+    private final Long2IntOpenHashMap user2uidx;
+    /**
+     * Users, by index.
+     */
+    private long[] users;
+    /**
+     * Number of users.
+     */
+    private int numUsers;
+
+    /**
+     * Constructor. Creates an empty index.
+     */
+    public LongFastUpdateableUserIndex()
+    {
+        this.user2uidx = new Long2IntOpenHashMap();
+        this.user2uidx.defaultReturnValue(-1);
+        this.users = new long[INITIAL_CAPACITY];
+        this.numUsers = 0;
+    }
+
+    @Override
+    public int addUser(Long u)
+    {
+        return this.addUser(u.longValue());
+    }
+
+    /**
+     * Adds a user to the index.
+     * @param u The user.
+     * @return the identifier of the user (the previous one, if the user was already in the index).
+     */
+    public int addUser(long u)
+    {
+        int uidx = this.user2uidx.get(u);
+        if(uidx >= 0)
+        {
+            return uidx;
+        }
+
+        if(this.numUsers == this.users.length)
+        {
+            this.users = Arrays.copyOf(this.users, this.users.length + (this.users.length >> 1));
+        }
+        this.users[this.numUsers] = u;
+        this.user2uidx.put(u, this.numUsers);
+        return this.numUsers++;
+    }
+
+    @Override
+    public boolean containsUser(Long u)
+    {
+        return this.user2uidx.containsKey(u.longValue());
+    }
+
+    /**
+     * Checks whether a user is in the index.
+     * @param u The user.
+     * @return true if the user is in the index, false otherwise.
+     */
+    public boolean containsUser(long u)
+    {
+        return this.user2uidx.containsKey(u);
+    }
+
+    @Override
+    public int numUsers()
+    {
+        return this.numUsers;
+    }
+
+    @Override
+    public int user2uidx(Long u)
+    {
+        return this.user2uidx.get(u.longValue());
+    }
+
+    /**
+     * Obtains the index of a user.
+     * @param u The user.
+     * @return the index of the user, -1 if it is not in the index.
+     */
+    public int user2uidx(long u)
+    {
+        return this.user2uidx.get(u);
+    }
+
+    @Override
+    public Long uidx2user(int uidx)
+    {
+        return this.uidx2longUser(uidx);
+    }
+
+    /**
+     * Obtains the user with a given index, without boxing it.
+     * @param uidx The index.
+     * @return the user.
+     * @throws IndexOutOfBoundsException if the index is not in use.
+     */
+    public long uidx2longUser(int uidx)
+    {
+        // The array has room for more users than the index contains.
+        if(uidx < 0 || uidx >= this.numUsers)
+        {
+            throw new IndexOutOfBoundsException("Index: " + uidx + ", Size: " + this.numUsers);
+        }
+        return this.users[uidx];
+    }
+
+    @Override
+    public Stream<Long> getAllUsers()
+    {
+        return this.getAllLongUsers().boxed();
+    }
+
+    /**
+     * Obtains all the users in the index, ordered by index.
+     * @return a stream containing the users.
+     */
+    public LongStream getAllLongUsers()
+    {
+        return Arrays.stream(this.users, 0, this.numUsers);
+    }
+
+    /**
+     * Creates a user index from an array of users. Users are indexed in the order of the array.
+     *
+     * @param users The users.
+     * @return a fast user index.
+     */
+    public static LongFastUpdateableUserIndex load(long[] users)
+    {
+        return load(LongStream.of(users));
+    }
+
+    /**
+     * Creates a user index from a stream of users. Users are indexed in the order of the stream.
+     *
+     * @param users The users.
+     * @return a fast user index.
+     */
+    public static LongFastUpdateableUserIndex load(LongStream users)
+    {
+        LongFastUpdateableUserIndex userIndex = new LongFastUpdateableUserIndex();
+        users.forEachOrdered(userIndex::addUser);
+        return userIndex;
+    }
+}
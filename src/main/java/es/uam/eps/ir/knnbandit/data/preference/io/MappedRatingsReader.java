@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.io;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Reads ratings from a file, by memory-mapping it. The file is split in chunks of complete
+ * lines, which are parsed in parallel. Numbers are parsed directly from the bytes of the file,
+ * without creating strings.
+ *
+ * The file data format is the following:
+ *
+ * user item value
+ *
+ * where users and items are long identifiers. Columns are separated by a certain delimiter
+ * (by default, a tab space). Every column after the third one is ignored.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class MappedRatingsReader
+{
+    /**
+     * Default size (in bytes) of the chunks parsed in parallel.
+     */
+    public final static int DEFAULT_CHUNK_SIZE = 32*1024*1024;
+    /**
+     * Powers of ten which can be exactly represented as doubles.
+     */
+    private final static double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                                           1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /**
+     * Maximum number of significant digits for which the fast double parsing is exact.
+     */
+    private final static int MAXDIGITS = 15;
+    /**
+     * Field delimiter.
+     */
+    private final byte delimiter;
+    /**
+     * Approximate size (in bytes) of the chunks parsed in parallel.
+     */
+    private final int chunkSize;
+
+    /**
+     * Constructor. Reads tab-separated files.
+     */
+    public MappedRatingsReader()
+    {
+        this('\t', DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param delimiter Field delimiter (an ASCII character).
+     * @param chunkSize Approximate size (in bytes) of the chunks parsed in parallel.
+     */
+    public MappedRatingsReader(char delimiter, int chunkSize)
+    {
+        this.delimiter = (byte) delimiter;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the ratings in a file.
+     * @param file The file.
+     * @return the ratings, in the order they appear in the file.
+     * @throws IOException if something fails while reading the file.
+     */
+    public Ratings read(String file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            long[] starts = this.split(channel);
+            int numChunks = starts.length - 1;
+
+            Chunk[] chunks;
+            try
+            {
+                chunks = IntStream.range(0, numChunks).parallel().mapToObj(c ->
+                {
+                    try
+                    {
+                        return this.parse(channel, starts[c], starts[c + 1]);
+                    }
+                    catch(IOException ioe)
+                    {
+                        throw new UncheckedIOException(ioe);
+                    }
+                }).toArray(Chunk[]::new);
+            }
+            catch(UncheckedIOException uioe)
+            {
+                throw uioe.getCause();
+            }
+
+            // Join the chunks, in the order of the file.
+            int numRatings = 0;
+            for(Chunk chunk : chunks)
+            {
+                numRatings += chunk.users.size();
+            }
+
+            long[] users = new long[numRatings];
+            long[] items = new long[numRatings];
+            double[] values = new double[numRatings];
+            LongLinkedOpenHashSet distinctUsers = new LongLinkedOpenHashSet();
+            LongLinkedOpenHashSet distinctItems = new LongLinkedOpenHashSet();
+            int pos = 0;
+            for(Chunk chunk : chunks)
+            {
+                int size = chunk.users.size();
+                System.arraycopy(chunk.users.elements(), 0, users, pos, size);
+                System.arraycopy(chunk.items.elements(), 0, items, pos, size);
+                System.arraycopy(chunk.values.elements(), 0, values, pos, size);
+                distinctUsers.addAll(chunk.distinctUsers);
+                distinctItems.addAll(chunk.distinctItems);
+                pos += size;
+            }
+
+            return new Ratings(users, items, values, new LongArrayList(distinctUsers), new LongArrayList(distinctItems));
+        }
+    }
+
+    /**
+     * Splits the file in chunks of complete lines.
+     * @param channel The file channel.
+     * @return the starting positions of the chunks, followed by the size of the file.
+     * @throws IOException if something fails while reading the file.
+     */
+    private long[] split(FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        LongArrayList starts = new LongArrayList();
+        starts.add(0L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long pos = chunkSize;
+        while(pos < size)
+        {
+            // Move the boundary after the end of the current line.
+            long boundary = size;
+            boolean found = false;
+            while(!found && pos < size)
+            {
+                buffer.clear();
+                int read = channel.read(buffer, pos);
+                if(read <= 0) break;
+                for(int i = 0; i < read; ++i)
+                {
+                    if(buffer.get(i) == '\n')
+                    {
+                        boundary = pos + i + 1;
+                        found = true;
+                        break;
+                    }
+                }
+                pos += read;
+            }
+
+            if(boundary >= size) break;
+            starts.add(boundary);
+            pos = boundary + chunkSize;
+        }
+
+        starts.add(size);
+        return starts.toLongArray();
+    }
+
+    /**
+     * Parses a chunk of complete lines of the file.
+     * @param channel The file channel.
+     * @param start Starting position of the chunk.
+     * @param end Ending position of the chunk (not included).
+     * @return the parsed ratings.
+     * @throws IOException if something fails while reading the file, or a line is not well formatted.
+     */
+    private Chunk parse(FileChannel channel, long start, long end) throws IOException
+    {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = (int) (end - start);
+        Chunk chunk = new Chunk(limit / 16);
+
+        int pos = 0;
+        while(pos < limit)
+        {
+            int lineEnd = pos;
+            while(lineEnd < limit && buffer.get(lineEnd) != '\n')
+            {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if(contentEnd > pos && buffer.get(contentEnd - 1) == '\r')
+            {
+                contentEnd--;
+            }
+
+            if(contentEnd > pos) // Empty lines are skipped.
+            {
+                int userEnd = this.fieldEnd(buffer, pos, contentEnd);
+                int itemEnd = this.fieldEnd(buffer, userEnd + 1, contentEnd);
+                if(itemEnd >= contentEnd)
+                {
+                    throw new IOException("Malformed line at byte " + (start + pos) + ": less than three columns");
+                }
+                int valueEnd = this.fieldEnd(buffer, itemEnd + 1, contentEnd);
+
+                long user = parseLong(buffer, pos, userEnd);
+                long item = parseLong(buffer, userEnd + 1, itemEnd);
+                double value = parseDouble(buffer, itemEnd + 1, valueEnd);
+
+                chunk.users.add(user);
+                chunk.items.add(item);
+                chunk.values.add(value);
+                chunk.distinctUsers.add(user);
+                chunk.distinctItems.add(item);
+            }
+            pos = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Finds the end of a field.
+     * @param buffer The buffer.
+     * @param pos The starting position of the field.
+     * @param limit The end of the line.
+     * @return the position of the delimiter after the field, or the end of the line if it is the last one.
+     */
+    private int fieldEnd(ByteBuffer buffer, int pos, int limit)
+    {
+        int i = pos;
+        while(i < limit && buffer.get(i) != delimiter)
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Parses a long value.
+     * @param buffer The buffer.
+     * @param start Starting position of the value.
+     * @param end Ending position of the value (not included).
+     * @return the value.
+     * @throws NumberFormatException if the bytes do not represent a long value.
+     */
+    private static long parseLong(ByteBuffer buffer, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+        {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        // Values with more than 18 digits might overflow: they are parsed as strings.
+        if(i == end || end - i > 18)
+        {
+            return Long.parseLong(toString(buffer, start, end));
+        }
+
+        long value = 0L;
+        for(; i < end; ++i)
+        {
+            int digit = buffer.get(i) - '0';
+            if(digit < 0 || digit > 9)
+            {
+                return Long.parseLong(toString(buffer, start, end));
+            }
+            value = value*10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a double value. Decimal values with at most 15 significant digits are computed
+     * with a single correctly rounded operation, so the result is the same as the one of
+     * Double.parseDouble. The rest of values are parsed as strings.
+     * @param buffer The buffer.
+     * @param start Starting position of the value.
+     * @param end Ending position of the value (not included).
+     * @return the value.
+     * @throws NumberFormatException if the bytes do not represent a double value.
+     */
+    private static double parseDouble(ByteBuffer buffer, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+        {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0L;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean point = false;
+        boolean any = false;
+        for(; i < end; ++i)
+        {
+            byte b = buffer.get(i);
+            if(b >= '0' && b <= '9')
+            {
+                any = true;
+                if(mantissa != 0L || b != '0')
+                {
+                    numDigits++;
+                }
+                if(numDigits > MAXDIGITS)
+                {
+                    return Double.parseDouble(toString(buffer, start, end));
+                }
+                mantissa = mantissa*10 + (b - '0');
+                if(point)
+                {
+                    exponent--;
+                }
+            }
+            else if(b == '.' && !point)
+            {
+                point = true;
+            }
+            else if((b == 'e' || b == 'E') && any)
+            {
+                break;
+            }
+            else
+            {
+                return Double.parseDouble(toString(buffer, start, end));
+            }
+        }
+
+        if(!any)
+        {
+            return Double.parseDouble(toString(buffer, start, end));
+        }
+
+        if(i < end) // Exponent.
+        {
+            i++;
+            boolean negExp = false;
+            if(i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+            {
+                negExp = buffer.get(i) == '-';
+                i++;
+            }
+            if(i == end || end - i > 3)
+            {
+                return Double.parseDouble(toString(buffer, start, end));
+            }
+            int exp = 0;
+            for(; i < end; ++i)
+            {
+                int digit = buffer.get(i) - '0';
+                if(digit < 0 || digit > 9)
+                {
+                    return Double.parseDouble(toString(buffer, start, end));
+                }
+                exp = exp*10 + digit;
+            }
+            exponent += negExp ? -exp : exp;
+        }
+
+        double value;
+        if(exponent == 0)
+        {
+            value = mantissa;
+        }
+        else if(exponent > 0 && exponent < POW10.length)
+        {
+            value = mantissa*POW10[exponent];
+        }
+        else if(exponent < 0 && -exponent < POW10.length)
+        {
+            value = mantissa/POW10[-exponent];
+        }
+        else
+        {
+            return Double.parseDouble(toString(buffer, start, end));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Obtains the text contained in a region of a buffer.
+     * @param buffer The buffer.
+     * @param start Starting position of the region.
+     * @param end Ending position of the region (not included).
+     * @return the text.
+     */
+    private static String toString(ByteBuffer buffer, int start, int end)
+    {
+        byte[] bytes = new byte[end - start];
+        for(int i = start; i < end; ++i)
+        {
+            bytes[i - start] = buffer.get(i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Ratings parsed from a chunk of the file.
+     */
+    private static class Chunk
+    {
+        /**
+         * The users of the ratings.
+         */
+        private final LongArrayList users;
+        /**
+         * The items of the ratings.
+         */
+        private final LongArrayList items;
+        /**
+         * The values of the ratings.
+         */
+        private final DoubleArrayList values;
+        /**
+         * The different users, in order of first appearance.
+         */
+        private final LongLinkedOpenHashSet distinctUsers = new LongLinkedOpenHashSet();
+        /**
+         * The different items, in order of first appearance.
+         */
+        private final LongLinkedOpenHashSet distinctItems = new LongLinkedOpenHashSet();
+
+        /**
+         * Constructor.
+         * @param capacity Expected number of ratings.
+         */
+        Chunk(int capacity)
+        {
+            this.users = new LongArrayList(capacity);
+            this.items = new LongArrayList(capacity);
+            this.values = new DoubleArrayList(capacity);
+        }
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.io;
+
+import es.uam.eps.ir.knnbandit.data.preference.fast.CSRMatrix;
+import es.uam.eps.ir.knnbandit.data.preference.fast.MappedCSRPreferenceData;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.DoubleUnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * Binary on-disk cache of a preference data set. It stores the user and item identifiers (in
+ * index order), the preferences in CSR format, both by user and by item, and the user of each
+ * rating in the order of the source file (for replaying the ratings). The cache is
+ * memory-mapped when read, so the preferences are not loaded into the heap, and different
+ * processes reading the same cache share the operating system page cache.
+ *
+ * The cache stores a checksum of the source file it was built from, so it is discarded when
+ * the source file changes.
+ *
+ * File format (little endian): a header with a magic number, the version, some flags, the checksum,
+ * the number of users, items, preferences and ratings, followed by the sections: user ids (long), item
+ * ids (long), user offsets (int), item index of each preference by user (int), values by user (double),
+ * item offsets (int), user index of each preference by item (int), values by item (double), user index
+ * of each rating in the source file (int). Every section starts at a multiple of 8 bytes. Values are absent if the data is binary.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class PreferenceDataCache
+{
+    /**
+     * Extension of the cache files, which are created next to the file they were built from.
+     */
+    public final static String EXTENSION = ".csr";
+    /**
+     * Magic number identifying the file format ("KNNBCSR1").
+     */
+    private final static long MAGIC = 0x4B4E4E4243535231L;
+    /**
+     * Version of the file format.
+     */
+    private final static int VERSION = 2;
+    /**
+     * Flag indicating that the data is binary (no values are stored).
+     */
+    private final static int BINARY = 1;
+    /**
+     * Size of the header (in bytes).
+     */
+    private final static int HEADER = 48;
+    /**
+     * Size of the buffers used for reading and writing.
+     */
+    private final static int BUFFERSIZE = 1 << 20;
+    /**
+     * Identifiers of the users, in index order.
+     */
+    private final long[] users;
+    /**
+     * Identifiers of the items, in index order.
+     */
+    private final long[] items;
+    /**
+     * Position of the first preference of each user.
+     */
+    private final IntBuffer userOffsets;
+    /**
+     * Items of the preferences, grouped by user.
+     */
+    private final IntBuffer userIdxs;
+    /**
+     * Values of the preferences, grouped by user (null if the data is binary).
+     */
+    private final DoubleBuffer userValues;
+    /**
+     * Position of the first preference of each item.
+     */
+    private final IntBuffer itemOffsets;
+    /**
+     * Users of the preferences, grouped by item.
+     */
+    private final IntBuffer itemIdxs;
+    /**
+     * Values of the preferences, grouped by item (null if the data is binary).
+     */
+    private final DoubleBuffer itemValues;
+    /**
+     * Users of the ratings, in the order of the source file.
+     */
+    private final IntBuffer userSequence;
+
+    /**
+     * Constructor. Maps the sections of the file.
+     * @param channel Channel of the file.
+     * @param numUsers Number of users.
+     * @param numItems Number of items.
+     * @param numPrefs Number of preferences.
+     * @param numRatings Number of ratings in the source file.
+     * @param binary True if the values are not stored.
+     * @throws IOException if something fails while reading.
+     */
+    private PreferenceDataCache(FileChannel channel, int numUsers, int numItems, int numPrefs, int numRatings, boolean binary) throws IOException
+    {
+        long pos = HEADER;
+        this.users = new long[numUsers];
+        map(channel, pos, 8L*numUsers).asLongBuffer().get(users);
+        pos = align(pos + 8L*numUsers);
+        this.items = new long[numItems];
+        map(channel, pos, 8L*numItems).asLongBuffer().get(items);
+        pos = align(pos + 8L*numItems);
+
+        this.userOffsets = map(channel, pos, 4L*(numUsers + 1)).asIntBuffer();
+        pos = align(pos + 4L*(numUsers + 1));
+        this.userIdxs = map(channel, pos, 4L*numPrefs).asIntBuffer();
+        pos = align(pos + 4L*numPrefs);
+        this.userValues = binary ? null : map(channel, pos, 8L*numPrefs).asDoubleBuffer();
+        pos = binary ? pos : align(pos + 8L*numPrefs);
+
+        this.itemOffsets = map(channel, pos, 4L*(numItems + 1)).asIntBuffer();
+        pos = align(pos + 4L*(numItems + 1));
+        this.itemIdxs = map(channel, pos, 4L*numPrefs).asIntBuffer();
+        pos = align(pos + 4L*numPrefs);
+        this.itemValues = binary ? null : map(channel, pos, 8L*numPrefs).asDoubleBuffer();
+        pos = binary ? pos : align(pos + 8L*numPrefs);
+
+        this.userSequence = map(channel, pos, 4L*numRatings).asIntBuffer();
+    }
+
+    /**
+     * Opens a cache.
+     * @param file The cache file.
+     * @param checksum Checksum of the source file.
+     * @return the cache, or null if the file does not exist, or it does not correspond to the source file.
+     * @throws IOException if something fails while reading.
+     */
+    public static PreferenceDataCache open(String file, long checksum) throws IOException
+    {
+        if(!new File(file).exists())
+        {
+            return null;
+        }
+
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            if(channel.size() < HEADER)
+            {
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining() && channel.read(header, header.position()) > 0);
+            header.flip();
+            if(header.getLong() != MAGIC || header.getInt() != VERSION)
+            {
+                return null;
+            }
+            int flags = header.getInt();
+            if(header.getLong() != checksum)
+            {
+                return null;
+            }
+            int numUsers = header.getInt();
+            int numItems = header.getInt();
+            int numPrefs = (int) header.getLong();
+            int numRatings = (int) header.getLong();
+            boolean binary = (flags & BINARY) != 0;
+
+            if(channel.size() != size(numUsers, numItems, numPrefs, numRatings, binary))
+            {
+                return null;
+            }
+            return new PreferenceDataCache(channel, numUsers, numItems, numPrefs, numRatings, binary);
+        }
+    }
+
+    /**
+     * Writes a cache. The file is first written with a temporary name, and then renamed, so
+     * that other processes never read an incomplete cache.
+     * @param file The cache file.
+     * @param checksum Checksum of the source file.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param userMatrix The preferences, grouped by user.
+     * @param itemMatrix The preferences, grouped by item.
+     * @param userSequence The user index of each rating, in the order of the source file.
+     * @throws IOException if something fails while writing.
+     */
+    public static void write(String file, long checksum, FastUserIndex<Long> uIndex, FastItemIndex<Long> iIndex, CSRMatrix userMatrix, CSRMatrix itemMatrix, int[] userSequence) throws IOException
+    {
+        int numUsers = uIndex.numUsers();
+        int numItems = iIndex.numItems();
+        int numPrefs = userMatrix.numEntries();
+        boolean binary = userMatrix.getValues() == null;
+
+        Path path = Paths.get(file);
+        Path tmp = Paths.get(file + ".tmp");
+        try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFERSIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(MAGIC).putInt(VERSION).putInt(binary ? BINARY : 0).putLong(checksum);
+            buffer.putInt(numUsers).putInt(numItems).putLong(numPrefs).putLong(userSequence.length);
+
+            for(int uidx = 0; uidx < numUsers; ++uidx)
+            {
+                buffer = putLong(channel, buffer, uIndex.uidx2user(uidx));
+            }
+            buffer = pad(channel, buffer);
+            for(int iidx = 0; iidx < numItems; ++iidx)
+            {
+                buffer = putLong(channel, buffer, iIndex.iidx2item(iidx));
+            }
+            buffer = pad(channel, buffer);
+
+            for(CSRMatrix matrix : new CSRMatrix[]{userMatrix, itemMatrix})
+            {
+                for(int val : matrix.getOffsets())
+                {
+                    buffer = putInt(channel, buffer, val);
+                }
+                buffer = pad(channel, buffer);
+                for(int val : matrix.getIndices())
+                {
+                    buffer = putInt(channel, buffer, val);
+                }
+                buffer = pad(channel, buffer);
+                if(!binary)
+                {
+                    for(double val : matrix.getValues())
+                    {
+                        buffer = putDouble(channel, buffer, val);
+                    }
+                }
+            }
+
+            for(int val : userSequence)
+            {
+                buffer = putInt(channel, buffer, val);
+            }
+            buffer = pad(channel, buffer);
+            flush(channel, buffer);
+        }
+
+        try
+        {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException ex)
+        {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Computes the checksum (CRC-32) of a file.
+     * @param file The file.
+     * @return the checksum.
+     * @throws IOException if something fails while reading.
+     */
+    public static long checksum(String file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            for(long pos = 0; pos < size; pos += Integer.MAX_VALUE)
+            {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(Integer.MAX_VALUE, size - pos)));
+            }
+            // The size is included too.
+            crc.update(ByteBuffer.allocate(8).putLong(0, size));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Obtains the user identifiers.
+     * @return the user identifiers, in index order.
+     */
+    public long[] getUsers()
+    {
+        return users;
+    }
+
+    /**
+     * Obtains the item identifiers.
+     * @return the item identifiers, in index order.
+     */
+    public long[] getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Obtains the users of the ratings, in the order of the source file.
+     * @return the user index of each rating.
+     */
+    public int[] getUserSequence()
+    {
+        int[] sequence = new int[userSequence.capacity()];
+        userSequence.duplicate().get(sequence);
+        return sequence;
+    }
+
+    /**
+     * Obtains the preference data stored in the cache.
+     * @param uIndex User index. Its users must be the ones returned by getUsers, in the same order.
+     * @param iIndex Item index. Its items must be the ones returned by getItems, in the same order.
+     * @param valueFunction Transformation applied to the stored values.
+     * @return the preference data.
+     */
+    public MappedCSRPreferenceData<Long, Long> getPreferenceData(FastUserIndex<Long> uIndex, FastItemIndex<Long> iIndex, DoubleUnaryOperator valueFunction)
+    {
+        return new MappedCSRPreferenceData<>(uIndex, iIndex, userOffsets, userIdxs, userValues, itemOffsets, itemIdxs, itemValues, valueFunction);
+    }
+
+    /**
+     * Maps a section of a file.
+     * @param channel Channel of the file.
+     * @param pos Start of the section.
+     * @param length Length of the section (in bytes).
+     * @return the mapped section.
+     * @throws IOException if something fails while mapping.
+     */
+    private static MappedByteBuffer map(FileChannel channel, long pos, long length) throws IOException
+    {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Rounds a position up to a multiple of 8 bytes.
+     * @param pos The position.
+     * @return the aligned position.
+     */
+    private static long align(long pos)
+    {
+        return (pos + 7) & ~7L;
+    }
+
+    /**
+     * Computes the expected size of a cache file.
+     * @param numUsers Number of users.
+     * @param numItems Number of items.
+     * @param numPrefs Number of preferences.
+     * @param numRatings Number of ratings in the source file.
+     * @param binary True if the values are not stored.
+     * @return the size (in bytes).
+     */
+    private static long size(int numUsers, int numItems, int numPrefs, int numRatings, boolean binary)
+    {
+        long pos = HEADER;
+        pos = align(pos + 8L*numUsers);
+        pos = align(pos + 8L*numItems);
+        for(int numRows : new int[]{numUsers, numItems})
+        {
+            pos = align(pos + 4L*(numRows + 1));
+            pos = align(pos + 4L*numPrefs);
+            pos = binary ? pos : align(pos + 8L*numPrefs);
+        }
+        pos = align(pos + 4L*numRatings);
+        return pos;
+    }
+
+    /**
+     * Writes the contents of the buffer if it does not have enough free space.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param bytes The required free space.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException
+    {
+        if(buffer.remaining() < bytes)
+        {
+            flush(channel, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the contents of the buffer, and clears it.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Adds a long value to the output.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param val The value.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer putLong(FileChannel channel, ByteBuffer buffer, long val) throws IOException
+    {
+        return ensure(channel, buffer, 8).putLong(val);
+    }
+
+    /**
+     * Adds an integer value to the output.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param val The value.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int val) throws IOException
+    {
+        return ensure(channel, buffer, 4).putInt(val);
+    }
+
+    /**
+     * Adds a double value to the output.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param val The value.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer putDouble(FileChannel channel, ByteBuffer buffer, double val) throws IOException
+    {
+        return ensure(channel, buffer, 8).putDouble(val);
+    }
+
+    /**
+     * Pads the output with zeros, until its length is a multiple of 8 bytes. As the buffer is always
+     * flushed when full, and its size is a multiple of 8, the position in the buffer gives the alignment.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer pad(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while((buffer.position() & 7) != 0)
+        {
+            buffer = ensure(channel, buffer, 1).put((byte) 0);
+        }
+        return buffer;
+    }
+}
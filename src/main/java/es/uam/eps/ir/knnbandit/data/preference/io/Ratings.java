@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.io;
+
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongList;
+import java.util.stream.IntStream;
+
+/**
+ * A set of ratings stored by columns: the user, the item and the value of each rating are
+ * stored in primitive arrays, in the order they were read.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class Ratings
+{
+    /**
+     * The users of the ratings.
+     */
+    private final long[] users;
+    /**
+     * The items of the ratings.
+     */
+    private final long[] items;
+    /**
+     * The values of the ratings.
+     */
+    private final double[] values;
+    /**
+     * The different users, in order of first appearance.
+     */
+    private final LongList distinctUsers;
+    /**
+     * The different items, in order of first appearance.
+     */
+    private final LongList distinctItems;
+
+    /**
+     * Constructor.
+     * @param users The users of the ratings.
+     * @param items The items of the ratings.
+     * @param values The values of the ratings.
+     * @param distinctUsers The different users, in order of first appearance.
+     * @param distinctItems The different items, in order of first appearance.
+     */
+    public Ratings(long[] users, long[] items, double[] values, LongList distinctUsers, LongList distinctItems)
+    {
+        this.users = users;
+        this.items = items;
+        this.values = values;
+        this.distinctUsers = distinctUsers;
+        this.distinctItems = distinctItems;
+    }
+
+    /**
+     * Obtains the number of ratings.
+     * @return the number of ratings.
+     */
+    public int numRatings()
+    {
+        return users.length;
+    }
+
+    /**
+     * Obtains the users of the ratings.
+     * @return an array containing the user of each rating.
+     */
+    public long[] getUsers()
+    {
+        return users;
+    }
+
+    /**
+     * Obtains the items of the ratings.
+     * @return an array containing the item of each rating.
+     */
+    public long[] getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Obtains the values of the ratings.
+     * @return an array containing the value of each rating.
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+
+    /**
+     * Obtains the different users in the ratings.
+     * @return the users, in order of first appearance.
+     */
+    public LongList getDistinctUsers()
+    {
+        return distinctUsers;
+    }
+
+    /**
+     * Obtains the different items in the ratings.
+     * @return the items, in order of first appearance.
+     */
+    public LongList getDistinctItems()
+    {
+        return distinctItems;
+    }
+
+    /**
+     * Finds the user indexes of the ratings.
+     * @param uIndex The user index. It must contain every user in the ratings.
+     * @return an array containing the index of the user of each rating.
+     */
+    public int[] getUidxs(FastUserIndex<Long> uIndex)
+    {
+        if(uIndex instanceof LongFastUpdateableUserIndex)
+        {
+            LongFastUpdateableUserIndex longIndex = (LongFastUpdateableUserIndex) uIndex;
+            return IntStream.range(0, users.length).parallel().map(i -> longIndex.user2uidx(users[i])).toArray();
+        }
+
+        Long2IntOpenHashMap map = new Long2IntOpenHashMap(uIndex.numUsers());
+        uIndex.getAllUidx().forEach(uidx -> map.put(uIndex.uidx2user(uidx).longValue(), uidx));
+        return IntStream.range(0, users.length).parallel().map(i -> map.get(users[i])).toArray();
+    }
+
+    /**
+     * Finds the item indexes of the ratings.
+     * @param iIndex The item index. It must contain every item in the ratings.
+     * @return an array containing the index of the item of each rating.
+     */
+    public int[] getIidxs(FastItemIndex<Long> iIndex)
+    {
+        if(iIndex instanceof LongFastUpdateableItemIndex)
+        {
+            LongFastUpdateableItemIndex longIndex = (LongFastUpdateableItemIndex) iIndex;
+            return IntStream.range(0, items.length).parallel().map(i -> longIndex.item2iidx(items[i])).toArray();
+        }
+
+        Long2IntOpenHashMap map = new Long2IntOpenHashMap(iIndex.numItems());
+        iIndex.getAllIidx().forEach(iidx -> map.put(iIndex.iidx2item(iidx).longValue(), iidx));
+        return IntStream.range(0, items.length).parallel().map(i -> map.get(items[i])).toArray();
+    }
+}
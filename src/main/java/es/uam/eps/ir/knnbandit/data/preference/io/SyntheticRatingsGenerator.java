@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.data.preference.io;
+
+import es.uam.eps.ir.knnbandit.data.preference.fast.CSRMatrix;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.LongFastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.stats.AliasTable;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Generates synthetic ratings with power-law distributed user activity and item popularity.
+ *
+ * The number of ratings of each user follows a Zipf law over a random ranking of the users, and
+ * the items are drawn following a Zipf law over a random ranking of the items. Users and items are
+ * assigned to latent clusters: with a certain probability (the affinity), a user draws the item
+ * among the ones in its own cluster. Ratings for items in the same cluster as the user are high
+ * (3 to 5), whereas the rest are low (1 to 4), so that neighborhood and matrix factorization
+ * algorithms can find some signal in the data.
+ *
+ * Users are generated in parallel, each with its own random number generator, derived from the seed
+ * and the user. Therefore, the output only depends on the parameters, and not on the number of threads.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class SyntheticRatingsGenerator
+{
+    /**
+     * Number of users generated at once (in parallel) before writing them.
+     */
+    private final static int BLOCK = 1 << 14;
+    /**
+     * Constant for deriving the seeds of the users.
+     */
+    private final static long GOLDEN = 0x9E3779B97F4A7C15L;
+    /**
+     * Cumulative probabilities of the ratings 1 to 5 for items in the cluster of the user.
+     */
+    private final static double[] INCLUSTER = {0.0, 0.0, 0.2, 0.6, 1.0};
+    /**
+     * Cumulative probabilities of the ratings 1 to 5 for items outside the cluster of the user.
+     */
+    private final static double[] OUTCLUSTER = {0.3, 0.65, 0.9, 1.0, 1.0};
+
+    /**
+     * Number of users.
+     */
+    private final int numUsers;
+    /**
+     * Number of items.
+     */
+    private final int numItems;
+    /**
+     * Probability of drawing an item in the cluster of the user.
+     */
+    private final double affinity;
+    /**
+     * Random seed.
+     */
+    private final long seed;
+    /**
+     * Number of ratings of each user.
+     */
+    private final int[] activity;
+    /**
+     * Cluster of each user.
+     */
+    private final int[] userClusters;
+    /**
+     * Cluster of each item.
+     */
+    private final int[] itemClusters;
+    /**
+     * Distribution of the items over the whole collection.
+     */
+    private final AliasTable popularity;
+    /**
+     * Distribution of the items within each cluster (null if the cluster is empty).
+     */
+    private final AliasTable[] clusterPopularity;
+    /**
+     * Items of each cluster.
+     */
+    private final int[][] clusterItems;
+
+    /**
+     * Constructor.
+     * @param numUsers Number of users.
+     * @param numItems Number of items.
+     * @param density Fraction of the user-item pairs which are rated (approximately).
+     * @param userExponent Exponent of the Zipf law of the user activity.
+     * @param itemExponent Exponent of the Zipf law of the item popularity.
+     * @param numClusters Number of latent clusters.
+     * @param affinity Probability of drawing an item in the cluster of the user.
+     * @param seed Random seed.
+     */
+    public SyntheticRatingsGenerator(int numUsers, int numItems, double density, double userExponent, double itemExponent, int numClusters, double affinity, long seed)
+    {
+        if(numUsers <= 0 || numItems <= 0 || numClusters <= 0)
+        {
+            throw new IllegalArgumentException("The number of users, items and clusters must be positive");
+        }
+
+        this.numUsers = numUsers;
+        this.numItems = numItems;
+        this.affinity = affinity;
+        this.seed = seed;
+
+        SplittableRandom rng = new SplittableRandom(seed);
+
+        // Activity of the users: every user rates at least one item, and at most every item.
+        int[] userRanking = permutation(numUsers, rng);
+        double[] userWeights = zipf(numUsers, userExponent);
+        double userSum = Arrays.stream(userWeights).sum();
+        double numRatings = density * numUsers * numItems;
+        this.activity = new int[numUsers];
+        for(int rank = 0; rank < numUsers; ++rank)
+        {
+            long count = Math.round(numRatings * userWeights[rank] / userSum);
+            activity[userRanking[rank]] = (int) Math.max(1L, Math.min(numItems, count));
+        }
+
+        // Popularity of the items.
+        int[] itemRanking = permutation(numItems, rng);
+        double[] zipfItems = zipf(numItems, itemExponent);
+        double[] itemWeights = new double[numItems];
+        for(int rank = 0; rank < numItems; ++rank)
+        {
+            itemWeights[itemRanking[rank]] = zipfItems[rank];
+        }
+        this.popularity = new AliasTable(itemWeights);
+
+        // Latent clusters.
+        this.userClusters = new int[numUsers];
+        for(int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            userClusters[uidx] = rng.nextInt(numClusters);
+        }
+        this.itemClusters = new int[numItems];
+        int[] clusterSizes = new int[numClusters];
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            itemClusters[iidx] = rng.nextInt(numClusters);
+            clusterSizes[itemClusters[iidx]]++;
+        }
+
+        this.clusterItems = new int[numClusters][];
+        this.clusterPopularity = new AliasTable[numClusters];
+        for(int c = 0; c < numClusters; ++c)
+        {
+            clusterItems[c] = new int[clusterSizes[c]];
+        }
+        int[] pos = new int[numClusters];
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            int c = itemClusters[iidx];
+            clusterItems[c][pos[c]++] = iidx;
+        }
+        for(int c = 0; c < numClusters; ++c)
+        {
+            if(clusterSizes[c] > 0)
+            {
+                double[] weights = new double[clusterSizes[c]];
+                for(int j = 0; j < clusterSizes[c]; ++j)
+                {
+                    weights[j] = itemWeights[clusterItems[c][j]];
+                }
+                clusterPopularity[c] = new AliasTable(weights);
+            }
+        }
+    }
+
+    /**
+     * Writes the ratings in a file, with the format: user \t item \t rating. Users and items are
+     * identified by their indexes.
+     * @param file The output file.
+     * @param cache True if the binary cache of the ratings has to be written next to the file.
+     * @throws IOException if something fails while writing.
+     */
+    public void write(String file, boolean cache) throws IOException
+    {
+        IntArrayList uidxs = cache ? new IntArrayList() : null;
+        IntArrayList iidxs = cache ? new IntArrayList() : null;
+        DoubleArrayList values = cache ? new DoubleArrayList() : null;
+
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20))
+        {
+            int[][] items = new int[BLOCK][];
+            byte[][] ratings = new byte[BLOCK][];
+            byte[][] lines = new byte[BLOCK][];
+            for(int start = 0; start < numUsers; start += BLOCK)
+            {
+                int first = start;
+                int end = Math.min(numUsers, start + BLOCK);
+                IntStream.range(first, end).parallel().forEach(uidx ->
+                {
+                    int j = uidx - first;
+                    items[j] = this.generateItems(uidx);
+                    ratings[j] = this.generateRatings(uidx, items[j]);
+                    lines[j] = encode(uidx, items[j], ratings[j]);
+                });
+
+                for(int j = 0; j < end - first; ++j)
+                {
+                    out.write(lines[j]);
+                    if(cache)
+                    {
+                        for(int k = 0; k < items[j].length; ++k)
+                        {
+                            uidxs.add(first + j);
+                            iidxs.add(items[j][k]);
+                            values.add(ratings[j][k]);
+                        }
+                    }
+                    items[j] = null;
+                    ratings[j] = null;
+                    lines[j] = null;
+                }
+            }
+        }
+
+        if(cache)
+        {
+            this.writeCache(file, uidxs.toIntArray(), iidxs.toIntArray(), values.toDoubleArray());
+        }
+    }
+
+    /**
+     * Writes the binary cache of the ratings. Only the items with ratings are included.
+     * @param file The ratings file.
+     * @param uidxs Users of the ratings.
+     * @param iidxs Items of the ratings.
+     * @param values Values of the ratings.
+     * @throws IOException if something fails while writing.
+     */
+    private void writeCache(String file, int[] uidxs, int[] iidxs, double[] values) throws IOException
+    {
+        // Items are renumbered, so that only items with ratings are included.
+        int[] newIidx = new int[numItems];
+        Arrays.fill(newIidx, -1);
+        for(int iidx : iidxs)
+        {
+            newIidx[iidx] = 0;
+        }
+        int numRated = 0;
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            if(newIidx[iidx] == 0)
+            {
+                newIidx[iidx] = numRated++;
+            }
+        }
+        long[] itemIds = new long[numRated];
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            if(newIidx[iidx] >= 0)
+            {
+                itemIds[newIidx[iidx]] = iidx;
+            }
+        }
+        for(int i = 0; i < iidxs.length; ++i)
+        {
+            iidxs[i] = newIidx[iidxs[i]];
+        }
+
+        LongFastUpdateableUserIndex uIndex = LongFastUpdateableUserIndex.load(LongStream.range(0, numUsers));
+        LongFastUpdateableItemIndex iIndex = LongFastUpdateableItemIndex.load(itemIds);
+        CSRMatrix userMatrix = CSRMatrix.build(numUsers, numRated, uidxs, iidxs, values);
+        CSRMatrix itemMatrix = CSRMatrix.build(numRated, numUsers, iidxs, uidxs, values);
+        PreferenceDataCache.write(file + PreferenceDataCache.EXTENSION, PreferenceDataCache.checksum(file), uIndex, iIndex, userMatrix, itemMatrix, uidxs);
+    }
+
+    /**
+     * Draws the items rated by a user.
+     * @param uidx The user.
+     * @return the items, in the order they were drawn.
+     */
+    private int[] generateItems(int uidx)
+    {
+        SplittableRandom rng = new SplittableRandom(seed ^ (GOLDEN * (uidx + 1L)));
+        int count = activity[uidx];
+        int cluster = userClusters[uidx];
+        AliasTable own = clusterPopularity[cluster];
+
+        int[] items = new int[count];
+        IntOpenHashSet rated = new IntOpenHashSet(count);
+        int size = 0;
+
+        // Draw items by popularity, until they are all different. Very active users might
+        // take too long to find new items this way: in that case, the rest are uniformly drawn.
+        long maxAttempts = 10L * count + 100L;
+        for(long attempt = 0; size < count && attempt < maxAttempts; ++attempt)
+        {
+            int iidx;
+            if(own != null && rng.nextDouble() < affinity)
+            {
+                iidx = clusterItems[cluster][own.sample(rng)];
+            }
+            else
+            {
+                iidx = popularity.sample(rng);
+            }
+
+            if(rated.add(iidx))
+            {
+                items[size++] = iidx;
+            }
+        }
+        while(size < count)
+        {
+            int iidx = rng.nextInt(numItems);
+            if(rated.add(iidx))
+            {
+                items[size++] = iidx;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Draws the ratings of a user for some items.
+     * @param uidx The user.
+     * @param items The items.
+     * @return the ratings (between 1 and 5).
+     */
+    private byte[] generateRatings(int uidx, int[] items)
+    {
+        SplittableRandom rng = new SplittableRandom(~seed ^ (GOLDEN * (uidx + 1L)));
+        byte[] ratings = new byte[items.length];
+        for(int j = 0; j < items.length; ++j)
+        {
+            double[] cumulative = itemClusters[items[j]] == userClusters[uidx] ? INCLUSTER : OUTCLUSTER;
+            double r = rng.nextDouble();
+            int rating = 0;
+            while(r >= cumulative[rating])
+            {
+                ++rating;
+            }
+            ratings[j] = (byte) (rating + 1);
+        }
+        return ratings;
+    }
+
+    /**
+     * Obtains the lines of the output file for a user.
+     * @param uidx The user.
+     * @param items The items rated by the user.
+     * @param ratings The ratings.
+     * @return the encoded lines (in ASCII).
+     */
+    private static byte[] encode(int uidx, int[] items, byte[] ratings)
+    {
+        // Each line contains at most 10 + 1 + 10 + 1 + 1 + 1 bytes.
+        byte[] buffer = new byte[24 * items.length];
+        int pos = 0;
+        for(int j = 0; j < items.length; ++j)
+        {
+            pos = encode(uidx, buffer, pos);
+            buffer[pos++] = '\t';
+            pos = encode(items[j], buffer, pos);
+            buffer[pos++] = '\t';
+            buffer[pos++] = (byte) ('0' + ratings[j]);
+            buffer[pos++] = '\n';
+        }
+        return Arrays.copyOf(buffer, pos);
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative number.
+     * @param value The number.
+     * @param buffer The buffer.
+     * @param pos Position of the buffer where the number starts.
+     * @return the position after the number.
+     */
+    private static int encode(int value, byte[] buffer, int pos)
+    {
+        int length = 1;
+        for(int v = value / 10; v > 0; v /= 10)
+        {
+            ++length;
+        }
+        int end = pos + length;
+        for(int p = end - 1; p >= pos; --p)
+        {
+            buffer[p] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Obtains a random permutation of the integers 0 to n-1.
+     * @param n Number of values.
+     * @param rng Random number generator.
+     * @return the permutation.
+     */
+    private static int[] permutation(int n, SplittableRandom rng)
+    {
+        int[] perm = new int[n];
+        for(int i = 0; i < n; ++i)
+        {
+            perm[i] = i;
+        }
+        for(int i = n - 1; i > 0; --i)
+        {
+            int j = rng.nextInt(i + 1);
+            int aux = perm[i];
+            perm[i] = perm[j];
+            perm[j] = aux;
+        }
+        return perm;
+    }
+
+    /**
+     * Obtains the (unnormalized) weights of a Zipf law.
+     * @param n Number of values.
+     * @param exponent The exponent.
+     * @return the weight of each rank.
+     */
+    private static double[] zipf(int n, double exponent)
+    {
+        double[] weights = new double[n];
+        for(int rank = 0; rank < n; ++rank)
+        {
+            weights[rank] = Math.pow(rank + 1.0, -exponent);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,40 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.csr;
+
+import es.uam.eps.ir.knnbandit.graph.DirectedUnweightedGraph;
+import es.uam.eps.ir.knnbandit.graph.index.fast.FastIndex;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Immutable directed unweighted graph, stored in compressed sparse row format.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <V> Type of the vertices.
+ * @see CSRGraph#build(java.util.List, int[], int[], int, boolean)
+ */
+public class CSRDirectedUnweightedGraph<V> extends CSRGraph<V> implements DirectedUnweightedGraph<V>
+{
+    /**
+     * Constructor.
+     * @param vertices Index of vertices.
+     * @param outOffsets Position of the first outgoing neighbor of each node.
+     * @param outNodes Outgoing neighbors of the nodes, sorted for each node.
+     * @param inOffsets Position of the first incoming neighbor of each node.
+     * @param inNodes Incoming neighbors of the nodes, sorted for each node.
+     * @param mutual Bitmap indicating which outgoing edges are reciprocated.
+     * @param numEdges Number of edges.
+     */
+    CSRDirectedUnweightedGraph(FastIndex<V> vertices, IntBuffer outOffsets, IntBuffer outNodes, IntBuffer inOffsets, IntBuffer inNodes, LongBuffer mutual, long numEdges)
+    {
+        super(vertices, outOffsets, outNodes, inOffsets, inNodes, mutual, numEdges);
+    }
+}
@@ -0,0 +1,943 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.csr;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.SparseDoubleMatrix2D;
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import es.uam.eps.ir.knnbandit.graph.UnweightedGraph;
+import es.uam.eps.ir.knnbandit.graph.Weight;
+import es.uam.eps.ir.knnbandit.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.knnbandit.graph.edges.EdgeType;
+import es.uam.eps.ir.knnbandit.graph.index.fast.FastIndex;
+import it.unimi.dsi.fastutil.ints.AbstractIntIterator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.sparse.LinkedSparseMatrix;
+
+/**
+ * Immutable unweighted graph stored in compressed sparse row (CSR) format. The outgoing (resp.
+ * incoming) neighbors of each node occupy a contiguous range of an array, sorted in ascending
+ * order, and delimited by an offsets array. In directed graphs, a bitmap indicates which edges
+ * are reciprocated, so mutual neighborhoods are obtained without any search. In undirected graphs,
+ * both directions share the same arrays.
+ *
+ * Graphs are built at once from a list of edges, and they cannot be modified afterwards. The
+ * arrays are accessed through buffers, so they can also be mapped from a file (only absolute
+ * reads are performed, so the buffers can be shared between threads).
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <V> Type of the vertices.
+ */
+public abstract class CSRGraph<V> implements UnweightedGraph<V>
+{
+    /**
+     * Index of vertices.
+     */
+    private final FastIndex<V> vertices;
+    /**
+     * Position of the first outgoing neighbor of each node (numNodes + 1 values).
+     */
+    private final IntBuffer outOffsets;
+    /**
+     * Outgoing neighbors of the nodes.
+     */
+    private final IntBuffer outNodes;
+    /**
+     * Position of the first incoming neighbor of each node (numNodes + 1 values).
+     */
+    private final IntBuffer inOffsets;
+    /**
+     * Incoming neighbors of the nodes.
+     */
+    private final IntBuffer inNodes;
+    /**
+     * Bitmap indicating which outgoing edges are reciprocated (null if the graph is undirected).
+     */
+    private final LongBuffer mutual;
+    /**
+     * Number of edges.
+     */
+    private final long numEdges;
+
+    /**
+     * Constructor.
+     * @param vertices Index of vertices.
+     * @param outOffsets Position of the first outgoing neighbor of each node.
+     * @param outNodes Outgoing neighbors of the nodes.
+     * @param inOffsets Position of the first incoming neighbor of each node.
+     * @param inNodes Incoming neighbors of the nodes.
+     * @param mutual Bitmap indicating which outgoing edges are reciprocated (null if the graph is undirected).
+     * @param numEdges Number of edges.
+     */
+    protected CSRGraph(FastIndex<V> vertices, IntBuffer outOffsets, IntBuffer outNodes, IntBuffer inOffsets, IntBuffer inNodes, LongBuffer mutual, long numEdges)
+    {
+        this.vertices = vertices;
+        this.outOffsets = outOffsets;
+        this.outNodes = outNodes;
+        this.inOffsets = inOffsets;
+        this.inNodes = inNodes;
+        this.mutual = mutual;
+        this.numEdges = numEdges;
+    }
+
+    /**
+     * Builds a graph from a list of edges. Repeated edges are only added once.
+     * @param <V> Type of the vertices.
+     * @param nodes The vertices of the graph. Edges refer to them by their position in this list.
+     * @param origins Origin of each edge.
+     * @param dests Destination of each edge.
+     * @param numEdges Number of edges (the first numEdges values of the arrays are used).
+     * @param directed True if the graph is directed, false otherwise.
+     * @return the graph.
+     */
+    public static <V> CSRGraph<V> build(List<V> nodes, int[] origins, int[] dests, int numEdges, boolean directed)
+    {
+        int numNodes = nodes.size();
+        FastIndex<V> vertices = new FastIndex<>();
+        nodes.forEach(vertices::addObject);
+
+        // Outgoing neighbors (both directions of every edge, if the graph is undirected).
+        int[] offsets = new int[numNodes + 1];
+        for(int i = 0; i < numEdges; ++i)
+        {
+            offsets[origins[i] + 1]++;
+            if(!directed && origins[i] != dests[i])
+            {
+                offsets[dests[i] + 1]++;
+            }
+        }
+        for(int u = 0; u < numNodes; ++u)
+        {
+            offsets[u + 1] += offsets[u];
+        }
+
+        int[] pos = new int[numNodes];
+        System.arraycopy(offsets, 0, pos, 0, numNodes);
+        int[] adjacency = new int[offsets[numNodes]];
+        for(int i = 0; i < numEdges; ++i)
+        {
+            adjacency[pos[origins[i]]++] = dests[i];
+            if(!directed && origins[i] != dests[i])
+            {
+                adjacency[pos[dests[i]]++] = origins[i];
+            }
+        }
+
+        int[] outOffsets = sortRows(offsets, adjacency);
+        int[] outNodes = compactRows(offsets, outOffsets, adjacency);
+
+        if(!directed)
+        {
+            long selfLoops = IntStream.range(0, numNodes).parallel().filter(u -> contains(outOffsets, outNodes, u, u)).count();
+            long count = (outNodes.length + selfLoops) / 2;
+            return new CSRUndirectedUnweightedGraph<>(vertices, IntBuffer.wrap(outOffsets), IntBuffer.wrap(outNodes), count);
+        }
+
+        // Incoming neighbors: nodes are visited in ascending order, so the lists are already sorted.
+        int[] inOffsets = new int[numNodes + 1];
+        for(int v : outNodes)
+        {
+            inOffsets[v + 1]++;
+        }
+        for(int u = 0; u < numNodes; ++u)
+        {
+            inOffsets[u + 1] += inOffsets[u];
+        }
+        System.arraycopy(inOffsets, 0, pos, 0, numNodes);
+        int[] inNodes = new int[outNodes.length];
+        for(int u = 0; u < numNodes; ++u)
+        {
+            for(int p = outOffsets[u]; p < outOffsets[u + 1]; ++p)
+            {
+                inNodes[pos[outNodes[p]]++] = u;
+            }
+        }
+
+        // Reciprocated edges. Each task fills a different word of the bitmap.
+        long[] mutual = new long[(outNodes.length + 63) >>> 6];
+        IntStream.range(0, mutual.length).parallel().forEach(w ->
+        {
+            int start = w << 6;
+            int end = Math.min(start + 64, outNodes.length);
+            int u = row(outOffsets, start);
+            long word = 0L;
+            for(int p = start; p < end; ++p)
+            {
+                while(outOffsets[u + 1] <= p)
+                {
+                    u++;
+                }
+                if(contains(outOffsets, outNodes, outNodes[p], u))
+                {
+                    word |= 1L << (p - start);
+                }
+            }
+            mutual[w] = word;
+        });
+
+        return new CSRDirectedUnweightedGraph<>(vertices, IntBuffer.wrap(outOffsets), IntBuffer.wrap(outNodes), IntBuffer.wrap(inOffsets), IntBuffer.wrap(inNodes), LongBuffer.wrap(mutual), outNodes.length);
+    }
+
+    /**
+     * Creates a graph over already built CSR arrays (for instance, arrays mapped from a file). The
+     * arrays are not copied, so they must not be modified while the graph is in use.
+     * @param <V> Type of the vertices.
+     * @param vertices Index of vertices.
+     * @param outOffsets Position of the first outgoing neighbor of each node (numNodes + 1 values).
+     * @param outNodes Outgoing neighbors of the nodes, sorted for each node.
+     * @param inOffsets Position of the first incoming neighbor of each node (ignored if the graph is undirected).
+     * @param inNodes Incoming neighbors of the nodes, sorted for each node (ignored if the graph is undirected).
+     * @param mutual Bitmap indicating which outgoing edges are reciprocated (ignored if the graph is undirected).
+     * @param numEdges Number of edges.
+     * @param directed True if the graph is directed, false otherwise.
+     * @return the graph.
+     */
+    public static <V> CSRGraph<V> wrap(FastIndex<V> vertices, IntBuffer outOffsets, IntBuffer outNodes, IntBuffer inOffsets, IntBuffer inNodes, LongBuffer mutual, long numEdges, boolean directed)
+    {
+        if(directed)
+        {
+            return new CSRDirectedUnweightedGraph<>(vertices, outOffsets, outNodes, inOffsets, inNodes, mutual, numEdges);
+        }
+        return new CSRUndirectedUnweightedGraph<>(vertices, outOffsets, outNodes, numEdges);
+    }
+
+    /**
+     * Builds an immutable copy of a graph. Weights and types are not copied. CSR graphs are
+     * not copied, as they cannot be modified.
+     * @param <V> Type of the vertices.
+     * @param graph The graph.
+     * @return the copy.
+     */
+    public static <V> CSRGraph<V> load(Graph<V> graph)
+    {
+        if(graph instanceof CSRGraph)
+        {
+            return (CSRGraph<V>) graph;
+        }
+
+        List<V> nodes = graph.getAllNodes().collect(Collectors.toList());
+        FastIndex<V> index = new FastIndex<>();
+        nodes.forEach(index::addObject);
+
+        IntArrayList origins = new IntArrayList();
+        IntArrayList dests = new IntArrayList();
+        for(V u : nodes)
+        {
+            int uidx = index.object2idx(u);
+            graph.getAdjacentNodes(u).forEach(v ->
+            {
+                origins.add(uidx);
+                dests.add(index.object2idx(v));
+            });
+        }
+
+        return build(nodes, origins.elements(), dests.elements(), origins.size(), graph.isDirected());
+    }
+
+    /**
+     * Sorts the rows of a CSR structure and removes repeated values from them, in parallel. The
+     * unique values of each row are moved to the beginning of the row.
+     * @param offsets Position of the first value of each row.
+     * @param values The values.
+     * @return the offsets the rows will have once they are compacted.
+     */
+    private static int[] sortRows(int[] offsets, int[] values)
+    {
+        int numRows = offsets.length - 1;
+        int[] counts = new int[numRows + 1];
+        IntStream.range(0, numRows).parallel().forEach(u ->
+        {
+            int start = offsets[u];
+            int end = offsets[u + 1];
+            IntArrays.quickSort(values, start, end);
+            int unique = start;
+            for(int p = start; p < end; ++p)
+            {
+                if(unique == start || values[unique - 1] != values[p])
+                {
+                    values[unique++] = values[p];
+                }
+            }
+            counts[u + 1] = unique - start;
+        });
+        for(int u = 0; u < numRows; ++u)
+        {
+            counts[u + 1] += counts[u];
+        }
+        return counts;
+    }
+
+    /**
+     * Moves the (already sorted) rows of a CSR structure to a new array without gaps.
+     * @param offsets Current position of the first value of each row.
+     * @param newOffsets New position of the first value of each row.
+     * @param values The values.
+     * @return the new array of values.
+     */
+    private static int[] compactRows(int[] offsets, int[] newOffsets, int[] values)
+    {
+        int numRows = offsets.length - 1;
+        if(newOffsets[numRows] == values.length)
+        {
+            return values;
+        }
+
+        int[] compact = new int[newOffsets[numRows]];
+        IntStream.range(0, numRows).parallel().forEach(u -> System.arraycopy(values, offsets[u], compact, newOffsets[u], newOffsets[u + 1] - newOffsets[u]));
+        return compact;
+    }
+
+    /**
+     * Finds the row containing a position.
+     * @param offsets Position of the first value of each row.
+     * @param pos The position.
+     * @return the row.
+     */
+    private static int row(int[] offsets, int pos)
+    {
+        // Last row starting at or before the position.
+        int low = 0;
+        int high = offsets.length - 2;
+        while(low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if(offsets[mid] <= pos) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * Checks whether a row of a CSR structure contains a value.
+     * @param offsets Position of the first value of each row.
+     * @param values The values (sorted in each row).
+     * @param row The row.
+     * @param value The value.
+     * @return true if the row contains the value, false otherwise.
+     */
+    private static boolean contains(int[] offsets, int[] values, int row, int value)
+    {
+        return IntArrays.binarySearch(values, offsets[row], offsets[row + 1], value) >= 0;
+    }
+
+    /**
+     * Checks whether an outgoing edge is reciprocated.
+     * @param pos Position of the edge in the outgoing neighbors array.
+     * @return true if the edge is reciprocated, false otherwise.
+     */
+    private boolean isReciprocated(int pos)
+    {
+        return this.mutual == null || (this.mutual.get(pos >>> 6) & (1L << pos)) != 0L;
+    }
+
+    /**
+     * Counts the reciprocated edges in a range of the outgoing neighbors array.
+     * @param start Start of the range.
+     * @param end End of the range (not included).
+     * @return the number of reciprocated edges.
+     */
+    private int countMutual(int start, int end)
+    {
+        if(this.mutual == null)
+        {
+            return end - start;
+        }
+
+        int count = 0;
+        int p = start;
+        while(p < end)
+        {
+            int w = p >>> 6;
+            int bits = Math.min(64 - (p & 63), end - p);
+            long word = this.mutual.get(w) >>> (p & 63);
+            if(bits < 64)
+            {
+                word &= (1L << bits) - 1L;
+            }
+            count += Long.bitCount(word);
+            p += bits;
+        }
+        return count;
+    }
+
+    /**
+     * Obtains an iterator over the identifiers of the neighbors of a node.
+     * @param uidx Identifier of the node.
+     * @param orientation The neighborhood selection.
+     * @return an iterator over the identifiers of the neighbors, in ascending order.
+     */
+    public IntIterator getNeighborhoodIterator(int uidx, EdgeOrientation orientation)
+    {
+        switch(orientation)
+        {
+            case OUT:
+                return new RangeIterator(this.outNodes, this.outOffsets.get(uidx), this.outOffsets.get(uidx + 1));
+            case IN:
+                return new RangeIterator(this.inNodes, this.inOffsets.get(uidx), this.inOffsets.get(uidx + 1));
+            case MUTUAL:
+                return new MutualIterator(this.outOffsets.get(uidx), this.outOffsets.get(uidx + 1));
+            default:
+                if(this.mutual == null)
+                {
+                    return new RangeIterator(this.outNodes, this.outOffsets.get(uidx), this.outOffsets.get(uidx + 1));
+                }
+                return new UnionIterator(this.outOffsets.get(uidx), this.outOffsets.get(uidx + 1), this.inOffsets.get(uidx), this.inOffsets.get(uidx + 1));
+        }
+    }
+
+    /**
+     * Obtains the number of neighbors of a node.
+     * @param uidx Identifier of the node.
+     * @param orientation The neighborhood selection.
+     * @return the number of neighbors.
+     */
+    public int getNeighborhoodSize(int uidx, EdgeOrientation orientation)
+    {
+        switch(orientation)
+        {
+            case OUT:
+                return this.outOffsets.get(uidx + 1) - this.outOffsets.get(uidx);
+            case IN:
+                return this.inOffsets.get(uidx + 1) - this.inOffsets.get(uidx);
+            case MUTUAL:
+                return this.countMutual(this.outOffsets.get(uidx), this.outOffsets.get(uidx + 1));
+            default:
+                if(this.mutual == null)
+                {
+                    return this.outOffsets.get(uidx + 1) - this.outOffsets.get(uidx);
+                }
+                return this.getNeighborhoodSize(uidx, EdgeOrientation.OUT) + this.getNeighborhoodSize(uidx, EdgeOrientation.IN) - this.getNeighborhoodSize(uidx, EdgeOrientation.MUTUAL);
+        }
+    }
+
+    /**
+     * Obtains the identifiers of the neighbors of a node.
+     * @param uidx Identifier of the node.
+     * @param orientation The neighborhood selection.
+     * @return a stream containing the identifiers of the neighbors, in ascending order.
+     */
+    public IntStream getNeighborhoodIds(int uidx, EdgeOrientation orientation)
+    {
+        switch(orientation)
+        {
+            case OUT:
+                return IntStream.range(this.outOffsets.get(uidx), this.outOffsets.get(uidx + 1)).map(p -> this.outNodes.get(p));
+            case IN:
+                return IntStream.range(this.inOffsets.get(uidx), this.inOffsets.get(uidx + 1)).map(p -> this.inNodes.get(p));
+            case MUTUAL:
+                return IntStream.range(this.outOffsets.get(uidx), this.outOffsets.get(uidx + 1)).filter(this::isReciprocated).map(p -> this.outNodes.get(p));
+            default:
+                IntIterator iterator = this.getNeighborhoodIterator(uidx, orientation);
+                return IntStream.generate(iterator::nextInt).limit(this.getNeighborhoodSize(uidx, orientation));
+        }
+    }
+
+    /**
+     * Checks whether an edge exists.
+     * @param uidx Identifier of the origin node.
+     * @param vidx Identifier of the destination node.
+     * @return true if the edge exists, false otherwise.
+     */
+    public boolean containsEdge(int uidx, int vidx)
+    {
+        int low = this.outOffsets.get(uidx);
+        int high = this.outOffsets.get(uidx + 1) - 1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int val = this.outNodes.get(mid);
+            if(val < vidx) low = mid + 1;
+            else if(val > vidx) high = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * Obtains the identifiers of all the nodes.
+     * @return a stream containing the identifiers of the nodes.
+     */
+    public IntStream getAllNodesIds()
+    {
+        return IntStream.range(0, this.vertices.numObjects());
+    }
+
+    /**
+     * Obtains the nodes in a neighborhood of a node.
+     * @param node The node.
+     * @param orientation The neighborhood selection.
+     * @return a stream containing the neighbors.
+     */
+    private Stream<V> neighborhood(V node, EdgeOrientation orientation)
+    {
+        int uidx = this.vertices.object2idx(node);
+        if(uidx < 0)
+            return Stream.empty();
+        return this.getNeighborhoodIds(uidx, orientation).mapToObj(this.vertices::idx2object);
+    }
+
+    /**
+     * Obtains the size of a neighborhood of a node.
+     * @param node The node.
+     * @param orientation The neighborhood selection.
+     * @return the size of the neighborhood, -1 if the node does not exist.
+     */
+    private int neighborhoodSize(V node, EdgeOrientation orientation)
+    {
+        int uidx = this.vertices.object2idx(node);
+        if(uidx < 0)
+            return -1;
+        return this.getNeighborhoodSize(uidx, orientation);
+    }
+
+    /**
+     * Obtains the default types of the edges in a neighborhood of a node.
+     * @param node The node.
+     * @param orientation The neighborhood selection.
+     * @return a stream containing the neighbors and the types of the edges.
+     */
+    private Stream<Weight<V, Integer>> types(V node, EdgeOrientation orientation)
+    {
+        return this.neighborhood(node, orientation).map(v -> new Weight<>(v, EdgeType.getDefaultValue()));
+    }
+
+    @Override
+    public boolean addNode(V node)
+    {
+        throw new UnsupportedOperationException("The graph cannot be modified");
+    }
+
+    @Override
+    public boolean addEdge(V nodeA, V nodeB, double weight, int type, boolean insertNodes)
+    {
+        throw new UnsupportedOperationException("The graph cannot be modified");
+    }
+
+    @Override
+    public boolean updateEdgeWeight(V nodeA, V nodeB, double newWeight)
+    {
+        throw new UnsupportedOperationException("The graph cannot be modified");
+    }
+
+    @Override
+    public Stream<V> getAllNodes()
+    {
+        return this.vertices.getAllObjects();
+    }
+
+    @Override
+    public Stream<V> getIncidentNodes(V node)
+    {
+        return this.neighborhood(node, EdgeOrientation.IN);
+    }
+
+    @Override
+    public Stream<V> getAdjacentNodes(V node)
+    {
+        return this.neighborhood(node, EdgeOrientation.OUT);
+    }
+
+    @Override
+    public Stream<V> getMutualNodes(V node)
+    {
+        return this.neighborhood(node, EdgeOrientation.MUTUAL);
+    }
+
+    @Override
+    public Stream<V> getNeighbourNodes(V node)
+    {
+        return this.neighborhood(node, EdgeOrientation.UND);
+    }
+
+    @Override
+    public int getIncidentNodesCount(V node)
+    {
+        return this.neighborhoodSize(node, EdgeOrientation.IN);
+    }
+
+    @Override
+    public int getAdjacentNodesCount(V node)
+    {
+        return this.neighborhoodSize(node, EdgeOrientation.OUT);
+    }
+
+    @Override
+    public int getNeighbourNodesCount(V node)
+    {
+        return this.neighborhoodSize(node, EdgeOrientation.UND);
+    }
+
+    @Override
+    public int getMutualNodesCount(V node)
+    {
+        return this.neighborhoodSize(node, EdgeOrientation.MUTUAL);
+    }
+
+    @Override
+    public int getIncidentEdgesCount(V node)
+    {
+        return Math.max(0, this.neighborhoodSize(node, EdgeOrientation.IN));
+    }
+
+    @Override
+    public int getAdjacentEdgesCount(V node)
+    {
+        return Math.max(0, this.neighborhoodSize(node, EdgeOrientation.OUT));
+    }
+
+    @Override
+    public int getMutualEdgesCount(V node)
+    {
+        return Math.max(0, this.neighborhoodSize(node, EdgeOrientation.MUTUAL));
+    }
+
+    @Override
+    public boolean containsVertex(V node)
+    {
+        return this.vertices.containsObject(node);
+    }
+
+    @Override
+    public boolean containsEdge(V nodeA, V nodeB)
+    {
+        int uidx = this.vertices.object2idx(nodeA);
+        int vidx = this.vertices.object2idx(nodeB);
+        return uidx >= 0 && vidx >= 0 && this.containsEdge(uidx, vidx);
+    }
+
+    @Override
+    public int getEdgeType(V nodeA, V nodeB)
+    {
+        return this.containsEdge(nodeA, nodeB) ? EdgeType.getDefaultValue() : EdgeType.getErrorType();
+    }
+
+    @Override
+    public Stream<Weight<V, Integer>> getIncidentNodesTypes(V node)
+    {
+        return this.types(node, EdgeOrientation.IN);
+    }
+
+    @Override
+    public Stream<Weight<V, Integer>> getAdjacentNodesTypes(V node)
+    {
+        return this.types(node, EdgeOrientation.OUT);
+    }
+
+    @Override
+    public Stream<Weight<V, Integer>> getNeighbourNodesTypes(V node)
+    {
+        return this.types(node, EdgeOrientation.UND);
+    }
+
+    @Override
+    public Stream<Weight<V, Integer>> getAdjacentMutualNodesTypes(V node)
+    {
+        return this.types(node, EdgeOrientation.MUTUAL);
+    }
+
+    @Override
+    public Stream<Weight<V, Integer>> getIncidentMutualNodesTypes(V node)
+    {
+        return this.types(node, EdgeOrientation.MUTUAL);
+    }
+
+    @Override
+    public long getVertexCount()
+    {
+        return this.vertices.numObjects();
+    }
+
+    @Override
+    public long getEdgeCount()
+    {
+        return this.numEdges;
+    }
+
+    @Override
+    public DoubleMatrix2D getAdjacencyMatrix(EdgeOrientation direction)
+    {
+        int numNodes = this.vertices.numObjects();
+        DoubleMatrix2D matrix = new SparseDoubleMatrix2D(numNodes, numNodes);
+        for(int uidx = 0; uidx < numNodes; ++uidx)
+        {
+            IntIterator iterator = this.getNeighborhoodIterator(uidx, direction);
+            while(iterator.hasNext())
+            {
+                matrix.setQuick(uidx, iterator.nextInt(), 1.0);
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public Matrix getAdjacencyMatrixMTJ(EdgeOrientation direction)
+    {
+        int numNodes = this.vertices.numObjects();
+        Matrix matrix = new LinkedSparseMatrix(numNodes, numNodes);
+        for(int uidx = 0; uidx < numNodes; ++uidx)
+        {
+            IntIterator iterator = this.getNeighborhoodIterator(uidx, direction);
+            while(iterator.hasNext())
+            {
+                matrix.set(uidx, iterator.nextInt(), 1.0);
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public Stream<V> getIsolatedNodes()
+    {
+        return this.getAllNodesIds().filter(uidx -> this.getNeighborhoodSize(uidx, EdgeOrientation.OUT) == 0 && this.getNeighborhoodSize(uidx, EdgeOrientation.IN) == 0).mapToObj(this.vertices::idx2object);
+    }
+
+    @Override
+    public Stream<V> getNodesWithEdges(EdgeOrientation direction)
+    {
+        return this.getAllNodesIds().filter(uidx -> this.getNeighborhoodSize(uidx, direction) > 0).mapToObj(this.vertices::idx2object);
+    }
+
+    @Override
+    public Stream<V> getNodesWithAdjacentEdges()
+    {
+        return this.getNodesWithEdges(EdgeOrientation.OUT);
+    }
+
+    @Override
+    public Stream<V> getNodesWithIncidentEdges()
+    {
+        return this.getNodesWithEdges(EdgeOrientation.IN);
+    }
+
+    @Override
+    public Stream<V> getNodesWithEdges()
+    {
+        return this.getNodesWithEdges(EdgeOrientation.UND);
+    }
+
+    @Override
+    public Stream<V> getNodesWithMutualEdges()
+    {
+        return this.getNodesWithEdges(EdgeOrientation.MUTUAL);
+    }
+
+    @Override
+    public boolean hasAdjacentEdges(V u)
+    {
+        return this.neighborhoodSize(u, EdgeOrientation.OUT) > 0;
+    }
+
+    @Override
+    public boolean hasIncidentEdges(V u)
+    {
+        return this.neighborhoodSize(u, EdgeOrientation.IN) > 0;
+    }
+
+    @Override
+    public boolean hasEdges(V u)
+    {
+        return this.hasAdjacentEdges(u) || this.hasIncidentEdges(u);
+    }
+
+    @Override
+    public boolean hasMutualEdges(V u)
+    {
+        return this.neighborhoodSize(u, EdgeOrientation.MUTUAL) > 0;
+    }
+
+    @Override
+    public int object2idx(V u)
+    {
+        return this.vertices.object2idx(u);
+    }
+
+    @Override
+    public V idx2object(int idx)
+    {
+        return this.vertices.idx2object(idx);
+    }
+
+    /**
+     * Iterator over a range of positions of an array.
+     */
+    private static class RangeIterator extends AbstractIntIterator
+    {
+        /**
+         * The array.
+         */
+        private final IntBuffer array;
+        /**
+         * Current position.
+         */
+        private int pos;
+        /**
+         * End of the range (not included).
+         */
+        private final int end;
+
+        /**
+         * Constructor.
+         * @param array The array.
+         * @param start Start of the range.
+         * @param end End of the range (not included).
+         */
+        RangeIterator(IntBuffer array, int start, int end)
+        {
+            this.array = array;
+            this.pos = start;
+            this.end = end;
+        }
+
+        @Override
+        public int nextInt()
+        {
+            if(pos >= end) throw new NoSuchElementException();
+            return array.get(pos++);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return pos < end;
+        }
+
+        @Override
+        public int skip(int n)
+        {
+            int skipped = Math.min(n, end - pos);
+            pos += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Iterator over the reciprocated edges in a range of the outgoing neighbors array.
+     */
+    private class MutualIterator extends AbstractIntIterator
+    {
+        /**
+         * Position of the next reciprocated edge.
+         */
+        private int pos;
+        /**
+         * End of the range (not included).
+         */
+        private final int end;
+
+        /**
+         * Constructor.
+         * @param start Start of the range.
+         * @param end End of the range (not included).
+         */
+        MutualIterator(int start, int end)
+        {
+            this.pos = start;
+            this.end = end;
+            this.advance();
+        }
+
+        /**
+         * Moves the position to the next reciprocated edge.
+         */
+        private void advance()
+        {
+            while(pos < end && !isReciprocated(pos))
+            {
+                pos++;
+            }
+        }
+
+        @Override
+        public int nextInt()
+        {
+            if(pos >= end) throw new NoSuchElementException();
+            int value = outNodes.get(pos++);
+            this.advance();
+            return value;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return pos < end;
+        }
+    }
+
+    /**
+     * Iterator over the union of the outgoing and incoming neighbors of a node.
+     */
+    private class UnionIterator extends AbstractIntIterator
+    {
+        /**
+         * Current position in the outgoing neighbors array.
+         */
+        private int outPos;
+        /**
+         * End of the outgoing neighbors (not included).
+         */
+        private final int outEnd;
+        /**
+         * Current position in the incoming neighbors array.
+         */
+        private int inPos;
+        /**
+         * End of the incoming neighbors (not included).
+         */
+        private final int inEnd;
+
+        /**
+         * Constructor.
+         * @param outStart Start of the outgoing neighbors.
+         * @param outEnd End of the outgoing neighbors (not included).
+         * @param inStart Start of the incoming neighbors.
+         * @param inEnd End of the incoming neighbors (not included).
+         */
+        UnionIterator(int outStart, int outEnd, int inStart, int inEnd)
+        {
+            this.outPos = outStart;
+            this.outEnd = outEnd;
+            this.inPos = inStart;
+            this.inEnd = inEnd;
+        }
+
+        @Override
+        public int nextInt()
+        {
+            if(!this.hasNext()) throw new NoSuchElementException();
+            if(inPos >= inEnd || (outPos < outEnd && outNodes.get(outPos) < inNodes.get(inPos)))
+            {
+                return outNodes.get(outPos++);
+            }
+            if(outPos >= outEnd || inNodes.get(inPos) < outNodes.get(outPos))
+            {
+                return inNodes.get(inPos++);
+            }
+            inPos++;
+            return outNodes.get(outPos++);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return outPos < outEnd || inPos < inEnd;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.csr;
+
+import es.uam.eps.ir.knnbandit.graph.UndirectedUnweightedGraph;
+import es.uam.eps.ir.knnbandit.graph.index.fast.FastIndex;
+import java.nio.IntBuffer;
+
+/**
+ * Immutable undirected unweighted graph, stored in compressed sparse row format. Every edge
+ * appears in the neighbor lists of both endpoints.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <V> Type of the vertices.
+ * @see CSRGraph#build(java.util.List, int[], int[], int, boolean)
+ */
+public class CSRUndirectedUnweightedGraph<V> extends CSRGraph<V> implements UndirectedUnweightedGraph<V>
+{
+    /**
+     * Constructor.
+     * @param vertices Index of vertices.
+     * @param offsets Position of the first neighbor of each node.
+     * @param nodes Neighbors of the nodes, sorted for each node.
+     * @param numEdges Number of edges.
+     */
+    CSRUndirectedUnweightedGraph(FastIndex<V> vertices, IntBuffer offsets, IntBuffer nodes, long numEdges)
+    {
+        super(vertices, offsets, nodes, offsets, nodes, null, numEdges);
+    }
+}
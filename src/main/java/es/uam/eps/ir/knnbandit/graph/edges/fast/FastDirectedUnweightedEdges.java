@@ -13,12 +13,13 @@ import es.uam.eps.ir.knnbandit.graph.edges.DirectedEdges;
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeType;
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeWeight;
 import es.uam.eps.ir.knnbandit.graph.edges.UnweightedEdges;
-import es.uam.eps.ir.knnbandit.utils.OrderedListCombiner;
+import es.uam.eps.ir.knnbandit.utils.OrderedIntListCombiner;
 import es.uam.eps.ir.knnbandit.utils.Tuple2oo;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
-import es.uam.eps.ir.knnbandit.graph.index.FastUnweightedAutoRelation;
-import es.uam.eps.ir.knnbandit.graph.index.FastWeightedAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveIntAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveUnweightedAutoRelation;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -40,7 +41,28 @@ public class FastDirectedUnweightedEdges extends FastEdges implements DirectedEd
      */
     public FastDirectedUnweightedEdges()
     {
-        super(new FastUnweightedAutoRelation<>(), new FastWeightedAutoRelation<>());
+        super(new FastPrimitiveUnweightedAutoRelation<>(), new FastPrimitiveIntAutoRelation());
+    }
+
+    /**
+     * Constructor. Builds the edges from the adjacency lists of the nodes, at once.
+     * @param adjacency Adjacency lists (outgoing neighbors of each node). They cannot contain repeated nodes.
+     */
+    public FastDirectedUnweightedEdges(List<List<Integer>> adjacency)
+    {
+        super(new FastPrimitiveUnweightedAutoRelation<>(adjacency), new FastPrimitiveIntAutoRelation(adjacency, EdgeType.getDefaultValue()));
+        this.numEdges = countEdges(adjacency, true);
+    }
+
+    /**
+     * Constructor. Builds the edges from the adjacency lists of the nodes, at once.
+     * @param adjacency Adjacency lists (outgoing neighbors of each node), sorted in ascending order. They cannot contain repeated nodes.
+     * @param types Types of the edges, in the same order as the adjacency lists.
+     */
+    public FastDirectedUnweightedEdges(List<List<Integer>> adjacency, List<IntArrayList> types)
+    {
+        super(new FastPrimitiveUnweightedAutoRelation<>(adjacency), new FastPrimitiveIntAutoRelation(adjacency, types));
+        this.numEdges = countEdges(adjacency, true);
     }
 
     @Override
@@ -163,35 +185,43 @@ public class FastDirectedUnweightedEdges extends FastEdges implements DirectedEd
         return this.weights.firstsWithSeconds();
     }
 
+    @Override
+    public Stream<Integer> getNeighbourNodes(int node)
+    {
+        return OrderedIntListCombiner.mergeLists(this.getIncidentList(node), this.getAdjacentList(node)).stream();
+    }
+
+    @Override
+    public Stream<Integer> getMutualNodes(int node)
+    {
+        return OrderedIntListCombiner.intersectLists(this.getIncidentList(node), this.getAdjacentList(node)).stream();
+    }
+
+    @Override
+    public long getNeighbourCount(int node)
+    {
+        return OrderedIntListCombiner.mergeListsSize(this.getIncidentList(node), this.getAdjacentList(node));
+    }
+
+    @Override
+    public long getMutualCount(int node)
+    {
+        return OrderedIntListCombiner.intersectListsSize(this.getIncidentList(node), this.getAdjacentList(node));
+    }
+
     @Override
     public IntStream getNodesWithEdges() 
     {
-        Iterator<Integer> iteratorIncident = this.getNodesWithIncidentEdges().iterator();
-        Iterator<Integer> iteratorAdjacent = this.getNodesWithAdjacentEdges().iterator();
+        int[] incident = this.getNodesWithIncidentEdges().toArray();
+        int[] adjacent = this.getNodesWithAdjacentEdges().toArray();
         
-        List<Integer> users = OrderedListCombiner.mergeLists(iteratorAdjacent, iteratorIncident, Comparator.naturalOrder(), (x, y) -> x);
-        return users.stream().mapToInt(x->x);
+        IntArrayList users = OrderedIntListCombiner.mergeLists(adjacent, 0, adjacent.length, incident, 0, incident.length);
+        return IntStream.of(users.elements()).limit(users.size());
     }
     
     @Override
     public IntStream getNodesWithMutualEdges()
     {
-        List<Integer> users = new ArrayList<>();
-        
-        Iterator<Integer> iteratorIncident = this.getNodesWithIncidentEdges().iterator();
-        while(iteratorIncident.hasNext())
-        {
-            int idx = iteratorIncident.next();
-            Stream<Integer> incident = this.getIncidentNodes(idx);
-            Stream<Integer> adjacent = this.getAdjacentNodes(idx);
-            
-            boolean value = OrderedListCombiner.intersectionHaslements(incident, adjacent, Comparator.naturalOrder());
-            if(value)
-            {
-                users.add(idx);
-            }
-        }
-        
-        return users.stream().mapToInt(x->x);
+        return this.getNodesWithIncidentEdges().filter(this::hasMutualEdges);
     }    
 }
@@ -13,10 +13,13 @@ import es.uam.eps.ir.knnbandit.graph.edges.DirectedEdges;
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeType;
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeWeight;
 import es.uam.eps.ir.knnbandit.graph.edges.WeightedEdges;
-import es.uam.eps.ir.knnbandit.utils.OrderedListCombiner;
+import es.uam.eps.ir.knnbandit.utils.OrderedIntListCombiner;
 import es.uam.eps.ir.knnbandit.utils.Tuple2oo;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
-import es.uam.eps.ir.knnbandit.graph.index.FastWeightedAutoRelation;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveDoubleAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveIntAutoRelation;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -38,7 +41,19 @@ public class FastDirectedWeightedEdges extends FastEdges implements DirectedEdge
      */
     public FastDirectedWeightedEdges()
     {
-        super(new FastWeightedAutoRelation<>(), new FastWeightedAutoRelation<>());
+        super(new FastPrimitiveDoubleAutoRelation(), new FastPrimitiveIntAutoRelation());
+    }
+
+    /**
+     * Constructor. Builds the edges from the adjacency lists of the nodes, at once.
+     * @param adjacency Adjacency lists (outgoing neighbors of each node), sorted in ascending order. They cannot contain repeated nodes.
+     * @param weights Weights of the edges, in the same order as the adjacency lists.
+     * @param types Types of the edges, in the same order as the adjacency lists.
+     */
+    public FastDirectedWeightedEdges(List<List<Integer>> adjacency, List<DoubleArrayList> weights, List<IntArrayList> types)
+    {
+        super(new FastPrimitiveDoubleAutoRelation(adjacency, weights), new FastPrimitiveIntAutoRelation(adjacency, types));
+        this.numEdges = countEdges(adjacency, true);
     }
 
     @Override
@@ -177,35 +192,43 @@ public class FastDirectedWeightedEdges extends FastEdges implements DirectedEdge
         return this.weights.firstsWithSeconds();
     }
 
+    @Override
+    public Stream<Integer> getNeighbourNodes(int node)
+    {
+        return OrderedIntListCombiner.mergeLists(this.getIncidentList(node), this.getAdjacentList(node)).stream();
+    }
+
+    @Override
+    public Stream<Integer> getMutualNodes(int node)
+    {
+        return OrderedIntListCombiner.intersectLists(this.getIncidentList(node), this.getAdjacentList(node)).stream();
+    }
+
+    @Override
+    public long getNeighbourCount(int node)
+    {
+        return OrderedIntListCombiner.mergeListsSize(this.getIncidentList(node), this.getAdjacentList(node));
+    }
+
+    @Override
+    public long getMutualCount(int node)
+    {
+        return OrderedIntListCombiner.intersectListsSize(this.getIncidentList(node), this.getAdjacentList(node));
+    }
+
     @Override
     public IntStream getNodesWithEdges() 
     {
-        Iterator<Integer> iteratorIncident = this.getNodesWithIncidentEdges().iterator();
-        Iterator<Integer> iteratorAdjacent = this.getNodesWithAdjacentEdges().iterator();
+        int[] incident = this.getNodesWithIncidentEdges().toArray();
+        int[] adjacent = this.getNodesWithAdjacentEdges().toArray();
         
-        List<Integer> users = OrderedListCombiner.mergeLists(iteratorAdjacent, iteratorIncident, Comparator.naturalOrder(), (x, y) -> x);
-        return users.stream().mapToInt(x->x);
+        IntArrayList users = OrderedIntListCombiner.mergeLists(adjacent, 0, adjacent.length, incident, 0, incident.length);
+        return IntStream.of(users.elements()).limit(users.size());
     }
     
     @Override
     public IntStream getNodesWithMutualEdges()
     {
-        List<Integer> users = new ArrayList<>();
-        
-        Iterator<Integer> iteratorIncident = this.getNodesWithIncidentEdges().iterator();
-        while(iteratorIncident.hasNext())
-        {
-            int idx = iteratorIncident.next();
-            Stream<Integer> incident = this.getIncidentNodes(idx);
-            Stream<Integer> adjacent = this.getAdjacentNodes(idx);
-            
-            boolean value = OrderedListCombiner.intersectionHaslements(incident, adjacent, Comparator.naturalOrder());
-            if(value)
-            {
-                users.add(idx);
-            }
-        }
-        
-        return users.stream().mapToInt(x->x);
+        return this.getNodesWithIncidentEdges().filter(this::hasMutualEdges);
     }    
 }
@@ -12,11 +12,13 @@ package es.uam.eps.ir.knnbandit.graph.edges.fast;
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeType;
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeWeight;
 import es.uam.eps.ir.knnbandit.graph.edges.Edges;
-import es.uam.eps.ir.knnbandit.utils.OrderedListCombiner;
+import es.uam.eps.ir.knnbandit.utils.OrderedIntListCombiner;
 import es.uam.eps.ir.knnbandit.graph.index.AutoRelation;
-import java.util.Comparator;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveAutoRelation;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.List;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 /**
  * Abstract fast implementation of class Edges.
@@ -48,6 +50,32 @@ public abstract class FastEdges implements Edges
         this.weights = weights;
         this.types = types;
     }
+
+    /**
+     * Counts the edges of a graph, given its adjacency lists.
+     * @param adjacency The adjacency lists (outgoing neighbors of each node). In undirected graphs, they
+     * must be symmetric (if v is a neighbor of u, u is a neighbor of v).
+     * @param directed True if the graph is directed, false otherwise.
+     * @return the number of edges.
+     */
+    protected static long countEdges(List<List<Integer>> adjacency, boolean directed)
+    {
+        if(directed)
+        {
+            return adjacency.stream().mapToLong(List::size).sum();
+        }
+
+        long count = 0L;
+        for(int i = 0; i < adjacency.size(); ++i)
+        {
+            for(int j : adjacency.get(i))
+            {
+                // Each edge appears twice, except self-loops.
+                if(j >= i) count++;
+            }
+        }
+        return count;
+    }
     
     @Override
     public boolean containsEdge(int orig, int dest)
@@ -152,9 +180,76 @@ public abstract class FastEdges implements Edges
     @Override
     public boolean hasMutualEdges(int node)
     {
-        Stream<Integer> incident = this.getIncidentNodes(node);
-        Stream<Integer> adjacent = this.getAdjacentNodes(node);
-        
-        return OrderedListCombiner.intersectionHaslements(incident, adjacent, Comparator.naturalOrder());
+        return OrderedIntListCombiner.intersectionHasElements(this.getIncidentList(node), this.getAdjacentList(node));
+    }
+
+    /**
+     * Removes all the edges of a node, keeping its identifier, so the identifiers of the rest of
+     * nodes do not change.
+     * @param idx The identifier of the node.
+     * @return true if everything went OK, false otherwise.
+     */
+    public boolean clearNode(int idx)
+    {
+        long toDel = this.getNodeEdgeCount(idx);
+        boolean weightClear = this.weights.clear(idx);
+        boolean typesClear = this.types.clear(idx);
+        if(weightClear && typesClear)
+        {
+            this.numEdges -= toDel;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a set of nodes without edges at once, and renumbers the remaining ones.
+     * @param map The new identifier of each node (-1 for the nodes to remove), preserving their order.
+     */
+    public void compact(int[] map)
+    {
+        this.weights.compact(map);
+        this.types.compact(map);
+    }
+
+    /**
+     * Obtains the number of edges a node participates in.
+     * @param idx The identifier of the node.
+     * @return the number of edges.
+     */
+    protected long getNodeEdgeCount(int idx)
+    {
+        // Self-loops are both incident and adjacent edges.
+        long count = this.getAdjacentCount(idx) + this.getIncidentCount(idx);
+        if(this.weights.containsPair(idx, idx)) count--;
+        return count;
+    }
+
+    /**
+     * Obtains the incident nodes of a node, as a list of identifiers.
+     * @param node The node.
+     * @return the incident nodes, sorted in ascending order. The list must not be modified.
+     */
+    protected IntList getIncidentList(int node)
+    {
+        if(this.weights instanceof FastPrimitiveAutoRelation)
+        {
+            return ((FastPrimitiveAutoRelation<Double>) this.weights).getFirstList(node);
+        }
+        return new IntArrayList(this.getIncidentNodes(node).iterator());
+    }
+
+    /**
+     * Obtains the adjacent nodes of a node, as a list of identifiers.
+     * @param node The node.
+     * @return the adjacent nodes, sorted in ascending order. The list must not be modified.
+     */
+    protected IntList getAdjacentList(int node)
+    {
+        if(this.weights instanceof FastPrimitiveAutoRelation)
+        {
+            return ((FastPrimitiveAutoRelation<Double>) this.weights).getSecondList(node);
+        }
+        return new IntArrayList(this.getAdjacentNodes(node).iterator());
     }
 }
@@ -14,10 +14,12 @@ import es.uam.eps.ir.knnbandit.graph.edges.EdgeWeight;
 import es.uam.eps.ir.knnbandit.graph.edges.UndirectedEdges;
 import es.uam.eps.ir.knnbandit.graph.edges.UnweightedEdges;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
-import es.uam.eps.ir.knnbandit.graph.index.FastUnweightedAutoRelation;
-import es.uam.eps.ir.knnbandit.graph.index.FastWeightedAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveIntAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveUnweightedAutoRelation;
 
+import java.util.List;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -33,7 +35,30 @@ public class FastUndirectedUnweightedEdges extends FastEdges implements Undirect
      */
     public FastUndirectedUnweightedEdges()
     {
-        super(new FastUnweightedAutoRelation<>(), new FastWeightedAutoRelation<>());
+        super(new FastPrimitiveUnweightedAutoRelation<>(), new FastPrimitiveIntAutoRelation());
+    }
+
+    /**
+     * Constructor. Builds the edges from the neighborhoods of the nodes, at once.
+     * @param adjacency Neighbors of each node. They must be symmetric (if v is a neighbor of u, u
+     * is a neighbor of v), and cannot contain repeated nodes.
+     */
+    public FastUndirectedUnweightedEdges(List<List<Integer>> adjacency)
+    {
+        super(new FastPrimitiveUnweightedAutoRelation<>(adjacency), new FastPrimitiveIntAutoRelation(adjacency, EdgeType.getDefaultValue()));
+        this.numEdges = countEdges(adjacency, false);
+    }
+
+    /**
+     * Constructor. Builds the edges from the neighborhoods of the nodes, at once.
+     * @param adjacency Neighbors of each node, sorted in ascending order. They must be symmetric
+     * (if v is a neighbor of u, u is a neighbor of v), and cannot contain repeated nodes.
+     * @param types Types of the edges, in the same order as the neighbors.
+     */
+    public FastUndirectedUnweightedEdges(List<List<Integer>> adjacency, List<IntArrayList> types)
+    {
+        super(new FastPrimitiveUnweightedAutoRelation<>(adjacency), new FastPrimitiveIntAutoRelation(adjacency, types));
+        this.numEdges = countEdges(adjacency, false);
     }
 
     @Override
@@ -109,6 +134,12 @@ public class FastUndirectedUnweightedEdges extends FastEdges implements Undirect
         return false;
     }
     
+    @Override
+    protected long getNodeEdgeCount(int idx)
+    {
+        return this.getAdjacentCount(idx);
+    }
+
     @Override
     public IntStream getNodesWithIncidentEdges() 
     {
@@ -14,8 +14,12 @@ import es.uam.eps.ir.knnbandit.graph.edges.EdgeWeight;
 import es.uam.eps.ir.knnbandit.graph.edges.UndirectedEdges;
 import es.uam.eps.ir.knnbandit.graph.edges.WeightedEdges;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
-import es.uam.eps.ir.knnbandit.graph.index.FastWeightedAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveDoubleAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.index.FastPrimitiveIntAutoRelation;
+import java.util.List;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -32,7 +36,20 @@ public class FastUndirectedWeightedEdges extends FastEdges implements Undirected
      */
     public FastUndirectedWeightedEdges()
     {
-        super(new FastWeightedAutoRelation<>(), new FastWeightedAutoRelation<>());
+        super(new FastPrimitiveDoubleAutoRelation(), new FastPrimitiveIntAutoRelation());
+    }
+
+    /**
+     * Constructor. Builds the edges from the adjacency lists of the nodes, at once.
+     * @param adjacency Neighbors of each node, sorted in ascending order. They must be symmetric
+     * (if v is a neighbor of u, u is a neighbor of v, with the same weight and type), and cannot contain repeated nodes.
+     * @param weights Weights of the edges, in the same order as the adjacency lists.
+     * @param types Types of the edges, in the same order as the adjacency lists.
+     */
+    public FastUndirectedWeightedEdges(List<List<Integer>> adjacency, List<DoubleArrayList> weights, List<IntArrayList> types)
+    {
+        super(new FastPrimitiveDoubleAutoRelation(adjacency, weights), new FastPrimitiveIntAutoRelation(adjacency, types));
+        this.numEdges = countEdges(adjacency, false);
     }
 
     @Override
@@ -114,6 +131,12 @@ public class FastUndirectedWeightedEdges extends FastEdges implements Undirected
         return false;
     }
     
+    @Override
+    protected long getNodeEdgeCount(int idx)
+    {
+        return this.getAdjacentCount(idx);
+    }
+
     @Override
     public IntStream getNodesWithIncidentEdges() 
     {
@@ -11,13 +11,25 @@ package es.uam.eps.ir.knnbandit.graph.fast;
 
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.knnbandit.graph.edges.EdgeType;
+import es.uam.eps.ir.knnbandit.graph.edges.EdgeWeight;
 import es.uam.eps.ir.knnbandit.graph.edges.Edges;
+import es.uam.eps.ir.knnbandit.graph.edges.fast.FastDirectedUnweightedEdges;
+import es.uam.eps.ir.knnbandit.graph.edges.fast.FastEdges;
+import es.uam.eps.ir.knnbandit.graph.edges.fast.FastDirectedWeightedEdges;
+import es.uam.eps.ir.knnbandit.graph.edges.fast.FastUndirectedUnweightedEdges;
+import es.uam.eps.ir.knnbandit.graph.edges.fast.FastUndirectedWeightedEdges;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.knnbandit.graph.Graph;
 import es.uam.eps.ir.knnbandit.graph.Weight;
 
 import es.uam.eps.ir.knnbandit.graph.index.Index;
+import es.uam.eps.ir.knnbandit.graph.index.fast.FastIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -48,6 +60,107 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
         this.vertices = vertices;
         this.edges = edges;
     }
+
+    /**
+     * Builds a graph from a list of edges, at once. If an edge appears several times (in any direction, if
+     * the graph is undirected), only its first appearance is kept, as when the edges are added one by one.
+     * @param <V> Type of the vertices.
+     * @param vertices Index of the vertices. Edges refer to the vertices by their identifiers in it.
+     * @param origins Origin of each edge.
+     * @param dests Destination of each edge.
+     * @param weights Weight of each edge (null for the default weight). Ignored if the graph is unweighted.
+     * @param types Type of each edge (null for the default type).
+     * @param numEdges Number of edges (the first numEdges values of the arrays are used).
+     * @param directed True if the graph is directed, false otherwise.
+     * @param weighted True if the graph is weighted, false otherwise.
+     * @return the graph.
+     */
+    public static <V> FastGraph<V> build(FastIndex<V> vertices, int[] origins, int[] dests, double[] weights, int[] types, int numEdges, boolean directed, boolean weighted)
+    {
+        // In tombstone mode, the identifiers of the removed nodes are kept (without edges).
+        int numNodes = vertices.numIdentifiers();
+
+        // Edges of each node (in both directions, if the graph is undirected), in order of appearance.
+        int[] offsets = new int[numNodes + 1];
+        for(int i = 0; i < numEdges; ++i)
+        {
+            offsets[origins[i] + 1]++;
+            if(!directed && origins[i] != dests[i])
+            {
+                offsets[dests[i] + 1]++;
+            }
+        }
+        for(int u = 0; u < numNodes; ++u)
+        {
+            offsets[u + 1] += offsets[u];
+        }
+
+        // Each edge is stored as a single value: the neighbor in the highest bits, the edge in the lowest ones.
+        int[] pos = new int[numNodes];
+        System.arraycopy(offsets, 0, pos, 0, numNodes);
+        long[] keys = new long[offsets[numNodes]];
+        for(int i = 0; i < numEdges; ++i)
+        {
+            keys[pos[origins[i]]++] = ((long) dests[i] << 32) | i;
+            if(!directed && origins[i] != dests[i])
+            {
+                keys[pos[dests[i]]++] = ((long) origins[i] << 32) | i;
+            }
+        }
+
+        // Sorts the neighbors of each node, keeping only the first appearance of each one.
+        IntArrayList[] adjacency = new IntArrayList[numNodes];
+        DoubleArrayList[] weightLists = new DoubleArrayList[numNodes];
+        IntArrayList[] typeLists = new IntArrayList[numNodes];
+        IntStream.range(0, numNodes).parallel().forEach(u ->
+        {
+            int start = offsets[u];
+            int end = offsets[u + 1];
+            LongArrays.quickSort(keys, start, end);
+
+            IntArrayList list = new IntArrayList(end - start);
+            DoubleArrayList weightList = new DoubleArrayList(weighted ? end - start : 0);
+            IntArrayList typeList = new IntArrayList(end - start);
+            for(int p = start; p < end; ++p)
+            {
+                int v = (int) (keys[p] >>> 32);
+                int edge = (int) keys[p];
+                if(list.isEmpty() || list.getInt(list.size() - 1) != v)
+                {
+                    list.add(v);
+                    if(weighted)
+                    {
+                        weightList.add(weights == null ? EdgeWeight.getDefaultValue() : weights[edge]);
+                    }
+                    typeList.add(types == null ? EdgeType.getDefaultValue() : types[edge]);
+                }
+            }
+            list.trim();
+            weightList.trim();
+            typeList.trim();
+            adjacency[u] = list;
+            weightLists[u] = weightList;
+            typeLists[u] = typeList;
+        });
+
+        List<List<Integer>> adjacencyList = Arrays.<List<Integer>>asList(adjacency);
+        if(directed && weighted)
+        {
+            return new FastDirectedWeightedGraph<>(vertices, new FastDirectedWeightedEdges(adjacencyList, Arrays.asList(weightLists), Arrays.asList(typeLists)));
+        }
+        else if(directed)
+        {
+            return new FastDirectedUnweightedGraph<>(vertices, new FastDirectedUnweightedEdges(adjacencyList, Arrays.asList(typeLists)));
+        }
+        else if(weighted)
+        {
+            return new FastUndirectedWeightedGraph<>(vertices, new FastUndirectedWeightedEdges(adjacencyList, Arrays.asList(weightLists), Arrays.asList(typeLists)));
+        }
+        else
+        {
+            return new FastUndirectedUnweightedGraph<>(vertices, new FastUndirectedUnweightedEdges(adjacencyList, Arrays.asList(typeLists)));
+        }
+    }
     
     @Override
     public boolean addNode(V node)
@@ -312,6 +425,17 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
     public boolean removeNode(V u)
     {
         int uidx = this.vertices.object2idx(u);
+        if(uidx < 0)
+        {
+            return false;
+        }
+
+        // In tombstone mode, the edges are removed, but the identifiers are not shifted.
+        if(this.isTombstoneMode())
+        {
+            return ((FastEdges) this.edges).clearNode(uidx) && this.vertices.removeObject(u) >= 0;
+        }
+
         if(this.edges.removeNode(uidx))
         {
             if(this.vertices.removeObject(u) >= 0)
@@ -322,6 +446,40 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
         return false;
     }
 
+    /**
+     * Obtains the number of node identifiers in use. In tombstone mode, it includes the identifiers
+     * of the removed nodes, until the graph is compacted.
+     * @return the number of identifiers.
+     */
+    protected int numIdentifiers()
+    {
+        return this.vertices instanceof FastIndex ? ((FastIndex<V>) this.vertices).numIdentifiers() : this.vertices.numObjects();
+    }
+
+    /**
+     * Checks whether removed nodes leave a free identifier (tombstone) instead of shifting the
+     * identifiers of the rest of nodes.
+     * @return true if the graph works in tombstone mode, false otherwise.
+     */
+    public boolean isTombstoneMode()
+    {
+        return this.vertices instanceof FastIndex && ((FastIndex<V>) this.vertices).isTombstoneMode() && this.edges instanceof FastEdges;
+    }
+
+    /**
+     * Removes the tombstones left by the removed nodes, renumbering the rest of nodes so that
+     * their identifiers are contiguous again (keeping their relative order). It does nothing if
+     * the graph does not work in tombstone mode.
+     */
+    public void compact()
+    {
+        if(this.isTombstoneMode())
+        {
+            int[] map = ((FastIndex<V>) this.vertices).compact();
+            ((FastEdges) this.edges).compact(map);
+        }
+    }
+
     @Override
     public int object2idx(V u)
     {
@@ -431,7 +589,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
     @Override
     public Stream<V> getIsolatedNodes() 
     {
-        return this.edges.getIsolatedNodes().mapToObj(i -> this.idx2object(i));
+        return this.edges.getIsolatedNodes().mapToObj(i -> this.idx2object(i)).filter(v -> v != null);
     }
 
     @Override
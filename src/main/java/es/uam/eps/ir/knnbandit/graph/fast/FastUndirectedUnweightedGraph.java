@@ -31,18 +31,40 @@ public class FastUndirectedUnweightedGraph<V> extends FastGraph<V> implements Un
      */
     public FastUndirectedUnweightedGraph()
     {
-        super(new FastIndex<>(), new FastUndirectedUnweightedEdges());
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param tombstones True if removed nodes leave a free identifier until the graph is compacted,
+     * false if the identifiers of the following nodes are reduced.
+     */
+    public FastUndirectedUnweightedGraph(boolean tombstones)
+    {
+        super(new FastIndex<>(tombstones), new FastUndirectedUnweightedEdges());
+    }
+
+    /**
+     * Constructor. Builds the graph from already existing vertices and edges.
+     * @param vertices Index of the vertices.
+     * @param edges The edges. Their identifiers must be the ones in the index.
+     */
+    public FastUndirectedUnweightedGraph(FastIndex<V> vertices, FastUndirectedUnweightedEdges edges)
+    {
+        super(vertices, edges);
     }
     
     @Override
     public DoubleMatrix2D getAdjacencyMatrix(EdgeOrientation direction)
     {
-        DoubleMatrix2D matrix = new SparseDoubleMatrix2D(new Long(this.getVertexCount()).intValue(), new Long(this.getVertexCount()).intValue());
+        DoubleMatrix2D matrix = new SparseDoubleMatrix2D(this.numIdentifiers(), this.numIdentifiers());
+        // In tombstone mode, the rows and columns of the removed nodes are left empty.
+        int[] ids = this.getAllNodesIds().toArray();
 
         // Creation of the adjacency matrix.
-        for(int row = 0; row < matrix.rows(); ++row)
+        for(int row : ids)
         {   
-            for(int col = 0; col < matrix.rows(); ++col)
+            for(int col : ids)
             {
                 
                 if(this.containsEdge(this.vertices.idx2object(col), this.vertices.idx2object(row)) ||
@@ -58,7 +80,7 @@ public class FastUndirectedUnweightedGraph<V> extends FastGraph<V> implements Un
     @Override
     public Matrix getAdjacencyMatrixMTJ(EdgeOrientation direction)
     {
-        Matrix matrix = new LinkedSparseMatrix(new Long(this.getVertexCount()).intValue(), new Long(this.getVertexCount()).intValue());
+        Matrix matrix = new LinkedSparseMatrix(this.numIdentifiers(), this.numIdentifiers());
         this.vertices.getAllObjects().forEach(u -> 
         {
             int uIdx = this.vertices.object2idx(u);
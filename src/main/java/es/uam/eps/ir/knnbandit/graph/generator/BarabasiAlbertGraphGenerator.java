@@ -0,0 +1,143 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.generator;
+
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Generates Barabási-Albert preferential attachment graphs. Starting from m isolated nodes,
+ * each new node is linked to m different existing nodes, chosen with probability proportional
+ * to their degree. The first new node is linked to all the initial ones.
+ *
+ * Nodes are chosen by picking uniformly at random an endpoint of the already created edges, so
+ * each node is added in time O(m) (Batagelj and Brandes, 2005). In directed graphs, edges go
+ * from the new node to the existing ones, and the degree is the total degree.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class BarabasiAlbertGraphGenerator extends RandomGraphGenerator
+{
+    /**
+     * Number of nodes.
+     */
+    private int numNodes;
+    /**
+     * Number of edges created by each new node.
+     */
+    private int numEdges;
+    /**
+     * Indicates whether the graph is going to be directed.
+     */
+    private boolean directed;
+    /**
+     * Random seed.
+     */
+    private long seed;
+    /**
+     * Indicates whether the graph has been configured.
+     */
+    private boolean configured = false;
+
+    @Override
+    public void configure(Object... configuration)
+    {
+        if(!(configuration == null) && configuration.length == 4)
+        {
+            int auxNumNodes = (int) configuration[0];
+            int auxNumEdges = (int) configuration[1];
+            boolean auxDirected = (boolean) configuration[2];
+            long auxSeed = (long) configuration[3];
+
+            this.configure(auxNumNodes, auxNumEdges, auxDirected, auxSeed);
+        }
+        else
+        {
+            configured = false;
+        }
+    }
+
+    /**
+     * Configures the graph.
+     * @param numNodes Number of nodes.
+     * @param numEdges Number of edges created by each new node.
+     * @param directed Whether the graph should be directed.
+     * @param seed Random seed.
+     */
+    public void configure(int numNodes, int numEdges, boolean directed, long seed)
+    {
+        this.numNodes = numNodes;
+        this.numEdges = numEdges;
+        this.directed = directed;
+        this.seed = seed;
+        this.configured = true;
+    }
+
+    @Override
+    public Graph<Long> generate() throws GeneratorNotConfiguredException, GeneratorBadConfiguredException
+    {
+        if(configured == false)
+            throw new GeneratorNotConfiguredException("Barabási-Albert: the generator was not configured");
+        if(numEdges <= 0 || numNodes <= numEdges)
+            throw new GeneratorBadConfiguredException("Barabási-Albert: the number of edges per node must be positive, and smaller than the number of nodes");
+
+        int m = numEdges;
+        long total = 2L * m * (numNodes - m);
+        if(total > Integer.MAX_VALUE - 8)
+            throw new GeneratorBadConfiguredException("Barabási-Albert: too many edges");
+
+        // Endpoints of the created edges: every node appears as many times as its degree.
+        int[] endpoints = new int[(int) total];
+        int numEndpoints = 0;
+        IntArrayList edges = new IntArrayList((int) total);
+        SplittableRandom rng = rng(seed, -1);
+        int[] targets = new int[m];
+
+        for(int u = m; u < numNodes; ++u)
+        {
+            if(u == m)
+            {
+                for(int j = 0; j < m; ++j)
+                {
+                    targets[j] = j;
+                }
+            }
+            else
+            {
+                // Choose m different nodes proportionally to their degree.
+                int count = 0;
+                while(count < m)
+                {
+                    int v = endpoints[rng.nextInt(numEndpoints)];
+                    boolean repeated = false;
+                    for(int j = 0; j < count && !repeated; ++j)
+                    {
+                        repeated = targets[j] == v;
+                    }
+                    if(!repeated)
+                    {
+                        targets[count++] = v;
+                    }
+                }
+            }
+
+            for(int j = 0; j < m; ++j)
+            {
+                edges.add(u);
+                edges.add(targets[j]);
+                endpoints[numEndpoints++] = u;
+                endpoints[numEndpoints++] = targets[j];
+            }
+        }
+
+        return build(numNodes, directed, new IntArrayList[]{edges});
+    }
+}
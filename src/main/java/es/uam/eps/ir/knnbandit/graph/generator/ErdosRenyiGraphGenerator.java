@@ -0,0 +1,105 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.generator;
+
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Generates Erdős-Rényi random graphs: each pair of different nodes is linked with the same
+ * probability, independently of the rest.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class ErdosRenyiGraphGenerator extends RandomGraphGenerator
+{
+    /**
+     * Number of nodes.
+     */
+    private int numNodes;
+    /**
+     * Probability of linking each pair of nodes.
+     */
+    private double prob;
+    /**
+     * Indicates whether the graph is going to be directed.
+     */
+    private boolean directed;
+    /**
+     * Random seed.
+     */
+    private long seed;
+    /**
+     * Indicates whether the graph has been configured.
+     */
+    private boolean configured = false;
+
+    @Override
+    public void configure(Object... configuration)
+    {
+        if(!(configuration == null) && configuration.length == 4)
+        {
+            int auxNumNodes = (int) configuration[0];
+            double auxProb = (double) configuration[1];
+            boolean auxDirected = (boolean) configuration[2];
+            long auxSeed = (long) configuration[3];
+
+            this.configure(auxNumNodes, auxProb, auxDirected, auxSeed);
+        }
+        else
+        {
+            configured = false;
+        }
+    }
+
+    /**
+     * Configures the graph.
+     * @param numNodes Number of nodes.
+     * @param prob Probability of linking each pair of nodes.
+     * @param directed Whether the graph should be directed.
+     * @param seed Random seed.
+     */
+    public void configure(int numNodes, double prob, boolean directed, long seed)
+    {
+        this.numNodes = numNodes;
+        this.prob = prob;
+        this.directed = directed;
+        this.seed = seed;
+        this.configured = true;
+    }
+
+    @Override
+    public Graph<Long> generate() throws GeneratorNotConfiguredException, GeneratorBadConfiguredException
+    {
+        if(configured == false)
+            throw new GeneratorNotConfiguredException("Erdős-Rényi: the generator was not configured");
+        if(numNodes < 0)
+            throw new GeneratorBadConfiguredException("Erdős-Rényi: the number of nodes cannot be negative");
+        if(prob < 0.0 || prob > 1.0)
+            throw new GeneratorBadConfiguredException("Erdős-Rényi: the probability must be between 0 and 1");
+
+        IntArrayList[] edges = new IntArrayList[numNodes];
+        IntStream.range(0, numNodes).parallel().forEach(u ->
+        {
+            edges[u] = new IntArrayList();
+            if(directed)
+            {
+                sample(rng(seed, u), 0, numNodes, u, prob, u, edges[u]);
+            }
+            else
+            {
+                sample(rng(seed, u), u + 1, numNodes, -1, prob, u, edges[u]);
+            }
+        });
+
+        return build(numNodes, directed, edges);
+    }
+}
@@ -0,0 +1,189 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.generator;
+
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import es.uam.eps.ir.knnbandit.graph.edges.fast.FastDirectedUnweightedEdges;
+import es.uam.eps.ir.knnbandit.graph.edges.fast.FastUndirectedUnweightedEdges;
+import es.uam.eps.ir.knnbandit.graph.fast.FastDirectedUnweightedGraph;
+import es.uam.eps.ir.knnbandit.graph.fast.FastUndirectedUnweightedGraph;
+import es.uam.eps.ir.knnbandit.graph.index.fast.FastIndex;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Base class for random graph generators. Nodes are identified by the numbers 0 to n-1. Edges
+ * are first sampled (in parallel, when possible), and then the graph is built at once from the
+ * adjacency lists of the nodes, instead of adding the edges one by one.
+ *
+ * The random number generator of each node depends only on the seed and the node, so the
+ * generated graph does not depend on the number of threads.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public abstract class RandomGraphGenerator implements GraphGenerator<Long>
+{
+    /**
+     * Constant for deriving the seeds of the nodes.
+     */
+    private final static long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Obtains the random number generator for a node.
+     * @param seed The random seed.
+     * @param node The node.
+     * @return the random number generator.
+     */
+    protected static SplittableRandom rng(long seed, int node)
+    {
+        return new SplittableRandom(seed ^ (GOLDEN * (node + 1L)));
+    }
+
+    /**
+     * Samples each position in a range with a fixed probability, by skipping geometrically
+     * distributed gaps between the selected positions (Batagelj and Brandes, 2005). It takes
+     * time proportional to the number of selected positions, instead of the size of the range.
+     * @param rng Random number generator.
+     * @param from Start of the range.
+     * @param to End of the range (not included).
+     * @param exclude Position which is never selected (for instance, to avoid self-loops), or -1.
+     * @param p The probability of selecting each position.
+     * @param origin Origin of the edges to the selected positions.
+     * @param edges List in which the (origin, position) pairs are added.
+     */
+    protected static void sample(SplittableRandom rng, int from, int to, int exclude, double p, int origin, IntArrayList edges)
+    {
+        if(p <= 0.0 || to <= from)
+        {
+            return;
+        }
+
+        boolean excluded = exclude >= from && exclude < to;
+        long length = (long) to - from - (excluded ? 1 : 0);
+        double logq = Math.log(1.0 - p);
+        long pos = -1;
+        while(true)
+        {
+            if(p >= 1.0)
+            {
+                pos++;
+            }
+            else
+            {
+                double skip = Math.floor(Math.log(1.0 - rng.nextDouble()) / logq);
+                if(skip >= length - pos - 1)
+                {
+                    return;
+                }
+                pos += 1 + (long) skip;
+            }
+
+            if(pos >= length)
+            {
+                return;
+            }
+            int dest = from + (int) pos;
+            if(excluded && dest >= exclude)
+            {
+                dest++;
+            }
+            edges.add(origin);
+            edges.add(dest);
+        }
+    }
+
+    /**
+     * Builds a graph from a list of edges. Repeated edges are only added once.
+     * @param numNodes Number of nodes.
+     * @param directed True if the graph is directed, false otherwise.
+     * @param edges Edges, as (origin, destination) pairs, in several lists.
+     * @return the graph.
+     */
+    protected static Graph<Long> build(int numNodes, boolean directed, IntArrayList[] edges)
+    {
+        // Count the edges of each node, to allocate the lists only once.
+        int[] degrees = new int[numNodes];
+        for(IntArrayList list : edges)
+        {
+            for(int i = 0; i < list.size(); i += 2)
+            {
+                degrees[list.getInt(i)]++;
+                if(!directed)
+                {
+                    degrees[list.getInt(i + 1)]++;
+                }
+            }
+        }
+
+        IntArrayList[] adjacency = new IntArrayList[numNodes];
+        for(int u = 0; u < numNodes; ++u)
+        {
+            adjacency[u] = new IntArrayList(degrees[u]);
+        }
+        for(IntArrayList list : edges)
+        {
+            for(int i = 0; i < list.size(); i += 2)
+            {
+                int orig = list.getInt(i);
+                int dest = list.getInt(i + 1);
+                adjacency[orig].add(dest);
+                if(!directed && orig != dest)
+                {
+                    adjacency[dest].add(orig);
+                }
+            }
+        }
+
+        // Sort the lists, and remove repeated neighbors.
+        IntStream.range(0, numNodes).parallel().forEach(u ->
+        {
+            IntArrayList list = adjacency[u];
+            int[] elements = list.elements();
+            int size = list.size();
+            IntArrays.quickSort(elements, 0, size);
+            int unique = 0;
+            for(int i = 0; i < size; ++i)
+            {
+                if(unique == 0 || elements[unique - 1] != elements[i])
+                {
+                    elements[unique++] = elements[i];
+                }
+            }
+            list.size(unique);
+            list.trim();
+        });
+
+        FastIndex<Long> vertices = new FastIndex<>();
+        for(long u = 0; u < numNodes; ++u)
+        {
+            vertices.addObject(u);
+        }
+
+        List<List<Integer>> lists = new ArrayList<>(numNodes);
+        for(IntArrayList list : adjacency)
+        {
+            lists.add(list);
+        }
+
+        if(directed)
+        {
+            return new FastDirectedUnweightedGraph<>(vertices, new FastDirectedUnweightedEdges(lists));
+        }
+        else
+        {
+            return new FastUndirectedUnweightedGraph<>(vertices, new FastUndirectedUnweightedEdges(lists));
+        }
+    }
+}
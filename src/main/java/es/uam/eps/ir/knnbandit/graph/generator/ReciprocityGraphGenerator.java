@@ -0,0 +1,131 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.generator;
+
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates directed random graphs with a controlled reciprocity. Each pair of nodes is
+ * connected with the same probability, independently of the rest. Connected pairs are linked
+ * in both directions with probability q, and in a single (random) direction otherwise. The
+ * expected fraction of reciprocated edges (the reciprocity) is then 2q/(1+q).
+ *
+ * The graph is configured with the average out-degree of the nodes and the reciprocity.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class ReciprocityGraphGenerator extends RandomGraphGenerator
+{
+    /**
+     * Number of nodes.
+     */
+    private int numNodes;
+    /**
+     * Average out-degree of the nodes.
+     */
+    private double avgDegree;
+    /**
+     * Fraction of the edges which are reciprocated.
+     */
+    private double reciprocity;
+    /**
+     * Random seed.
+     */
+    private long seed;
+    /**
+     * Indicates whether the graph has been configured.
+     */
+    private boolean configured = false;
+
+    @Override
+    public void configure(Object... configuration)
+    {
+        if(!(configuration == null) && configuration.length == 4)
+        {
+            int auxNumNodes = (int) configuration[0];
+            double auxAvgDegree = (double) configuration[1];
+            double auxReciprocity = (double) configuration[2];
+            long auxSeed = (long) configuration[3];
+
+            this.configure(auxNumNodes, auxAvgDegree, auxReciprocity, auxSeed);
+        }
+        else
+        {
+            configured = false;
+        }
+    }
+
+    /**
+     * Configures the graph.
+     * @param numNodes Number of nodes.
+     * @param avgDegree Average out-degree of the nodes.
+     * @param reciprocity Fraction of the edges which are reciprocated (between 0 and 1).
+     * @param seed Random seed.
+     */
+    public void configure(int numNodes, double avgDegree, double reciprocity, long seed)
+    {
+        this.numNodes = numNodes;
+        this.avgDegree = avgDegree;
+        this.reciprocity = reciprocity;
+        this.seed = seed;
+        this.configured = true;
+    }
+
+    @Override
+    public Graph<Long> generate() throws GeneratorNotConfiguredException, GeneratorBadConfiguredException
+    {
+        if(configured == false)
+            throw new GeneratorNotConfiguredException("Reciprocity: the generator was not configured");
+        if(numNodes < 2)
+            throw new GeneratorBadConfiguredException("Reciprocity: there must be at least two nodes");
+        if(reciprocity < 0.0 || reciprocity > 1.0)
+            throw new GeneratorBadConfiguredException("Reciprocity: the reciprocity must be between 0 and 1");
+
+        // Probability that a connected pair is mutual, and probability of connecting a pair.
+        double mutual = reciprocity / (2.0 - reciprocity);
+        double prob = 2.0 * avgDegree / ((1.0 + mutual) * (numNodes - 1.0));
+        if(prob < 0.0 || prob > 1.0)
+            throw new GeneratorBadConfiguredException("Reciprocity: the average degree is not valid for this number of nodes and reciprocity");
+
+        double forward = mutual + (1.0 - mutual) / 2.0;
+
+        IntArrayList[] edges = new IntArrayList[numNodes];
+        IntStream.range(0, numNodes).parallel().forEach(u ->
+        {
+            SplittableRandom rng = rng(seed, u);
+            IntArrayList pairs = new IntArrayList();
+            sample(rng, u + 1, numNodes, -1, prob, u, pairs);
+
+            IntArrayList list = new IntArrayList(pairs.size());
+            for(int i = 0; i < pairs.size(); i += 2)
+            {
+                int v = pairs.getInt(i + 1);
+                // Mutual pairs are in [0, mutual), single edges u -> v in [mutual, forward), v -> u in [forward, 1).
+                double r = rng.nextDouble();
+                if(r < forward)
+                {
+                    list.add(u);
+                    list.add(v);
+                }
+                if(r < mutual || r >= forward)
+                {
+                    list.add(v);
+                    list.add(u);
+                }
+            }
+            edges[u] = list;
+        });
+
+        return build(numNodes, true, edges);
+    }
+}
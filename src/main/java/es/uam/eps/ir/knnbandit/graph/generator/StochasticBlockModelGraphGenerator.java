@@ -0,0 +1,154 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.generator;
+
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates graphs following a stochastic block model. Nodes are split in blocks of (almost)
+ * the same size, formed by consecutive nodes. Pairs of nodes in the same block are linked with
+ * a certain probability, and pairs of nodes in different blocks with another one.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class StochasticBlockModelGraphGenerator extends RandomGraphGenerator
+{
+    /**
+     * Number of nodes.
+     */
+    private int numNodes;
+    /**
+     * Number of blocks.
+     */
+    private int numBlocks;
+    /**
+     * Probability of linking two nodes in the same block.
+     */
+    private double probIn;
+    /**
+     * Probability of linking two nodes in different blocks.
+     */
+    private double probOut;
+    /**
+     * Indicates whether the graph is going to be directed.
+     */
+    private boolean directed;
+    /**
+     * Random seed.
+     */
+    private long seed;
+    /**
+     * Indicates whether the graph has been configured.
+     */
+    private boolean configured = false;
+
+    @Override
+    public void configure(Object... configuration)
+    {
+        if(!(configuration == null) && configuration.length == 6)
+        {
+            int auxNumNodes = (int) configuration[0];
+            int auxNumBlocks = (int) configuration[1];
+            double auxProbIn = (double) configuration[2];
+            double auxProbOut = (double) configuration[3];
+            boolean auxDirected = (boolean) configuration[4];
+            long auxSeed = (long) configuration[5];
+
+            this.configure(auxNumNodes, auxNumBlocks, auxProbIn, auxProbOut, auxDirected, auxSeed);
+        }
+        else
+        {
+            configured = false;
+        }
+    }
+
+    /**
+     * Configures the graph.
+     * @param numNodes Number of nodes.
+     * @param numBlocks Number of blocks.
+     * @param probIn Probability of linking two nodes in the same block.
+     * @param probOut Probability of linking two nodes in different blocks.
+     * @param directed Whether the graph should be directed.
+     * @param seed Random seed.
+     */
+    public void configure(int numNodes, int numBlocks, double probIn, double probOut, boolean directed, long seed)
+    {
+        this.numNodes = numNodes;
+        this.numBlocks = numBlocks;
+        this.probIn = probIn;
+        this.probOut = probOut;
+        this.directed = directed;
+        this.seed = seed;
+        this.configured = true;
+    }
+
+    @Override
+    public Graph<Long> generate() throws GeneratorNotConfiguredException, GeneratorBadConfiguredException
+    {
+        if(configured == false)
+            throw new GeneratorNotConfiguredException("Stochastic block model: the generator was not configured");
+        if(numNodes < 0)
+            throw new GeneratorBadConfiguredException("Stochastic block model: the number of nodes cannot be negative");
+        if(numBlocks <= 0 || numBlocks > Math.max(1, numNodes))
+            throw new GeneratorBadConfiguredException("Stochastic block model: the number of blocks must be between 1 and the number of nodes");
+        if(probIn < 0.0 || probIn > 1.0 || probOut < 0.0 || probOut > 1.0)
+            throw new GeneratorBadConfiguredException("Stochastic block model: the probabilities must be between 0 and 1");
+
+        IntArrayList[] edges = new IntArrayList[numNodes];
+        IntStream.range(0, numNodes).parallel().forEach(u ->
+        {
+            edges[u] = new IntArrayList();
+            SplittableRandom rng = rng(seed, u);
+            int block = this.block(u);
+            for(int b = 0; b < numBlocks; ++b)
+            {
+                int start = this.blockStart(b);
+                int end = this.blockStart(b + 1);
+                double p = (b == block) ? probIn : probOut;
+                if(directed)
+                {
+                    sample(rng, start, end, u, p, u, edges[u]);
+                }
+                else if(end > u + 1)
+                {
+                    sample(rng, Math.max(start, u + 1), end, -1, p, u, edges[u]);
+                }
+            }
+        });
+
+        return build(numNodes, directed, edges);
+    }
+
+    /**
+     * Obtains the first node of a block.
+     * @param block The block (numBlocks for the end of the last block).
+     * @return the first node of the block.
+     */
+    private int blockStart(int block)
+    {
+        return (int) ((long) block * numNodes / numBlocks);
+    }
+
+    /**
+     * Obtains the block of a node.
+     * @param node The node.
+     * @return the block.
+     */
+    private int block(int node)
+    {
+        int block = (int) (((long) node * numBlocks + numBlocks - 1) / numNodes);
+        while(this.blockStart(block) > node) --block;
+        while(this.blockStart(block + 1) <= node) ++block;
+        return block;
+    }
+}
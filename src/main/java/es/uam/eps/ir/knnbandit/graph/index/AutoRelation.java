@@ -9,6 +9,8 @@
  */
 package es.uam.eps.ir.knnbandit.graph.index;
 
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.IntStream;
 
@@ -64,6 +66,34 @@ public interface AutoRelation<W> extends Relation<W>
      * @return true if everything went OK, false otherwise.
      */
     public boolean remove(int idx);
+
+    /**
+     * Removes all the relations of an element, without removing the element, so the identifiers
+     * of the remaining elements do not change.
+     * @param idx The identifier of the element.
+     * @return true if everything went OK, false otherwise.
+     */
+    public default boolean clear(int idx)
+    {
+        if(idx < 0 || idx >= this.numFirst())
+        {
+            return false;
+        }
+
+        List<Integer> firsts = this.getIdsFirst(idx).map(IdxValue::getIdx).collect(Collectors.toList());
+        List<Integer> seconds = this.getIdsSecond(idx).map(IdxValue::getIdx).collect(Collectors.toList());
+        firsts.forEach(first -> this.removePair(first, idx));
+        seconds.forEach(second -> this.removePair(idx, second));
+        return true;
+    }
+
+    /**
+     * Removes a set of elements at once, and renumbers the remaining ones. The removed elements
+     * must not be related to any other element (see {@link #clear(int)}).
+     * @param map The new identifier of each element (-1 for the elements to remove). It must
+     * preserve the order of the remaining elements.
+     */
+    public void compact(int[] map);
     
     /**
      * Obtains the elements in an autorelation which are related to none.
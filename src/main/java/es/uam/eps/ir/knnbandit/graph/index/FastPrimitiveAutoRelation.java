@@ -0,0 +1,513 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.index;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Fast implementation of a relation of objects with themselves, which stores the identifiers
+ * of the related objects in primitive int arrays (instead of lists of boxed integers). Subclasses
+ * decide how the weights are stored, in parallel with the identifiers.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <W> Type of the weights.
+ */
+public abstract class FastPrimitiveAutoRelation<W> implements AutoRelation<W>
+{
+    /**
+     * Links from the first kind of objects to the second. Indexed by the second. E.g. incident edges.
+     */
+    protected final List<IntArrayList> firstIdxList;
+    /**
+     * Links from the second kind of objects to the first. Indexed by the first. E.g. outgoing edges.
+     */
+    protected final List<IntArrayList> secondIdxList;
+
+    /**
+     * Constructor. Builds an empty autorelation.
+     */
+    public FastPrimitiveAutoRelation()
+    {
+        this.firstIdxList = new ArrayList<>();
+        this.secondIdxList = new ArrayList<>();
+    }
+
+    /**
+     * Constructor. Builds an autorelation from the elements related to each element. The lists are
+     * copied, so they can be modified afterwards.
+     * @param idxList Elements related to each element (e.g. outgoing edges). They cannot contain repeated elements.
+     */
+    public FastPrimitiveAutoRelation(List<List<Integer>> idxList)
+    {
+        int size = idxList.size();
+        this.secondIdxList = new ArrayList<>(size);
+        int[] counts = new int[size];
+        for(List<Integer> list : idxList)
+        {
+            IntArrayList copy = (list instanceof IntList) ? new IntArrayList((IntList) list) : new IntArrayList(list);
+            for(int i = 0; i < copy.size(); ++i)
+            {
+                counts[copy.getInt(i)]++;
+            }
+            this.secondIdxList.add(copy);
+        }
+
+        // Sorts the lists.
+        this.secondIdxList.parallelStream().forEach(l -> IntArrays.quickSort(l.elements(), 0, l.size()));
+
+        // Elements are visited in ascending order, so the reverse lists are already sorted.
+        this.firstIdxList = new ArrayList<>(size);
+        for(int i = 0; i < size; ++i)
+        {
+            this.firstIdxList.add(new IntArrayList(counts[i]));
+        }
+        for(int i = 0; i < size; ++i)
+        {
+            IntArrayList list = this.secondIdxList.get(i);
+            for(int j = 0; j < list.size(); ++j)
+            {
+                this.firstIdxList.get(list.getInt(j)).add(i);
+            }
+        }
+    }
+
+    /**
+     * Adds the (empty) weight lists of a new element.
+     */
+    protected abstract void addValueLists();
+
+    /**
+     * Removes the weight lists of an element.
+     * @param idx The identifier of the element.
+     */
+    protected abstract void removeValueLists(int idx);
+
+    /**
+     * Inserts a weight in a list.
+     * @param firstList True if the weight belongs to the list of first elements, false otherwise.
+     * @param idx The element the list belongs to.
+     * @param pos The position of the weight in the list.
+     * @param weight The weight.
+     */
+    protected abstract void insertValue(boolean firstList, int idx, int pos, W weight);
+
+    /**
+     * Replaces a weight in a list.
+     * @param firstList True if the weight belongs to the list of first elements, false otherwise.
+     * @param idx The element the list belongs to.
+     * @param pos The position of the weight in the list.
+     * @param weight The new weight.
+     */
+    protected abstract void setValue(boolean firstList, int idx, int pos, W weight);
+
+    /**
+     * Removes a weight from a list.
+     * @param firstList True if the weight belongs to the list of first elements, false otherwise.
+     * @param idx The element the list belongs to.
+     * @param pos The position of the weight in the list.
+     */
+    protected abstract void removeValue(boolean firstList, int idx, int pos);
+
+    /**
+     * Obtains a weight from a list.
+     * @param firstList True if the weight belongs to the list of first elements, false otherwise.
+     * @param idx The element the list belongs to.
+     * @param pos The position of the weight in the list.
+     * @return the weight.
+     */
+    protected abstract W getValue(boolean firstList, int idx, int pos);
+
+    @Override
+    public int numFirst()
+    {
+        return this.secondIdxList.size();
+    }
+
+    @Override
+    public int numFirst(int secondIdx)
+    {
+        return this.firstIdxList.get(secondIdx).size();
+    }
+
+    @Override
+    public int numSecond(int firstIdx)
+    {
+        return this.secondIdxList.get(firstIdx).size();
+    }
+
+    @Override
+    public Stream<Integer> getAllFirst()
+    {
+        return IntStream.range(0, this.numFirst()).boxed();
+    }
+
+    @Override
+    public Stream<IdxValue<W>> getIdsFirst(int secondIdx)
+    {
+        IntArrayList list = this.firstIdxList.get(secondIdx);
+        return IntStream.range(0, list.size()).mapToObj(pos -> new IdxValue<>(list.getInt(pos), this.getValue(true, secondIdx, pos)));
+    }
+
+    @Override
+    public Stream<IdxValue<W>> getIdsSecond(int firstIdx)
+    {
+        IntArrayList list = this.secondIdxList.get(firstIdx);
+        return IntStream.range(0, list.size()).mapToObj(pos -> new IdxValue<>(list.getInt(pos), this.getValue(false, firstIdx, pos)));
+    }
+
+    /**
+     * Obtains the elements related to a second element (e.g. incident nodes), sorted in ascending order.
+     * The list must not be modified.
+     * @param secondIdx Identifier of the second element.
+     * @return the list of elements.
+     */
+    public IntList getFirstList(int secondIdx)
+    {
+        return this.firstIdxList.get(secondIdx);
+    }
+
+    /**
+     * Obtains the elements related to a first element (e.g. adjacent nodes), sorted in ascending order.
+     * The list must not be modified.
+     * @param firstIdx Identifier of the first element.
+     * @return the list of elements.
+     */
+    public IntList getSecondList(int firstIdx)
+    {
+        return this.secondIdxList.get(firstIdx);
+    }
+
+    @Override
+    public boolean addFirstItem(int firstIdx)
+    {
+        if(firstIdx != this.secondIdxList.size())
+            return false;
+
+        this.firstIdxList.add(new IntArrayList());
+        this.secondIdxList.add(new IntArrayList());
+        this.addValueLists();
+        return true;
+    }
+
+    @Override
+    public boolean addRelation(int firstIdx, int secondIdx, W weight)
+    {
+        if(!this.isValid(firstIdx, secondIdx))
+            return false;
+
+        int pos = this.binarySearch(firstIdx, secondIdx, true);
+        if(pos >= 0)
+            return false;
+        this.insert(true, secondIdx, -pos - 1, firstIdx, weight);
+
+        pos = this.binarySearch(firstIdx, secondIdx, false);
+        if(pos >= 0)
+            return false;
+        this.insert(false, firstIdx, -pos - 1, secondIdx, weight);
+        return true;
+    }
+
+    @Override
+    public W getValue(int firstIdx, int secondIdx)
+    {
+        if(!this.isValid(firstIdx, secondIdx))
+            return null;
+
+        int pos = this.binarySearch(firstIdx, secondIdx, true);
+        if(pos < 0)
+            return null;
+        return this.getValue(true, secondIdx, pos);
+    }
+
+    @Override
+    public boolean containsPair(int firstIdx, int secondIdx)
+    {
+        return this.isValid(firstIdx, secondIdx) && this.binarySearch(firstIdx, secondIdx, true) >= 0;
+    }
+
+    @Override
+    public boolean updatePair(int firstIdx, int secondIdx, W weight, boolean createRelation)
+    {
+        if(!this.isValid(firstIdx, secondIdx))
+            return false;
+
+        int pos = this.binarySearch(firstIdx, secondIdx, true);
+        if(pos < 0 && !createRelation)
+            return false;
+        else if(pos < 0)
+            this.insert(true, secondIdx, -pos - 1, firstIdx, weight);
+        else
+            this.setValue(true, secondIdx, pos, weight);
+
+        pos = this.binarySearch(firstIdx, secondIdx, false);
+        if(pos < 0)
+            this.insert(false, firstIdx, -pos - 1, secondIdx, weight);
+        else
+            this.setValue(false, firstIdx, pos, weight);
+        return true;
+    }
+
+    @Override
+    public boolean removePair(int firstIdx, int secondIdx)
+    {
+        if(!this.isValid(firstIdx, secondIdx))
+            return false;
+
+        int pos = this.binarySearch(firstIdx, secondIdx, true);
+        if(pos < 0)
+            return false;
+        this.firstIdxList.get(secondIdx).removeInt(pos);
+        this.removeValue(true, secondIdx, pos);
+
+        pos = this.binarySearch(firstIdx, secondIdx, false);
+        if(pos < 0)
+            return false;
+        this.secondIdxList.get(firstIdx).removeInt(pos);
+        this.removeValue(false, firstIdx, pos);
+        return true;
+    }
+
+    @Override
+    public boolean remove(int idx)
+    {
+        if(idx < 0 || idx >= this.numFirst())
+        {
+            return false;
+        }
+
+        // First, we remove the lists corresponding to the element to delete.
+        this.firstIdxList.remove(idx);
+        this.secondIdxList.remove(idx);
+        this.removeValueLists(idx);
+
+        // Then, we remove the element from the rest of the lists, and reduce the greater identifiers.
+        IntStream.range(0, this.numFirst()).parallel().forEach(i ->
+        {
+            this.removeFromList(true, i, idx, true);
+            this.removeFromList(false, i, idx, true);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean clear(int idx)
+    {
+        if(idx < 0 || idx >= this.numFirst())
+        {
+            return false;
+        }
+
+        // The element is removed from the lists of its neighbors, and then its own lists are emptied.
+        IntArrayList firsts = this.firstIdxList.get(idx);
+        for(int i = 0; i < firsts.size(); ++i)
+        {
+            this.removeFromList(false, firsts.getInt(i), idx, false);
+        }
+        this.clearList(true, idx);
+
+        IntArrayList seconds = this.secondIdxList.get(idx);
+        for(int i = 0; i < seconds.size(); ++i)
+        {
+            this.removeFromList(true, seconds.getInt(i), idx, false);
+        }
+        this.clearList(false, idx);
+        return true;
+    }
+
+    @Override
+    public void compact(int[] map)
+    {
+        // Removed elements are not related to any other, so the remaining lists only contain remaining
+        // elements, and the order is preserved when they are renumbered.
+        IntStream.range(0, this.numFirst()).parallel().filter(i -> map[i] >= 0).forEach(i ->
+        {
+            for(IntArrayList list : new IntArrayList[]{this.firstIdxList.get(i), this.secondIdxList.get(i)})
+            {
+                int[] elements = list.elements();
+                for(int j = 0; j < list.size(); ++j)
+                {
+                    elements[j] = map[elements[j]];
+                }
+            }
+        });
+        compactLists(this.firstIdxList, map);
+        compactLists(this.secondIdxList, map);
+        this.compactValueLists(map);
+    }
+
+    /**
+     * Removes the weight lists of a set of elements (see {@link #compactLists(java.util.List, int[])}).
+     * @param map The new identifier of each element (-1 for the elements to remove).
+     */
+    protected abstract void compactValueLists(int[] map);
+
+    /**
+     * Moves the lists of the remaining elements to their new positions, and removes the rest.
+     * @param <L> Type of the lists.
+     * @param lists The lists, indexed by element.
+     * @param map The new identifier of each element (-1 for the elements to remove), preserving the order.
+     */
+    protected static <L> void compactLists(List<L> lists, int[] map)
+    {
+        int size = 0;
+        for(int i = 0; i < lists.size(); ++i)
+        {
+            if(map[i] >= 0)
+            {
+                lists.set(map[i], lists.get(i));
+                size++;
+            }
+        }
+        lists.subList(size, lists.size()).clear();
+    }
+
+    /**
+     * Empties the list of an element, together with its weights.
+     * @param firstList True if the list is a list of first elements, false otherwise.
+     * @param listIdx The element the list belongs to.
+     */
+    private void clearList(boolean firstList, int listIdx)
+    {
+        IntArrayList list = firstList ? this.firstIdxList.get(listIdx) : this.secondIdxList.get(listIdx);
+        // Weights are removed from the end, so no value is moved.
+        for(int pos = list.size() - 1; pos >= 0; --pos)
+        {
+            this.removeValue(firstList, listIdx, pos);
+        }
+        list.clear();
+    }
+
+    /**
+     * Removes an element from a list, and, optionally, reduces by one the identifiers greater than it.
+     * @param firstList True if the list is a list of first elements, false otherwise.
+     * @param listIdx The element the list belongs to.
+     * @param idx The element to remove.
+     * @param renumber True if the identifiers greater than the element have to be reduced.
+     */
+    private void removeFromList(boolean firstList, int listIdx, int idx, boolean renumber)
+    {
+        IntArrayList list = firstList ? this.firstIdxList.get(listIdx) : this.secondIdxList.get(listIdx);
+        int pos = IntArrays.binarySearch(list.elements(), 0, list.size(), idx);
+        if(pos >= 0)
+        {
+            list.removeInt(pos);
+            this.removeValue(firstList, listIdx, pos);
+        }
+        else
+        {
+            pos = -pos - 1;
+        }
+
+        if(!renumber)
+        {
+            return;
+        }
+
+        // Lists are sorted, so only the tail of the list has to be updated.
+        int[] elements = list.elements();
+        for(int j = pos; j < list.size(); ++j)
+        {
+            elements[j]--;
+        }
+    }
+
+    /**
+     * Inserts an element and its weight in a list.
+     * @param firstList True if the list is a list of first elements, false otherwise.
+     * @param listIdx The element the list belongs to.
+     * @param pos The position of the new element.
+     * @param idx The new element.
+     * @param weight The weight.
+     */
+    private void insert(boolean firstList, int listIdx, int pos, int idx, W weight)
+    {
+        IntArrayList list = firstList ? this.firstIdxList.get(listIdx) : this.secondIdxList.get(listIdx);
+        list.add(pos, idx);
+        this.insertValue(firstList, listIdx, pos, weight);
+    }
+
+    /**
+     * Checks whether both elements exist.
+     * @param firstIdx The first element.
+     * @param secondIdx The second element.
+     * @return true if both elements exist, false otherwise.
+     */
+    private boolean isValid(int firstIdx, int secondIdx)
+    {
+        return firstIdx >= 0 && secondIdx >= 0 && firstIdx < this.secondIdxList.size() && secondIdx < this.firstIdxList.size();
+    }
+
+    /**
+     * Given a valid pair (firstIdx, secondIdx), finds it in the relation using binary search.
+     * @param firstIdx The first element.
+     * @param secondIdx The second element.
+     * @param firstList True if the element has to be found on the list of first elements,
+     * false if it has to be found on the list of second elements.
+     * @return the index of the element if it exists, - (insertpoint - 1) if it does not,
+     * where insertpoint is the corresponding point where the element should be added.
+     */
+    private int binarySearch(int firstIdx, int secondIdx, boolean firstList)
+    {
+        IntArrayList list = firstList ? this.firstIdxList.get(secondIdx) : this.secondIdxList.get(firstIdx);
+        return IntArrays.binarySearch(list.elements(), 0, list.size(), firstList ? firstIdx : secondIdx);
+    }
+
+    @Override
+    public IntStream firstsWithSeconds()
+    {
+        return IntStream.range(0, this.numFirst()).filter(i -> !this.secondIdxList.get(i).isEmpty());
+    }
+
+    @Override
+    public IntStream secondsWithFirsts()
+    {
+        return IntStream.range(0, this.numFirst()).filter(i -> !this.firstIdxList.get(i).isEmpty());
+    }
+
+    @Override
+    public boolean hasSeconds(int firstIdx)
+    {
+        if(firstIdx < 0 || this.numFirst() <= firstIdx)
+            return false;
+        return !this.secondIdxList.get(firstIdx).isEmpty();
+    }
+
+    @Override
+    public boolean hasFirsts(int secondIdx)
+    {
+        if(secondIdx < 0 || this.numFirst() <= secondIdx)
+            return false;
+        return !this.firstIdxList.get(secondIdx).isEmpty();
+    }
+
+    @Override
+    public IntStream getIsolatedFirsts()
+    {
+        return IntStream.range(0, this.numFirst()).filter(i -> this.secondIdxList.get(i).isEmpty());
+    }
+
+    @Override
+    public IntStream getIsolatedSeconds()
+    {
+        return IntStream.range(0, this.numFirst()).filter(i -> this.firstIdxList.get(i).isEmpty());
+    }
+
+    @Override
+    public IntStream getIsolated()
+    {
+        return IntStream.range(0, this.numFirst()).filter(i -> this.firstIdxList.get(i).isEmpty() && this.secondIdxList.get(i).isEmpty());
+    }
+}
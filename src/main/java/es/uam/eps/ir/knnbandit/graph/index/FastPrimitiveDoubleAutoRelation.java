@@ -0,0 +1,151 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.index;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fast implementation for a relation of objects with themselves with real-valued weights. Identifiers and
+ * weights are stored in parallel primitive arrays.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class FastPrimitiveDoubleAutoRelation extends FastPrimitiveAutoRelation<Double>
+{
+    /**
+     * Weights of the links from the first kind of objects to the second. Indexed by the second.
+     */
+    private final List<DoubleArrayList> firstValueList;
+    /**
+     * Weights of the links from the second kind of objects to the first. Indexed by the first.
+     */
+    private final List<DoubleArrayList> secondValueList;
+
+    /**
+     * Constructor. Builds an empty autorelation.
+     */
+    public FastPrimitiveDoubleAutoRelation()
+    {
+        super();
+        this.firstValueList = new ArrayList<>();
+        this.secondValueList = new ArrayList<>();
+    }
+
+    /**
+     * Constructor. Builds an autorelation from previous information, where all the pairs have the same weight.
+     * @param idxList Elements related to each element (e.g. outgoing edges). They cannot contain repeated elements.
+     * @param weight The weight of every pair.
+     */
+    public FastPrimitiveDoubleAutoRelation(List<List<Integer>> idxList, double weight)
+    {
+        super(idxList);
+        int size = idxList.size();
+        this.firstValueList = new ArrayList<>(size);
+        this.secondValueList = new ArrayList<>(size);
+        for(int i = 0; i < size; ++i)
+        {
+            this.firstValueList.add(filled(this.firstIdxList.get(i).size(), weight));
+            this.secondValueList.add(filled(this.secondIdxList.get(i).size(), weight));
+        }
+    }
+
+    /**
+     * Constructor. Builds an autorelation from previous information.
+     * @param idxList Elements related to each element (e.g. outgoing edges), sorted in ascending order. They cannot contain repeated elements.
+     * @param valueList Weights of the pairs, in the same order as the related elements.
+     */
+    public FastPrimitiveDoubleAutoRelation(List<List<Integer>> idxList, List<DoubleArrayList> valueList)
+    {
+        super(idxList);
+        int size = idxList.size();
+        this.firstValueList = new ArrayList<>(size);
+        this.secondValueList = new ArrayList<>(size);
+        for(int i = 0; i < size; ++i)
+        {
+            this.firstValueList.add(new DoubleArrayList(this.firstIdxList.get(i).size()));
+            this.secondValueList.add(new DoubleArrayList(valueList.get(i)));
+        }
+
+        // Elements are visited in ascending order, as in the lists of first elements.
+        for(int i = 0; i < size; ++i)
+        {
+            IntArrayList list = this.secondIdxList.get(i);
+            DoubleArrayList values = valueList.get(i);
+            for(int j = 0; j < list.size(); ++j)
+            {
+                this.firstValueList.get(list.getInt(j)).add(values.getDouble(j));
+            }
+        }
+    }
+
+    /**
+     * Builds a list with the same weight repeated.
+     * @param size The size of the list.
+     * @param weight The weight.
+     * @return the list.
+     */
+    private static DoubleArrayList filled(int size, double weight)
+    {
+        DoubleArrayList list = new DoubleArrayList(size);
+        for(int i = 0; i < size; ++i)
+        {
+            list.add(weight);
+        }
+        return list;
+    }
+
+    @Override
+    protected void addValueLists()
+    {
+        this.firstValueList.add(new DoubleArrayList());
+        this.secondValueList.add(new DoubleArrayList());
+    }
+
+    @Override
+    protected void removeValueLists(int idx)
+    {
+        this.firstValueList.remove(idx);
+        this.secondValueList.remove(idx);
+    }
+
+    @Override
+    protected void compactValueLists(int[] map)
+    {
+        compactLists(this.firstValueList, map);
+        compactLists(this.secondValueList, map);
+    }
+
+    @Override
+    protected void insertValue(boolean firstList, int idx, int pos, Double weight)
+    {
+        (firstList ? this.firstValueList : this.secondValueList).get(idx).add(pos, weight.doubleValue());
+    }
+
+    @Override
+    protected void setValue(boolean firstList, int idx, int pos, Double weight)
+    {
+        (firstList ? this.firstValueList : this.secondValueList).get(idx).set(pos, weight.doubleValue());
+    }
+
+    @Override
+    protected void removeValue(boolean firstList, int idx, int pos)
+    {
+        (firstList ? this.firstValueList : this.secondValueList).get(idx).removeDouble(pos);
+    }
+
+    @Override
+    protected Double getValue(boolean firstList, int idx, int pos)
+    {
+        return (firstList ? this.firstValueList : this.secondValueList).get(idx).getDouble(pos);
+    }
+}
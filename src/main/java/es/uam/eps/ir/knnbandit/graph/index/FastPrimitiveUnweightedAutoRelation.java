@@ -0,0 +1,75 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.index;
+
+import java.util.List;
+
+/**
+ * Fast implementation for an unweighted relation of objects with themselves, which stores the
+ * identifiers of the related objects in primitive int arrays.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <W> Type of the (hypothetical) weights.
+ */
+public class FastPrimitiveUnweightedAutoRelation<W> extends FastPrimitiveAutoRelation<W>
+{
+    /**
+     * Constructor. Builds an empty autorelation.
+     */
+    public FastPrimitiveUnweightedAutoRelation()
+    {
+        super();
+    }
+
+    /**
+     * Constructor. Builds an autorelation from previous information.
+     * @param idxList Elements related to each element (e.g. outgoing edges). They cannot contain repeated elements.
+     */
+    public FastPrimitiveUnweightedAutoRelation(List<List<Integer>> idxList)
+    {
+        super(idxList);
+    }
+
+    @Override
+    protected void addValueLists()
+    {
+    }
+
+    @Override
+    protected void removeValueLists(int idx)
+    {
+    }
+
+    @Override
+    protected void compactValueLists(int[] map)
+    {
+    }
+
+    @Override
+    protected void insertValue(boolean firstList, int idx, int pos, W weight)
+    {
+    }
+
+    @Override
+    protected void setValue(boolean firstList, int idx, int pos, W weight)
+    {
+    }
+
+    @Override
+    protected void removeValue(boolean firstList, int idx, int pos)
+    {
+    }
+
+    @Override
+    protected W getValue(boolean firstList, int idx, int pos)
+    {
+        return null;
+    }
+}
@@ -140,4 +140,32 @@ public class FastUnweightedAutoRelation<W> extends FastUnweightedRelation<W> imp
         });
         return true;
     }
+
+    @Override
+    public void compact(int[] map)
+    {
+        // Renumber the elements in the lists of the remaining elements. Since the order is
+        // preserved, the lists remain sorted.
+        int newSize = 0;
+        for(int i = 0; i < map.length; ++i)
+        {
+            if(map[i] < 0)
+            {
+                continue;
+            }
+
+            List<Integer> auxFList = new ArrayList<>();
+            this.firstIdxList.get(i).forEach(j -> auxFList.add(map[j]));
+            List<Integer> auxSList = new ArrayList<>();
+            this.secondIdxList.get(i).forEach(j -> auxSList.add(map[j]));
+
+            this.firstIdxList.set(map[i], auxFList);
+            this.secondIdxList.set(map[i], auxSList);
+            newSize++;
+        }
+
+        // Then, remove the lists of the deleted elements.
+        this.firstIdxList.subList(newSize, this.firstIdxList.size()).clear();
+        this.secondIdxList.subList(newSize, this.secondIdxList.size()).clear();
+    }
 }
@@ -158,4 +158,32 @@ public class FastWeightedAutoRelation<W> extends FastWeightedRelation<W> impleme
             return !this.firstIdxList.get(i).isEmpty();
         });
     }
+
+    @Override
+    public void compact(int[] map)
+    {
+        // Renumber the elements in the lists of the remaining elements. Since the order is
+        // preserved, the lists remain sorted.
+        int newSize = 0;
+        for(int i = 0; i < map.length; ++i)
+        {
+            if(map[i] < 0)
+            {
+                continue;
+            }
+
+            List<IdxValue<W>> auxFList = new ArrayList<>();
+            this.firstIdxList.get(i).forEach(j -> auxFList.add(new IdxValue<>(map[j.getIdx()], j.getValue())));
+            List<IdxValue<W>> auxSList = new ArrayList<>();
+            this.secondIdxList.get(i).forEach(j -> auxSList.add(new IdxValue<>(map[j.getIdx()], j.getValue())));
+
+            this.firstIdxList.set(map[i], auxFList);
+            this.secondIdxList.set(map[i], auxSList);
+            newSize++;
+        }
+
+        // Then, remove the lists of the deleted elements.
+        this.firstIdxList.subList(newSize, this.firstIdxList.size()).clear();
+        this.secondIdxList.subList(newSize, this.secondIdxList.size()).clear();
+    }
 }
@@ -19,6 +19,10 @@ import java.util.stream.Stream;
 
 /**
  * Fast implementation of a generic index.
+ *
+ * By default, removing an object reduces by one the identifiers of all the objects after it. In
+ * tombstone mode, the identifier of the removed object is just marked as free, so the rest of
+ * identifiers do not change, and identifiers are not contiguous until {@link #compact()} is called.
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  * @param <T> Type of the objects.
@@ -37,15 +41,30 @@ public class FastIndex<T> implements Index<T>
      * Number of objects.
      */
     private int numObjects;
+    /**
+     * True if removed objects leave a free identifier (a tombstone) instead of moving the rest of objects.
+     */
+    private final boolean tombstones;
     
     /**
      * Constructor.
      */
     public FastIndex()
+    {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param tombstones True if removed objects leave a free identifier until the index is compacted, 
+     * false if the identifiers of the following objects are reduced.
+     */
+    public FastIndex(boolean tombstones)
     {
         t2imap = new Object2IntOpenHashMap<>();
         t2imap.defaultReturnValue(-1);
         i2tmap = new ArrayList<>();
+        this.tombstones = tombstones;
     }
     
     @Override
@@ -63,6 +82,10 @@ public class FastIndex<T> implements Index<T>
     @Override
     public Stream<T> getAllObjects()
     {
+        if(this.numObjects < i2tmap.size())
+        {
+            return i2tmap.stream().filter(t -> t != null);
+        }
         return i2tmap.stream();
     }
 
@@ -86,7 +109,7 @@ public class FastIndex<T> implements Index<T>
         int idx = t2imap.getInt(t);
         if(idx == t2imap.defaultReturnValue())
         {
-            idx = t2imap.size();
+            idx = i2tmap.size();
             t2imap.put(t, idx);
             i2tmap.add(t);
             ++this.numObjects;
@@ -99,6 +122,13 @@ public class FastIndex<T> implements Index<T>
     {
         int idx = t2imap.getInt(t);
         if(idx == -1) return -1;
+        if(this.tombstones)
+        {
+            t2imap.removeInt(t);
+            i2tmap.set(idx, null);
+            this.numObjects--;
+            return idx;
+        }
         for(int i = idx + 1; i < this.numObjects; ++i)
         {
             T aux = i2tmap.get(i);
@@ -113,6 +143,57 @@ public class FastIndex<T> implements Index<T>
     @Override
     public IntStream getAllObjectsIds()
     {
+        if(this.numObjects < i2tmap.size())
+        {
+            return IntStream.range(0, i2tmap.size()).filter(idx -> i2tmap.get(idx) != null);
+        }
         return IntStream.range(0, this.numObjects());
-    }    
+    }
+
+    /**
+     * Checks whether removed objects leave a free identifier until the index is compacted.
+     * @return true if the index is in tombstone mode, false otherwise.
+     */
+    public boolean isTombstoneMode()
+    {
+        return this.tombstones;
+    }
+
+    /**
+     * Obtains the number of identifiers in use, including those of removed objects (in tombstone
+     * mode) if the index has not been compacted afterwards.
+     * @return the number of identifiers.
+     */
+    public int numIdentifiers()
+    {
+        return i2tmap.size();
+    }
+
+    /**
+     * Removes the free identifiers left by removed objects, and renumbers the rest of objects,
+     * preserving their order.
+     * @return the new identifier of each old identifier (-1 for free identifiers).
+     */
+    public int[] compact()
+    {
+        int[] map = new int[i2tmap.size()];
+        int newIdx = 0;
+        for(int idx = 0; idx < map.length; ++idx)
+        {
+            T t = i2tmap.get(idx);
+            if(t == null)
+            {
+                map[idx] = -1;
+            }
+            else
+            {
+                map[idx] = newIdx;
+                i2tmap.set(newIdx, t);
+                t2imap.put(t, newIdx);
+                newIdx++;
+            }
+        }
+        i2tmap.subList(newIdx, map.length).clear();
+        return map;
+    }
 }
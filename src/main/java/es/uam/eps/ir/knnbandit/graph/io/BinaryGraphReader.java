@@ -0,0 +1,341 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.io;
+
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import es.uam.eps.ir.knnbandit.graph.csr.CSRGraph;
+import es.uam.eps.ir.knnbandit.graph.fast.FastGraph;
+import es.uam.eps.ir.knnbandit.graph.index.Index;
+import es.uam.eps.ir.knnbandit.graph.index.fast.FastIndex;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import org.ranksys.formats.parsing.Parser;
+
+import static es.uam.eps.ir.knnbandit.graph.io.BinaryGraphWriter.DIRECTED;
+import static es.uam.eps.ir.knnbandit.graph.io.BinaryGraphWriter.HEADER;
+import static es.uam.eps.ir.knnbandit.graph.io.BinaryGraphWriter.MAGIC;
+import static es.uam.eps.ir.knnbandit.graph.io.BinaryGraphWriter.TYPES;
+import static es.uam.eps.ir.knnbandit.graph.io.BinaryGraphWriter.VERSION;
+import static es.uam.eps.ir.knnbandit.graph.io.BinaryGraphWriter.WEIGHTS;
+
+/**
+ * Reads a graph from a binary file written by {@link BinaryGraphWriter}.
+ *
+ * Files are memory-mapped. When neither weights nor types are read, the graph is an immutable
+ * {@link CSRGraph} which reads its neighbors directly from the mapped file, so only the node
+ * identifiers are loaded into the heap. Otherwise (or when the nodes are restricted to an index),
+ * the graph is bulk-loaded into a (modifiable) {@link FastGraph} from the mapped arrays. Each section
+ * of the file is mapped separately, so it cannot exceed 2GB. Graphs read from input streams are
+ * first loaded into memory.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <V> Type of the vertices.
+ */
+public class BinaryGraphReader<V> implements GraphReader<V>
+{
+    /**
+     * Parser for reading the node identifiers.
+     */
+    private final Parser<V> uParser;
+
+    /**
+     * Constructor.
+     * @param uParser Parser for reading the node identifiers.
+     */
+    public BinaryGraphReader(Parser<V> uParser)
+    {
+        this.uParser = uParser;
+    }
+
+    /**
+     * Checks whether a file is a binary graph file.
+     * @param file The file.
+     * @return true if the file starts with the magic number of binary graph files, false otherwise.
+     */
+    public static boolean isBinary(String file)
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            ByteBuffer magic = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while(magic.hasRemaining() && channel.read(magic) > 0);
+            return !magic.hasRemaining() && magic.getLong(0) == MAGIC;
+        }
+        catch(IOException ioe)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public Graph<V> read(String file)
+    {
+        return this.read(file, true, false);
+    }
+
+    @Override
+    public Graph<V> read(String file, boolean readWeights, boolean readTypes)
+    {
+        return this.read(file, readWeights, readTypes, null);
+    }
+
+    @Override
+    public Graph<V> read(String file, boolean readWeights, boolean readTypes, Index<V> nodes)
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            // The mappings remain valid once the channel is closed.
+            return this.read((pos, length) -> channel.map(FileChannel.MapMode.READ_ONLY, pos, length), channel.size(), readWeights, readTypes, nodes);
+        }
+        catch(IOException ioe)
+        {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public Graph<V> read(InputStream stream)
+    {
+        return this.read(stream, true, false);
+    }
+
+    @Override
+    public Graph<V> read(InputStream stream, boolean readWeights, boolean readTypes)
+    {
+        return this.read(stream, readWeights, readTypes, null);
+    }
+
+    @Override
+    public Graph<V> read(InputStream stream, boolean readWeights, boolean readTypes, Index<V> nodes)
+    {
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] bytes = new byte[1 << 16];
+            int read;
+            while((read = stream.read(bytes)) >= 0)
+            {
+                baos.write(bytes, 0, read);
+            }
+            ByteBuffer data = ByteBuffer.wrap(baos.toByteArray());
+            return this.read((pos, length) ->
+            {
+                ByteBuffer aux = data.duplicate();
+                aux.position((int) pos);
+                aux.limit((int) (pos + length));
+                return aux.slice();
+            }, data.capacity(), readWeights, readTypes, nodes);
+        }
+        catch(IOException ioe)
+        {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads a graph.
+     * @param file Access to the sections of the file.
+     * @param size Size of the file (in bytes).
+     * @param readWeights True if the weights have to be read (when they are stored).
+     * @param readTypes True if the types have to be read (when they are stored).
+     * @param nodes An index containing the nodes in the network (null if all the nodes are read).
+     * @return the graph.
+     * @throws IOException if the file is not valid, or something fails while reading.
+     */
+    private Graph<V> read(Sections file, long size, boolean readWeights, boolean readTypes, Index<V> nodes) throws IOException
+    {
+        if(size < HEADER)
+        {
+            throw new IOException("Not a binary graph file");
+        }
+        ByteBuffer header = file.get(0, HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        if(header.getLong() != MAGIC)
+        {
+            throw new IOException("Not a binary graph file");
+        }
+        int version = header.getInt();
+        if(version != VERSION)
+        {
+            throw new IOException("Unsupported binary graph file version: " + version);
+        }
+        int flags = header.getInt();
+        int numNodes = header.getInt();
+        header.getInt();
+        long numEntries = header.getLong();
+        long numEdges = header.getLong();
+        long idBytes = header.getLong();
+
+        boolean directed = (flags & DIRECTED) != 0;
+        boolean storedWeights = (flags & WEIGHTS) != 0;
+        boolean storedTypes = (flags & TYPES) != 0;
+        if(numNodes < 0 || numEntries < 0 || numEntries > Integer.MAX_VALUE || idBytes < 0)
+        {
+            throw new IOException("Corrupted binary graph file");
+        }
+        int m = (int) numEntries;
+
+        long pos = HEADER;
+        IntBuffer idOffsets = map(file, pos, 4L*(numNodes + 1)).asIntBuffer();
+        pos = align(pos + 4L*(numNodes + 1));
+        ByteBuffer ids = map(file, pos, idBytes);
+        pos = align(pos + idBytes);
+
+        IntBuffer outOffsets = map(file, pos, 4L*(numNodes + 1)).asIntBuffer();
+        pos = align(pos + 4L*(numNodes + 1));
+        IntBuffer outNodes = map(file, pos, 4L*m).asIntBuffer();
+        pos = align(pos + 4L*m);
+
+        IntBuffer inOffsets = null;
+        IntBuffer inNodes = null;
+        LongBuffer mutual = null;
+        if(directed)
+        {
+            inOffsets = map(file, pos, 4L*(numNodes + 1)).asIntBuffer();
+            pos = align(pos + 4L*(numNodes + 1));
+            inNodes = map(file, pos, 4L*m).asIntBuffer();
+            pos = align(pos + 4L*m);
+            long words = (numEntries + 63) >>> 6;
+            mutual = map(file, pos, 8L*words).asLongBuffer();
+            pos += 8L*words;
+        }
+
+        DoubleBuffer weights = null;
+        if(storedWeights)
+        {
+            weights = map(file, pos, 8L*m).asDoubleBuffer();
+            pos += 8L*m;
+        }
+        IntBuffer types = null;
+        if(storedTypes)
+        {
+            types = map(file, pos, 4L*m).asIntBuffer();
+            pos = align(pos + 4L*m);
+        }
+
+        if(pos != size)
+        {
+            throw new IOException("Corrupted binary graph file");
+        }
+
+        // Node identifiers (parsed in parallel).
+        Object[] objects = new Object[numNodes];
+        IntStream.range(0, numNodes).parallel().forEach(uidx ->
+        {
+            byte[] bytes = new byte[idOffsets.get(uidx + 1) - idOffsets.get(uidx)];
+            ByteBuffer aux = ids.duplicate();
+            aux.position(idOffsets.get(uidx));
+            aux.get(bytes);
+            objects[uidx] = uParser.parse(new String(bytes, StandardCharsets.UTF_8));
+        });
+        FastIndex<V> vertices = new FastIndex<>();
+        for(Object object : objects)
+        {
+            @SuppressWarnings("unchecked")
+            V node = (V) object;
+            vertices.addObject(node);
+        }
+
+        boolean weighted = readWeights && storedWeights;
+        boolean typed = readTypes && storedTypes;
+        if(!weighted && !typed && nodes == null)
+        {
+            return CSRGraph.wrap(vertices, outOffsets, outNodes, inOffsets, inNodes, mutual, numEdges, directed);
+        }
+
+        // The nodes are restricted to the index: edges between unknown nodes are not added.
+        int[] map = new int[numNodes];
+        FastIndex<V> graphVertices = vertices;
+        if(nodes != null)
+        {
+            FastIndex<V> restricted = new FastIndex<>();
+            nodes.getAllObjectsIds().sorted().forEach(i -> restricted.addObject(nodes.idx2object(i)));
+            IntStream.range(0, numNodes).forEach(uidx -> map[uidx] = restricted.object2idx(vertices.idx2object(uidx)));
+            graphVertices = restricted;
+        }
+        else
+        {
+            IntStream.range(0, numNodes).forEach(uidx -> map[uidx] = uidx);
+        }
+
+        int[] origins = new int[m];
+        int[] dests = new int[m];
+        double[] edgeWeights = weighted ? new double[m] : null;
+        int[] edgeTypes = typed ? new int[m] : null;
+        int count = 0;
+        for(int uidx = 0; uidx < numNodes; ++uidx)
+        {
+            for(int p = outOffsets.get(uidx); p < outOffsets.get(uidx + 1); ++p)
+            {
+                int vidx = outNodes.get(p);
+                // Undirected edges are stored in both directions, but they are only added once.
+                if(map[uidx] >= 0 && map[vidx] >= 0 && (directed || uidx <= vidx))
+                {
+                    origins[count] = map[uidx];
+                    dests[count] = map[vidx];
+                    if(weighted) edgeWeights[count] = weights.get(p);
+                    if(typed) edgeTypes[count] = types.get(p);
+                    count++;
+                }
+            }
+        }
+        return FastGraph.build(graphVertices, origins, dests, edgeWeights, edgeTypes, count, directed, weighted);
+    }
+
+    /**
+     * Maps a section of a file, in little endian order.
+     * @param file Access to the sections of the file.
+     * @param pos Start of the section.
+     * @param length Length of the section (in bytes).
+     * @return the mapped section.
+     * @throws IOException if something fails while mapping.
+     */
+    private static ByteBuffer map(Sections file, long pos, long length) throws IOException
+    {
+        return file.get(pos, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Rounds a position up to a multiple of 8 bytes.
+     * @param pos The position.
+     * @return the aligned position.
+     */
+    private static long align(long pos)
+    {
+        return (pos + 7) & ~7L;
+    }
+
+    /**
+     * Access to the sections of a binary graph file.
+     */
+    private interface Sections
+    {
+        /**
+         * Obtains a section of the file.
+         * @param pos Start of the section.
+         * @param length Length of the section (in bytes).
+         * @return a buffer containing the section.
+         * @throws IOException if something fails while reading.
+         */
+        ByteBuffer get(long pos, long length) throws IOException;
+    }
+}
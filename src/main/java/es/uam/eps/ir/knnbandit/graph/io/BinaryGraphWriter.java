@@ -0,0 +1,330 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.graph.io;
+
+import es.uam.eps.ir.knnbandit.graph.Graph;
+import es.uam.eps.ir.knnbandit.graph.csr.CSRGraph;
+import es.uam.eps.ir.knnbandit.graph.edges.EdgeOrientation;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a graph to a binary file, which can be read by {@link BinaryGraphReader}.
+ *
+ * File format (little endian): a header with a magic number, the version, some flags (directed,
+ * weights and types stored), the number of nodes, the number of stored outgoing edges (every edge
+ * is stored in both directions if the graph is undirected), the number of edges and the length of
+ * the node identifiers, followed by the sections: offsets of the node identifiers (int), node
+ * identifiers (UTF-8 text, in index order), offsets of the outgoing neighbors (int), outgoing
+ * neighbors (int), and, only for directed graphs, offsets of the incoming neighbors (int), incoming
+ * neighbors (int) and the bitmap of reciprocated outgoing edges (long). Then, the weights (double)
+ * and the types (int) of the outgoing edges, if they are stored. Every section starts at a multiple
+ * of 8 bytes.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <V> Type of the vertices.
+ */
+public class BinaryGraphWriter<V> implements GraphWriter<V>
+{
+    /**
+     * Magic number identifying the file format ("KNNBGRF1").
+     */
+    final static long MAGIC = 0x4B4E4E4247524631L;
+    /**
+     * Version of the file format.
+     */
+    final static int VERSION = 1;
+    /**
+     * Flag indicating that the graph is directed.
+     */
+    final static int DIRECTED = 1;
+    /**
+     * Flag indicating that the weights are stored.
+     */
+    final static int WEIGHTS = 2;
+    /**
+     * Flag indicating that the types are stored.
+     */
+    final static int TYPES = 4;
+    /**
+     * Size of the header (in bytes).
+     */
+    final static int HEADER = 48;
+    /**
+     * Size of the buffer used for writing.
+     */
+    private final static int BUFFERSIZE = 1 << 20;
+
+    @Override
+    public boolean write(Graph<V> graph, String file)
+    {
+        return this.write(graph, file, true, false);
+    }
+
+    @Override
+    public boolean write(Graph<V> graph, OutputStream file)
+    {
+        return this.write(graph, file, true, false);
+    }
+
+    @Override
+    public boolean write(Graph<V> graph, String file, boolean writeWeights, boolean writeTypes)
+    {
+        try
+        {
+            return this.write(graph, new FileOutputStream(file), writeWeights, writeTypes);
+        }
+        catch(FileNotFoundException ex)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean write(Graph<V> graph, OutputStream file, boolean writeWeights, boolean writeTypes)
+    {
+        CSRGraph<V> csr = graph instanceof CSRGraph ? (CSRGraph<V>) graph : CSRGraph.load(graph);
+        boolean directed = csr.isDirected();
+        int numNodes = Long.valueOf(csr.getVertexCount()).intValue();
+
+        // Node identifiers.
+        byte[][] ids = new byte[numNodes][];
+        long idBytes = 0L;
+        for(int uidx = 0; uidx < numNodes; ++uidx)
+        {
+            ids[uidx] = csr.idx2object(uidx).toString().getBytes(StandardCharsets.UTF_8);
+            idBytes += ids[uidx].length;
+        }
+        long numEntries = csr.getAllNodesIds().mapToLong(uidx -> csr.getNeighborhoodSize(uidx, EdgeOrientation.OUT)).sum();
+
+        try(WritableByteChannel channel = Channels.newChannel(file))
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFERSIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int flags = (directed ? DIRECTED : 0) | (writeWeights ? WEIGHTS : 0) | (writeTypes ? TYPES : 0);
+            buffer.putLong(MAGIC).putInt(VERSION).putInt(flags).putInt(numNodes).putInt(0);
+            buffer.putLong(numEntries).putLong(csr.getEdgeCount()).putLong(idBytes);
+
+            int offset = 0;
+            buffer = putInt(channel, buffer, offset);
+            for(byte[] id : ids)
+            {
+                offset += id.length;
+                buffer = putInt(channel, buffer, offset);
+            }
+            buffer = pad(channel, buffer);
+            for(byte[] id : ids)
+            {
+                buffer = putBytes(channel, buffer, id);
+            }
+            buffer = pad(channel, buffer);
+
+            EdgeOrientation[] orientations = directed ? new EdgeOrientation[]{EdgeOrientation.OUT, EdgeOrientation.IN} : new EdgeOrientation[]{EdgeOrientation.OUT};
+            for(EdgeOrientation orientation : orientations)
+            {
+                offset = 0;
+                buffer = putInt(channel, buffer, offset);
+                for(int uidx = 0; uidx < numNodes; ++uidx)
+                {
+                    offset += csr.getNeighborhoodSize(uidx, orientation);
+                    buffer = putInt(channel, buffer, offset);
+                }
+                buffer = pad(channel, buffer);
+                for(int uidx = 0; uidx < numNodes; ++uidx)
+                {
+                    IntIterator iterator = csr.getNeighborhoodIterator(uidx, orientation);
+                    while(iterator.hasNext())
+                    {
+                        buffer = putInt(channel, buffer, iterator.nextInt());
+                    }
+                }
+                buffer = pad(channel, buffer);
+            }
+
+            if(directed)
+            {
+                // Bitmap of reciprocated edges, in the order of the outgoing neighbors.
+                long word = 0L;
+                int bit = 0;
+                for(int uidx = 0; uidx < numNodes; ++uidx)
+                {
+                    IntIterator iterator = csr.getNeighborhoodIterator(uidx, EdgeOrientation.OUT);
+                    while(iterator.hasNext())
+                    {
+                        if(csr.containsEdge(iterator.nextInt(), uidx))
+                        {
+                            word |= 1L << bit;
+                        }
+                        if(++bit == 64)
+                        {
+                            buffer = putLong(channel, buffer, word);
+                            word = 0L;
+                            bit = 0;
+                        }
+                    }
+                }
+                if(bit > 0)
+                {
+                    buffer = putLong(channel, buffer, word);
+                }
+            }
+
+            if(writeWeights)
+            {
+                for(int uidx = 0; uidx < numNodes; ++uidx)
+                {
+                    V u = csr.idx2object(uidx);
+                    IntIterator iterator = csr.getNeighborhoodIterator(uidx, EdgeOrientation.OUT);
+                    while(iterator.hasNext())
+                    {
+                        buffer = putDouble(channel, buffer, graph.getEdgeWeight(u, csr.idx2object(iterator.nextInt())));
+                    }
+                }
+            }
+
+            if(writeTypes)
+            {
+                for(int uidx = 0; uidx < numNodes; ++uidx)
+                {
+                    V u = csr.idx2object(uidx);
+                    IntIterator iterator = csr.getNeighborhoodIterator(uidx, EdgeOrientation.OUT);
+                    while(iterator.hasNext())
+                    {
+                        buffer = putInt(channel, buffer, graph.getEdgeType(u, csr.idx2object(iterator.nextInt())));
+                    }
+                }
+                buffer = pad(channel, buffer);
+            }
+            flush(channel, buffer);
+        }
+        catch(IOException ex)
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the contents of the buffer if it does not have enough free space.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param bytes The required free space.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer ensure(WritableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException
+    {
+        if(buffer.remaining() < bytes)
+        {
+            flush(channel, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the contents of the buffer, and clears it.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Adds a long value to the output.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param val The value.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer putLong(WritableByteChannel channel, ByteBuffer buffer, long val) throws IOException
+    {
+        return ensure(channel, buffer, 8).putLong(val);
+    }
+
+    /**
+     * Adds an integer value to the output.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param val The value.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer putInt(WritableByteChannel channel, ByteBuffer buffer, int val) throws IOException
+    {
+        return ensure(channel, buffer, 4).putInt(val);
+    }
+
+    /**
+     * Adds a double value to the output.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param val The value.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer putDouble(WritableByteChannel channel, ByteBuffer buffer, double val) throws IOException
+    {
+        return ensure(channel, buffer, 8).putDouble(val);
+    }
+
+    /**
+     * Adds an array of bytes to the output.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param bytes The bytes.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer putBytes(WritableByteChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException
+    {
+        int pos = 0;
+        while(pos < bytes.length)
+        {
+            int length = Math.min(bytes.length - pos, ensure(channel, buffer, 1).remaining());
+            buffer.put(bytes, pos, length);
+            pos += length;
+        }
+        return buffer;
+    }
+
+    /**
+     * Pads the output with zeros, until its length is a multiple of 8 bytes. As the buffer is always
+     * flushed when full, and its size is a multiple of 8, the position in the buffer gives the alignment.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @return the buffer.
+     * @throws IOException if something fails while writing.
+     */
+    private static ByteBuffer pad(WritableByteChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while((buffer.position() & 7) != 0)
+        {
+            buffer = ensure(channel, buffer, 1).put((byte) 0);
+        }
+        return buffer;
+    }
+}
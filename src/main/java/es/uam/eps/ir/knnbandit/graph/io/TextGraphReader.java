@@ -10,16 +10,34 @@
 package es.uam.eps.ir.knnbandit.graph.io;
 
 import es.uam.eps.ir.knnbandit.graph.Graph;
+import es.uam.eps.ir.knnbandit.graph.csr.CSRGraph;
 import es.uam.eps.ir.knnbandit.graph.generator.EmptyGraphGenerator;
 import es.uam.eps.ir.knnbandit.graph.generator.GeneratorBadConfiguredException;
 import es.uam.eps.ir.knnbandit.graph.generator.GeneratorNotConfiguredException;
 import es.uam.eps.ir.knnbandit.graph.generator.GraphGenerator;
+import es.uam.eps.ir.knnbandit.graph.fast.FastGraph;
 import es.uam.eps.ir.knnbandit.graph.index.Index;
+import es.uam.eps.ir.knnbandit.graph.index.fast.FastIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.ranksys.formats.parsing.Parser;
 import org.ranksys.formats.parsing.Parsers;
 
@@ -37,6 +55,11 @@ import org.ranksys.formats.parsing.Parsers;
  * Every column apart from these ones will be ignored when loading
  * the graph. Columns are separated by a certain delimiter. By default, this delimiter
  * is a tab space.
+ *
+ * Graphs are read from files by memory-mapping them: the file is split in chunks of
+ * lines which are parsed in parallel, and the graph is then built at once, instead of
+ * adding the edges one by one. Files are expected to be encoded in UTF-8. Graphs read
+ * from input streams are read line by line.
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  * @param <V> The type of the vertices.
@@ -63,6 +86,18 @@ public class TextGraphReader<V> implements GraphReader<V>
      * Field delimiter.
      */
     private final String delimiter;
+    /**
+     * Minimum size (in bytes) of the chunks a file is split into.
+     */
+    private final static int MIN_CHUNK = 1 << 20;
+    /**
+     * Maximum size (in bytes) of the chunks a file is split into.
+     */
+    private final static int MAX_CHUNK = 1 << 26;
+    /**
+     * Characters which cannot be used as a single-character delimiter without regular expressions.
+     */
+    private final static String REGEX_CHARS = ".$|()[{^?*+\\";
     
     /**
      * Constructor.
@@ -84,31 +119,13 @@ public class TextGraphReader<V> implements GraphReader<V>
     @Override
     public Graph<V> read(String file)
     {
-        try
-        {
-            InputStream ios = new FileInputStream(file);
-            return this.read(ios, true, false);
-        }
-        catch(IOException ioe)
-        {
-            ioe.printStackTrace();
-            return null;
-        }
+        return this.read(file, true, false);
     }
 
     @Override
     public Graph<V> read(String file, boolean readWeights, boolean readTypes)
     {
-        try
-        {
-            InputStream ios = new FileInputStream(file);
-            return this.read(ios, readWeights, readTypes);
-        }
-        catch(IOException ioe)
-        {
-            ioe.printStackTrace();
-            return null;
-        }    
+        return this.readMapped(file, readTypes, null);
     }
 
     @Override
@@ -177,16 +194,7 @@ public class TextGraphReader<V> implements GraphReader<V>
     @Override
     public Graph<V> read(String file, boolean readWeights, boolean readTypes, Index<V> nodes)
     {
-        try
-        {
-            InputStream ios = new FileInputStream(file);
-            return this.read(ios, readWeights, readTypes, nodes);
-        }
-        catch(IOException ioe)
-        {
-            ioe.printStackTrace();
-            return null;
-        }    
+        return this.readMapped(file, readTypes, nodes);
     }
 
     @Override
@@ -248,4 +256,362 @@ public class TextGraphReader<V> implements GraphReader<V>
             return null;
         }
     }
+
+    /**
+     * Reads a graph from a file into an immutable CSR graph, built directly from the parsed
+     * edges. Weights and types are not read.
+     * @param file The file containing the graph.
+     * @return the graph if everything goes ok, null otherwise.
+     */
+    public CSRGraph<V> readCSR(String file)
+    {
+        EdgeList<V> edges = this.readEdges(file, false, false, null);
+        if(edges == null)
+        {
+            return null;
+        }
+        List<V> nodes = edges.vertices.getAllObjects().collect(Collectors.toList());
+        return CSRGraph.build(nodes, edges.origins, edges.dests, edges.numEdges, directed);
+    }
+
+    /**
+     * Reads a graph from a file, parsing chunks of the file in parallel.
+     * @param file The file containing the graph.
+     * @param readTypes True if the file contains graph types.
+     * @param nodes An index containing the nodes in the network (null if nodes are taken from the edges).
+     * @return the graph if everything goes ok, null otherwise.
+     */
+    private Graph<V> readMapped(String file, boolean readTypes, Index<V> nodes)
+    {
+        EdgeList<V> edges = this.readEdges(file, weighted, readTypes, nodes);
+        if(edges == null)
+        {
+            return null;
+        }
+        return FastGraph.build(edges.vertices, edges.origins, edges.dests, edges.weights, edges.types, edges.numEdges, directed, weighted);
+    }
+
+    /**
+     * Reads the edges in a file, parsing chunks of the file in parallel.
+     * @param file The file containing the graph.
+     * @param readWeights True if the weights of the edges have to be stored.
+     * @param readTypes True if the file contains graph types.
+     * @param nodes An index containing the nodes in the network (null if nodes are taken from the edges).
+     * @return the edges if everything goes ok, null otherwise.
+     */
+    private EdgeList<V> readEdges(String file, boolean readWeights, boolean readTypes, Index<V> nodes)
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            long[] bounds = this.split(channel);
+            List<EdgeChunk<V>> chunks = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(c -> this.parse(channel, bounds[c], bounds[c + 1], readTypes))
+                    .collect(Collectors.toList());
+
+            // Nodes are indexed in order of appearance, as when the edges are added one by one.
+            FastIndex<V> vertices = new FastIndex<>();
+            if(nodes != null)
+            {
+                nodes.getAllObjectsIds().sorted().forEach(i -> vertices.addObject(nodes.idx2object(i)));
+            }
+
+            int total = chunks.stream().mapToInt(chunk -> chunk.origins.size()).sum();
+            int[] origins = new int[total];
+            int[] dests = new int[total];
+            double[] weights = readWeights ? new double[total] : null;
+            int[] types = readTypes ? new int[total] : null;
+            int numEdges = 0;
+            for(EdgeChunk<V> chunk : chunks)
+            {
+                int[] ids = new int[chunk.nodes.size()];
+                for(int j = 0; j < ids.length; ++j)
+                {
+                    V node = chunk.nodes.get(j);
+                    ids[j] = nodes == null ? vertices.addObject(node) : vertices.object2idx(node);
+                }
+
+                for(int j = 0; j < chunk.origins.size(); ++j)
+                {
+                    int orig = ids[chunk.origins.getInt(j)];
+                    int dest = ids[chunk.dests.getInt(j)];
+                    // Edges between unknown nodes are not added.
+                    if(orig >= 0 && dest >= 0)
+                    {
+                        origins[numEdges] = orig;
+                        dests[numEdges] = dest;
+                        if(readWeights) weights[numEdges] = chunk.weights.getDouble(j);
+                        if(readTypes) types[numEdges] = chunk.types.getInt(j);
+                        numEdges++;
+                    }
+                }
+            }
+
+            return new EdgeList<>(vertices, origins, dests, weights, types, numEdges);
+        }
+        catch(IOException | UncheckedIOException ioe)
+        {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Splits a file in chunks of complete lines.
+     * @param channel The channel for reading the file.
+     * @return the limits of the chunks (number of chunks + 1 values).
+     * @throws IOException if something fails while reading the file.
+     */
+    private long[] split(FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        long target = size / (4L * Runtime.getRuntime().availableProcessors());
+        long chunkSize = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+
+        LongArrayList bounds = new LongArrayList();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long pos = 0L;
+        while(pos < size)
+        {
+            // The chunk ends after the first line break found once its size is reached.
+            long end = Math.min(size, pos + chunkSize);
+            boolean found = end == size;
+            while(!found)
+            {
+                buffer.clear();
+                int read = channel.read(buffer, end);
+                if(read <= 0)
+                {
+                    end = size;
+                    break;
+                }
+                for(int i = 0; i < read && !found; ++i)
+                {
+                    end++;
+                    found = buffer.get(i) == '\n';
+                }
+            }
+            bounds.add(end);
+            pos = end;
+        }
+        return bounds.toLongArray();
+    }
+
+    /**
+     * Parses the edges in a chunk of a file.
+     * @param channel The channel for reading the file.
+     * @param start Start of the chunk.
+     * @param end End of the chunk (not included).
+     * @param readTypes True if the file contains graph types.
+     * @return the edges in the chunk.
+     */
+    private EdgeChunk<V> parse(FileChannel channel, long start, long end, boolean readTypes)
+    {
+        byte[] data = new byte[(int) (end - start)];
+        try
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            buffer.get(data);
+        }
+        catch(IOException ioe)
+        {
+            throw new UncheckedIOException(ioe);
+        }
+
+        EdgeChunk<V> chunk = new EdgeChunk<>(weighted, readTypes);
+        int numFields = 2 + (weighted ? 1 : 0) + (readTypes ? 1 : 0);
+        boolean simple = delimiter.length() == 1 && delimiter.charAt(0) < 128 && REGEX_CHARS.indexOf(delimiter.charAt(0)) < 0;
+        byte delim = (byte) delimiter.charAt(0);
+
+        int lineStart = 0;
+        while(lineStart < data.length)
+        {
+            int lineEnd = lineStart;
+            while(lineEnd < data.length && data[lineEnd] != '\n')
+            {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if(lineEnd > lineStart && data[lineEnd - 1] == '\r')
+            {
+                lineEnd--;
+            }
+
+            if(lineEnd > lineStart)
+            {
+                String[] splits;
+                if(simple)
+                {
+                    // Only the needed fields are decoded.
+                    splits = new String[numFields];
+                    int numSplits = 0;
+                    int fieldStart = lineStart;
+                    while(numSplits < numFields && fieldStart <= lineEnd)
+                    {
+                        int fieldEnd = fieldStart;
+                        while(fieldEnd < lineEnd && data[fieldEnd] != delim)
+                        {
+                            fieldEnd++;
+                        }
+                        splits[numSplits++] = new String(data, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8);
+                        fieldStart = fieldEnd + 1;
+                    }
+                    if(numSplits < numFields)
+                    {
+                        splits = Arrays.copyOf(splits, numSplits);
+                    }
+                }
+                else
+                {
+                    splits = new String(data, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).split(delimiter);
+                }
+
+                V source = uParser.parse(splits[0]);
+                V dest = uParser.parse(splits[1]);
+                if(!source.equals(dest) || selfloops)
+                {
+                    double weight = weighted ? Parsers.dp.parse(splits[2]) : 1.0;
+                    int type = 0;
+                    if(readTypes && weighted)
+                    {
+                        type = Parsers.ip.parse(splits[3]);
+                    }
+                    else if(readTypes)
+                    {
+                        type = Parsers.ip.parse(splits[2]);
+                    }
+                    chunk.add(source, dest, weight, type);
+                }
+            }
+            lineStart = next;
+        }
+        return chunk;
+    }
+
+    /**
+     * Edges read from a file, once the chunks have been merged.
+     * @param <V> Type of the vertices.
+     */
+    private static class EdgeList<V>
+    {
+        /**
+         * The vertices of the graph.
+         */
+        private final FastIndex<V> vertices;
+        /**
+         * Origins of the edges.
+         */
+        private final int[] origins;
+        /**
+         * Destinations of the edges.
+         */
+        private final int[] dests;
+        /**
+         * Weights of the edges (null if they are not read).
+         */
+        private final double[] weights;
+        /**
+         * Types of the edges (null if they are not read).
+         */
+        private final int[] types;
+        /**
+         * Number of edges (the first numEdges values of the arrays are used).
+         */
+        private final int numEdges;
+
+        /**
+         * Constructor.
+         * @param vertices The vertices of the graph.
+         * @param origins Origins of the edges.
+         * @param dests Destinations of the edges.
+         * @param weights Weights of the edges (null if they are not read).
+         * @param types Types of the edges (null if they are not read).
+         * @param numEdges Number of edges.
+         */
+        EdgeList(FastIndex<V> vertices, int[] origins, int[] dests, double[] weights, int[] types, int numEdges)
+        {
+            this.vertices = vertices;
+            this.origins = origins;
+            this.dests = dests;
+            this.weights = weights;
+            this.types = types;
+            this.numEdges = numEdges;
+        }
+    }
+
+    /**
+     * Edges read from a chunk of a file. Nodes are identified by their order of appearance in the chunk.
+     * @param <V> Type of the vertices.
+     */
+    private static class EdgeChunk<V>
+    {
+        /**
+         * Nodes, in order of appearance.
+         */
+        private final List<V> nodes = new ArrayList<>();
+        /**
+         * Identifiers of the nodes in the chunk.
+         */
+        private final Object2IntOpenHashMap<V> ids = new Object2IntOpenHashMap<>();
+        /**
+         * Origins of the edges.
+         */
+        private final IntArrayList origins = new IntArrayList();
+        /**
+         * Destinations of the edges.
+         */
+        private final IntArrayList dests = new IntArrayList();
+        /**
+         * Weights of the edges (null if they are not read).
+         */
+        private final DoubleArrayList weights;
+        /**
+         * Types of the edges (null if they are not read).
+         */
+        private final IntArrayList types;
+
+        /**
+         * Constructor.
+         * @param weighted True if the weights are read.
+         * @param readTypes True if the types are read.
+         */
+        EdgeChunk(boolean weighted, boolean readTypes)
+        {
+            this.ids.defaultReturnValue(-1);
+            this.weights = weighted ? new DoubleArrayList() : null;
+            this.types = readTypes ? new IntArrayList() : null;
+        }
+
+        /**
+         * Adds an edge.
+         * @param source Origin of the edge.
+         * @param dest Destination of the edge.
+         * @param weight Weight of the edge.
+         * @param type Type of the edge.
+         */
+        void add(V source, V dest, double weight, int type)
+        {
+            this.origins.add(this.id(source));
+            this.dests.add(this.id(dest));
+            if(this.weights != null) this.weights.add(weight);
+            if(this.types != null) this.types.add(type);
+        }
+
+        /**
+         * Obtains the identifier of a node, adding it if necessary.
+         * @param node The node.
+         * @return the identifier.
+         */
+        private int id(V node)
+        {
+            int id = this.ids.getInt(node);
+            if(id < 0)
+            {
+                id = this.nodes.size();
+                this.ids.put(node, id);
+                this.nodes.add(node);
+            }
+            return id;
+        }
+    }
 }
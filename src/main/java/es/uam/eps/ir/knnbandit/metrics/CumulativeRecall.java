@@ -11,7 +11,7 @@ package es.uam.eps.ir.knnbandit.metrics;
 
 import java.util.Optional;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Cumulative implementation of global recall.
@@ -36,7 +36,7 @@ public class CumulativeRecall<U,I> implements CumulativeMetric<U,I>
     /**
      * Preference data.
      */
-    private final SimpleFastPreferenceData<U,I> prefData;
+    private final FastPointWisePreferenceData<U,I> prefData;
     
     /**
      * Constructor.
@@ -44,7 +44,7 @@ public class CumulativeRecall<U,I> implements CumulativeMetric<U,I>
      * @param numRel Number of relevant (user, item) pairs. 
      * @param threshold Relevance threshold.
      */
-    public CumulativeRecall(SimpleFastPreferenceData<U,I> prefData, int numRel, double threshold)
+    public CumulativeRecall(FastPointWisePreferenceData<U,I> prefData, int numRel, double threshold)
     {
         this.prefData = prefData;
         this.numRel = numRel;
@@ -62,7 +62,7 @@ public class CumulativeRecall<U,I> implements CumulativeMetric<U,I>
     @Override
     public void update(int uidx, int iidx)
     {
-        Optional<IdxPref> value = this.prefData.getPreference(uidx, iidx);
+        Optional<? extends IdxPref> value = this.prefData.getPreference(uidx, iidx);
         if(value.isPresent() && value.get().v2 >= threshold)
         {
             this.current++;
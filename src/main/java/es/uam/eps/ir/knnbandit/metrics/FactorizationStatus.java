@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.metrics;
+
+import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
+import es.uam.eps.ir.knnbandit.recommendation.mf.InteractiveMF;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Status of the background factorizations of an asynchronous matrix factorization recommender:
+ * how stale the factorization used for recommending is, and how many factorizations are pending.
+ * The value does not depend on the recommended items, only on the state of the recommender when
+ * it is computed.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <U> User type.
+ * @param <I> Item type.
+ */
+public class FactorizationStatus<U,I> implements CumulativeMetric<U,I>
+{
+    /**
+     * Name of the staleness metric, in number of updates.
+     */
+    public final static String STALENESS = "staleness";
+    /**
+     * Name of the staleness metric, in milliseconds.
+     */
+    public final static String STALENESS_MILLIS = "stalenessms";
+    /**
+     * Name of the queue depth metric.
+     */
+    public final static String QUEUE_DEPTH = "queuedepth";
+
+    /**
+     * The recommender.
+     */
+    private final InteractiveMF<U,I> recommender;
+    /**
+     * The name of the value to report.
+     */
+    private final String name;
+
+    /**
+     * Constructor.
+     * @param recommender The recommender.
+     * @param name The name of the value to report (STALENESS, STALENESS_MILLIS or QUEUE_DEPTH).
+     */
+    public FactorizationStatus(InteractiveMF<U,I> recommender, String name)
+    {
+        this.recommender = recommender;
+        this.name = name;
+    }
+
+    /**
+     * Obtains the status metrics of a recommender. Only asynchronous matrix factorization
+     * recommenders have them.
+     * @param <U> User type.
+     * @param <I> Item type.
+     * @param recommender The recommender.
+     * @return a map containing the metrics, in the order they are reported (empty if the recommender has none).
+     */
+    public static <U,I> Map<String, CumulativeMetric<U,I>> of(InteractiveRecommender<U,I> recommender)
+    {
+        Map<String, CumulativeMetric<U,I>> metrics = new LinkedHashMap<>();
+        if(recommender instanceof InteractiveMF && ((InteractiveMF<U,I>) recommender).isAsync())
+        {
+            InteractiveMF<U,I> mf = (InteractiveMF<U,I>) recommender;
+            metrics.put(STALENESS, new FactorizationStatus<>(mf, STALENESS));
+            metrics.put(STALENESS_MILLIS, new FactorizationStatus<>(mf, STALENESS_MILLIS));
+            metrics.put(QUEUE_DEPTH, new FactorizationStatus<>(mf, QUEUE_DEPTH));
+        }
+        return metrics;
+    }
+
+    @Override
+    public double compute()
+    {
+        switch(this.name)
+        {
+            case STALENESS:
+                return this.recommender.getStaleness();
+            case STALENESS_MILLIS:
+                return this.recommender.getStalenessMillis();
+            case QUEUE_DEPTH:
+                return this.recommender.getQueueDepth();
+            default:
+                return Double.NaN;
+        }
+    }
+
+    @Override
+    public void update(int uidx, int iidx)
+    {
+    }
+
+    @Override
+    public void reset()
+    {
+    }
+}
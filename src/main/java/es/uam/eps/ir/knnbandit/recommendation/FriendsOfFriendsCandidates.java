@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation;
+
+import es.uam.eps.ir.knnbandit.data.preference.fast.PrimitiveFastUpdateablePreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Candidate people to recommend to each user in contact recommendation: the friends of the friends
+ * of the user (i.e. the users at distance two) in the graph formed by the accepted links (those with
+ * a positive rating) of the training data, which are still available for the user. The number of
+ * candidates of each user is bounded, so the cost of scoring them does not depend on the size of
+ * the network.
+ *
+ * As in {@link UserAvailability}, the candidates of a user are only computed the first time they are
+ * accessed. Afterwards, they are updated incrementally every time a link is added to the training data.
+ * When the bound left some friends of friends out of the set, and half of the candidates have already
+ * been recommended, the set is computed again, so the rest of the neighborhood is eventually explored.
+ * Creating the sets is thread-safe, modifying them is not.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class FriendsOfFriendsCandidates
+{
+    /**
+     * Candidates of the users (null if they have not been computed yet).
+     */
+    private final AtomicReferenceArray<CandidateSet> candidates;
+    /**
+     * Training data, representing the graph.
+     */
+    private final PrimitiveFastUpdateablePreferenceData<?,?> trainData;
+    /**
+     * The items which can still be recommended to each user.
+     */
+    private final UserAvailability availability;
+    /**
+     * Maximum number of candidates of each user.
+     */
+    private final int maxCandidates;
+
+    /**
+     * Constructor.
+     * @param trainData Training data, representing the graph.
+     * @param availability The items which can still be recommended to each user.
+     * @param maxCandidates Maximum number of candidates of each user.
+     */
+    public FriendsOfFriendsCandidates(PrimitiveFastUpdateablePreferenceData<?,?> trainData, UserAvailability availability, int maxCandidates)
+    {
+        this.candidates = new AtomicReferenceArray<>(availability.numUsers());
+        this.trainData = trainData;
+        this.availability = availability;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Obtains the candidates of a user, computing them if necessary.
+     * @param uidx User identifier.
+     * @return the set of candidates. Some of them might not be available for the user anymore.
+     */
+    public IntSet get(int uidx)
+    {
+        CandidateSet set = this.candidates.get(uidx);
+        if(set == null)
+        {
+            CandidateSet created = this.compute(uidx);
+            set = this.candidates.compareAndSet(uidx, null, created) ? created : this.candidates.get(uidx);
+        }
+        return set;
+    }
+
+    /**
+     * Updates the candidates after the training data receives the rating of a user for an item.
+     * @param uidx User identifier.
+     * @param vidx Item identifier.
+     */
+    public void update(int uidx, int vidx)
+    {
+        CandidateSet set = this.candidates.get(uidx);
+        if(set != null && !this.availability.contains(uidx, vidx) && set.remove(vidx)
+           && set.truncated && set.size() <= this.maxCandidates / 2)
+        {
+            // Refill the candidates from the rest of the neighborhood the next time they are needed.
+            this.candidates.set(uidx, null);
+            set = null;
+        }
+
+        if(!this.isLink(uidx, vidx))
+        {
+            return;
+        }
+
+        // The friends of vidx become candidates for uidx.
+        if(set != null)
+        {
+            IntIterator widxs = this.trainData.getUidxIidxs(vidx);
+            DoubleIterator ws = this.trainData.getUidxVs(vidx);
+            while(widxs.hasNext() && set.size() < this.maxCandidates)
+            {
+                int widx = widxs.nextInt();
+                if(ws.nextDouble() > 0)
+                {
+                    this.add(set, uidx, widx);
+                }
+            }
+        }
+
+        // And vidx becomes a candidate for the users who have uidx as a friend.
+        IntIterator xidxs = this.trainData.getIidxUidxs(uidx);
+        DoubleIterator xs = this.trainData.getIidxVs(uidx);
+        while(xidxs.hasNext())
+        {
+            int xidx = xidxs.nextInt();
+            CandidateSet xset = this.candidates.get(xidx);
+            if(xs.nextDouble() > 0 && xset != null && xset.size() < this.maxCandidates)
+            {
+                this.add(xset, xidx, vidx);
+            }
+        }
+    }
+
+    /**
+     * Computes the candidates of a user from scratch.
+     * @param uidx User identifier.
+     * @return the set of candidates.
+     */
+    private CandidateSet compute(int uidx)
+    {
+        CandidateSet set = new CandidateSet();
+        IntIterator vidxs = this.trainData.getUidxIidxs(uidx);
+        DoubleIterator vs = this.trainData.getUidxVs(uidx);
+        while(vidxs.hasNext() && set.size() < this.maxCandidates)
+        {
+            int vidx = vidxs.nextInt();
+            if(vs.nextDouble() <= 0) continue;
+
+            IntIterator widxs = this.trainData.getUidxIidxs(vidx);
+            DoubleIterator ws = this.trainData.getUidxVs(vidx);
+            while(widxs.hasNext() && set.size() < this.maxCandidates)
+            {
+                int widx = widxs.nextInt();
+                if(ws.nextDouble() > 0)
+                {
+                    this.add(set, uidx, widx);
+                }
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Adds a candidate for a user, if it is still available for the user.
+     * @param set The candidates of the user.
+     * @param uidx User identifier.
+     * @param widx Identifier of the candidate.
+     */
+    private void add(CandidateSet set, int uidx, int widx)
+    {
+        if(widx != uidx && !set.contains(widx) && this.availability.contains(uidx, widx))
+        {
+            set.add(widx);
+            // Once the set is full, some friends of friends might have been left out.
+            set.truncated |= set.size() >= this.maxCandidates;
+        }
+    }
+
+    /**
+     * Checks whether the training data contains an accepted link between two users.
+     * @param uidx Identifier of the origin user.
+     * @param vidx Identifier of the destination user.
+     * @return true if the link exists, and its rating is positive.
+     */
+    private boolean isLink(int uidx, int vidx)
+    {
+        Optional<IdxPref> pref = this.trainData.getPreference(uidx, vidx);
+        return pref.isPresent() && pref.get().v2 > 0;
+    }
+
+    /**
+     * Set of candidates of a user.
+     */
+    private static class CandidateSet extends IntOpenHashSet
+    {
+        /**
+         * True if the set has been full at some point, so some candidates might be missing.
+         */
+        private boolean truncated = false;
+    }
+}
@@ -10,22 +10,20 @@
 package es.uam.eps.ir.knnbandit.recommendation;
 
 import es.uam.eps.ir.knnbandit.UntieRandomNumber;
-import es.uam.eps.ir.knnbandit.data.preference.fast.SimpleFastUpdateablePreferenceData;
+import es.uam.eps.ir.knnbandit.data.preference.fast.CSRPreferenceData;
+import es.uam.eps.ir.knnbandit.data.preference.fast.PrimitiveFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.jooq.lambda.tuple.Tuple2;
 import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Abstract definition of interactive recommendation algorithm.
@@ -38,15 +36,15 @@ public abstract class InteractiveRecommender<U,I>
     /**
      * Preference data.
      */
-    protected final SimpleFastPreferenceData<U,I> prefData;
+    protected final FastPointWisePreferenceData<U,I> prefData;
     /**
      * Training data.
      */
-    protected final SimpleFastUpdateablePreferenceData<U,I> trainData;
+    protected final PrimitiveFastUpdateablePreferenceData<U,I> trainData;
     /**
-     * A map including which items are recommendable for each user.
+     * The items which are recommendable for each user. The list of a user is created the first time it is used.
      */
-    protected final List<IntList> availability;
+    protected final UserAvailability availability;
     /**
      * True if we ignore missing ratings, false if we take them as failures.
      */
@@ -59,6 +57,11 @@ public abstract class InteractiveRecommender<U,I>
      * Random number generator.
      */
     protected final Random rng;
+    /**
+     * True if all the ratings used for training are equal to 1.0: the preference data is binary, and
+     * unknown ratings are ignored. In that case, the training data does not store rating values.
+     */
+    protected final boolean binary;
         
     /**
      * Constructor.
@@ -67,12 +70,12 @@ public abstract class InteractiveRecommender<U,I>
      * @param prefData preference data.
      * @param ignoreUnknown False to treat missing ratings as failures, true otherwise.
      */
-    public InteractiveRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, boolean ignoreUnknown)
+    public InteractiveRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, boolean ignoreUnknown)
     {
         this.prefData = prefData;
-        this.trainData = SimpleFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
-        this.availability = new ArrayList<>();
-        IntStream.range(0,prefData.numUsers()).forEach(uidx -> availability.add(this.getIidx().boxed().collect(Collectors.toCollection(IntArrayList::new))));
+        this.binary = ignoreUnknown && isBinary(prefData);
+        this.trainData = PrimitiveFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex, this.binary);
+        this.availability = new UserAvailability(prefData.numUsers(), uidx -> IntArrayList.wrap(this.getIidx().toArray()));
         this.ignoreUnknown = ignoreUnknown;
         this.notReciprocal = false;
         this.rng = new Random(UntieRandomNumber.RNG);
@@ -86,20 +89,27 @@ public abstract class InteractiveRecommender<U,I>
      * @param ignoreUnknown False to treat missing ratings as failures, true otherwise.
      * @param notReciprocal False to treat missing ratings as failures, true otherwise.
      */
-    public InteractiveRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, boolean ignoreUnknown, boolean notReciprocal)
+    public InteractiveRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, boolean ignoreUnknown, boolean notReciprocal)
     {
         this.prefData = prefData;
-        this.trainData = SimpleFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
-        this.availability = new ArrayList<>();
-        IntStream.range(0,prefData.numUsers()).forEach(uidx -> 
-        {          
-            availability.add(this.getIidx().filter(iidx -> uidx != iidx).boxed().collect(Collectors.toCollection(IntArrayList::new)));
-        });
+        this.binary = ignoreUnknown && isBinary(prefData);
+        this.trainData = PrimitiveFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex, this.binary);
+        this.availability = new UserAvailability(prefData.numUsers(), uidx -> IntArrayList.wrap(this.getIidx().filter(iidx -> uidx != iidx).toArray()));
         this.ignoreUnknown = ignoreUnknown;
         this.notReciprocal = notReciprocal;
         this.rng = new Random(UntieRandomNumber.RNG);
     }
     
+    /**
+     * Checks whether a preference data is binary, i.e. whether it does not store rating values.
+     * @param prefData The preference data.
+     * @return true if the preference data is binary, false otherwise.
+     */
+    private static boolean isBinary(FastPointWisePreferenceData<?,?> prefData)
+    {
+        return prefData instanceof CSRPreferenceData && ((CSRPreferenceData<?,?>) prefData).isBinary();
+    }
+
     /**
      * Obtains the set of identifiers of the users.
      * @return the set of identifiers of the users.
@@ -154,6 +164,17 @@ public abstract class InteractiveRecommender<U,I>
         return prefData.numItems();
     }
 
+    /**
+     * Checks whether an item can still be recommended to a user.
+     * @param uidx User identifier.
+     * @param iidx Item identifier.
+     * @return true if the item is available for the user, false otherwise.
+     */
+    protected boolean isAvailable(int uidx, int iidx)
+    {
+        return this.availability.contains(uidx, iidx);
+    }
+
     /**
      * Given a user, returns the next value.
      * @param uidx User identifier
@@ -168,12 +189,18 @@ public abstract class InteractiveRecommender<U,I>
      */
     public void update(int uidx, int iidx)
     {
+        if(this.binary)
+        {
+            this.updateBinary(uidx, iidx);
+            return;
+        }
+
         double value;
         boolean isPresent;
 
         if(this.prefData.numUsers(iidx) > 0 && this.prefData.numItems(uidx) > 0)
         {
-            Optional<IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
+            Optional<? extends IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
             value = realvalue.isPresent() ? realvalue.get().v2 : 0.0;
             isPresent = realvalue.isPresent();
         }
@@ -193,14 +220,14 @@ public abstract class InteractiveRecommender<U,I>
             this.updateMethod(uidx, iidx, value);
             this.trainData.updateRating(uidx, iidx, value);
         }
-        this.availability.get(uidx).removeInt(this.availability.get(uidx).indexOf(iidx));
+        this.availability.remove(uidx, iidx);
 
 
         if(this.notReciprocal && value > 1.0) // If the link exists...
         {
             if(this.prefData.numUsers(iidx) > 0 && this.prefData.numItems(uidx) > 0)
             {
-                Optional<IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
+                Optional<? extends IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
                 value = realvalue.isPresent() ? realvalue.get().v2 : 0.0;
                 isPresent = realvalue.isPresent();
             }
@@ -216,8 +243,25 @@ public abstract class InteractiveRecommender<U,I>
                 this.trainData.updateRating(iidx, uidx, value);
             }
 
-            this.availability.get(iidx).removeInt(this.availability.get(iidx).indexOf(uidx));
+            this.availability.remove(iidx, uidx);
+        }
+    }
+
+    /**
+     * Updates the recommender when the ratings are binary: only known ratings are used, and all
+     * of them are equal to 1.0, so it is enough to check whether the rating exists.
+     * @param uidx The target user.
+     * @param iidx The recommended item.
+     */
+    private void updateBinary(int uidx, int iidx)
+    {
+        if(((CSRPreferenceData<U,I>) this.prefData).containsPreference(uidx, iidx))
+        {
+            this.updateMethod(uidx, iidx, 1.0);
+            this.trainData.updateRating(uidx, iidx, 1.0);
         }
+        this.availability.remove(uidx, iidx);
+        // The general case only updates the reciprocal link for ratings greater than 1.0, which do not appear in binary data.
     }
 
     /**
@@ -234,15 +278,41 @@ public abstract class InteractiveRecommender<U,I>
      */
     public void update(List<Tuple2<Integer, Integer>> train)
     {
-        List<Tuple3<Integer, Integer ,Double>> tuples = new ArrayList<>();
-        for(Tuple2<Integer, Integer> tuple : train)
+        int n = train.size();
+        int[] users = new int[n];
+        int[] items = new int[n];
+        for(int j = 0; j < n; ++j)
+        {
+            Tuple2<Integer, Integer> tuple = train.get(j);
+            users[j] = tuple.v1;
+            items[j] = tuple.v2;
+        }
+        this.update(users, items, n);
+    }
+
+    /**
+     * Updates the method with training data, given as columns: the j-th training pair is formed by
+     * users[j] and items[j].
+     * @param users Identifiers of the users.
+     * @param items Identifiers of the items.
+     * @param n Number of training pairs.
+     */
+    public void update(int[] users, int[] items, int n)
+    {
+        int capacity = this.notReciprocal ? 2*n : n;
+        int[] uidxs = new int[capacity];
+        int[] iidxs = new int[capacity];
+        double[] values = new double[capacity];
+        int m = 0;
+
+        for(int j = 0; j < n; ++j)
         {
-            int uidx = tuple.v1; int iidx = tuple.v2;
+            int uidx = users[j]; int iidx = items[j];
             double value;
             boolean isPresent;
             if(this.prefData.numUsers(iidx) > 0 && this.prefData.numItems(uidx) > 0)
             {
-                Optional<IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
+                Optional<? extends IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
                 value = realvalue.isPresent() ? realvalue.get().v2 : 0.0;
                 isPresent = realvalue.isPresent();
             }
@@ -254,18 +324,17 @@ public abstract class InteractiveRecommender<U,I>
 
             if(!this.ignoreUnknown || isPresent)
             {
-                tuples.add(new Tuple3<>(uidx,iidx,value));
+                uidxs[m] = uidx; iidxs[m] = iidx; values[m] = value; m++;
                 this.trainData.updateRating(uidx, iidx, value);
             }
             
-            if(this.availability.get(uidx).contains(iidx))
-                this.availability.get(uidx).removeInt(this.availability.get(uidx).indexOf(iidx));
+            this.availability.remove(uidx, iidx);
             
             if(this.notReciprocal)
             {
                 if(this.prefData.numUsers(iidx) > 0 && this.prefData.numItems(uidx) > 0)
                 {
-                    Optional<IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
+                    Optional<? extends IdxPref> realvalue = this.prefData.getPreference(uidx, iidx);
                     value = realvalue.isPresent() ? realvalue.get().v2 : 0.0;
                     isPresent = realvalue.isPresent();
                 }
@@ -277,26 +346,52 @@ public abstract class InteractiveRecommender<U,I>
 
                 if(!this.ignoreUnknown || isPresent)
                 {
-                    tuples.add(new Tuple3<>(iidx,uidx,value));
+                    uidxs[m] = iidx; iidxs[m] = uidx; values[m] = value; m++;
                     this.trainData.updateRating(iidx, uidx, value);
                 }
 
-                if(this.availability.get(iidx).contains(uidx))
-                    this.availability.get(iidx).removeInt(this.availability.get(iidx).indexOf(uidx));
+                this.availability.remove(iidx, uidx);
             }
         }
         
-        this.updateMethod(tuples);
+        this.updateMethod(uidxs, iidxs, values, m);
     }
 
-
     /**
      * Updates the method.
      * @param train Training data.
      */
     public void updateMethod(List<Tuple3<Integer,Integer,Double>> train)
     {
-        train.forEach(tuple -> this.updateMethod(tuple.v1, tuple.v2, tuple.v3));
+        int n = train.size();
+        int[] users = new int[n];
+        int[] items = new int[n];
+        double[] values = new double[n];
+        for(int j = 0; j < n; ++j)
+        {
+            Tuple3<Integer, Integer, Double> tuple = train.get(j);
+            users[j] = tuple.v1;
+            items[j] = tuple.v2;
+            values[j] = tuple.v3;
+        }
+        this.updateMethod(users, items, values, n);
+    }
+
+    /**
+     * Updates the method with a batch of ratings, given as columns: the j-th rating is the one that
+     * users[j] provides to items[j], with value values[j]. The ratings have already been added to
+     * the training data. By default, the ratings are applied one by one, in order.
+     * @param users Identifiers of the users.
+     * @param items Identifiers of the items.
+     * @param values Values of the ratings.
+     * @param n Number of ratings.
+     */
+    public void updateMethod(int[] users, int[] items, double[] values, int n)
+    {
+        for(int j = 0; j < n; ++j)
+        {
+            this.updateMethod(users[j], items[j], values[j]);
+        }
     }
 
     /**
@@ -13,8 +13,8 @@ import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
+import es.uam.eps.ir.knnbandit.recommendation.arrival.UserArrival;
+import es.uam.eps.ir.knnbandit.recommendation.arrival.UserArrivals;
 import org.jooq.lambda.tuple.Tuple2;
 
 import java.util.*;
@@ -53,10 +53,6 @@ public class RecommendationLoop<U,I>
      * The random seed for the random number generator.
      */
     private final int rngSeed;
-    /**
-     * The number of users with recommendations.
-     */
-    private int numUsers;
     /**
      * The current iteration number.
      */
@@ -70,9 +66,17 @@ public class RecommendationLoop<U,I>
      */
     private final FastPreferenceData<U,I> prefData;
     /**
-     * List of users to be recommended
+     * Model selecting the users to be recommended.
+     */
+    private final UserArrival arrival;
+    /**
+     * Index of the user selected in the last iteration (-1 if no iteration has been executed).
+     */
+    private int lastUidx = -1;
+    /**
+     * Index of the item selected in the last iteration (-1 if no iteration has been executed).
      */
-    private final IntList userList;
+    private int lastIidx = -1;
 
     /**
      * Constructor. Uses 0 as the default random seed.
@@ -91,9 +95,7 @@ public class RecommendationLoop<U,I>
         this.recommender = recommender;
         this.metrics = metrics;
 
-        this.userList = new IntArrayList();
-        this.prefData.getUidxWithPreferences().forEach(userList::add);
-        this.numUsers = userList.size();
+        this.arrival = UserArrivals.uniform(prefData);
 
         this.rngSeed = 0;
         this.nIter = nIter;
@@ -111,6 +113,21 @@ public class RecommendationLoop<U,I>
      * @param rngSeed seed for a random number generator.
      */
     public RecommendationLoop(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, FastPreferenceData<U,I> prefData, InteractiveRecommender<U,I> recommender, Map<String, CumulativeMetric<U,I>> metrics, int nIter, int rngSeed)
+    {
+        this(userIndex, itemIndex, prefData, recommender, metrics, nIter, rngSeed, UserArrivals.uniform(prefData));
+    }
+
+    /**
+     * Constructor.
+     * @param userIndex Index containing the users.
+     * @param itemIndex Index containing the items.
+     * @param recommender The interactive recommendation algorithm.
+     * @param metrics The map of metrics.
+     * @param nIter Total number of iterations. 0 for iterating until no more recommendations can be done.
+     * @param rngSeed seed for a random number generator.
+     * @param arrival model selecting the user to be recommended in each iteration.
+     */
+    public RecommendationLoop(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, FastPreferenceData<U,I> prefData, InteractiveRecommender<U,I> recommender, Map<String, CumulativeMetric<U,I>> metrics, int nIter, int rngSeed, UserArrival arrival)
     {
         this.userIndex = userIndex;
         this.itemIndex = itemIndex;
@@ -119,9 +136,7 @@ public class RecommendationLoop<U,I>
         this.recommender = recommender;
         this.metrics = metrics;
 
-        this.userList = new IntArrayList();
-        this.prefData.getUidxWithPreferences().forEach(userList::add);
-        this.numUsers = userList.size();
+        this.arrival = arrival;
 
         this.rngSeed = rngSeed;
         rng = new Random(rngSeed);
@@ -135,7 +150,7 @@ public class RecommendationLoop<U,I>
      */
     public boolean hasEnded()
     {
-        if(numUsers == 0) return true;
+        if(arrival.isEmpty()) return true;
         return nIter > 0 && this.iteration >= nIter;
     }
 
@@ -145,9 +160,16 @@ public class RecommendationLoop<U,I>
      */
     public void update(Tuple2<U, I> tuple)
     {
-        int uidx = userIndex.user2uidx(tuple.v1);
-        int iidx = itemIndex.item2iidx(tuple.v2);
+        this.update(userIndex.user2uidx(tuple.v1), itemIndex.item2iidx(tuple.v2));
+    }
 
+    /**
+     * Recovers previous iterations from a file.
+     * @param uidx The index of the user to update.
+     * @param iidx The index of the item to update.
+     */
+    public void update(int uidx, int iidx)
+    {
         this.recommender.update(uidx, iidx);
         this.metrics.forEach((name, metric) -> metric.update(uidx, iidx));
         ++this.iteration;
@@ -168,18 +190,33 @@ public class RecommendationLoop<U,I>
      */
     public Tuple2<U, I> nextIteration()
     {
-        // We cannot continue.
-        if(this.numUsers == 0)
+        if(!this.nextIterationIdx())
             return null;
+        return new Tuple2<>(userIndex.uidx2user(lastUidx),itemIndex.iidx2item(lastIidx));
+    }
+
+    /**
+     * Executes the next iteration of the loop, without obtaining the selected user and item
+     * from the indexes. Their indexes are given by {@link #getLastUidx()} and {@link #getLastIidx()}.
+     * @return true if the iteration has been executed, false if the loop has finished.
+     */
+    public boolean nextIterationIdx()
+    {
+        // We cannot continue.
+        if(this.arrival.isEmpty())
+            return false;
 
         // Select user and item for this iteration.
         boolean cont = false;
         int uidx;
-        int iidx;
+        int iidx = -1;
         do
         {
-            int index = rng.nextInt(numUsers);
-            uidx = this.userList.get(index);
+            uidx = this.arrival.next(rng);
+            if(uidx == -1)
+            {
+                break;
+            }
             iidx = recommender.next(uidx);
             // If the user cannot be recommended another item.
             if(iidx != -1)
@@ -188,21 +225,40 @@ public class RecommendationLoop<U,I>
             }
             else
             {
-                this.numUsers--;
-                this.userList.remove(index);
+                this.arrival.remove(uidx);
             }
         }
-        while(!cont && this.numUsers > 0);
+        while(!cont && !this.arrival.isEmpty());
 
-        if(this.numUsers == 0)
-            return null;
+        if(!cont)
+            return false;
 
         int defUidx = uidx;
         int defIidx = iidx;
         recommender.update(defUidx, defIidx);
         metrics.forEach((name, metric) -> metric.update(defUidx, defIidx));
         ++this.iteration;
-        return new Tuple2<>(userIndex.uidx2user(uidx),itemIndex.iidx2item(iidx));
+        this.lastUidx = uidx;
+        this.lastIidx = iidx;
+        return true;
+    }
+
+    /**
+     * Obtains the index of the user selected in the last iteration.
+     * @return the index of the user, -1 if no iteration has been executed.
+     */
+    public int getLastUidx()
+    {
+        return this.lastUidx;
+    }
+
+    /**
+     * Obtains the index of the item selected in the last iteration.
+     * @return the index of the item, -1 if no iteration has been executed.
+     */
+    public int getLastIidx()
+    {
+        return this.lastIidx;
     }
 
     /**
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation;
+
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Lists of the items which can still be recommended to each user. The list of a user is
+ * only created the first time it is accessed, so users who are never selected do not
+ * take any memory. Lists are sorted in ascending order, and they only lose elements.
+ *
+ * Creating the lists is thread-safe: if several threads access the list of the same user
+ * for the first time, all of them obtain the same list. Modifying a list is not.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class UserAvailability
+{
+    /**
+     * Availability lists of the users (null if they have not been created yet).
+     */
+    private final AtomicReferenceArray<IntList> lists;
+    /**
+     * Function that creates the initial (sorted) availability list of a user.
+     */
+    private final IntFunction<IntList> initializer;
+
+    /**
+     * Constructor.
+     * @param numUsers Number of users.
+     * @param initializer Function that creates the initial availability list of a user, sorted in ascending order.
+     */
+    public UserAvailability(int numUsers, IntFunction<IntList> initializer)
+    {
+        this.lists = new AtomicReferenceArray<>(numUsers);
+        this.initializer = initializer;
+    }
+
+    /**
+     * Obtains the list of available items for a user, creating it if necessary.
+     * @param uidx User identifier.
+     * @return the list of available items, sorted in ascending order.
+     */
+    public IntList get(int uidx)
+    {
+        IntList list = this.lists.get(uidx);
+        if(list == null)
+        {
+            IntList created = this.initializer.apply(uidx);
+            list = this.lists.compareAndSet(uidx, null, created) ? created : this.lists.get(uidx);
+        }
+        return list;
+    }
+
+    /**
+     * Checks whether an item is available for a user.
+     * @param uidx User identifier.
+     * @param iidx Item identifier.
+     * @return true if the item is available for the user, false otherwise.
+     */
+    public boolean contains(int uidx, int iidx)
+    {
+        return find(this.get(uidx), iidx) >= 0;
+    }
+
+    /**
+     * Removes an item from the available items of a user.
+     * @param uidx User identifier.
+     * @param iidx Item identifier.
+     * @return true if the item was available, false otherwise.
+     */
+    public boolean remove(int uidx, int iidx)
+    {
+        IntList list = this.get(uidx);
+        int pos = find(list, iidx);
+        if(pos < 0) return false;
+        list.removeInt(pos);
+        return true;
+    }
+
+    /**
+     * Checks whether the list of a user has already been created.
+     * @param uidx User identifier.
+     * @return true if the list has been created, false otherwise.
+     */
+    public boolean isInitialized(int uidx)
+    {
+        return this.lists.get(uidx) != null;
+    }
+
+    /**
+     * Obtains the number of users.
+     * @return the number of users.
+     */
+    public int numUsers()
+    {
+        return this.lists.length();
+    }
+
+    /**
+     * Binary search of an item in a sorted list.
+     * @param list The list.
+     * @param iidx Item identifier.
+     * @return the position of the item in the list, -1 if it is not in the list.
+     */
+    private static int find(IntList list, int iidx)
+    {
+        int low = 0;
+        int high = list.size() - 1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int val = list.getInt(mid);
+            if(val < iidx) low = mid + 1;
+            else if(val > iidx) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.arrival;
+
+import java.util.Random;
+
+/**
+ * Users arrive following a fixed sequence (for instance, the temporal order of the ratings
+ * in a dataset). Users who have been removed from the pool are skipped. Once the sequence
+ * has been consumed, no more users arrive.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class ReplayUserArrival implements UserArrival
+{
+    /**
+     * The sequence of users.
+     */
+    private final int[] sequence;
+    /**
+     * Whether each user has been removed from the pool.
+     */
+    private final boolean[] removed;
+    /**
+     * Current position in the sequence.
+     */
+    private int cursor;
+
+    /**
+     * Constructor.
+     * @param sequence The sequence of users.
+     */
+    public ReplayUserArrival(int[] sequence)
+    {
+        this.sequence = sequence;
+        int max = -1;
+        for(int uidx : sequence)
+        {
+            max = Math.max(max, uidx);
+        }
+        this.removed = new boolean[max + 1];
+        this.cursor = 0;
+    }
+
+    @Override
+    public int next(Random rng)
+    {
+        this.skipRemoved();
+        if(cursor >= sequence.length)
+        {
+            return -1;
+        }
+        return sequence[cursor++];
+    }
+
+    @Override
+    public void remove(int uidx)
+    {
+        if(uidx >= 0 && uidx < removed.length)
+        {
+            removed[uidx] = true;
+        }
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        this.skipRemoved();
+        return cursor >= sequence.length;
+    }
+
+    /**
+     * Advances the cursor past the users who have been removed.
+     */
+    private void skipRemoved()
+    {
+        while(cursor < sequence.length && removed[sequence[cursor]])
+        {
+            ++cursor;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.arrival;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Users arrive uniformly at random. The active users are kept in a dense array, so
+ * sampling a user and removing it (by swapping it with the last active user) take O(1).
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class UniformUserArrival implements UserArrival
+{
+    /**
+     * Active users, in positions 0 to numActive-1.
+     */
+    private final int[] users;
+    /**
+     * Position of each user in the users array (-1 if the user is not active).
+     */
+    private final int[] positions;
+    /**
+     * Number of active users.
+     */
+    private int numActive;
+
+    /**
+     * Constructor.
+     * @param users Identifiers of the users in the pool.
+     */
+    public UniformUserArrival(int[] users)
+    {
+        this.users = users.clone();
+        this.numActive = users.length;
+
+        int max = -1;
+        for(int uidx : users)
+        {
+            max = Math.max(max, uidx);
+        }
+        this.positions = new int[max + 1];
+        Arrays.fill(positions, -1);
+        for(int i = 0; i < numActive; ++i)
+        {
+            positions[this.users[i]] = i;
+        }
+    }
+
+    @Override
+    public int next(Random rng)
+    {
+        if(numActive == 0)
+        {
+            return -1;
+        }
+        return users[rng.nextInt(numActive)];
+    }
+
+    @Override
+    public void remove(int uidx)
+    {
+        if(uidx < 0 || uidx >= positions.length || positions[uidx] < 0)
+        {
+            return;
+        }
+
+        int pos = positions[uidx];
+        int last = users[--numActive];
+        users[pos] = last;
+        positions[last] = pos;
+        users[numActive] = uidx;
+        positions[uidx] = -1;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return numActive == 0;
+    }
+}
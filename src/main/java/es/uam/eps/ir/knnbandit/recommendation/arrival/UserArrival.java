@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.arrival;
+
+import java.util.Random;
+
+/**
+ * Selects the user who receives a recommendation in each iteration of the recommendation loop.
+ * Users can be removed from the pool once they cannot receive more recommendations.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public interface UserArrival
+{
+    /**
+     * Selects the next user.
+     * @param rng Random number generator.
+     * @return the identifier of the user, -1 if no user remains.
+     */
+    int next(Random rng);
+
+    /**
+     * Removes a user from the pool. Removing a user who is not in the pool has no effect.
+     * @param uidx Identifier of the user.
+     */
+    void remove(int uidx);
+
+    /**
+     * Checks whether any user remains in the pool.
+     * @return true if no user remains, false otherwise.
+     */
+    boolean isEmpty();
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.arrival;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.util.Arrays;
+
+/**
+ * Builders of the user arrival models over a preference dataset.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class UserArrivals
+{
+    /**
+     * Identifier of the uniform arrival model.
+     */
+    public static final String UNIFORM = "uniform";
+    /**
+     * Identifier of the activity-proportional arrival model.
+     */
+    public static final String ACTIVITY = "activity";
+    /**
+     * Identifier of the replayed arrival model.
+     */
+    public static final String REPLAY = "replay";
+
+    /**
+     * Uniform arrival over the users with preferences.
+     * @param prefData Preference data.
+     * @return the arrival model.
+     */
+    public static UserArrival uniform(FastPreferenceData<?, ?> prefData)
+    {
+        return new UniformUserArrival(prefData.getUidxWithPreferences().toArray());
+    }
+
+    /**
+     * Arrival proportional to the number of preferences of each user.
+     * @param prefData Preference data.
+     * @return the arrival model.
+     */
+    public static UserArrival activity(FastPreferenceData<?, ?> prefData)
+    {
+        int[] users = prefData.getUidxWithPreferences().toArray();
+        long[] weights = new long[users.length];
+        for(int i = 0; i < users.length; ++i)
+        {
+            weights[i] = prefData.numItems(users[i]);
+        }
+        return new WeightedUserArrival(users, weights);
+    }
+
+    /**
+     * Arrival following a fixed sequence of users. Only users with preferences are kept.
+     * @param prefData Preference data.
+     * @param sequence The sequence of users.
+     * @return the arrival model.
+     */
+    public static UserArrival replay(FastPreferenceData<?, ?> prefData, int[] sequence)
+    {
+        return new ReplayUserArrival(Arrays.stream(sequence).filter(uidx -> uidx >= 0 && prefData.numItems(uidx) > 0).toArray());
+    }
+
+    /**
+     * Checks whether a name identifies a valid arrival model.
+     * @param name The name.
+     * @return true if the name is valid, false otherwise.
+     */
+    public static boolean isValid(String name)
+    {
+        return UNIFORM.equals(name) || ACTIVITY.equals(name) || REPLAY.equals(name);
+    }
+}
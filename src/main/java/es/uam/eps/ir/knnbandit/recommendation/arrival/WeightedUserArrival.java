@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.arrival;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Users arrive with probability proportional to a (non-negative) weight, such as their
+ * activity. Weights are stored in a Fenwick tree, so both sampling a user and removing it
+ * take O(log n). Users with zero weight never arrive.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class WeightedUserArrival implements UserArrival
+{
+    /**
+     * Users in the pool.
+     */
+    private final int[] users;
+    /**
+     * Position of each user in the users array (-1 if the user is not in the pool).
+     */
+    private final int[] positions;
+    /**
+     * Current weight of the user at each position (0 once removed).
+     */
+    private final long[] weights;
+    /**
+     * Fenwick tree over the weights (1-based).
+     */
+    private final long[] tree;
+    /**
+     * Highest power of two not greater than the number of users.
+     */
+    private final int topBit;
+    /**
+     * Sum of the current weights.
+     */
+    private long total;
+    /**
+     * Number of users with positive weight.
+     */
+    private int numActive;
+
+    /**
+     * Constructor.
+     * @param users Identifiers of the users in the pool.
+     * @param weights Weight of each user (same order as the users).
+     */
+    public WeightedUserArrival(int[] users, long[] weights)
+    {
+        if(users.length != weights.length)
+        {
+            throw new IllegalArgumentException("The number of users and weights must be the same");
+        }
+
+        int n = users.length;
+        this.users = users.clone();
+        this.weights = weights.clone();
+        this.tree = new long[n + 1];
+
+        int max = -1;
+        for(int uidx : users)
+        {
+            max = Math.max(max, uidx);
+        }
+        this.positions = new int[max + 1];
+        Arrays.fill(positions, -1);
+
+        this.total = 0L;
+        this.numActive = 0;
+        for(int i = 0; i < n; ++i)
+        {
+            if(this.weights[i] < 0)
+            {
+                throw new IllegalArgumentException("Weights cannot be negative");
+            }
+            positions[this.users[i]] = i;
+            total += this.weights[i];
+            if(this.weights[i] > 0)
+            {
+                ++numActive;
+            }
+
+            // Linear construction of the Fenwick tree.
+            tree[i + 1] += this.weights[i];
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if(parent <= n)
+            {
+                tree[parent] += tree[i + 1];
+            }
+        }
+
+        this.topBit = n == 0 ? 0 : Integer.highestOneBit(n);
+    }
+
+    @Override
+    public int next(Random rng)
+    {
+        if(numActive == 0)
+        {
+            return -1;
+        }
+
+        // Position whose cumulative weight first exceeds the target.
+        long target = (long) (rng.nextDouble() * total);
+        int pos = 0;
+        for(int step = topBit; step > 0; step >>= 1)
+        {
+            int nextPos = pos + step;
+            if(nextPos < tree.length && tree[nextPos] <= target)
+            {
+                pos = nextPos;
+                target -= tree[nextPos];
+            }
+        }
+
+        // Guard against rounding: never return a removed user.
+        while(pos < weights.length && weights[pos] == 0)
+        {
+            ++pos;
+        }
+        if(pos >= weights.length)
+        {
+            pos = weights.length - 1;
+            while(weights[pos] == 0) --pos;
+        }
+        return users[pos];
+    }
+
+    @Override
+    public void remove(int uidx)
+    {
+        if(uidx < 0 || uidx >= positions.length || positions[uidx] < 0)
+        {
+            return;
+        }
+
+        int pos = positions[uidx];
+        long weight = weights[pos];
+        positions[uidx] = -1;
+        if(weight == 0)
+        {
+            return;
+        }
+
+        weights[pos] = 0;
+        total -= weight;
+        --numActive;
+        for(int i = pos + 1; i < tree.length; i += i & -i)
+        {
+            tree[i] -= weight;
+        }
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return numActive == 0;
+    }
+}
@@ -0,0 +1,13 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+/**
+ * Models of the order in which users arrive to the recommendation loop.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.arrival;
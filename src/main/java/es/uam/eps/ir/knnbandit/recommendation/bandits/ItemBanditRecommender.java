@@ -14,7 +14,7 @@ import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserInde
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.functions.ValueFunction;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.item.ItemBandit;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Simple non-personalized item-based multi-armed bandit recommender.
@@ -43,7 +43,7 @@ public class ItemBanditRecommender<U,I> extends InteractiveRecommender<U,I>
      * @param itemBandit An item bandit.
      * @param valFunc A value function of the reward.
      */
-    public ItemBanditRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, ItemBandit<U,I> itemBandit, ValueFunction valFunc)
+    public ItemBanditRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, ItemBandit<U,I> itemBandit, ValueFunction valFunc)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown);
         this.itemBandit = itemBandit;
@@ -59,7 +59,7 @@ public class ItemBanditRecommender<U,I> extends InteractiveRecommender<U,I>
      * @param itemBandit An item bandit.
      * @param valFunc A value function of the reward.
      */
-    public ItemBanditRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, boolean notReciprocal, ItemBandit<U,I> itemBandit, ValueFunction valFunc)
+    public ItemBanditRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean notReciprocal, ItemBandit<U,I> itemBandit, ValueFunction valFunc)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal);
         this.itemBandit = itemBandit;
@@ -9,12 +9,11 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.basic;
 
-import java.util.List;
 import java.util.stream.IntStream;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
-import org.jooq.lambda.tuple.Tuple3;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Interactive version of an average rating recommendation algorithm.
@@ -37,7 +36,7 @@ public class AvgRecommender<U,I> extends AbstractBasicInteractiveRecommender<U,I
      * @param prefData Preference data.
      * @param ignoreUnknown True if (user, item) pairs without training must be ignored.
      */
-    public AvgRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, boolean ignoreUnknown)
+    public AvgRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, boolean ignoreUnknown)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown);
         this.numTimes = new double[prefData.numItems()];
@@ -52,7 +51,7 @@ public class AvgRecommender<U,I> extends AbstractBasicInteractiveRecommender<U,I
      * @param ignoreUnknown True if (user, item) pairs without training must be ignored.
      * @param notReciprocal True if we do not recommend reciprocal social links, false otherwise
      */
-    public AvgRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, boolean ignoreUnknown, boolean notReciprocal)
+    public AvgRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, boolean ignoreUnknown, boolean notReciprocal)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal);
         this.numTimes = new double[prefData.numItems()];
@@ -71,11 +70,17 @@ public class AvgRecommender<U,I> extends AbstractBasicInteractiveRecommender<U,I
     }
     
     @Override
-    public void updateMethod(List<Tuple3<Integer,Integer,Double>> train)
+    public void updateMethod(int[] users, int[] items, double[] values, int n)
     {
         for(int i = 0; i < this.prefData.numItems();++i)
         {
-            this.values[i] = this.prefData.getIidxPreferences(i).mapToDouble(v -> v.v2).sum();
+            double sum = 0.0;
+            DoubleIterator vs = this.prefData.getIidxVs(i);
+            while(vs.hasNext())
+            {
+                sum += vs.nextDouble();
+            }
+            this.values[i] = sum;
             this.numTimes[i] = this.prefData.numUsers(i);
             if(this.numTimes[i] > 0) this.values[i]/=(this.numTimes[i] + 0.0);
         }
@@ -9,11 +9,10 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.basic;
 
-import java.util.List;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
-import org.jooq.lambda.tuple.Tuple3;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Interactive version of a popularity-based algorithm.
@@ -37,7 +36,7 @@ public class PopularityRecommender<U,I> extends AbstractBasicInteractiveRecommen
      * @param ignoreUnknown True if we must ignore unknown items when updating.
      * @param threshold Relevance threshold
      */
-    public PopularityRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, boolean ignoreUnknown, double threshold)
+    public PopularityRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, boolean ignoreUnknown, double threshold)
     {
         super(uIndex, iIndex, prefData,ignoreUnknown);
         this.threshold = threshold;
@@ -52,7 +51,7 @@ public class PopularityRecommender<U,I> extends AbstractBasicInteractiveRecommen
      * @param threshold Relevance threshold
      * @param notReciprocal True if we do not recommend reciprocal social links, false otherwise
      */
-    public PopularityRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, boolean ignoreUnknown, double threshold, boolean notReciprocal)
+    public PopularityRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, boolean ignoreUnknown, double threshold, boolean notReciprocal)
     {
         super(uIndex, iIndex, prefData,ignoreUnknown, notReciprocal);
         this.threshold = threshold;
@@ -65,10 +64,18 @@ public class PopularityRecommender<U,I> extends AbstractBasicInteractiveRecommen
     }
     
     @Override
-    public void updateMethod(List<Tuple3<Integer,Integer,Double>> train)
+    public void updateMethod(int[] users, int[] items, double[] values, int n)
     {
         for(int iidx = 0; iidx < this.prefData.numItems(); ++iidx)
-        this.values[iidx] = this.trainData.getIidxPreferences(iidx).filter(vidx -> vidx.v2 > 0).count();
+        {
+            int count = 0;
+            DoubleIterator vs = this.trainData.getIidxVs(iidx);
+            while(vs.hasNext())
+            {
+                if(vs.nextDouble() > 0) count++;
+            }
+            this.values[iidx] = count;
+        }
     }
 
 }
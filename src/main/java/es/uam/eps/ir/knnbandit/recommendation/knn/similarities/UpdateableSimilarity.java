@@ -11,6 +11,7 @@ package es.uam.eps.ir.knnbandit.recommendation.knn.similarities;
 
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.nn.sim.Similarity;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 
 /**
  * Updateable version of similarity.
@@ -29,6 +30,21 @@ public interface UpdateableSimilarity extends Similarity
      */
     public void update(int uidx, int vidx, int iidx, double uval, double vval);
 
+    /**
+     * Updates the similarity between a user and the users who rated an item, when all their ratings are equal to 1.0.
+     * @param uidx Identifier of the user.
+     * @param iidx Identifier of the item.
+     * @param uval Rating of the user for the item.
+     * @param vidxs Identifiers of the users who rated the item.
+     */
+    public default void updateBinary(int uidx, int iidx, double uval, IntIterator vidxs)
+    {
+        while(vidxs.hasNext())
+        {
+            this.update(uidx, vidxs.nextInt(), iidx, uval, 1.0);
+        }
+    }
+
     /**
      * Updates the similarity.
      * @param prefData Preference data.
@@ -13,6 +13,7 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import es.uam.eps.ir.knnbandit.stats.BetaDistribution;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import org.ranksys.core.util.tuples.Tuple2id;
 
 /**
@@ -119,6 +120,33 @@ public class BetaStochasticSimilarity implements StochasticUpdateableSimilarity
         }
     }
 
+    @Override
+    public void updateBinary(int uidx, int iidx, double uval, IntIterator vidxs)
+    {
+        // Same result as calling update for each user, with vval = 1.0.
+        if(!vidxs.hasNext())
+        {
+            return;
+        }
+
+        if(uval > 0)
+        {
+            while(vidxs.hasNext())
+            {
+                int vidx = vidxs.nextInt();
+                sims[uidx][vidx] += 1.0;
+                sims[vidx][uidx] += 1.0;
+            }
+        }
+
+        if(lastu != uidx || lasti != iidx)
+        {
+            lastu = uidx;
+            lasti = iidx;
+            if(uval > 0) this.usercount[uidx] += 1;
+        }
+    }
+
     @Override
     public IntToDoubleFunction similarity(int idx)
     {
@@ -160,6 +188,25 @@ public class BetaStochasticSimilarity implements StochasticUpdateableSimilarity
             });
         });
 
+        // The rating values are not used, so iterators over the indexes can be used when available.
+        if(prefData.useIteratorsPreferentially())
+        {
+            prefData.getAllUidx().forEach(uidx ->
+            {
+                this.usercount[uidx] = prefData.numItems(uidx);
+                IntIterator iidxs = prefData.getUidxIidxs(uidx);
+                while(iidxs.hasNext())
+                {
+                    IntIterator vidxs = prefData.getIidxUidxs(iidxs.nextInt());
+                    while(vidxs.hasNext())
+                    {
+                        this.sims[uidx][vidxs.nextInt()] += 1.0;
+                    }
+                }
+            });
+            return;
+        }
+
         // First, find the norms.
         prefData.getAllUidx().forEach(uidx ->
         {
@@ -11,19 +11,23 @@ package es.uam.eps.ir.knnbandit.recommendation.knn.user;
 
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.recommendation.FriendsOfFriendsCandidates;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
 import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.UpdateableSimilarity;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.List;
+import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.Random;
-import org.jooq.lambda.tuple.Tuple3;
 import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Abstract version of an interactive user-based kNN algorithm
@@ -54,6 +58,11 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
     private final IntList userList;
     
     private final boolean ignoreZeros;
+    /**
+     * Candidate items for each user (friends of friends, in contact recommendation). Null if the
+     * candidates are not restricted.
+     */
+    private final FriendsOfFriendsCandidates candidates;
     
     /**
      * Constructor.
@@ -65,7 +74,7 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
      * @param k Number of neighbors to use.
      * @param sim Updateable similarity
      */
-    public AbstractInteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, int k, UpdateableSimilarity sim)
+    public AbstractInteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, int k, UpdateableSimilarity sim)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown);
         this.sim = sim;
@@ -80,6 +89,7 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
             return value;
         };
         this.ignoreZeros = ignoreZeros;
+        this.candidates = null;
     }
     
     /**
@@ -93,7 +103,25 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
      * @param k Number of neighbors to use.
      * @param sim Updateable similarity
      */
-    public AbstractInteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, boolean notReciprocal, int k, UpdateableSimilarity sim)
+    public AbstractInteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, boolean notReciprocal, int k, UpdateableSimilarity sim)
+    {
+        this(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeros, notReciprocal, k, sim, 0);
+    }
+
+    /**
+     * Constructor for contact recommendation, which only scores the friends of the friends of the
+     * target user in the training graph.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param ignoreZeros True if we ignore zero ratings when updating.
+     * @param notReciprocal True if we do not recommend reciprocal social links, false otherwise.
+     * @param k Number of neighbors to use.
+     * @param sim Updateable similarity
+     * @param maxCandidates Maximum number of candidates for each user (0 to score all the items).
+     */
+    public AbstractInteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, boolean notReciprocal, int k, UpdateableSimilarity sim, int maxCandidates)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal);
         this.sim = sim;
@@ -108,6 +136,7 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
             return value;
         };      
         this.ignoreZeros = ignoreZeros;
+        this.candidates = (maxCandidates > 0) ? new FriendsOfFriendsCandidates(this.trainData, this.availability, maxCandidates) : null;
     }
     
     @Override
@@ -116,21 +145,16 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
         IntList list = this.availability.get(uidx);
         if(list == null || list.isEmpty()) return -1;
         
+        if(this.candidates != null)
+        {
+            return this.nextCandidate(uidx, list);
+        }
+        
         // Shuffle the order of users.
         Collections.shuffle(userList, neighborUntie);
         
         // Obtain the top-k best neighbors for user uidx.
-        PriorityQueue<Tuple2id> neighborHeap = new PriorityQueue<>(k, comp);
-        this.sim.similarElems(uidx).forEach(vidx -> 
-        {
-            double s = vidx.v2;
-            if(neighborHeap.size() < k) neighborHeap.add(new Tuple2id(vidx.v1,vidx.v2));
-            else if(neighborHeap.peek().v2 <= s)
-            {
-                neighborHeap.poll();
-                neighborHeap.add(new Tuple2id(vidx.v1, s));
-            }
-        });
+        PriorityQueue<Tuple2id> neighborHeap = this.getNeighbors(uidx, comp);
         
         if(neighborHeap.isEmpty())
         {
@@ -144,6 +168,21 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
         while(!neighborHeap.isEmpty())
         {
             Tuple2id neigh = neighborHeap.poll();
+
+            if(this.trainData.isBinary())
+            {
+                // All the ratings are equal to 1.0, so the neighbor gives the same score to all its items.
+                double p = neigh.v2*this.score(neigh.v1, 1.0);
+                if(!ignoreZeros || p > 0)
+                {
+                    IntIterator iidxs = this.trainData.getUidxIidxs(neigh.v1);
+                    while(iidxs.hasNext())
+                    {
+                        itemScores.addTo(iidxs.nextInt(), p);
+                    }
+                }
+                continue;
+            }
             
             this.trainData.getUidxPreferences(neigh.v1).forEach(vs -> 
             {
@@ -182,6 +221,188 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
         return top.get(rng.nextInt(topSize));
     }
 
+    /**
+     * Selects the next item for a user, only scoring its candidates.
+     * @param uidx User identifier.
+     * @param list The available items for the user.
+     * @return the identifier of the recommended item.
+     */
+    private int nextCandidate(int uidx, IntList list)
+    {
+        IntSet cands = this.candidates.get(uidx);
+        if(cands.isEmpty())
+        {
+            return list.get(rng.nextInt(list.size()));
+        }
+
+        // Ties between neighbors are broken by a random permutation of the user identifiers, which
+        // changes in every request. Unlike shuffling the list of users, it does not depend on the
+        // size of the network.
+        long salt = neighborUntie.nextLong();
+        Comparator<Tuple2id> randomComp = (Tuple2id x, Tuple2id y) ->
+        {
+            int value = Double.compare(x.v2, y.v2);
+            if(value == 0)
+                return Long.compare(untieKey(x.v1, salt), untieKey(y.v1, salt));
+            return value;
+        };
+
+        // Obtain the top-k best neighbors for user uidx.
+        PriorityQueue<Tuple2id> neighborHeap = this.getNeighbors(uidx, randomComp);
+
+        Int2DoubleOpenHashMap itemScores = new Int2DoubleOpenHashMap();
+        itemScores.defaultReturnValue(0.0);
+
+        // Then, generate scores for the candidates. Depending on the number of items of each
+        // neighbor, we either traverse its items, or look for the candidates among them.
+        while(!neighborHeap.isEmpty())
+        {
+            Tuple2id neigh = neighborHeap.poll();
+            if(this.trainData.numItems(neigh.v1) <= cands.size())
+            {
+                IntIterator iidxs = this.trainData.getUidxIidxs(neigh.v1);
+                DoubleIterator vs = this.trainData.getUidxVs(neigh.v1);
+                while(iidxs.hasNext())
+                {
+                    int iidx = iidxs.nextInt();
+                    double v = vs.nextDouble();
+                    if(cands.contains(iidx))
+                    {
+                        double p = neigh.v2*this.score(neigh.v1, v);
+                        if(!ignoreZeros || p > 0)
+                        {
+                            itemScores.addTo(iidx, p);
+                        }
+                    }
+                }
+            }
+            else
+            {
+                IntIterator iidxs = cands.iterator();
+                while(iidxs.hasNext())
+                {
+                    int iidx = iidxs.nextInt();
+                    Optional<IdxPref> pref = this.trainData.getPreference(neigh.v1, iidx);
+                    if(pref.isPresent())
+                    {
+                        double p = neigh.v2*this.score(neigh.v1, pref.get().v2);
+                        if(!ignoreZeros || p > 0)
+                        {
+                            itemScores.addTo(iidx, p);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Select the best candidate.
+        double max = Double.NEGATIVE_INFINITY;
+        IntList top = new IntArrayList();
+        for(int iidx : itemScores.keySet())
+        {
+            double val = itemScores.get(iidx);
+            if(!this.isAvailable(uidx, iidx)) continue;
+
+            if(top.isEmpty() || val > max)
+            {
+                top.clear();
+                max = val;
+                top.add(iidx);
+            }
+            else if(val == max)
+            {
+                top.add(iidx);
+            }
+        }
+
+        // If no candidate has been scored, we select a random one.
+        if(top.isEmpty())
+        {
+            IntIterator iidxs = cands.iterator();
+            while(iidxs.hasNext())
+            {
+                int iidx = iidxs.nextInt();
+                if(this.isAvailable(uidx, iidx)) top.add(iidx);
+            }
+            if(top.isEmpty()) return list.get(rng.nextInt(list.size()));
+        }
+        
+        int topSize = top.size();
+        if(topSize == 1) return top.get(0);
+        return top.get(rng.nextInt(topSize));
+    }
+
+    /**
+     * Obtains a pseudo-random key for a user, used for breaking ties between neighbors.
+     * @param vidx User identifier.
+     * @param salt Random value, different for each request.
+     * @return the key.
+     */
+    private static long untieKey(int vidx, long salt)
+    {
+        // Finalization step of the MurmurHash3 64-bit hash function.
+        long h = vidx ^ salt;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Finds the top-k neighbors of a user.
+     * @param uidx User identifier.
+     * @param comp Comparator for the neighbors.
+     * @return a heap containing the neighbors.
+     */
+    private PriorityQueue<Tuple2id> getNeighbors(int uidx, Comparator<Tuple2id> comp)
+    {
+        PriorityQueue<Tuple2id> neighborHeap = new PriorityQueue<>(k, comp);
+        this.sim.similarElems(uidx).forEach(vidx -> 
+        {
+            double s = vidx.v2;
+            if(neighborHeap.size() < k) neighborHeap.add(new Tuple2id(vidx.v1,vidx.v2));
+            else if(neighborHeap.peek().v2 <= s)
+            {
+                neighborHeap.poll();
+                neighborHeap.add(new Tuple2id(vidx.v1, s));
+            }
+        });
+        return neighborHeap;
+    }
+
+    @Override
+    public void update(int uidx, int iidx)
+    {
+        super.update(uidx, iidx);
+        if(this.candidates != null)
+        {
+            this.candidates.update(uidx, iidx);
+            if(this.notReciprocal)
+            {
+                this.candidates.update(iidx, uidx);
+            }
+        }
+    }
+
+    @Override
+    public void update(int[] users, int[] items, int n)
+    {
+        super.update(users, items, n);
+        if(this.candidates != null)
+        {
+            for(int j = 0; j < n; ++j)
+            {
+                this.candidates.update(users[j], items[j]);
+                if(this.notReciprocal)
+                {
+                    this.candidates.update(items[j], users[j]);
+                }
+            }
+        }
+    }
+
     /**
      * Scoring function.
      * @param vidx Identifier of the neighbor user.
@@ -191,7 +412,7 @@ public abstract class AbstractInteractiveUserBasedKNN<U,I> extends InteractiveRe
     protected abstract double score(int vidx, double rating);
     
     @Override
-    public void updateMethod(List<Tuple3<Integer,Integer,Double>> train)
+    public void updateMethod(int[] users, int[] items, double[] values, int n)
     {
         this.sim.update(this.trainData);
     }
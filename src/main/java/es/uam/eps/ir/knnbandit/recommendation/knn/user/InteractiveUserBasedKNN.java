@@ -12,7 +12,7 @@ package es.uam.eps.ir.knnbandit.recommendation.knn.user;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.UpdateableSimilarity;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Interactive version of user-based kNN algorithm.
@@ -33,7 +33,7 @@ public class InteractiveUserBasedKNN<U,I> extends AbstractInteractiveUserBasedKN
      * @param k Number of neighbors to use.
      * @param sim Updateable similarity
      */
-    public InteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, int k, UpdateableSimilarity sim)
+    public InteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, int k, UpdateableSimilarity sim)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeros, k, sim);
     }
@@ -47,14 +47,38 @@ public class InteractiveUserBasedKNN<U,I> extends AbstractInteractiveUserBasedKN
      * @param k Number of neighbors to use.
      * @param sim Updateable similarity
      */
-    public InteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, boolean notReciprocal, int k, UpdateableSimilarity sim)
+    public InteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, boolean notReciprocal, int k, UpdateableSimilarity sim)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeros, notReciprocal, k, sim);
     }
+
+    /**
+     * Constructor for contact recommendation, which only scores the friends of the friends of the
+     * target user in the training graph.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param ignoreZeros True if we ignore zero ratings when updating.
+     * @param notReciprocal True if we do not recommend reciprocal social links, false otherwise.
+     * @param k Number of neighbors to use.
+     * @param sim Updateable similarity
+     * @param maxCandidates Maximum number of candidates for each user (0 to score all the items).
+     */
+    public InteractiveUserBasedKNN(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean ignoreZeros, boolean notReciprocal, int k, UpdateableSimilarity sim, int maxCandidates)
+    {
+        super(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeros, notReciprocal, k, sim, maxCandidates);
+    }
     
     @Override
     public void updateMethod(int uidx, int iidx, double value)
     {
+        if(this.trainData.isBinary())
+        {
+            this.sim.updateBinary(uidx, iidx, value, this.trainData.getIidxUidxs(iidx));
+            return;
+        }
+
         this.trainData.getIidxPreferences(iidx).forEach(vidx -> 
         {
             this.sim.update(uidx, vidx.v1, iidx, value, vidx.v2);
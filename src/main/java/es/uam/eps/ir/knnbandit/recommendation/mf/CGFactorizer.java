@@ -0,0 +1,409 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+import cern.colt.function.DoubleFunction;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.als.ALSFactorizer;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Implicit ALS factorization where each row is approximately solved with a few
+ * steps of the conjugate gradient method, warm-started from the previous solution.
+ * <p>
+ * G. Takács, I. Pilászy and D. Tikk. Applications of the Conjugate Gradient Method
+ * for Implicit Feedback Collaborative Filtering. RecSys 2011.
+ * <p>
+ * It optimizes the same objective as the factorizer of Hu, Koren and Volinsky, but
+ * avoids solving a full K×K linear system for every user and item. The Gram matrix
+ * of the fixed factors is computed once per half-iteration and shared by all rows.
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CGFactorizer<U, I> extends ALSFactorizer<U, I>
+{
+    /**
+     * Default number of conjugate gradient steps per row.
+     */
+    private final static int DEFAULT_CG_STEPS = 3;
+    /**
+     * Regularization factor for the user matrix.
+     */
+    private final double lambdaP;
+    /**
+     * Regularization factor for the item matrix.
+     */
+    private final double lambdaQ;
+    /**
+     * The confidence.
+     */
+    private final DoubleUnaryOperator confidence;
+    /**
+     * Number of conjugate gradient steps to apply to each row.
+     */
+    private final int numCGSteps;
+    /**
+     * Scratch buffers for each thread, reused between users and iterations.
+     */
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * Constructor. Same regularization factor for user and item matrices, and default number of
+     * conjugate gradient steps.
+     *
+     * @param lambda     regularization factor
+     * @param confidence confidence function
+     * @param numIter    number of iterations
+     */
+    public CGFactorizer(double lambda, DoubleUnaryOperator confidence, int numIter)
+    {
+        this(lambda, lambda, confidence, numIter, DEFAULT_CG_STEPS);
+    }
+
+    /**
+     * Constructor. Same regularization factor for user and item matrices.
+     *
+     * @param lambda     regularization factor
+     * @param confidence confidence function
+     * @param numIter    number of iterations
+     * @param numCGSteps number of conjugate gradient steps per row
+     */
+    public CGFactorizer(double lambda, DoubleUnaryOperator confidence, int numIter, int numCGSteps)
+    {
+        this(lambda, lambda, confidence, numIter, numCGSteps);
+    }
+
+    /**
+     * Constructor. Different regularization factors for user and item matrices.
+     *
+     * @param lambdaP    regularization factor for user matrix
+     * @param lambdaQ    regularization factor for item matrix
+     * @param confidence confidence function
+     * @param numIter    number of iterations
+     * @param numCGSteps number of conjugate gradient steps per row
+     */
+    public CGFactorizer(double lambdaP, double lambdaQ, DoubleUnaryOperator confidence, int numIter, int numCGSteps)
+    {
+        super(numIter);
+        this.lambdaP = lambdaP;
+        this.lambdaQ = lambdaQ;
+        this.confidence = confidence;
+        this.numCGSteps = numCGSteps;
+    }
+
+    @Override
+    public void factorize(Factorization<U, I> factorization, FastPreferenceData<U, I> data)
+    {
+        if (data.numPreferences() > 0)
+        {
+            super.factorize(factorization, data);
+        }
+        else
+        {
+            DoubleFunction init = (x) -> 0.0;
+
+            factorization.getUserMatrix().assign(init);
+            factorization.getItemMatrix().assign(init);
+        }
+    }
+
+    private <U, I> void set_min(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, FastPreferenceData<U, I> data)
+    {
+        final int K = p.columns();
+        final double[] gram = getGram(q, lambda);
+        final double[] qArray = toArray(q);
+
+        data.getUidxWithPreferences().parallel().forEach(uidx ->
+        {
+            Workspace ws = workspaces.get();
+            ws.ensure(K);
+            solve(p, uidx, gram, qArray, K, data.getUidxIidxs(uidx), data.getUidxVs(uidx), confidence, ws);
+        });
+    }
+
+    /**
+     * Obtains the regularized Gram matrix QᵀQ + λI, as a flat row-major array.
+     *
+     * @param q      the fixed factor matrix.
+     * @param lambda regularization factor.
+     * @return the Gram matrix.
+     */
+    private static double[] getGram(final DenseDoubleMatrix2D q, double lambda)
+    {
+        final int K = q.columns();
+
+        DenseDoubleMatrix2D A = new DenseDoubleMatrix2D(K, K);
+        q.zMult(q, A, 1.0, 0.0, true, false);
+        for (int k = 0; k < K; k++)
+        {
+            A.setQuick(k, k, lambda + A.getQuick(k, k));
+        }
+
+        return toArray(A);
+    }
+
+    /**
+     * Copies a matrix into a flat row-major array.
+     *
+     * @param m the matrix.
+     * @return an array containing the matrix values, row after row.
+     */
+    private static double[] toArray(DoubleMatrix2D m)
+    {
+        int rows = m.rows();
+        int cols = m.columns();
+        double[] array = new double[rows * cols];
+        for (int i = 0; i < rows; i++)
+        {
+            int offset = i * cols;
+            for (int k = 0; k < cols; k++)
+            {
+                array[offset + k] = m.getQuick(i, k);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Approximately solves the linear system of a single row, and stores the solution
+     * in the row uidx of matrix p.
+     */
+    private void solve(DoubleMatrix2D p, int uidx, double[] gram, double[] q, int K, IntIterator iidxs, DoubleIterator vs, DoubleUnaryOperator confidence, Workspace ws)
+    {
+        double[] x = ws.x;
+        double[] r = ws.r;
+        double[] d = ws.d;
+        double[] ad = ws.ad;
+
+        int n = 0;
+        while (iidxs.hasNext())
+        {
+            ws.ensureDegree(n + 1);
+            ws.iidxs[n] = iidxs.nextInt();
+            double rui = vs.nextDouble();
+            double cui = confidence.applyAsDouble(rui);
+            ws.cs[n] = cui - 1.0;
+            ws.bs[n] = cui * rui;
+            n++;
+        }
+        int[] items = ws.iidxs;
+        double[] cs = ws.cs;
+        double[] bs = ws.bs;
+
+        for (int k = 0; k < K; k++)
+        {
+            x[k] = p.getQuick(uidx, k);
+        }
+
+        // r = b - A x
+        multiply(x, r, gram, q, K, n, items, cs);
+        for (int k = 0; k < K; k++)
+        {
+            r[k] = -r[k];
+        }
+        for (int j = 0; j < n; j++)
+        {
+            int offset = items[j] * K;
+            double b = bs[j];
+            for (int k = 0; k < K; k++)
+            {
+                r[k] += b * q[offset + k];
+            }
+        }
+
+        double rr = 0.0;
+        for (int k = 0; k < K; k++)
+        {
+            d[k] = r[k];
+            rr += r[k] * r[k];
+        }
+
+        for (int step = 0; step < numCGSteps && rr > 0.0; step++)
+        {
+            multiply(d, ad, gram, q, K, n, items, cs);
+            double dad = 0.0;
+            for (int k = 0; k < K; k++)
+            {
+                dad += d[k] * ad[k];
+            }
+            if (dad <= 0.0)
+            {
+                break;
+            }
+
+            double alpha = rr / dad;
+            double newRR = 0.0;
+            for (int k = 0; k < K; k++)
+            {
+                x[k] += alpha * d[k];
+                r[k] -= alpha * ad[k];
+                newRR += r[k] * r[k];
+            }
+
+            double beta = newRR / rr;
+            for (int k = 0; k < K; k++)
+            {
+                d[k] = r[k] + beta * d[k];
+            }
+            rr = newRR;
+        }
+
+        for (int k = 0; k < K; k++)
+        {
+            p.setQuick(uidx, k, x[k]);
+        }
+    }
+
+    /**
+     * Computes out = (G + Σ (c_j - 1) q_j q_jᵀ) v, without building the matrix.
+     */
+    private static void multiply(double[] v, double[] out, double[] gram, double[] q, int K, int n, int[] items, double[] cs)
+    {
+        for (int k = 0; k < K; k++)
+        {
+            int offset = k * K;
+            double sum = 0.0;
+            for (int l = 0; l < K; l++)
+            {
+                sum += gram[offset + l] * v[l];
+            }
+            out[k] = sum;
+        }
+
+        for (int j = 0; j < n; j++)
+        {
+            int offset = items[j] * K;
+            double dot = 0.0;
+            for (int k = 0; k < K; k++)
+            {
+                dot += q[offset + k] * v[k];
+            }
+            double coef = cs[j] * dot;
+            for (int k = 0; k < K; k++)
+            {
+                out[k] += coef * q[offset + k];
+            }
+        }
+    }
+
+    @Override
+    public double error(DenseDoubleMatrix2D p, DenseDoubleMatrix2D q, FastPreferenceData<U, I> data)
+    {
+        return data.getUidxWithPreferences().parallel().mapToDouble(uidx ->
+        {
+            DoubleMatrix1D pu = p.viewRow(uidx);
+            DoubleMatrix1D su = q.zMult(pu, null);
+
+            double err1 = data.getUidxPreferences(uidx).mapToDouble(iv ->
+            {
+                double rui = iv.v2;
+                double sui = su.getQuick(iv.v1);
+                double cui = confidence.applyAsDouble(rui);
+                return cui * (rui - sui) * (rui - sui) - confidence.applyAsDouble(0) * sui * sui;
+            }).sum();
+
+            double err2 = confidence.applyAsDouble(0) * su.assign(x -> x * x).zSum();
+
+            return (err1 + err2) / data.numItems();
+        }).sum() / data.numUsers();
+    }
+
+    @Override
+    public void set_minP(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, FastPreferenceData<U, I> data)
+    {
+        set_min(p, q, confidence, lambdaP, data);
+    }
+
+    @Override
+    public void set_minQ(final DenseDoubleMatrix2D q, final DenseDoubleMatrix2D p, FastPreferenceData<U, I> data)
+    {
+        set_min(q, p, confidence, lambdaQ, new TransposedPreferenceData<>(data));
+    }
+
+    /**
+     * Scratch buffers for solving the linear system of a single user (or item).
+     * They grow on demand, and are never shrunk.
+     */
+    private static class Workspace
+    {
+        /**
+         * Current solution.
+         */
+        private double[] x = new double[0];
+        /**
+         * Residual.
+         */
+        private double[] r = new double[0];
+        /**
+         * Search direction.
+         */
+        private double[] d = new double[0];
+        /**
+         * Product of the system matrix and the search direction.
+         */
+        private double[] ad = new double[0];
+        /**
+         * Identifiers of the rated elements.
+         */
+        private int[] iidxs = new int[16];
+        /**
+         * Confidences minus one of the rated elements.
+         */
+        private double[] cs = new double[16];
+        /**
+         * Right-hand side coefficients of the rated elements.
+         */
+        private double[] bs = new double[16];
+
+        /**
+         * Guarantees that the vectors can hold a given number of latent factors.
+         *
+         * @param K number of latent factors.
+         */
+        private void ensure(int K)
+        {
+            if (x.length < K)
+            {
+                x = new double[K];
+                r = new double[K];
+                d = new double[K];
+                ad = new double[K];
+            }
+        }
+
+        /**
+         * Guarantees that the buffers can hold a given number of rated elements.
+         *
+         * @param n number of rated elements.
+         */
+        private void ensureDegree(int n)
+        {
+            if (iidxs.length < n)
+            {
+                int size = Math.max(n, 2 * iidxs.length);
+                iidxs = Arrays.copyOf(iidxs, size);
+                cs = Arrays.copyOf(cs, size);
+                bs = Arrays.copyOf(bs, size);
+            }
+        }
+    }
+}
@@ -10,22 +10,43 @@
 package es.uam.eps.ir.knnbandit.recommendation.mf;
 
 import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import es.uam.eps.ir.knnbandit.UntieRandomNumber;
+import es.uam.eps.ir.knnbandit.data.preference.fast.PrimitiveFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import es.uam.eps.ir.ranksys.mf.Factorizer;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
-import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
  * Interactive version of matrix factorization algorithms.
+ * <p>
+ * In asynchronous mode, the factorization is recomputed by a background thread over a snapshot
+ * of the training data, while recommendations keep being served from the previous factorization
+ * until the new one is swapped in.
+ * <p>
+ * The scores of the items for the most recently recommended users are cached until the factorization
+ * is replaced. The size of the cache is given in bytes, so the number of cached users decreases as
+ * the number of items grows.
+ * <p>
+ * Optionally, the best item for a user can be retrieved from an approximate maximum inner product
+ * search index over the item factors (see {@link MIPSIndex}), rebuilt every time the factorization
+ * is replaced. If no available item is found in the explored clusters, all the items are scored.
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  * @param <U> User type.
@@ -42,17 +63,87 @@ public class InteractiveMF<U,I> extends InteractiveRecommender<U,I>
      */
     private final int k;
     /**
-     * Decomposition in different matrices.
+     * Decomposition in different matrices. It is atomically replaced every time a new factorization is ready.
      */
-    private Factorization<U,I> factorization;
+    private final AtomicReference<Factorization<U,I>> factorization;
     /**
      * Number of hits before the recommender is updated.
      */
     private final static int LIMITCOUNTER = 100;
+    /**
+     * Default maximum memory (in bytes) used by the cached item scores.
+     */
+    public final static long DEFAULT_CACHE_MEMORY = 128L << 20;
     /**
      * Current hit counter.
      */
     private int currentCounter = 0;
+    /**
+     * Scores of the items for each cached user, in least recently used order.
+     */
+    private final Int2ObjectLinkedOpenHashMap<double[]> scoreCache = new Int2ObjectLinkedOpenHashMap<>();
+    /**
+     * Maximum number of users in the cache (0 to disable it, negative for an unbounded cache).
+     */
+    private final int maxCachedUsers;
+    /**
+     * The factorization the cached scores were computed with.
+     */
+    private Factorization<U,I> cachedFactorization;
+    /**
+     * True if the factorization is computed in a background thread, false otherwise.
+     */
+    private final boolean async;
+    /**
+     * Executor running the background factorizations (null if the recommender is not asynchronous).
+     */
+    private final ExecutorService executor;
+    /**
+     * Number of updates received by the recommender.
+     */
+    private final AtomicLong numUpdates = new AtomicLong(0L);
+    /**
+     * Number of updates received by the recommender when the snapshot of the current factorization was taken.
+     */
+    private final AtomicLong servedVersion = new AtomicLong(0L);
+    /**
+     * Time (in milliseconds) when the snapshot of the current factorization was taken.
+     */
+    private final AtomicLong servedTime = new AtomicLong(System.currentTimeMillis());
+    /**
+     * Number of updates received when the last factorization request was sent to the executor.
+     */
+    private final AtomicLong requestedVersion = new AtomicLong(0L);
+    /**
+     * Number of factorization requests waiting or running in the executor.
+     */
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+    /**
+     * Number of clusters of the item index (0 if the index is not used).
+     */
+    private final int numClusters;
+    /**
+     * Number of clusters of the item index explored for every recommendation (0 to explore all of them).
+     */
+    private final int numProbes;
+    /**
+     * Maximum inner product search index over the item factors of the current factorization.
+     */
+    private final AtomicReference<MIPSIndex> itemIndex;
+
+    /**
+     * Constructor.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param k Number of neighbors to use.
+     * @param factorizer Factorizer for obtaining the factorized matrices.
+     */
+    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, int k, Factorizer<U,I> factorizer)
+    {
+        this(uIndex, iIndex, prefData, ignoreUnknown, k, factorizer, false, DEFAULT_CACHE_MEMORY);
+    }
 
     /**
      * Constructor.
@@ -62,15 +153,41 @@ public class InteractiveMF<U,I> extends InteractiveRecommender<U,I>
      * @param ignoreUnknown True if we must ignore unknown items when updating.
      * @param k Number of neighbors to use.
      * @param factorizer Factorizer for obtaining the factorized matrices.
+     * @param async True if the factorization has to be computed in background, false otherwise.
+     * @param cacheMemory Maximum memory (in bytes) used by the cached item scores (0 to disable the cache, negative for no limit).
      */
-    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, int k, Factorizer<U,I> factorizer)
+    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, int k, Factorizer<U,I> factorizer, boolean async, long cacheMemory)
+    {
+        this(uIndex, iIndex, prefData, ignoreUnknown, k, factorizer, async, cacheMemory, 0, 0);
+    }
+
+    /**
+     * Constructor.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param k Number of neighbors to use.
+     * @param factorizer Factorizer for obtaining the factorized matrices.
+     * @param async True if the factorization has to be computed in background, false otherwise.
+     * @param cacheMemory Maximum memory (in bytes) used by the cached item scores (0 to disable the cache, negative for no limit).
+     * @param numClusters Number of clusters of the item index (0 to score all the items).
+     * @param numProbes Number of clusters of the item index explored for every recommendation (0 to explore all of them).
+     */
+    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, int k, Factorizer<U,I> factorizer, boolean async, long cacheMemory, int numClusters, int numProbes)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown);
         this.factorizer = factorizer;
         this.k = (k > 0) ? k : prefData.numUsers();
         Enumeration<String> loggers = LogManager.getLogManager().getLoggerNames();
         while (loggers.hasMoreElements()) LogManager.getLogManager().getLogger(loggers.nextElement()).setLevel(Level.OFF);
-        this.factorization = factorizer.factorize(k, trainData);
+        this.factorization = new AtomicReference<>(factorizer.factorize(k, trainData));
+        this.async = async;
+        this.executor = async ? createExecutor() : null;
+        this.maxCachedUsers = maxCachedUsers(cacheMemory, prefData.numItems());
+        this.numClusters = numClusters;
+        this.numProbes = numProbes;
+        this.itemIndex = new AtomicReference<>(this.buildIndex(this.factorization.get()));
     }
     
     /**
@@ -82,14 +199,71 @@ public class InteractiveMF<U,I> extends InteractiveRecommender<U,I>
      * @param k Number of neighbors to use.
      * @param factorizer Factorizer for obtaining the factorized matrices.
      */
-    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U, I> prefData, boolean ignoreUnknown, boolean notReciprocal, int k, Factorizer<U,I> factorizer)
+    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean notReciprocal, int k, Factorizer<U,I> factorizer)
+    {
+        this(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal, k, factorizer, false, DEFAULT_CACHE_MEMORY);
+    }
+
+    /**
+     * Constructor.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param notReciprocal True if we do not recommend reciprocal social links, false otherwise.
+     * @param k Number of neighbors to use.
+     * @param factorizer Factorizer for obtaining the factorized matrices.
+     * @param async True if the factorization has to be computed in background, false otherwise.
+     * @param cacheMemory Maximum memory (in bytes) used by the cached item scores (0 to disable the cache, negative for no limit).
+     */
+    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean notReciprocal, int k, Factorizer<U,I> factorizer, boolean async, long cacheMemory)
+    {
+        this(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal, k, factorizer, async, cacheMemory, 0, 0);
+    }
+
+    /**
+     * Constructor.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param notReciprocal True if we do not recommend reciprocal social links, false otherwise.
+     * @param k Number of neighbors to use.
+     * @param factorizer Factorizer for obtaining the factorized matrices.
+     * @param async True if the factorization has to be computed in background, false otherwise.
+     * @param cacheMemory Maximum memory (in bytes) used by the cached item scores (0 to disable the cache, negative for no limit).
+     * @param numClusters Number of clusters of the item index (0 to score all the items).
+     * @param numProbes Number of clusters of the item index explored for every recommendation (0 to explore all of them).
+     */
+    public InteractiveMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean notReciprocal, int k, Factorizer<U,I> factorizer, boolean async, long cacheMemory, int numClusters, int numProbes)
     {
         super(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal);
         this.factorizer = factorizer;
         this.k = (k > 0) ? k : prefData.numUsers();
         Enumeration<String> loggers = LogManager.getLogManager().getLoggerNames();
         while (loggers.hasMoreElements()) LogManager.getLogManager().getLogger(loggers.nextElement()).setLevel(Level.OFF);
-        this.factorization = factorizer.factorize(k, trainData);
+        this.factorization = new AtomicReference<>(factorizer.factorize(k, trainData));
+        this.async = async;
+        this.executor = async ? createExecutor() : null;
+        this.maxCachedUsers = maxCachedUsers(cacheMemory, prefData.numItems());
+        this.numClusters = numClusters;
+        this.numProbes = numProbes;
+        this.itemIndex = new AtomicReference<>(this.buildIndex(this.factorization.get()));
+    }
+
+    /**
+     * Creates the single-threaded executor for background factorizations. The thread is
+     * a daemon, so it does not prevent the program from finishing.
+     * @return the executor.
+     */
+    private static ExecutorService createExecutor()
+    {
+        return Executors.newSingleThreadExecutor(r ->
+        {
+            Thread t = new Thread(r, "InteractiveMF-factorizer");
+            t.setDaemon(true);
+            return t;
+        });
     }
     
     @Override
@@ -97,20 +271,25 @@ public class InteractiveMF<U,I> extends InteractiveRecommender<U,I>
     {
         IntList list = this.availability.get(uidx);
         if(list == null || list.isEmpty()) return -1;
-                
-        DoubleMatrix1D pu = factorization.getUserVector(prefData.uidx2user(uidx));
-        if(pu == null)
+
+        if(this.numClusters > 0)
+        {
+            int iidx = this.nextFromIndex(uidx);
+            if(iidx >= 0) return iidx;
+        }
+
+        double[] r = this.getScores(uidx);
+        if(r == null)
         {
             return list.get(rng.nextInt(list.size()));
         }
         
-        DoubleMatrix1D r = factorization.getItemMatrix().zMult(pu,null);
         double max = Double.NEGATIVE_INFINITY;
         IntList top = new IntArrayList();
         
         for(int iidx : list)
         {
-            double val = r.getQuick(iidx);
+            double val = r[iidx];
             if(Double.isNaN(val)) val = Double.NEGATIVE_INFINITY;
             if(top.isEmpty() || max < val)
             {
@@ -129,22 +308,251 @@ public class InteractiveMF<U,I> extends InteractiveRecommender<U,I>
         else return top.get(rng.nextInt(top.size()));
     }
 
+    /**
+     * Finds the best available item for a user in the item index.
+     * @param uidx Identifier of the user.
+     * @return the identifier of the item, or -1 if the index is not ready, the user does not have a latent vector,
+     *         or no available item was found in the explored clusters.
+     */
+    private int nextFromIndex(int uidx)
+    {
+        Factorization<U,I> current = factorization.get();
+        MIPSIndex index = this.itemIndex.get();
+        // The index of a new factorization might be swapped in slightly before the factorization itself.
+        if(index == null || !index.isBuiltFrom(current.getItemMatrix()))
+        {
+            return -1;
+        }
+
+        DoubleMatrix1D pu = current.getUserVector(prefData.uidx2user(uidx));
+        if(pu == null)
+        {
+            return -1;
+        }
+
+        IntList top = index.search(pu.toArray(), this.numProbes, iidx -> this.isAvailable(uidx, iidx));
+        int topSize = top.size();
+        if(topSize == 0) return -1;
+        else if(topSize == 1) return top.get(0);
+
+        // Ties are sorted as in the availability list, so the exact search breaks them as the full scan does.
+        int[] ties = top.toIntArray();
+        Arrays.sort(ties);
+        return ties[rng.nextInt(topSize)];
+    }
+
+    /**
+     * Builds the item index for a factorization.
+     * @param f The factorization.
+     * @return the index, or null if the index is not used.
+     */
+    private MIPSIndex buildIndex(Factorization<U,I> f)
+    {
+        if(this.numClusters <= 0)
+        {
+            return null;
+        }
+        return new MIPSIndex(f.getItemMatrix(), this.numClusters, new Random(UntieRandomNumber.RNG));
+    }
+
+    /**
+     * Finds the number of users whose item scores fit in the cache.
+     * @param cacheMemory Maximum memory (in bytes) used by the cache (0 to disable it, negative for no limit).
+     * @param numItems Number of items.
+     * @return the maximum number of users in the cache (0 if the cache is disabled, negative for no limit).
+     */
+    private static int maxCachedUsers(long cacheMemory, int numItems)
+    {
+        if(cacheMemory < 0)
+        {
+            return -1;
+        }
+        long rowBytes = Double.BYTES * (long) Math.max(1, numItems);
+        return (int) Math.min(Integer.MAX_VALUE, cacheMemory / rowBytes);
+    }
+
+    /**
+     * Obtains the scores of all the items for a user, using the cache when possible.
+     * @param uidx Identifier of the user.
+     * @return the scores of the items, or null if the user does not have a latent vector.
+     */
+    private double[] getScores(int uidx)
+    {
+        Factorization<U,I> current = factorization.get();
+        if(current != this.cachedFactorization)
+        {
+            this.scoreCache.clear();
+            this.cachedFactorization = current;
+        }
+
+        double[] r = this.scoreCache.getAndMoveToLast(uidx);
+        if(r != null)
+        {
+            return r;
+        }
+
+        DoubleMatrix1D pu = current.getUserVector(prefData.uidx2user(uidx));
+        if(pu == null)
+        {
+            return null;
+        }
+
+        DoubleMatrix2D q = current.getItemMatrix();
+        int numItems = q.rows();
+        int numFactors = q.columns();
+        r = new double[numItems];
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            double val = 0.0;
+            for(int f = 0; f < numFactors; ++f)
+            {
+                val += q.getQuick(iidx, f)*pu.getQuick(f);
+            }
+            r[iidx] = val;
+        }
+
+        if(this.maxCachedUsers != 0)
+        {
+            if(this.maxCachedUsers > 0 && this.scoreCache.size() >= this.maxCachedUsers)
+            {
+                this.scoreCache.removeFirst();
+            }
+            this.scoreCache.putAndMoveToLast(uidx, r);
+        }
+        return r;
+    }
+
     @Override
-    public void updateMethod(List<Tuple3<Integer,Integer,Double>> tuples)
+    public void updateMethod(int[] users, int[] items, double[] values, int n)
     {
-        this.factorizer.factorize(k, trainData);
+        this.numUpdates.addAndGet(n);
+        this.refactorize();
         this.currentCounter = 0;
     }
     
     @Override
     public void updateMethod(int uidx, int iidx, double value)
     {
+        this.numUpdates.incrementAndGet();
         if(value > 0.0)
             this.currentCounter++;
         if(currentCounter >= LIMITCOUNTER)
         {
             this.currentCounter = 0;
-            this.factorization = factorizer.factorize(k, trainData);
+            this.refactorize();
+        }
+    }
+
+    /**
+     * Recomputes the factorization. In synchronous mode, it is computed over the training data, and
+     * replaced before returning. In asynchronous mode, a snapshot of the training data is taken, and the
+     * factorization is computed in background. Requests which are superseded by a newer one before
+     * starting are discarded. If a background factorization fails, the error is reported, and the
+     * previous factorization is kept until the next request succeeds.
+     */
+    private void refactorize()
+    {
+        long version = this.numUpdates.get();
+        if(!async)
+        {
+            Factorization<U,I> f = factorizer.factorize(k, trainData);
+            this.itemIndex.set(this.buildIndex(f));
+            this.factorization.set(f);
+            this.servedVersion.set(version);
+            this.servedTime.set(System.currentTimeMillis());
+            return;
+        }
+
+        if(this.executor.isShutdown())
+        {
+            return;
+        }
+
+        long time = System.currentTimeMillis();
+        PrimitiveFastUpdateablePreferenceData<U,I> snapshot = this.trainData.snapshot();
+        this.requestedVersion.set(version);
+        this.queueDepth.incrementAndGet();
+        this.executor.execute(() ->
+        {
+            try
+            {
+                if(this.requestedVersion.get() == version)
+                {
+                    Factorization<U,I> f = factorizer.factorize(k, snapshot);
+                    this.itemIndex.set(this.buildIndex(f));
+                    this.factorization.set(f);
+                    this.servedVersion.set(version);
+                    this.servedTime.set(time);
+                }
+            }
+            catch(RuntimeException | Error ex)
+            {
+                System.err.println("ERROR: the background factorization failed (" + ex + "). The previous factorization is kept.");
+                ex.printStackTrace();
+            }
+            finally
+            {
+                this.queueDepth.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Stops the background factorizations. Pending requests are discarded, and the current
+     * factorization is used from then on. The executor thread is a daemon, so it does not
+     * prevent the program from finishing if this method is not called.
+     */
+    public void shutdown()
+    {
+        if(this.executor != null)
+        {
+            this.executor.shutdownNow();
         }
     }
+
+    /**
+     * Obtains the number of updates the recommender has received since the snapshot used by
+     * the current factorization was taken.
+     * @return the staleness of the factorization, in number of updates.
+     */
+    public long getStaleness()
+    {
+        return this.numUpdates.get() - this.servedVersion.get();
+    }
+
+    /**
+     * Obtains the time elapsed since the snapshot used by the current factorization was taken.
+     * @return the staleness of the factorization, in milliseconds.
+     */
+    public long getStalenessMillis()
+    {
+        return System.currentTimeMillis() - this.servedTime.get();
+    }
+
+    /**
+     * Obtains the number of factorizations waiting or running in background.
+     * @return the number of pending factorizations (always 0 in synchronous mode).
+     */
+    public int getQueueDepth()
+    {
+        return this.queueDepth.get();
+    }
+
+    /**
+     * Checks whether the best items are retrieved from an approximate item index.
+     * @return true if the item index is used, false otherwise.
+     */
+    public boolean usesIndex()
+    {
+        return this.numClusters > 0;
+    }
+
+    /**
+     * Checks whether the factorization is computed in background.
+     * @return true if the factorization is computed asynchronously, false otherwise.
+     */
+    public boolean isAsync()
+    {
+        return this.async;
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+import es.uam.eps.ir.knnbandit.UntieRandomNumber;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.index.fast.FastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.Random;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
+
+/**
+ * Interactive matrix factorization updated online by stochastic gradient descent. Every
+ * received rating applies a gradient step over the squared error to the factors of the
+ * user and the item, in O(k). For implicit feedback, each positive rating can additionally
+ * be contrasted with a few randomly sampled items, which are treated as negative.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @param <U> User type.
+ * @param <I> Item type.
+ */
+public class InteractiveSGDMF<U,I> extends InteractiveRecommender<U,I>
+{
+    /**
+     * Standard deviation of the initial values of the factors.
+     */
+    private final static double INITSTDEV = 0.1;
+    /**
+     * Number of latent factors.
+     */
+    private final int k;
+    /**
+     * Learning rate.
+     */
+    private final float learningRate;
+    /**
+     * Regularization factor.
+     */
+    private final float lambda;
+    /**
+     * Number of sampled negative items for each positive rating.
+     */
+    private final int numNegatives;
+    /**
+     * User factors, stored as a flat row-major array (one row of k values per user).
+     */
+    private final float[] userFactors;
+    /**
+     * Item factors, stored as a flat row-major array (one row of k values per item).
+     */
+    private final float[] itemFactors;
+    /**
+     * Random number generator for initializing the factors and sampling negative items.
+     */
+    private final Random sgdRng;
+
+    /**
+     * Constructor.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param k Number of latent factors.
+     * @param learningRate Learning rate of the gradient steps.
+     * @param lambda Regularization factor.
+     * @param numNegatives Number of sampled negative items for each positive rating.
+     */
+    public InteractiveSGDMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, int k, double learningRate, double lambda, int numNegatives)
+    {
+        super(uIndex, iIndex, prefData, ignoreUnknown);
+        this.k = k;
+        this.learningRate = (float) learningRate;
+        this.lambda = (float) lambda;
+        this.numNegatives = numNegatives;
+        this.sgdRng = new Random(UntieRandomNumber.RNG);
+        this.userFactors = this.initFactors(prefData.numUsers());
+        this.itemFactors = this.initFactors(prefData.numItems());
+    }
+
+    /**
+     * Constructor.
+     * @param uIndex User index.
+     * @param iIndex Item index.
+     * @param prefData Preference data.
+     * @param ignoreUnknown True if we must ignore unknown items when updating.
+     * @param notReciprocal True if we do not recommend reciprocal social links, false otherwise.
+     * @param k Number of latent factors.
+     * @param learningRate Learning rate of the gradient steps.
+     * @param lambda Regularization factor.
+     * @param numNegatives Number of sampled negative items for each positive rating.
+     */
+    public InteractiveSGDMF(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U, I> prefData, boolean ignoreUnknown, boolean notReciprocal, int k, double learningRate, double lambda, int numNegatives)
+    {
+        super(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal);
+        this.k = k;
+        this.learningRate = (float) learningRate;
+        this.lambda = (float) lambda;
+        this.numNegatives = numNegatives;
+        this.sgdRng = new Random(UntieRandomNumber.RNG);
+        this.userFactors = this.initFactors(prefData.numUsers());
+        this.itemFactors = this.initFactors(prefData.numItems());
+    }
+
+    /**
+     * Initializes a factor matrix with small random values.
+     * @param numRows Number of rows of the matrix.
+     * @return the flat factor matrix.
+     */
+    private float[] initFactors(int numRows)
+    {
+        float[] factors = new float[numRows*k];
+        for(int i = 0; i < factors.length; ++i)
+        {
+            factors[i] = (float) (INITSTDEV*sgdRng.nextGaussian());
+        }
+        return factors;
+    }
+
+    /**
+     * Computes the dot product between the factors of a user and an item.
+     * @param uOffset Position of the first factor of the user.
+     * @param iOffset Position of the first factor of the item.
+     * @return the dot product.
+     */
+    private float dot(int uOffset, int iOffset)
+    {
+        float sum = 0.0f;
+        for(int f = 0; f < k; ++f)
+        {
+            sum += userFactors[uOffset + f]*itemFactors[iOffset + f];
+        }
+        return sum;
+    }
+
+    @Override
+    public int next(int uidx)
+    {
+        IntList list = this.availability.get(uidx);
+        if(list == null || list.isEmpty()) return -1;
+
+        int uOffset = uidx*k;
+        double max = Double.NEGATIVE_INFINITY;
+        IntList top = new IntArrayList();
+
+        for(int iidx : list)
+        {
+            double val = this.dot(uOffset, iidx*k);
+            if(Double.isNaN(val)) val = Double.NEGATIVE_INFINITY;
+            if(top.isEmpty() || max < val)
+            {
+                top = new IntArrayList();
+                top.add(iidx);
+                max = val;
+            }
+            else if(max == val)
+            {
+                top.add(iidx);
+            }
+        }
+
+        int topSize = top.size();
+        if(topSize == 1) return top.get(0);
+        else return top.get(rng.nextInt(topSize));
+    }
+
+    @Override
+    public void updateMethod(int uidx, int iidx, double value)
+    {
+        this.step(uidx, iidx, (float) value);
+        if(value > 0.0)
+        {
+            int numItems = this.numItems();
+            for(int n = 0; n < numNegatives; ++n)
+            {
+                // Items the user has already rated are not used as negative samples.
+                int jidx = sgdRng.nextInt(numItems);
+                if(jidx != iidx && !this.trainData.containsPreference(uidx, jidx))
+                {
+                    this.step(uidx, jidx, 0.0f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a gradient step over the squared error of a single rating.
+     * @param uidx Identifier of the user.
+     * @param iidx Identifier of the item.
+     * @param value The rating.
+     */
+    private void step(int uidx, int iidx, float value)
+    {
+        int uOffset = uidx*k;
+        int iOffset = iidx*k;
+        float err = value - this.dot(uOffset, iOffset);
+        for(int f = 0; f < k; ++f)
+        {
+            float pu = userFactors[uOffset + f];
+            float qi = itemFactors[iOffset + f];
+            userFactors[uOffset + f] += learningRate*(err*qi - lambda*pu);
+            itemFactors[iOffset + f] += learningRate*(err*pu - lambda*qi);
+        }
+    }
+}
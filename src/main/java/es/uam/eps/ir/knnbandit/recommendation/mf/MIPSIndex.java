@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Inverted file index for maximum inner product search (MIPS) over the item factor matrix.
+ * <p>
+ * Item vectors are augmented with an extra coordinate, sqrt(M^2 - ||q_i||^2), where M is the
+ * maximum norm of the item vectors. Then, the item with maximum inner product with a query
+ * vector (extended with a zero) is its nearest neighbor in euclidean distance, so items can be
+ * grouped with k-means. A query only scores the items in the clusters whose centroids are the
+ * nearest to it: probing more clusters improves recall, at the cost of a slower search. Probing
+ * all the clusters gives the exact result.
+ * <p>
+ * Bachrach, Y., Finkelstein, Y., Gilad-Bachrach, R., Katzir, L., Koenigstein, N., Nice, N., Paquet, U.
+ * Speeding up the Xbox Recommender System Using a Euclidean Transformation for Inner-Product Spaces.
+ * 8th ACM Conference on Recommender Systems (RecSys 2014). Foster City, California, USA, pp. 257-264.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class MIPSIndex
+{
+    /**
+     * Default number of k-means iterations.
+     */
+    public final static int DEFAULT_NUM_ITER = 10;
+    /**
+     * Maximum number of training vectors for each cluster during the k-means iterations.
+     */
+    private final static int SAMPLE_PER_CLUSTER = 64;
+    /**
+     * The item matrix the index was built from.
+     */
+    private final DoubleMatrix2D itemMatrix;
+    /**
+     * Number of latent factors.
+     */
+    private final int numFactors;
+    /**
+     * Number of clusters.
+     */
+    private final int numClusters;
+    /**
+     * Centroids of the clusters, without the augmented coordinate (one row of numFactors values per cluster).
+     */
+    private final double[] centroids;
+    /**
+     * Squared norms of the augmented centroids.
+     */
+    private final double[] centroidNorms;
+    /**
+     * Position of the first item of each cluster in the items array (numClusters + 1 values).
+     */
+    private final int[] offsets;
+    /**
+     * Identifiers of the items, grouped by cluster.
+     */
+    private final int[] items;
+    /**
+     * Vectors of the items, in the same order as the items array (one row of numFactors values per item).
+     */
+    private final double[] vectors;
+
+    /**
+     * Constructor.
+     * @param itemMatrix The item factor matrix.
+     * @param numClusters Number of clusters.
+     * @param rng Random number generator for the initial centroids and the training sample.
+     */
+    public MIPSIndex(DoubleMatrix2D itemMatrix, int numClusters, Random rng)
+    {
+        this(itemMatrix, numClusters, DEFAULT_NUM_ITER, rng);
+    }
+
+    /**
+     * Constructor.
+     * @param itemMatrix The item factor matrix.
+     * @param numClusters Number of clusters.
+     * @param numIter Number of k-means iterations.
+     * @param rng Random number generator for the initial centroids and the training sample.
+     */
+    public MIPSIndex(DoubleMatrix2D itemMatrix, int numClusters, int numIter, Random rng)
+    {
+        this.itemMatrix = itemMatrix;
+        int numItems = itemMatrix.rows();
+        this.numFactors = itemMatrix.columns();
+        this.numClusters = Math.max(1, Math.min(numClusters, numItems));
+        int dim = numFactors + 1;
+
+        // Augmented item vectors.
+        double[] augmented = new double[numItems*dim];
+        double maxNorm = 0.0;
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            double norm = 0.0;
+            for(int f = 0; f < numFactors; ++f)
+            {
+                double val = itemMatrix.getQuick(iidx, f);
+                augmented[iidx*dim + f] = val;
+                norm += val*val;
+            }
+            augmented[iidx*dim + numFactors] = norm;
+            maxNorm = Math.max(maxNorm, norm);
+        }
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            augmented[iidx*dim + numFactors] = Math.sqrt(Math.max(0.0, maxNorm - augmented[iidx*dim + numFactors]));
+        }
+
+        // K-means over a sample of the items, starting from randomly chosen items.
+        int[] perm = IntStream.range(0, numItems).toArray();
+        int sampleSize = Math.min(numItems, Math.max(this.numClusters, SAMPLE_PER_CLUSTER*this.numClusters));
+        for(int i = 0; i < sampleSize; ++i)
+        {
+            int j = i + rng.nextInt(numItems - i);
+            int aux = perm[i];
+            perm[i] = perm[j];
+            perm[j] = aux;
+        }
+
+        double[] aug = new double[this.numClusters*dim];
+        for(int c = 0; c < this.numClusters && numItems > 0; ++c)
+        {
+            System.arraycopy(augmented, perm[c]*dim, aug, c*dim, dim);
+        }
+
+        int[] sample = new int[sampleSize];
+        System.arraycopy(perm, 0, sample, 0, sampleSize);
+        for(int iter = 0; iter < numIter; ++iter)
+        {
+            int[] assign = IntStream.of(sample).parallel().map(iidx -> nearest(augmented, iidx, aug, dim)).toArray();
+            double[] sums = new double[this.numClusters*dim];
+            int[] counts = new int[this.numClusters];
+            for(int i = 0; i < sampleSize; ++i)
+            {
+                int c = assign[i];
+                counts[c]++;
+                for(int f = 0; f < dim; ++f)
+                {
+                    sums[c*dim + f] += augmented[sample[i]*dim + f];
+                }
+            }
+            for(int c = 0; c < this.numClusters; ++c)
+            {
+                // Empty clusters keep their previous centroid.
+                if(counts[c] > 0)
+                {
+                    for(int f = 0; f < dim; ++f)
+                    {
+                        aug[c*dim + f] = sums[c*dim + f]/counts[c];
+                    }
+                }
+            }
+        }
+
+        // Final assignment of every item, and grouping of the items by cluster.
+        int[] assign = IntStream.range(0, numItems).parallel().map(iidx -> nearest(augmented, iidx, aug, dim)).toArray();
+        this.offsets = new int[this.numClusters + 1];
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            this.offsets[assign[iidx] + 1]++;
+        }
+        for(int c = 0; c < this.numClusters; ++c)
+        {
+            this.offsets[c + 1] += this.offsets[c];
+        }
+
+        this.items = new int[numItems];
+        this.vectors = new double[numItems*numFactors];
+        int[] pos = new int[this.numClusters];
+        System.arraycopy(this.offsets, 0, pos, 0, this.numClusters);
+        for(int iidx = 0; iidx < numItems; ++iidx)
+        {
+            int p = pos[assign[iidx]]++;
+            this.items[p] = iidx;
+            System.arraycopy(augmented, iidx*dim, this.vectors, p*numFactors, numFactors);
+        }
+
+        this.centroids = new double[this.numClusters*numFactors];
+        this.centroidNorms = new double[this.numClusters];
+        for(int c = 0; c < this.numClusters; ++c)
+        {
+            System.arraycopy(aug, c*dim, this.centroids, c*numFactors, numFactors);
+            double norm = 0.0;
+            for(int f = 0; f < dim; ++f)
+            {
+                norm += aug[c*dim + f]*aug[c*dim + f];
+            }
+            this.centroidNorms[c] = norm;
+        }
+    }
+
+    /**
+     * Finds the nearest centroid to an augmented item vector.
+     * @param augmented The augmented item vectors.
+     * @param iidx Identifier of the item.
+     * @param aug The augmented centroids.
+     * @param dim Dimension of the augmented vectors.
+     * @return the index of the nearest centroid.
+     */
+    private int nearest(double[] augmented, int iidx, double[] aug, int dim)
+    {
+        int best = 0;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for(int c = 0; c < numClusters; ++c)
+        {
+            double dist = 0.0;
+            for(int f = 0; f < dim; ++f)
+            {
+                double diff = augmented[iidx*dim + f] - aug[c*dim + f];
+                dist += diff*diff;
+            }
+            if(dist < bestDist)
+            {
+                bestDist = dist;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the items with the maximum inner product with a query vector.
+     * @param query The query vector (the latent vector of a user).
+     * @param numProbes Number of clusters to explore. If it is not positive, or greater than the number
+     *                  of clusters, every cluster is explored, and the search is exact.
+     * @param filter Condition the returned items must satisfy (for instance, being available for the user).
+     * @return the items satisfying the filter with the maximum inner product among the explored clusters (more
+     *         than one in case of ties). If no item in the explored clusters satisfies the filter, an empty list.
+     */
+    public IntList search(double[] query, int numProbes, IntPredicate filter)
+    {
+        IntList top = new IntArrayList();
+        double max = Double.NEGATIVE_INFINITY;
+        for(int c : this.probe(query, numProbes))
+        {
+            for(int p = offsets[c]; p < offsets[c + 1]; ++p)
+            {
+                int iidx = items[p];
+                if(!filter.test(iidx))
+                {
+                    continue;
+                }
+
+                double val = 0.0;
+                for(int f = 0; f < numFactors; ++f)
+                {
+                    val += vectors[p*numFactors + f]*query[f];
+                }
+                if(Double.isNaN(val)) val = Double.NEGATIVE_INFINITY;
+                if(top.isEmpty() || max < val)
+                {
+                    top.clear();
+                    top.add(iidx);
+                    max = val;
+                }
+                else if(max == val)
+                {
+                    top.add(iidx);
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Selects the clusters to explore for a query: those whose (augmented) centroid is the nearest to the
+     * (augmented) query. As the augmented coordinate of the query is zero, the distance to a centroid c
+     * equals ||u||^2 + ||c||^2 - 2 u·c, and the first term can be ignored.
+     * @param query The query vector.
+     * @param numProbes Number of clusters to explore.
+     * @return the clusters to explore, nearest first.
+     */
+    private int[] probe(double[] query, int numProbes)
+    {
+        if(numProbes <= 0 || numProbes >= numClusters)
+        {
+            return IntStream.range(0, numClusters).toArray();
+        }
+
+        double[] dists = new double[numClusters];
+        for(int c = 0; c < numClusters; ++c)
+        {
+            double dot = 0.0;
+            for(int f = 0; f < numFactors; ++f)
+            {
+                dot += centroids[c*numFactors + f]*query[f];
+            }
+            dists[c] = centroidNorms[c] - 2.0*dot;
+        }
+
+        // Partial selection sort: the number of probes is usually small.
+        int[] clusters = IntStream.range(0, numClusters).toArray();
+        for(int i = 0; i < numProbes; ++i)
+        {
+            int best = i;
+            for(int j = i + 1; j < numClusters; ++j)
+            {
+                if(dists[clusters[j]] < dists[clusters[best]])
+                {
+                    best = j;
+                }
+            }
+            int aux = clusters[i];
+            clusters[i] = clusters[best];
+            clusters[best] = aux;
+        }
+
+        int[] probes = new int[numProbes];
+        System.arraycopy(clusters, 0, probes, 0, numProbes);
+        return probes;
+    }
+
+    /**
+     * Checks whether the index was built from a given item matrix.
+     * @param itemMatrix The item matrix.
+     * @return true if the index was built from the matrix, false otherwise.
+     */
+    public boolean isBuiltFrom(DoubleMatrix2D itemMatrix)
+    {
+        return this.itemMatrix == itemMatrix;
+    }
+
+    /**
+     * Obtains the number of clusters of the index.
+     * @return the number of clusters.
+     */
+    public int getNumClusters()
+    {
+        return numClusters;
+    }
+}
@@ -14,13 +14,14 @@ import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.linalg.EigenvalueDecomposition;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
-import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import es.uam.eps.ir.ranksys.mf.als.ALSFactorizer;
 
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
 import java.util.function.DoubleUnaryOperator;
-import java.util.stream.Stream;
 
 import static java.lang.Math.sqrt;
 
@@ -58,6 +59,10 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I>
      * True if we want the factorizer to be able to use zero values.
      */
     private final boolean usesZeroes;
+    /**
+     * Scratch buffers for each thread, reused between users and iterations.
+     */
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
 
 
     /**
@@ -133,18 +138,49 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I>
         }
     }
 
-    private static <U, I> void set_min(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, FastPreferenceData<U, I> data, boolean usesZeroes)
+    private <U, I> void set_min(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, FastPreferenceData<U, I> data, boolean usesZeroes)
     {
-        DoubleMatrix2D gt = getGt(p, q, lambda);
+        final int K = p.columns();
+        final double[] gt = toArray(getGt(p, q, lambda));
+        final double[] qArray = toArray(q);
+        final int maxDegree = data.getUidxWithPreferences().map(data::numItems).max().orElse(0);
+        final int maxRows = K + (usesZeroes ? 2 : 1) * maxDegree;
 
-        if (!usesZeroes)
+        data.getUidxWithPreferences().parallel().forEach(uidx ->
         {
-            data.getUidxWithPreferences().parallel().forEach(uidx -> prepareRR1(1, p.viewRow(uidx), gt, q, data.numItems(uidx), data.getUidxPreferences(uidx), confidence, lambda));
-        }
-        else
+            Workspace ws = workspaces.get();
+            ws.ensure(maxRows, K);
+            if (!usesZeroes)
+            {
+                prepareRR1(1, p, uidx, gt, qArray, K, data.numItems(uidx), data.getUidxIidxs(uidx), data.getUidxVs(uidx), confidence, lambda, ws);
+            }
+            else
+            {
+                prepareRR1Zeroes(1, p, uidx, gt, qArray, K, data.numItems(uidx), data.getUidxIidxs(uidx), data.getUidxVs(uidx), confidence, lambda, ws);
+            }
+        });
+    }
+
+    /**
+     * Copies a matrix into a flat row-major array.
+     *
+     * @param m the matrix.
+     * @return an array containing the matrix values, row after row.
+     */
+    private static double[] toArray(DoubleMatrix2D m)
+    {
+        int rows = m.rows();
+        int cols = m.columns();
+        double[] array = new double[rows * cols];
+        for (int i = 0; i < rows; i++)
         {
-            data.getUidxWithPreferences().parallel().forEach(uidx -> prepareRR1Zeroes(1, p.viewRow(uidx), gt, q, data.numItems(uidx), data.getUidxPreferences(uidx), confidence, lambda));
+            int offset = i * cols;
+            for (int k = 0; k < cols; k++)
+            {
+                array[offset + k] = m.getQuick(i, k);
+            }
         }
+        return array;
     }
 
     private static DoubleMatrix2D getGt(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, double lambda)
@@ -170,73 +206,99 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I>
         return gt;
     }
 
-    private static <O> void prepareRR1(int L, DoubleMatrix1D w, DoubleMatrix2D gt, DoubleMatrix2D q, int N, Stream<? extends IdxPref> prefs, DoubleUnaryOperator confidence, double lambda)
+    private static void prepareRR1(int L, DoubleMatrix2D p, int uidx, double[] gt, double[] q, int K, int N, IntIterator iidxs, DoubleIterator vs, DoubleUnaryOperator confidence, double lambda, Workspace ws)
     {
-        int K = w.size();
+        double[] x = ws.x;
+        double[] y = ws.y;
+        double[] c = ws.c;
 
-        double[][] x = new double[K + N][K];
-        double[] y = new double[K + N];
-        double[] c = new double[K + N];
+        // The first K rows are the columns of gt.
         for (int k = 0; k < K; k++)
         {
-            gt.viewColumn(k).toArray(x[k]);
+            int offset = k * K;
+            for (int l = 0; l < K; l++)
+            {
+                x[offset + l] = gt[l * K + k];
+            }
             y[k] = 0.0;
             c[k] = 1.0;
         }
-        int[] j = {K};
-        prefs.forEach(iv ->
+
+        int j = K;
+        while (iidxs.hasNext())
         {
-            q.viewRow(iv.v1).toArray(x[j[0]]);
-            double Cui = confidence.applyAsDouble(iv.v2);
-            y[j[0]] = (Cui * iv.v2) / (Cui - 1);
-            c[j[0]] = Cui - 1;
-            j[0]++;
-        });
+            int iidx = iidxs.nextInt();
+            double v = vs.nextDouble();
+            System.arraycopy(q, iidx * K, x, j * K, K);
+            double Cui = confidence.applyAsDouble(v);
+            y[j] = (Cui * v) / (Cui - 1);
+            c[j] = Cui - 1;
+            j++;
+        }
 
-        doRR1(L, w, x, y, c, lambda);
+        doRR1(L, p, uidx, K, K + N, lambda, ws);
     }
 
-    private static <O> void prepareRR1Zeroes(int L, DoubleMatrix1D w, DoubleMatrix2D gt, DoubleMatrix2D q, int N, Stream<? extends IdxPref> prefs, DoubleUnaryOperator confidence, double lambda)
+    private static void prepareRR1Zeroes(int L, DoubleMatrix2D p, int uidx, double[] gt, double[] q, int K, int N, IntIterator iidxs, DoubleIterator vs, DoubleUnaryOperator confidence, double lambda, Workspace ws)
     {
-        int K = w.size();
+        double[] x = ws.x;
+        double[] y = ws.y;
+        double[] c = ws.c;
 
-        double[][] x = new double[K + 2 * N][K];
-        double[] y = new double[K + 2 * N];
-        double[] c = new double[K + 2 * N];
+        // The first K rows are the columns of gt.
         for (int k = 0; k < K; k++)
         {
-            gt.viewColumn(k).toArray(x[k]);
+            int offset = k * K;
+            for (int l = 0; l < K; l++)
+            {
+                x[offset + l] = gt[l * K + k];
+            }
             y[k] = 0.0;
             c[k] = 1.0;
         }
-        int[] j = {K};
-        prefs.forEach(iv ->
+
+        int j = K;
+        while (iidxs.hasNext())
         {
-            q.viewRow(iv.v1).toArray(x[j[0]]);
-            q.viewRow(iv.v1).toArray(x[j[0] + N]);
-            double Cui = confidence.applyAsDouble(iv.v2);
-            y[j[0]] = 0;
-            c[j[0]] = -1;
-            y[j[0] + N] = iv.v2;
-            c[j[0] + N] = Cui;
-            j[0]++;
-        });
+            int iidx = iidxs.nextInt();
+            double v = vs.nextDouble();
+            System.arraycopy(q, iidx * K, x, j * K, K);
+            System.arraycopy(q, iidx * K, x, (j + N) * K, K);
+            double Cui = confidence.applyAsDouble(v);
+            y[j] = 0;
+            c[j] = -1;
+            y[j + N] = v;
+            c[j + N] = Cui;
+            j++;
+        }
 
-        doRR1(L, w, x, y, c, lambda);
+        doRR1(L, p, uidx, K, K + 2 * N, lambda, ws);
     }
 
-    private static void doRR1(int L, DoubleMatrix1D w, double[][] x, double[] y, double[] c, double lambda)
+    /**
+     * Applies the RR1 update over the first N rows of the workspace, and stores the
+     * result in the row uidx of matrix p.
+     */
+    private static void doRR1(int L, DoubleMatrix2D p, int uidx, int K, int N, double lambda, Workspace ws)
     {
-        int N = x.length;
-        int K = x[0].length;
+        double[] x = ws.x;
+        double[] y = ws.y;
+        double[] c = ws.c;
+        double[] e = ws.e;
+        double[] w = ws.w;
+
+        for (int k = 0; k < K; k++)
+        {
+            w[k] = p.getQuick(uidx, k);
+        }
 
-        double[] e = new double[N];
         for (int i = 0; i < N; i++)
         {
+            int offset = i * K;
             double pred = 0.0;
             for (int k = 0; k < K; k++)
             {
-                pred += w.getQuick(k) * x[i][k];
+                pred += w[k] * x[offset + k];
             }
             e[i] = y[i] - pred;
         }
@@ -245,25 +307,29 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I>
         {
             for (int k = 0; k < K; k++)
             {
-                for (int i = 0; i < N; i++)
-                {
-                    e[i] += w.getQuick(k) * x[i][k];
-                }
+                double wk = w[k];
                 double a = 0.0;
                 double d = 0.0;
-                for (int i = 0; i < N; i++)
+                for (int i = 0, pos = k; i < N; i++, pos += K)
                 {
-                    a += c[i] * x[i][k] * x[i][k];
-                    d += c[i] * x[i][k] * e[i];
+                    double xik = x[pos];
+                    e[i] += wk * xik;
+                    a += c[i] * xik * xik;
+                    d += c[i] * xik * e[i];
                 }
-                w.setQuick(k, d / (lambda + a));
-                for (int i = 0; i < N; i++)
+                wk = d / (lambda + a);
+                w[k] = wk;
+                for (int i = 0, pos = k; i < N; i++, pos += K)
                 {
-                    e[i] -= w.getQuick(k) * x[i][k];
+                    e[i] -= wk * x[pos];
                 }
             }
         }
 
+        for (int k = 0; k < K; k++)
+        {
+            p.setQuick(uidx, k, w[k]);
+        }
     }
 
     @Override
@@ -300,4 +366,56 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I>
     {
         set_min(q, p, confidence, lambdaQ, new TransposedPreferenceData<>(data), this.usesZeroes);
     }
-}
\ No newline at end of file
+
+    /**
+     * Scratch buffers for solving the least squares problem of a single user (or item).
+     * They grow on demand, and are never shrunk.
+     */
+    private static class Workspace
+    {
+        /**
+         * Flat row-major matrix of examples.
+         */
+        private double[] x = new double[0];
+        /**
+         * Target values.
+         */
+        private double[] y = new double[0];
+        /**
+         * Confidence weights.
+         */
+        private double[] c = new double[0];
+        /**
+         * Residuals.
+         */
+        private double[] e = new double[0];
+        /**
+         * Solution vector.
+         */
+        private double[] w = new double[0];
+
+        /**
+         * Guarantees that the buffers can hold a given number of rows.
+         *
+         * @param rows number of rows.
+         * @param K    number of latent factors.
+         */
+        private void ensure(int rows, int K)
+        {
+            if (x.length < rows * K)
+            {
+                x = new double[rows * K];
+            }
+            if (y.length < rows)
+            {
+                y = new double[rows];
+                c = new double[rows];
+                e = new double[rows];
+            }
+            if (w.length < K)
+            {
+                w = new double[K];
+            }
+        }
+    }
+}
@@ -25,6 +25,12 @@ public class AlgorithmIdentifiers
     // User based.
     public static final String USERBASEDKNN = "ubknn";
     public static final String BANDITKNN = "knnbandit";
+    public static final String FOFUSERBASEDKNN = "fofubknn";
+    public static final String FOFBANDITKNN = "fofknnbandit";
     // Matrix factorization.
     public static final String MF = "mf";
+    public static final String ASYNCMF = "asyncmf";
+    public static final String IVFMF = "ivfmf";
+    public static final String ASYNCIVFMF = "asyncivfmf";
+    public static final String SGDMF = "sgdmf";
 }
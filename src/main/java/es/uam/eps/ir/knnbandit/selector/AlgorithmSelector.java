@@ -21,12 +21,14 @@ import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.UpdateableSimilar
 import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.VectorCosineSimilarity;
 import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.stochastic.BetaStochasticSimilarity;
 import es.uam.eps.ir.knnbandit.recommendation.knn.user.InteractiveUserBasedKNN;
+import es.uam.eps.ir.knnbandit.recommendation.mf.CGFactorizer;
 import es.uam.eps.ir.knnbandit.recommendation.mf.InteractiveMF;
+import es.uam.eps.ir.knnbandit.recommendation.mf.InteractiveSGDMF;
 import es.uam.eps.ir.knnbandit.recommendation.mf.PZTFactorizer;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
 import es.uam.eps.ir.ranksys.mf.Factorizer;
 import es.uam.eps.ir.ranksys.mf.als.HKVFactorizer;
 import es.uam.eps.ir.ranksys.mf.plsa.PLSAFactorizer;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
 import org.ranksys.formats.parsing.Parsers;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -72,7 +74,7 @@ public class AlgorithmSelector<U,I>
     /**
      * Preference data.
      */
-    private SimpleFastPreferenceData<U,I> prefData;
+    private FastPointWisePreferenceData<U,I> prefData;
     /**
      * True if contact recommendation algorithms must be configured, false otherwise.
      */
@@ -115,7 +117,7 @@ public class AlgorithmSelector<U,I>
      * @param prefData Preference data.
      * @param threshold Relevance threshold
      */
-    public void configure(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, double threshold)
+    public void configure(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, double threshold)
     {
         this.uIndex = uIndex;
         this.iIndex = iIndex;
@@ -134,7 +136,7 @@ public class AlgorithmSelector<U,I>
      * @param threshold Relevance threshold
      * @param notReciprocal True if we have to avoid recommending reciprocal items.
      */
-    public void configure(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastPreferenceData<U,I> prefData, double threshold, boolean notReciprocal)
+    public void configure(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, FastPointWisePreferenceData<U,I> prefData, double threshold, boolean notReciprocal)
     {
         this.uIndex = uIndex;
         this.iIndex = iIndex;
@@ -205,7 +207,14 @@ public class AlgorithmSelector<U,I>
                             : new ItemBanditRecommender(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal, itemBandit, valFunc);
 
                 case AlgorithmIdentifiers.USERBASEDKNN: // User-based kNN.
+                case AlgorithmIdentifiers.FOFUSERBASEDKNN:
                     cursor++;
+                    int maxCandidates = 0;
+                    if(fullAlgorithm.get(0).equals(AlgorithmIdentifiers.FOFUSERBASEDKNN))
+                    {
+                        maxCandidates = Parsers.ip.parse(fullAlgorithm.get(cursor));
+                        cursor++;
+                    }
                     int k = Parsers.ip.parse(fullAlgorithm.get(cursor));
                     cursor++;
 
@@ -230,10 +239,17 @@ public class AlgorithmSelector<U,I>
                     }
 
                     return !this.contactRec ? new InteractiveUserBasedKNN(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeroes, k, sim)
-                            : new InteractiveUserBasedKNN(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeroes, notReciprocal, k, sim);
+                            : new InteractiveUserBasedKNN(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeroes, notReciprocal, k, sim, maxCandidates);
 
                 case AlgorithmIdentifiers.BANDITKNN:
+                case AlgorithmIdentifiers.FOFBANDITKNN:
                     cursor++;
+                    maxCandidates = 0;
+                    if(fullAlgorithm.get(0).equals(AlgorithmIdentifiers.FOFBANDITKNN))
+                    {
+                        maxCandidates = Parsers.ip.parse(fullAlgorithm.get(cursor));
+                        cursor++;
+                    }
                     k = Parsers.ip.parse(fullAlgorithm.get(cursor));
                     cursor++;
                     double alpha = Parsers.dp.parse(fullAlgorithm.get(cursor));
@@ -260,10 +276,23 @@ public class AlgorithmSelector<U,I>
                         cursor+=2;
                     }
                     return !this.contactRec ? new InteractiveUserBasedKNN(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeroes, k, sim)
-                            : new InteractiveUserBasedKNN(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeroes, notReciprocal, k, sim);
+                            : new InteractiveUserBasedKNN(uIndex, iIndex, prefData, ignoreUnknown, ignoreZeroes, notReciprocal, k, sim, maxCandidates);
 
                 case AlgorithmIdentifiers.MF:
+                case AlgorithmIdentifiers.ASYNCMF:
+                case AlgorithmIdentifiers.IVFMF:
+                case AlgorithmIdentifiers.ASYNCIVFMF:
+                    boolean async = fullAlgorithm.get(0).equals(AlgorithmIdentifiers.ASYNCMF) || fullAlgorithm.get(0).equals(AlgorithmIdentifiers.ASYNCIVFMF);
+                    int numClusters = 0;
+                    int numProbes = 0;
                     cursor++;
+                    if(fullAlgorithm.get(0).equals(AlgorithmIdentifiers.IVFMF) || fullAlgorithm.get(0).equals(AlgorithmIdentifiers.ASYNCIVFMF))
+                    {
+                        numClusters = Parsers.ip.parse(fullAlgorithm.get(cursor));
+                        cursor++;
+                        numProbes = Parsers.ip.parse(fullAlgorithm.get(cursor));
+                        cursor++;
+                    }
                     k = new Integer(fullAlgorithm.get(cursor));
                     cursor++;
                     Factorizer<U, I> factorizer = this.getFactorizer(fullAlgorithm.subList(cursor, split.length));
@@ -282,8 +311,31 @@ public class AlgorithmSelector<U,I>
                         cursor++;
                     }
 
-                    return !this.contactRec ? new InteractiveMF(uIndex, iIndex, prefData, ignoreUnknown, k, factorizer)
-                            : new InteractiveMF(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal, k, factorizer);
+                    return !this.contactRec ? new InteractiveMF(uIndex, iIndex, prefData, ignoreUnknown, k, factorizer, async, InteractiveMF.DEFAULT_CACHE_MEMORY, numClusters, numProbes)
+                            : new InteractiveMF(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal, k, factorizer, async, InteractiveMF.DEFAULT_CACHE_MEMORY, numClusters, numProbes);
+                case AlgorithmIdentifiers.SGDMF:
+                    cursor++;
+                    k = Parsers.ip.parse(fullAlgorithm.get(cursor));
+                    cursor++;
+                    double learningRate = Parsers.dp.parse(fullAlgorithm.get(cursor));
+                    cursor++;
+                    double lambda = Parsers.dp.parse(fullAlgorithm.get(cursor));
+                    cursor++;
+                    int numNegatives = Parsers.ip.parse(fullAlgorithm.get(cursor));
+                    cursor++;
+
+                    if(fullAlgorithm.size() == cursor)
+                    {
+                        ignoreUnknown = true;
+                    }
+                    else
+                    {
+                        ignoreUnknown = fullAlgorithm.get(cursor).equalsIgnoreCase("ignore");
+                        cursor++;
+                    }
+
+                    return !this.contactRec ? new InteractiveSGDMF(uIndex, iIndex, prefData, ignoreUnknown, k, learningRate, lambda, numNegatives)
+                            : new InteractiveSGDMF(uIndex, iIndex, prefData, ignoreUnknown, notReciprocal, k, learningRate, lambda, numNegatives);
                 default:
                     unknownAlgorithm = true;
             }
@@ -439,6 +491,15 @@ public class AlgorithmSelector<U,I>
                 confidence = (double x) -> 1 + alphaPZT*x;
                 factorizer = new PZTFactorizer<>(lambdaPZT, lambdaPZT, confidence, numIterpzt, usesZeroes);
                 break;
+            case FactorizerIdentifiers.CGIMF:
+                double alphaCG = new Double(split.get(1));
+                double lambdaCG = new Double(split.get(2));
+                int numIterCG = new Integer(split.get(3));
+                int numStepsCG = new Integer(split.get(4));
+                cursor+=4;
+                confidence = (double x) -> 1 + alphaCG*x;
+                factorizer = new CGFactorizer<>(lambdaCG, lambdaCG, confidence, numIterCG, numStepsCG);
+                break;
             case FactorizerIdentifiers.PLSA:
                 int numIterPLSA = new Integer(split.get(1));
                 cursor++;
@@ -18,5 +18,6 @@ public class FactorizerIdentifiers
 {
     public final static String IMF = "imf";
     public final static String FASTIMF = "fastimf";
+    public final static String CGIMF = "cgimf";
     public final static String PLSA = "plsa";
 }
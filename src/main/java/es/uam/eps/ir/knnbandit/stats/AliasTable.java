@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.stats;
+
+import java.util.SplittableRandom;
+
+/**
+ * Discrete distribution over the integers 0 to n-1, with probabilities proportional to some
+ * weights. It uses Vose's alias method: building the table takes O(n), and sampling takes O(1).
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class AliasTable
+{
+    /**
+     * Probability of keeping each column (instead of taking its alias).
+     */
+    private final double[] prob;
+    /**
+     * Alias of each column.
+     */
+    private final int[] alias;
+
+    /**
+     * Constructor.
+     * @param weights Non-negative weights of the values (at least one of them must be positive).
+     */
+    public AliasTable(double[] weights)
+    {
+        int n = weights.length;
+        this.prob = new double[n];
+        this.alias = new int[n];
+
+        double sum = 0.0;
+        for(double w : weights)
+        {
+            sum += w;
+        }
+        if(!(sum > 0.0))
+        {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+
+        // Columns with less (small) and more (large) than the average probability.
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int numSmall = 0;
+        int numLarge = 0;
+        for(int i = 0; i < n; ++i)
+        {
+            prob[i] = weights[i] * n / sum;
+            if(prob[i] < 1.0) small[numSmall++] = i;
+            else large[numLarge++] = i;
+        }
+
+        while(numSmall > 0 && numLarge > 0)
+        {
+            int s = small[--numSmall];
+            int l = large[--numLarge];
+            alias[s] = l;
+            prob[l] = (prob[l] + prob[s]) - 1.0;
+            if(prob[l] < 1.0) small[numSmall++] = l;
+            else large[numLarge++] = l;
+        }
+
+        // Remaining columns are full (up to rounding errors).
+        while(numLarge > 0)
+        {
+            prob[large[--numLarge]] = 1.0;
+        }
+        while(numSmall > 0)
+        {
+            prob[small[--numSmall]] = 1.0;
+        }
+    }
+
+    /**
+     * Samples a value.
+     * @param rng Random number generator.
+     * @return a value between 0 and n-1.
+     */
+    public int sample(SplittableRandom rng)
+    {
+        int column = rng.nextInt(prob.length);
+        return rng.nextDouble() < prob[column] ? column : alias[column];
+    }
+
+    /**
+     * Obtains the number of values.
+     * @return the number of values.
+     */
+    public int size()
+    {
+        return prob.length;
+    }
+}
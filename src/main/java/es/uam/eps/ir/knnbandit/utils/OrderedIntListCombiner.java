@@ -0,0 +1,369 @@
+/* 
+ * Copyright (C) 2019 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ * 
+ */
+package es.uam.eps.ir.knnbandit.utils;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+/**
+ * Methods for combining ordered lists of integers, specialized version of {@link OrderedListCombiner}.
+ * Lists must be sorted in ascending order, without repeated elements. They can be given either as
+ * lists or as ranges of arrays.
+ *
+ * Depending on the sizes of the lists, different algorithms are used: when one of the lists is much
+ * shorter than the other, the elements of the short list are searched in the long one by galloping
+ * (exponential) search. When the elements of the shortest list are dense in the range shared by both
+ * lists, the intersection is found with a bitmap. Otherwise, lists are traversed linearly.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class OrderedIntListCombiner
+{
+    /**
+     * Minimum ratio between the sizes of the lists for using galloping search.
+     */
+    private final static int GALLOP_RATIO = 32;
+    /**
+     * Maximum ratio between the range shared by the lists and the size of the shortest list for using a bitmap.
+     */
+    private final static int BITMAP_RATIO = 32;
+
+    /**
+     * Merges two ordered lists.
+     * @param firstList The first list.
+     * @param secondList The second list.
+     * @return the merged list, in ascending order.
+     */
+    public static IntArrayList mergeLists(IntList firstList, IntList secondList)
+    {
+        return mergeLists(elements(firstList), 0, firstList.size(), elements(secondList), 0, secondList.size());
+    }
+
+    /**
+     * Merges two ordered ranges of arrays.
+     * @param first The first array.
+     * @param firstFrom Start of the first range.
+     * @param firstTo End of the first range (not included).
+     * @param second The second array.
+     * @param secondFrom Start of the second range.
+     * @param secondTo End of the second range (not included).
+     * @return the merged list, in ascending order.
+     */
+    public static IntArrayList mergeLists(int[] first, int firstFrom, int firstTo, int[] second, int secondFrom, int secondTo)
+    {
+        int firstSize = firstTo - firstFrom;
+        int secondSize = secondTo - secondFrom;
+        if(firstSize > secondSize)
+        {
+            return mergeLists(second, secondFrom, secondTo, first, firstFrom, firstTo);
+        }
+
+        IntArrayList merged = new IntArrayList(firstSize + secondSize);
+        if((long) firstSize * GALLOP_RATIO < secondSize)
+        {
+            // The runs of the long list between elements of the short one are copied at once.
+            int j = secondFrom;
+            for(int i = firstFrom; i < firstTo; ++i)
+            {
+                int pos = gallop(second, j, secondTo, first[i]);
+                merged.addElements(merged.size(), second, j, pos - j);
+                merged.add(first[i]);
+                j = (pos < secondTo && second[pos] == first[i]) ? pos + 1 : pos;
+            }
+            merged.addElements(merged.size(), second, j, secondTo - j);
+            return merged;
+        }
+
+        int i = firstFrom;
+        int j = secondFrom;
+        while(i < firstTo && j < secondTo)
+        {
+            int a = first[i];
+            int b = second[j];
+            if(a <= b) i++;
+            if(b <= a) j++;
+            merged.add(a <= b ? a : b);
+        }
+        merged.addElements(merged.size(), first, i, firstTo - i);
+        merged.addElements(merged.size(), second, j, secondTo - j);
+        return merged;
+    }
+
+    /**
+     * Finds the size of the union of two ordered lists.
+     * @param firstList The first list.
+     * @param secondList The second list.
+     * @return the size of the union.
+     */
+    public static int mergeListsSize(IntList firstList, IntList secondList)
+    {
+        return firstList.size() + secondList.size() - intersectListsSize(firstList, secondList);
+    }
+
+    /**
+     * Finds the size of the union of two ordered ranges of arrays.
+     * @param first The first array.
+     * @param firstFrom Start of the first range.
+     * @param firstTo End of the first range (not included).
+     * @param second The second array.
+     * @param secondFrom Start of the second range.
+     * @param secondTo End of the second range (not included).
+     * @return the size of the union.
+     */
+    public static int mergeListsSize(int[] first, int firstFrom, int firstTo, int[] second, int secondFrom, int secondTo)
+    {
+        return (firstTo - firstFrom) + (secondTo - secondFrom) - intersectListsSize(first, firstFrom, firstTo, second, secondFrom, secondTo);
+    }
+
+    /**
+     * Intersects two ordered lists.
+     * @param firstList The first list.
+     * @param secondList The second list.
+     * @return the intersection, in ascending order.
+     */
+    public static IntArrayList intersectLists(IntList firstList, IntList secondList)
+    {
+        return intersectLists(elements(firstList), 0, firstList.size(), elements(secondList), 0, secondList.size());
+    }
+
+    /**
+     * Intersects two ordered ranges of arrays.
+     * @param first The first array.
+     * @param firstFrom Start of the first range.
+     * @param firstTo End of the first range (not included).
+     * @param second The second array.
+     * @param secondFrom Start of the second range.
+     * @param secondTo End of the second range (not included).
+     * @return the intersection, in ascending order.
+     */
+    public static IntArrayList intersectLists(int[] first, int firstFrom, int firstTo, int[] second, int secondFrom, int secondTo)
+    {
+        IntArrayList intersection = new IntArrayList();
+        intersect(first, firstFrom, firstTo, second, secondFrom, secondTo, intersection);
+        return intersection;
+    }
+
+    /**
+     * Finds the size of the intersection of two ordered lists.
+     * @param firstList The first list.
+     * @param secondList The second list.
+     * @return the size of the intersection.
+     */
+    public static int intersectListsSize(IntList firstList, IntList secondList)
+    {
+        return intersectListsSize(elements(firstList), 0, firstList.size(), elements(secondList), 0, secondList.size());
+    }
+
+    /**
+     * Finds the size of the intersection of two ordered ranges of arrays.
+     * @param first The first array.
+     * @param firstFrom Start of the first range.
+     * @param firstTo End of the first range (not included).
+     * @param second The second array.
+     * @param secondFrom Start of the second range.
+     * @param secondTo End of the second range (not included).
+     * @return the size of the intersection.
+     */
+    public static int intersectListsSize(int[] first, int firstFrom, int firstTo, int[] second, int secondFrom, int secondTo)
+    {
+        return intersect(first, firstFrom, firstTo, second, secondFrom, secondTo, null);
+    }
+
+    /**
+     * Checks whether the intersection of two ordered lists is empty or not.
+     * @param firstList The first list.
+     * @param secondList The second list.
+     * @return true if the intersection has elements, false otherwise.
+     */
+    public static boolean intersectionHasElements(IntList firstList, IntList secondList)
+    {
+        return intersectionHasElements(elements(firstList), 0, firstList.size(), elements(secondList), 0, secondList.size());
+    }
+
+    /**
+     * Checks whether the intersection of two ordered ranges of arrays is empty or not.
+     * @param first The first array.
+     * @param firstFrom Start of the first range.
+     * @param firstTo End of the first range (not included).
+     * @param second The second array.
+     * @param secondFrom Start of the second range.
+     * @param secondTo End of the second range (not included).
+     * @return true if the intersection has elements, false otherwise.
+     */
+    public static boolean intersectionHasElements(int[] first, int firstFrom, int firstTo, int[] second, int secondFrom, int secondTo)
+    {
+        int firstSize = firstTo - firstFrom;
+        int secondSize = secondTo - secondFrom;
+        if(firstSize > secondSize)
+        {
+            return intersectionHasElements(second, secondFrom, secondTo, first, firstFrom, firstTo);
+        }
+        if(firstSize == 0)
+        {
+            return false;
+        }
+
+        if((long) firstSize * GALLOP_RATIO < secondSize)
+        {
+            int j = secondFrom;
+            for(int i = firstFrom; i < firstTo && j < secondTo; ++i)
+            {
+                j = gallop(second, j, secondTo, first[i]);
+                if(j < secondTo && second[j] == first[i])
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int i = firstFrom;
+        int j = secondFrom;
+        while(i < firstTo && j < secondTo)
+        {
+            int a = first[i];
+            int b = second[j];
+            if(a == b) return true;
+            if(a < b) i++;
+            else j++;
+        }
+        return false;
+    }
+
+    /**
+     * Intersects two ordered ranges of arrays.
+     * @param first The first array.
+     * @param firstFrom Start of the first range.
+     * @param firstTo End of the first range (not included).
+     * @param second The second array.
+     * @param secondFrom Start of the second range.
+     * @param secondTo End of the second range (not included).
+     * @param intersection List where the common elements are added (null if they are only counted).
+     * @return the size of the intersection.
+     */
+    private static int intersect(int[] first, int firstFrom, int firstTo, int[] second, int secondFrom, int secondTo, IntArrayList intersection)
+    {
+        int firstSize = firstTo - firstFrom;
+        int secondSize = secondTo - secondFrom;
+        if(firstSize > secondSize)
+        {
+            return intersect(second, secondFrom, secondTo, first, firstFrom, firstTo, intersection);
+        }
+        if(firstSize == 0 || first[firstTo - 1] < second[secondFrom] || second[secondTo - 1] < first[firstFrom])
+        {
+            return 0;
+        }
+
+        int count = 0;
+        if((long) firstSize * GALLOP_RATIO < secondSize)
+        {
+            int j = secondFrom;
+            for(int i = firstFrom; i < firstTo && j < secondTo; ++i)
+            {
+                j = gallop(second, j, secondTo, first[i]);
+                if(j < secondTo && second[j] == first[i])
+                {
+                    if(intersection != null) intersection.add(first[i]);
+                    count++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        int low = Math.max(first[firstFrom], second[secondFrom]);
+        int high = Math.min(first[firstTo - 1], second[secondTo - 1]);
+        if((long) high - low < (long) firstSize * BITMAP_RATIO)
+        {
+            // The elements of the short list in the shared range are marked in a bitmap, and the
+            // elements of the long list are then checked against it, without any comparison.
+            long[] bitmap = new long[(int) (((long) high - low) >>> 6) + 1];
+            for(int i = gallop(first, firstFrom, firstTo, low); i < firstTo && first[i] <= high; ++i)
+            {
+                int bit = first[i] - low;
+                bitmap[bit >>> 6] |= 1L << bit;
+            }
+            for(int j = gallop(second, secondFrom, secondTo, low); j < secondTo && second[j] <= high; ++j)
+            {
+                int bit = second[j] - low;
+                if((bitmap[bit >>> 6] & (1L << bit)) != 0L)
+                {
+                    if(intersection != null) intersection.add(second[j]);
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int i = firstFrom;
+        int j = secondFrom;
+        while(i < firstTo && j < secondTo)
+        {
+            int a = first[i];
+            int b = second[j];
+            if(a == b)
+            {
+                if(intersection != null) intersection.add(a);
+                count++;
+            }
+            if(a <= b) i++;
+            if(b <= a) j++;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the first position of an ordered range of an array whose value is greater than or equal to
+     * a given one, by galloping (exponential) search from the start of the range.
+     * @param values The array.
+     * @param from Start of the range.
+     * @param to End of the range (not included).
+     * @param value The value.
+     * @return the position, or to if all the values in the range are smaller.
+     */
+    private static int gallop(int[] values, int from, int to, int value)
+    {
+        if(from >= to || values[from] >= value)
+        {
+            return from;
+        }
+
+        // Finds low, high such that values[low] < value <= values[high] (or high = to).
+        int low = from;
+        int step = 1;
+        int high = from + 1;
+        while(high < to && values[high] < value)
+        {
+            low = high;
+            step <<= 1;
+            high = (int) Math.min((long) low + step, to);
+        }
+
+        low++;
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if(values[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Obtains the array containing the elements of a list, without copying it when possible.
+     * @param list The list.
+     * @return an array whose first positions contain the elements of the list.
+     */
+    private static int[] elements(IntList list)
+    {
+        return list instanceof IntArrayList ? ((IntArrayList) list).elements() : list.toIntArray();
+    }
+}